@@ -0,0 +1,45 @@
+import java.io.File;
+
+import benchmarks.AuthDriver;
+
+/**
+ * Looks up, logs in and signs up investors through {@link UserDatabase}
+ * and {@link AuthService}.
+ */
+public class AuthDriverImpl implements AuthDriver {
+    private UserDatabase userDatabase;
+    private AuthService authService;
+
+    @Override
+    public void setUp(String directory, int users, String durability) {
+        String fileName = new File(directory, "users.ser").getPath();
+        UserDatabase seed = new UserDatabase(fileName, BinaryCodecs.USER);
+        seed.saveToFile(BenchmarkData.investors(users));
+        seed.close();
+        userDatabase = new UserDatabase(fileName, BinaryCodecs.USER);
+        userDatabase.setDurability(Durability.valueOf(durability));
+        authService = new AuthService(userDatabase);
+    }
+
+    @Override
+    public Object findUser(int index) {
+        return userDatabase.findUser(BenchmarkData.userName(index));
+    }
+
+    @Override
+    public Object login(int index) {
+        return authService.login(BenchmarkData.userName(index), BenchmarkData.PASSWORD);
+    }
+
+    @Override
+    public Object signUp(long sequence) {
+        String userName = "new" + sequence;
+        return authService.signUp("New Investor", userName + "@example.com", userName,
+                BenchmarkData.PASSWORD, BenchmarkData.PASSWORD);
+    }
+
+    @Override
+    public void tearDown() {
+        userDatabase.close();
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the investors and portfolios the benchmarks run on with a
+ * {@link DatasetGenerator}, so the same arguments always build the same
+ * data and results are comparable between runs.
+ */
+final class BenchmarkData {
+    /** The password every generated investor has */
+    static final String PASSWORD = DatasetGenerator.PASSWORD;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Gets the username of a generated investor.
+     *
+     * @param index The number of the investor
+     * @return The username
+     */
+    static String userName(int index) {
+        return DatasetGenerator.userName(index);
+    }
+
+    /**
+     * Builds numbered investors.
+     *
+     * @param count The number of investors
+     * @return The investors user0 to user{@code count - 1}
+     */
+    static List<User> investors(int count) {
+        DatasetGenerator generator = new DatasetGenerator().investors(count);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(generator.investor(i));
+        }
+        return users;
+    }
+
+    /**
+     * Builds the portfolios of numbered investors, each holding a mix of
+     * all asset types.
+     *
+     * @param investors             The number of investors
+     * @param portfoliosPerInvestor The number of portfolios each investor has
+     * @param assetsPerPortfolio    The number of assets in each portfolio
+     * @return The portfolios, grouped by investor
+     */
+    static List<Portfolio> portfolios(int investors, int portfoliosPerInvestor, int assetsPerPortfolio) {
+        DatasetGenerator generator = new DatasetGenerator().investors(investors)
+                .portfoliosPerInvestor(portfoliosPerInvestor, portfoliosPerInvestor)
+                .assetsPerPortfolio(assetsPerPortfolio, assetsPerPortfolio);
+        List<Portfolio> portfolios = new ArrayList<>(investors * portfoliosPerInvestor);
+        for (int i = 0; i < investors; i++) {
+            portfolios.addAll(generator.portfolios(i));
+        }
+        return portfolios;
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.File;
+import java.util.List;
+
+import benchmarks.PersistenceDriver;
+
+/**
+ * Reads and writes user and portfolio snapshots through
+ * {@link Database#loadFromFile()} and {@link Database#saveToFile(List)},
+ * with the codecs the application stores them with.
+ */
+public class PersistenceDriverImpl implements PersistenceDriver {
+    private SnapshotStore<User> userStore;
+    private SnapshotStore<Portfolio> portfolioStore;
+    private List<User> users;
+    private List<Portfolio> portfolios;
+
+    /**
+     * A database used only to read and write its snapshot. It is not
+     * journaled, so loading does not open a write-ahead log.
+     */
+    private static final class SnapshotStore<T> extends Database<T> {
+        private static final long serialVersionUID = 1L;
+
+        SnapshotStore(String fileName, RecordCodec<T> codec) {
+            super(fileName, false, codec);
+        }
+
+        @Override
+        public boolean addData(T item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean deleteData(T item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean editData(T oldData, T newData) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public void setUp(String directory, int records, int assetsPerPortfolio) {
+        userStore = new SnapshotStore<>(new File(directory, "users.ser").getPath(), BinaryCodecs.USER);
+        portfolioStore = new SnapshotStore<>(new File(directory, "portfolios.ser").getPath(), BinaryCodecs.PORTFOLIO);
+        users = BenchmarkData.investors(records);
+        portfolios = BenchmarkData.portfolios(records, 1, assetsPerPortfolio);
+        userStore.saveToFile(users);
+        portfolioStore.saveToFile(portfolios);
+    }
+
+    @Override
+    public Object loadUsers() {
+        return userStore.loadFromFile();
+    }
+
+    @Override
+    public void saveUsers() {
+        userStore.saveToFile(users);
+    }
+
+    @Override
+    public Object loadPortfolios() {
+        return portfolioStore.loadFromFile();
+    }
+
+    @Override
+    public void savePortfolios() {
+        portfolioStore.saveToFile(portfolios);
+    }
+}
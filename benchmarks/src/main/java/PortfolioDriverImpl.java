@@ -0,0 +1,72 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import benchmarks.PortfolioDriver;
+
+/**
+ * Loads portfolios through {@link LazyPortfolioDatabase}, calculates Zakat
+ * with {@link ZakatEstimator} and writes {@link PortfolioReport}s and
+ * {@link ZakatReport}s, valuing assets against a {@link SimulatedPriceSource}.
+ */
+public class PortfolioDriverImpl implements PortfolioDriver {
+    private LazyPortfolioDatabase portfolioDatabase;
+    private Investor[] investors;
+    private ValuationEngine valuationEngine;
+    private ZakatEstimator zakatEstimator;
+    private String reportDirectory;
+    private Investor reportInvestor;
+    private List<Portfolio> reportPortfolios;
+
+    @Override
+    public void setUp(String directory, int investors, int portfoliosPerInvestor, int assetsPerPortfolio) {
+        portfolioDatabase = new LazyPortfolioDatabase(new File(directory, "portfolios").getPath(),
+                BinaryCodecs.PORTFOLIO, LazyPortfolioDatabase.DEFAULT_CACHED_INVESTORS);
+        portfolioDatabase.importPortfolios(
+                BenchmarkData.portfolios(investors, portfoliosPerInvestor, assetsPerPortfolio));
+        this.investors = BenchmarkData.investors(investors).toArray(new Investor[0]);
+        SimulatedPriceSource prices = new SimulatedPriceSource(42, 0.01);
+        prices.setPrice(Gold.PRICE_SYMBOL, 75.0);
+        valuationEngine = new ValuationEngine(prices);
+        zakatEstimator = new ZakatEstimator();
+        zakatEstimator.updateGoldPrice(valuationEngine);
+        reportDirectory = new File(directory, "reports").getPath();
+        reportInvestor = this.investors[0];
+        reportPortfolios = portfolioDatabase.getUserPortfolios(reportInvestor);
+    }
+
+    @Override
+    public Object getUserPortfolios(int index) {
+        return portfolioDatabase.getUserPortfolios(investors[index]);
+    }
+
+    @Override
+    public double calculatePortfolioZakat() {
+        return zakatEstimator.calculatePortfolioZakat(reportPortfolios.get(0));
+    }
+
+    @Override
+    public String writePortfolioReport() {
+        try {
+            return new PortfolioReport(reportPortfolios, reportInvestor, reportDirectory, valuationEngine)
+                    .writeReport();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String writeZakatReport() {
+        try {
+            return new ZakatReport(reportPortfolios.get(0), reportDirectory, zakatEstimator).writeReport();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void tearDown() {
+        portfolioDatabase.close();
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures user lookup, login and sign-up. Lookups and logins cycle through
+ * all investors so that they are not served from one hot cache line; every
+ * sign-up registers a new username and is journaled with the chosen
+ * durability.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+    /** The number of investors in the database */
+    @Param({"1000", "100000"})
+    public int users;
+
+    /** How sign-ups are committed to disk */
+    @Param({"PER_OP", "BATCHED"})
+    public String durability;
+
+    private AuthDriver driver;
+    private String directory;
+    private int next;
+    private long signUps;
+
+    @Setup
+    public void setUp() {
+        directory = Drivers.createTempDirectory("investwise-auth");
+        driver = Drivers.create(AuthDriver.class);
+        driver.setUp(directory, users, durability);
+    }
+
+    @TearDown
+    public void tearDown() {
+        driver.tearDown();
+        Drivers.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Object findUser() {
+        return driver.findUser(nextIndex());
+    }
+
+    @Benchmark
+    public Object login() {
+        return driver.login(nextIndex());
+    }
+
+    @Benchmark
+    public Object signUp() {
+        return driver.signUp(signUps++);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == users ? 0 : index + 1;
+        return index;
+    }
+}
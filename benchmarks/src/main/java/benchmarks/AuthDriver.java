@@ -0,0 +1,45 @@
+package benchmarks;
+
+/**
+ * Looks up, logs in and signs up users for {@link AuthBenchmark}.
+ */
+public interface AuthDriver {
+    /**
+     * Creates a user database holding numbered investors, user0 to
+     * user{@code users - 1}, all with the same password.
+     *
+     * @param directory  The directory to store the database in
+     * @param users      The number of investors
+     * @param durability The name of the durability mode, e.g. PER_OP
+     */
+    void setUp(String directory, int users, String durability);
+
+    /**
+     * Finds an investor with {@code UserDatabase.findUser}.
+     *
+     * @param index The number of the investor
+     * @return The investor
+     */
+    Object findUser(int index);
+
+    /**
+     * Logs an investor in with {@code AuthService.login}.
+     *
+     * @param index The number of the investor
+     * @return The login result
+     */
+    Object login(int index);
+
+    /**
+     * Registers a new investor with {@code AuthService.signUp}.
+     *
+     * @param sequence A number no other sign-up used, which makes the username unique
+     * @return The sign-up result
+     */
+    Object signUp(long sequence);
+
+    /**
+     * Commits pending journal records and closes the database.
+     */
+    void tearDown();
+}
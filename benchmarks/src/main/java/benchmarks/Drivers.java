@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Creates the drivers the benchmarks call the application through.
+ *
+ * <p>The application's classes live in the default package, which JMH
+ * benchmarks cannot use and classes in a named package cannot reference.
+ * Each driver interface is therefore implemented by a default-package class
+ * named after it with an {@code Impl} suffix, which is loaded by name.</p>
+ */
+final class Drivers {
+    private Drivers() {
+    }
+
+    /**
+     * Creates the implementation of a driver interface.
+     *
+     * @param type The driver interface
+     * @param <T>  The driver type
+     * @return A new driver
+     */
+    static <T> T create(Class<T> type) {
+        try {
+            return type.cast(Class.forName(type.getSimpleName() + "Impl").getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + type.getSimpleName() + "Impl", e);
+        }
+    }
+
+    /**
+     * Creates an empty temporary directory for a benchmark's files.
+     *
+     * @param prefix The prefix of the directory's name
+     * @return The directory's path
+     */
+    static String createTempDirectory(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     *
+     * @param directory The directory to delete
+     */
+    static void deleteDirectory(String directory) {
+        try (Stream<Path> paths = Files.walk(Path.of(directory))) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
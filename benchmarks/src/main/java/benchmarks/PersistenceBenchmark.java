@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading and writing whole database snapshots, the cost paid when
+ * the application starts and whenever a journal is compacted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    /** The number of users, and of portfolios, in the snapshots */
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    /** The number of assets in each portfolio */
+    @Param({"10"})
+    public int assetsPerPortfolio;
+
+    private PersistenceDriver driver;
+    private String directory;
+
+    @Setup
+    public void setUp() {
+        directory = Drivers.createTempDirectory("investwise-persistence");
+        driver = Drivers.create(PersistenceDriver.class);
+        driver.setUp(directory, records, assetsPerPortfolio);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Drivers.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Object loadUsers() {
+        return driver.loadUsers();
+    }
+
+    @Benchmark
+    public void saveUsers() {
+        driver.saveUsers();
+    }
+
+    @Benchmark
+    public Object loadPortfolios() {
+        return driver.loadPortfolios();
+    }
+
+    @Benchmark
+    public void savePortfolios() {
+        driver.savePortfolios();
+    }
+}
@@ -0,0 +1,39 @@
+package benchmarks;
+
+/**
+ * Reads and writes database snapshots for {@link PersistenceBenchmark}.
+ */
+public interface PersistenceDriver {
+    /**
+     * Writes the user and portfolio snapshots the load benchmarks read.
+     *
+     * @param directory          The directory to store the files in
+     * @param records            The number of users, and of portfolios
+     * @param assetsPerPortfolio The number of assets in each portfolio
+     */
+    void setUp(String directory, int records, int assetsPerPortfolio);
+
+    /**
+     * Loads the user snapshot with {@code Database.loadFromFile}.
+     *
+     * @return The loaded users
+     */
+    Object loadUsers();
+
+    /**
+     * Saves all users with {@code Database.saveToFile}.
+     */
+    void saveUsers();
+
+    /**
+     * Loads the portfolio snapshot with {@code Database.loadFromFile}.
+     *
+     * @return The loaded portfolios
+     */
+    Object loadPortfolios();
+
+    /**
+     * Saves all portfolios with {@code Database.saveToFile}.
+     */
+    void savePortfolios();
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the work behind a session: loading an investor's portfolios,
+ * calculating Zakat and writing both reports.
+ *
+ * <p>{@code getUserPortfoliosCached} asks for the same investor every time,
+ * while {@code getUserPortfoliosCycling} cycles through all investors, so
+ * once there are more investors than the database keeps loaded every call
+ * reopens the investor's file.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PortfolioBenchmark {
+    /** The number of investors in the database */
+    @Param({"1000"})
+    public int investors;
+
+    /** The number of portfolios each investor has */
+    @Param({"3"})
+    public int portfoliosPerInvestor;
+
+    /** The number of assets in each portfolio */
+    @Param({"10", "100", "1000"})
+    public int assetsPerPortfolio;
+
+    private PortfolioDriver driver;
+    private String directory;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        directory = Drivers.createTempDirectory("investwise-portfolio");
+        driver = Drivers.create(PortfolioDriver.class);
+        driver.setUp(directory, investors, portfoliosPerInvestor, assetsPerPortfolio);
+    }
+
+    @TearDown
+    public void tearDown() {
+        driver.tearDown();
+        Drivers.deleteDirectory(directory);
+    }
+
+    /**
+     * Holds the report written by the last invocation, which is deleted
+     * before the next one so every report gets a fresh file name.
+     */
+    @State(Scope.Thread)
+    public static class Report {
+        String path;
+
+        @TearDown(Level.Invocation)
+        public void delete() {
+            if (path != null) {
+                new File(path).delete();
+                path = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object getUserPortfoliosCached() {
+        return driver.getUserPortfolios(0);
+    }
+
+    @Benchmark
+    public Object getUserPortfoliosCycling() {
+        int index = next;
+        next = index + 1 == investors ? 0 : index + 1;
+        return driver.getUserPortfolios(index);
+    }
+
+    @Benchmark
+    public double calculatePortfolioZakat() {
+        return driver.calculatePortfolioZakat();
+    }
+
+    @Benchmark
+    public String writePortfolioReport(Report report) {
+        report.path = driver.writePortfolioReport();
+        return report.path;
+    }
+
+    @Benchmark
+    public String writeZakatReport(Report report) {
+        report.path = driver.writeZakatReport();
+        return report.path;
+    }
+}
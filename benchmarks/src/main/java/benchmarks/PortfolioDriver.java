@@ -0,0 +1,53 @@
+package benchmarks;
+
+/**
+ * Loads portfolios, calculates Zakat and writes reports for
+ * {@link PortfolioBenchmark}.
+ */
+public interface PortfolioDriver {
+    /**
+     * Stores the portfolios of numbered investors in a lazy portfolio
+     * database.
+     *
+     * @param directory             The directory to store the database and reports in
+     * @param investors             The number of investors
+     * @param portfoliosPerInvestor The number of portfolios each investor has
+     * @param assetsPerPortfolio    The number of assets in each portfolio
+     */
+    void setUp(String directory, int investors, int portfoliosPerInvestor, int assetsPerPortfolio);
+
+    /**
+     * Gets an investor's portfolios with {@code PortfolioDatabase.getUserPortfolios}.
+     *
+     * @param index The number of the investor
+     * @return The investor's portfolios
+     */
+    Object getUserPortfolios(int index);
+
+    /**
+     * Calculates the Zakat of the first investor's first portfolio with
+     * {@code ZakatEstimator.calculatePortfolioZakat}.
+     *
+     * @return The portfolio's Zakat
+     */
+    double calculatePortfolioZakat();
+
+    /**
+     * Writes a {@code PortfolioReport} of the first investor's portfolios.
+     *
+     * @return The path of the report
+     */
+    String writePortfolioReport();
+
+    /**
+     * Writes a {@code ZakatReport} of the first investor's first portfolio.
+     *
+     * @return The path of the report
+     */
+    String writeZakatReport();
+
+    /**
+     * Closes the database.
+     */
+    void tearDown();
+}
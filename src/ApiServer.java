@@ -0,0 +1,421 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves the {@link PortfolioService} as a JSON API over HTTP, so many
+ * investors can use one running application at the same time.
+ *
+ * <p>Requests are handled on an {@link IoExecutors} executor: one virtual
+ * thread per request where the runtime has them, a pool of platform threads
+ * otherwise. Investors log in once and send the returned token as
+ * {@code Authorization: Bearer <token>}; sessions expire after 30 idle
+ * minutes. Requests of one investor are handled one at a time, so an
+ * investor's portfolios are never read while another of their requests is
+ * changing them, while different investors are served concurrently.</p>
+ *
+ * <p>Request and response bodies are flat JSON objects; asset fields use the
+ * names of {@link AssetFactory}. Endpoints:</p>
+ * <ul>
+ *   <li>{@code POST /api/signup} with name, email, username, password, confirmPassword</li>
+ *   <li>{@code POST /api/login} with username, password; {@code POST /api/logout}</li>
+ *   <li>{@code GET|POST /api/portfolios}; {@code DELETE /api/portfolios/{id}}</li>
+ *   <li>{@code GET|POST /api/portfolios/{id}/assets};
+ *       {@code PUT|DELETE /api/portfolios/{id}/assets/{name}}</li>
+ *   <li>{@code GET /api/portfolios/{id}/zakat}</li>
+ *   <li>{@code POST /api/reports/portfolio}; {@code POST /api/portfolios/{id}/reports/zakat}</li>
+ * </ul>
+ */
+public class ApiServer {
+    /** Default port the server listens on */
+    public static final int DEFAULT_PORT = 8080;
+    /** Number of request threads when virtual threads are unavailable */
+    public static final int PLATFORM_THREADS = 200;
+    /** Idle time after which a session expires */
+    private static final long SESSION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    /** Largest request body accepted */
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int BACKLOG = 1024;
+    /**
+     * Idle keep-alive connections the JDK server keeps open. Its default of
+     * 200 makes it close connections of clients that are about to reuse them
+     * once more investors than that are connected.
+     */
+    private static final String MAX_IDLE_CONNECTIONS = "2048";
+
+    private final PortfolioService portfolioService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> investorLocks = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Creates a server over a service; call {@link #start()} to begin serving.
+     *
+     * @param portfolioService The service carrying out the requests
+     * @param port             The port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ApiServer(PortfolioService portfolioService, int port) throws IOException {
+        this.portfolioService = portfolioService;
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", MAX_IDLE_CONNECTIONS);
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = IoExecutors.newExecutor("api", PLATFORM_THREADS);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    /**
+     * A logged-in investor.
+     */
+    private static final class Session {
+        final Investor investor;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Session(Investor investor) {
+            this.investor = investor;
+        }
+    }
+
+    /**
+     * A request that cannot be served, with the HTTP status to answer.
+     */
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Starts serving requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits for running ones up to the given delay
+     * and stops the request threads.
+     *
+     * @param delaySeconds The longest time to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        try {
+            status = 200;
+            body = route(exchange, pathSegments(exchange), exchange.getRequestMethod());
+        } catch (ApiException e) {
+            status = e.status;
+            body = errorBody(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = errorBody(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error: " + e.getMessage());
+            status = 500;
+            body = errorBody("Internal error");
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String route(HttpExchange exchange, String[] path, String method) throws IOException {
+        if (path.length == 2 && path[1].equals("signup")) {
+            requireMethod(method, "POST");
+            return signUp(readBody(exchange));
+        }
+        if (path.length == 2 && path[1].equals("login")) {
+            requireMethod(method, "POST");
+            return login(readBody(exchange));
+        }
+        Session session = authenticate(exchange);
+        if (path.length == 2 && path[1].equals("logout")) {
+            requireMethod(method, "POST");
+            sessions.remove(token(exchange));
+            return "{}";
+        }
+        Investor investor = session.investor;
+        Map<String, String> body = method.equals("POST") || method.equals("PUT") ? readBody(exchange) : null;
+        // A lock rather than a monitor, so blocked virtual threads release their carrier
+        ReentrantLock lock = investorLocks.computeIfAbsent(investor.getUserName(), k -> new ReentrantLock());
+        lock.lock();
+        try {
+            return routeInvestor(investor, path, method, body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String routeInvestor(Investor investor, String[] path, String method, Map<String, String> body)
+            throws IOException {
+        if (path.length == 3 && path[1].equals("reports") && path[2].equals("portfolio")) {
+            requireMethod(method, "POST");
+            return fileBody(portfolioService.generatePortfolioReport(investor));
+        }
+        if (path.length < 2 || !path[1].equals("portfolios")) {
+            throw new ApiException(404, "Not found");
+        }
+        if (path.length == 2) {
+            if (method.equals("GET")) {
+                return portfoliosBody(portfolioService.getPortfolios(investor));
+            }
+            requireMethod(method, "POST");
+            return portfolioBody(new StringBuilder(), portfolioService.createPortfolio(investor, body.get("name")))
+                    .toString();
+        }
+        Portfolio portfolio = findPortfolio(investor, path[2]);
+        if (path.length == 3) {
+            requireMethod(method, "DELETE");
+            portfolioService.removePortfolio(portfolio);
+            return "{}";
+        }
+        switch (path[3]) {
+            case "assets":
+                return routeAssets(portfolio, path, method, body);
+            case "zakat":
+                if (path.length == 4) {
+                    requireMethod(method, "GET");
+                    return zakatBody(portfolioService.calculateZakat(investor, portfolio, LocalDate.now()));
+                }
+                break;
+            case "reports":
+                if (path.length == 5 && path[4].equals("zakat")) {
+                    requireMethod(method, "POST");
+                    return fileBody(portfolioService.generateZakatReport(portfolio));
+                }
+                break;
+            default:
+                break;
+        }
+        throw new ApiException(404, "Not found");
+    }
+
+    private String routeAssets(Portfolio portfolio, String[] path, String method, Map<String, String> body) {
+        if (path.length == 4) {
+            if (method.equals("GET")) {
+                StringBuilder out = new StringBuilder("{\"assets\":[");
+                List<Asset> assets = portfolio.getAssets();
+                for (int i = 0; i < assets.size(); i++) {
+                    assetBody(i == 0 ? out : out.append(','), assets.get(i));
+                }
+                return out.append("]}").toString();
+            }
+            requireMethod(method, "POST");
+            Asset added = portfolioService.addAsset(portfolio, new AssetRequest(body));
+            if (added == null) {
+                throw new ApiException(404, "Portfolio not found: " + path[2]);
+            }
+            return assetBody(new StringBuilder(), added).toString();
+        }
+        if (path.length != 5) {
+            throw new ApiException(404, "Not found");
+        }
+        Asset asset;
+        if (method.equals("PUT")) {
+            asset = portfolioService.editAsset(portfolio, path[4], new AssetRequest(body));
+        } else {
+            requireMethod(method, "DELETE");
+            asset = portfolioService.removeAsset(portfolio, path[4]);
+        }
+        if (asset == null) {
+            throw new ApiException(404, "Asset not found: " + path[4]);
+        }
+        return assetBody(new StringBuilder(), asset).toString();
+    }
+
+    private String signUp(Map<String, String> body) {
+        AuthService.SignupResult result = portfolioService.signUp(body.get("name"), body.get("email"),
+                body.get("username"), body.getOrDefault("password", ""), body.getOrDefault("confirmPassword", ""));
+        if (result != AuthService.SignupResult.SUCCESS) {
+            throw new ApiException(result == AuthService.SignupResult.DUPLICATE_USERNAME ? 409 : 400,
+                    result.getMessage());
+        }
+        return "{}";
+    }
+
+    private String login(Map<String, String> body) {
+        Investor investor = portfolioService.login(body.get("username"), body.get("password"));
+        if (investor == null) {
+            throw new ApiException(401, "Invalid credentials");
+        }
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> now - session.lastUsed > SESSION_TIMEOUT_MILLIS);
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(investor));
+        return Json.quote(new StringBuilder("{\"token\":"), token).append('}').toString();
+    }
+
+    private Session authenticate(HttpExchange exchange) {
+        String token = token(exchange);
+        Session session = token == null ? null : sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (session == null || now - session.lastUsed > SESSION_TIMEOUT_MILLIS) {
+            throw new ApiException(401, "Not logged in");
+        }
+        session.lastUsed = now;
+        return session;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+    }
+
+    private Portfolio findPortfolio(Investor investor, String id) {
+        for (Portfolio portfolio : portfolioService.getPortfolios(investor)) {
+            if (portfolio.getId().equals(id)) {
+                return portfolio;
+            }
+        }
+        throw new ApiException(404, "Portfolio not found: " + id);
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new ApiException(405, "Method not allowed: " + method);
+        }
+    }
+
+    /**
+     * Splits the request path after /api into decoded segments, e.g.
+     * ["", "portfolios", id] for /api/portfolios/{id}.
+     */
+    private static String[] pathSegments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath().substring("/api".length());
+        if (path.endsWith("/") && path.length() > 1) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            // '+' is a literal plus in a path, not a space
+            segments[i] = URLDecoder.decode(segments[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body too large");
+            }
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            return text.isBlank() ? new HashMap<>() : Json.parseObject(text);
+        }
+    }
+
+    private static String errorBody(String message) {
+        return Json.quote(new StringBuilder("{\"error\":"), message).append('}').toString();
+    }
+
+    private static String fileBody(String fileName) {
+        return Json.quote(new StringBuilder("{\"file\":"), fileName).append('}').toString();
+    }
+
+    private static String portfoliosBody(List<Portfolio> portfolios) {
+        StringBuilder out = new StringBuilder("{\"portfolios\":[");
+        for (int i = 0; i < portfolios.size(); i++) {
+            portfolioBody(i == 0 ? out : out.append(','), portfolios.get(i));
+        }
+        return out.append("]}").toString();
+    }
+
+    private static StringBuilder portfolioBody(StringBuilder out, Portfolio portfolio) {
+        Json.quote(out.append("{\"id\":"), portfolio.getId());
+        Json.quote(out.append(",\"name\":"), portfolio.getName());
+        return out.append(",\"assets\":").append(portfolio.getAssets().size()).append('}');
+    }
+
+    private static StringBuilder assetBody(StringBuilder out, Asset asset) {
+        Json.quote(out.append("{\"").append(AssetFactory.TYPE).append("\":"), AssetRequest.typeName(asset.getType()));
+        field(out, AssetFactory.NAME, asset.getName());
+        out.append(",\"").append(AssetFactory.QUANTITY).append("\":").append(asset.getQuantity());
+        out.append(",\"").append(AssetFactory.PRICE).append("\":").append(asset.getPurchasePrice());
+        Date purchaseDate = asset.getPurchaseDate();
+        field(out, AssetFactory.PURCHASE_DATE, purchaseDate == null ? null
+                : purchaseDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString());
+        out.append(",\"").append(AssetFactory.ZAKAT).append("\":").append(Boolean.TRUE.equals(asset.isZakatApplicable()));
+        switch (asset.getType()) {
+            case STOCKS:
+                field(out, AssetFactory.SYMBOL, ((Stocks) asset).getStockSymbol());
+                field(out, AssetFactory.EXCHANGE, ((Stocks) asset).getExchange());
+                break;
+            case CRYPTO:
+                field(out, AssetFactory.SYMBOL, ((Crypto) asset).getCryptoSymbol());
+                field(out, AssetFactory.EXCHANGE, ((Crypto) asset).getExchange());
+                break;
+            case GOLD:
+                field(out, AssetFactory.KARAT, ((Gold) asset).getKarat());
+                out.append(",\"").append(AssetFactory.WEIGHT).append("\":").append(((Gold) asset).getWeightInGrams());
+                break;
+            default:
+                field(out, AssetFactory.LOCATION, ((RealState) asset).getLocation());
+                field(out, AssetFactory.PROPERTY_TYPE, ((RealState) asset).getPropertyType());
+        }
+        return out.append('}');
+    }
+
+    private static String zakatBody(PortfolioService.ZakatSummary zakat) {
+        StringBuilder out = new StringBuilder("{\"assets\":[");
+        for (int i = 0; i < zakat.getAssetCount(); i++) {
+            Json.quote(out.append(i == 0 ? "" : ",").append("{\"name\":"), zakat.getAssetName(i));
+            out.append(",\"zakat\":").append(zakat.getAssetZakat(i)).append('}');
+        }
+        out.append("],\"portfolioZakat\":").append(zakat.getPortfolioZakat());
+        out.append(",\"zakatableWealth\":").append(zakat.getZakatableWealth());
+        out.append(",\"nisab\":").append(zakat.getNisab());
+        out.append(",\"zakatDue\":").append(zakat.getZakatDue());
+        LocalDate nextHawl = zakat.getNextHawlDate();
+        field(out, "nextHawlDate", nextHawl == null ? null : nextHawl.toString());
+        return out.append('}').toString();
+    }
+
+    private static void field(StringBuilder out, String name, String value) {
+        Json.quote(out.append(",\"").append(name).append("\":"), value);
+    }
+}
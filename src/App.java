@@ -1,3 +1,10 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
 /**
  * The main application class that serves as the entry point for the program.
  * This class initializes the necessary services and starts the authentication user interface.
@@ -5,14 +12,127 @@
 public class App {
     /**
      * The main method that starts the application.
-     * It creates instances of AuthService, PortfolioDatabase, and AuthUI,
-     * then starts the authentication user interface.
+     * It creates the PortfolioService and an AuthUI over it,
+     * then starts the authentication user interface. With
+     * {@code --reports [concurrency]} it instead generates the reports of
+     * every investor and exits; with {@code --zakat [yyyy-MM-dd]} it
+     * calculates the Zakat due from every investor on the given date, or
+     * today, writes it to a CSV file and exits; with
+     * {@code --import <file> [batchSize]} it imports holdings from a CSV or
+     * JSON Lines file and exits; with {@code --serve [port]} it serves the
+     * HTTP API until stopped.
      *
-     * @param args command-line arguments (not used in this application)
+     * @param args command-line arguments; optionally {@code --reports [concurrency]},
+     *             {@code --zakat [yyyy-MM-dd]}, {@code --import <file> [batchSize]}
+     *             or {@code --serve [port]}
      */
     public static void main(String[] args) {
-        AuthService authService = new AuthService();
-        AuthUI authUI = new AuthUI(authService);
+        if (args.length > 0 && args[0].equals("--reports")) {
+            generateAllReports(args.length > 1 ? Integer.parseInt(args[1]) : BatchReportGenerator.DEFAULT_CONCURRENCY);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--zakat")) {
+            calculateAllZakat(args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now());
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--import")) {
+            importAssets(args[1], args.length > 2 ? Integer.parseInt(args[2]) : AssetImporter.DEFAULT_BATCH_SIZE);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : ApiServer.DEFAULT_PORT);
+            return;
+        }
+        AuthUI authUI = new AuthUI(new PortfolioService());
         authUI.start();
     }
-}
\ No newline at end of file
+
+    /**
+     * Generates the reports of every investor and prints a summary.
+     *
+     * @param concurrency The number of investors processed at the same time
+     */
+    private static void generateAllReports(int concurrency) {
+        DatabaseService service = DatabaseService.getInstance();
+        try {
+            BatchReportGenerator.Summary summary = new BatchReportGenerator(service.getUserDatabase(),
+                    service.getPortfolioDatabase(), concurrency).generateAll();
+            System.out.println("Reports generated: " + summary);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates the Zakat due from every investor, valuing gold and the
+     * nisab at the price in {@link CsvPriceSource#DEFAULT_FILE}, and writes
+     * the per-investor amounts to a CSV file in the reports directory.
+     *
+     * @param asOf The date the hawl of each asset is checked on
+     */
+    private static void calculateAllZakat(LocalDate asOf) {
+        ZakatEstimator zakatEstimator = new ZakatEstimator();
+        if (!zakatEstimator.updateGoldPrice(new ValuationEngine(new CsvPriceSource(CsvPriceSource.DEFAULT_FILE)))) {
+            System.out.println("No gold price in " + CsvPriceSource.DEFAULT_FILE + "; the nisab is not applied");
+        }
+        ZakatEstimator.BulkResult result;
+        try {
+            result = zakatEstimator.calculateDatabaseZakat(DatabaseService.getInstance().getPortfolioDatabase(), asOf);
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        new File(ReportGenerator.REPORTS_DIR).mkdirs();
+        String base = ReportGenerator.REPORTS_DIR + "zakat_all_"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        String fileName = base + ".csv";
+        for (int n = 2; new File(fileName).exists(); n++) {
+            fileName = base + "_" + n + ".csv";
+        }
+        if (zakatEstimator.writeResults(result, fileName)) {
+            System.out.printf("Zakat due from %d investors on %s: %.2f -> %s%n",
+                    result.getInvestorZakat().size(), asOf, result.getTotalZakat(), fileName);
+        }
+    }
+
+    /**
+     * Imports holdings from a file and prints a summary and the first errors.
+     *
+     * @param fileName  The CSV or JSON Lines file to import
+     * @param batchSize The number of rows committed together
+     */
+    private static void importAssets(String fileName, int batchSize) {
+        DatabaseService service = DatabaseService.getInstance();
+        try {
+            AssetImporter.Summary summary = new AssetImporter(service.getUserDatabase(),
+                    service.getPortfolioDatabase(), batchSize).importFile(fileName);
+            for (String error : summary.getErrors()) {
+                System.out.println("Rejected: " + error);
+            }
+            System.out.println("Import finished: " + summary);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the HTTP API. Pending changes are committed when the process
+     * is stopped.
+     *
+     * @param port The port to listen on
+     */
+    private static void serve(int port) {
+        try {
+            ApiServer server = new ApiServer(new PortfolioService(), port);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                DatabaseService.getInstance().flush();
+            }));
+            server.start();
+            System.out.println("Serving the API on port " + server.getPort()
+                    + (IoExecutors.usesVirtualThreads() ? " with virtual threads" : ""));
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Scanner;
  * Implements Serializable to support object serialization.
  */
 public abstract class Asset implements Serializable {
+    private static final long serialVersionUID = 622190519577847522L;
     private String name;
     private int quantity;
     private Date purchaseDate;
@@ -33,6 +34,7 @@ public abstract class Asset implements Serializable {
      * for asset-specific editing.
      */
     public final void editAsset() {
+        checkEditable();
         Scanner scanner = new Scanner(System.in);
         System.out.println("Enter new name: ");
         this.setName(scanner.nextLine());
@@ -48,6 +50,14 @@ public abstract class Asset implements Serializable {
         // Call the hook method for derived class specific edit
         editSpecificDetails(scanner);
     }
+    /**
+     * Checks that this asset can be edited through {@link #editAsset()},
+     * before any of its details change. Assets can be edited by default.
+     *
+     * @throws UnsupportedOperationException if the asset cannot be edited interactively
+     */
+    protected void checkEditable() {
+    }
     /**
      * Abstract method to be implemented by derived classes for editing asset-specific details.
      *
@@ -55,6 +65,44 @@ public abstract class Asset implements Serializable {
      */
     // hook method for derived classes to edit specific asset details
     protected abstract void editSpecificDetails(Scanner scanner);
+    /**
+     * Gets the concrete type of this asset.
+     *
+     * @return The asset type
+     */
+    public abstract AssetType getType();
+    /**
+     * Gets the symbol this asset is quoted under by a {@link PriceSource}.
+     * Assets without a market quote return null and are valued at cost.
+     *
+     * @return The price symbol, or null if the asset has no market quote
+     */
+    public String getPriceSymbol() {
+        return null;
+    }
+    /**
+     * Values this asset at the given quote for its price symbol.
+     *
+     * @param unitPrice The current price of one unit of the asset's symbol
+     * @return The market value of the whole holding
+     */
+    public double getMarketValue(double unitPrice) {
+        return unitPrice * getQuantity();
+    }
+    /**
+     * Gets the value of this asset that counts towards zakatable wealth.
+     * Assets are treated as trade goods by default: when Zakat applies, their
+     * whole cost is zakatable. Subclasses with their own rule override this.
+     *
+     * @param goldPricePerGram The price of one gram of pure gold, or 0 if unknown
+     * @return The zakatable value, or 0 if Zakat does not apply to the asset
+     */
+    public double getZakatableValue(double goldPricePerGram) {
+        if (!Boolean.TRUE.equals(isZakatApplicable())) {
+            return 0.0;
+        }
+        return (double) getPurchasePrice() * getQuantity();
+    }
      /**
      * Returns a string representation of the asset.
      *
@@ -106,6 +154,15 @@ public abstract class Asset implements Serializable {
     public Date getPurchaseDate() {
         return purchaseDate;
     }
+    /**
+     * Sets the purchase date of the asset, e.g. to keep it when an asset is
+     * replaced by an edited copy.
+     *
+     * @param purchaseDate The purchase date
+     */
+    void setPurchaseDate(Date purchaseDate) {
+        this.purchaseDate = purchaseDate;
+    }
     /**
      * Gets the purchase price of the asset.
      *
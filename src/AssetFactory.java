@@ -1,12 +1,42 @@
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
 // Asset Factory class used for creating asset
 /**
  * A factory class for creating different types of assets.
  * Implements the Factory pattern to create instances of various asset subclasses
- * based on user input.
+ * based on user input, or from already collected fields for bulk imports.
  */
 public class AssetFactory {
+    /** Field holding the asset type: stocks, crypto, real estate or gold */
+    public static final String TYPE = "type";
+    /** Field holding the asset name */
+    public static final String NAME = "name";
+    /** Field holding the whole number of units */
+    public static final String QUANTITY = "quantity";
+    /** Field holding the purchase price per unit */
+    public static final String PRICE = "price";
+    /** Optional field holding the purchase date as yyyy-MM-dd; today if absent */
+    public static final String PURCHASE_DATE = "purchase_date";
+    /** Optional field holding whether Zakat applies, true or false; false if absent */
+    public static final String ZAKAT = "zakat";
+    /** Field holding the ticker of stocks and crypto */
+    public static final String SYMBOL = "symbol";
+    /** Optional field holding the exchange of stocks and crypto */
+    public static final String EXCHANGE = "exchange";
+    /** Field holding the location of real estate */
+    public static final String LOCATION = "location";
+    /** Optional field holding the property type of real estate */
+    public static final String PROPERTY_TYPE = "property_type";
+    /** Field holding the karat of gold, e.g. 21K */
+    public static final String KARAT = "karat";
+    /** Field holding the weight of gold in grams */
+    public static final String WEIGHT = "weight";
+
     /**
      * Creates and returns a new asset based on user input.
      * Guides the user through the asset creation process by prompting for:
@@ -70,4 +100,122 @@ public class AssetFactory {
                 return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an asset from named fields without any console input, for bulk
+     * imports. Field names are the constants of this class; the type-specific
+     * fields required depend on the type.
+     *
+     * @param fields The asset's fields by name; blank values count as absent
+     * @return The validated asset
+     * @throws IllegalArgumentException if a field is missing or invalid
+     */
+    public static Asset createAsset(Map<String, String> fields) {
+        String assetType = required(fields, TYPE).toLowerCase(Locale.ROOT);
+        String assetName = required(fields, NAME);
+        int assetQuantity;
+        try {
+            assetQuantity = Integer.parseInt(required(fields, QUANTITY));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid quantity: " + fields.get(QUANTITY));
+        }
+        if (assetQuantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + assetQuantity);
+        }
+        float purchasePrice = parsePositive(fields, PRICE, true);
+        Date purchaseDate = parseDate(optional(fields, PURCHASE_DATE));
+        boolean zakatApplicable = parseBoolean(optional(fields, ZAKAT));
+
+        switch (assetType) {
+            case "crypto":
+                return new Crypto(assetName, assetQuantity, purchaseDate, purchasePrice, zakatApplicable,
+                        required(fields, SYMBOL), optional(fields, EXCHANGE));
+            case "stocks":
+            case "stock":
+                return new Stocks(assetName, assetQuantity, purchaseDate, purchasePrice, zakatApplicable,
+                        required(fields, SYMBOL), optional(fields, EXCHANGE));
+            case "real estate":
+            case "real_estate":
+            case "realestate":
+                return new RealState(assetName, assetQuantity, purchaseDate, purchasePrice, zakatApplicable,
+                        required(fields, LOCATION), optional(fields, PROPERTY_TYPE));
+            case "gold":
+                String karat = required(fields, KARAT);
+                if (!isValidKarat(karat)) {
+                    throw new IllegalArgumentException("Invalid karat: " + karat);
+                }
+                return new Gold(assetName, assetQuantity, purchaseDate, purchasePrice, zakatApplicable,
+                        karat, parsePositive(fields, WEIGHT, false));
+            default:
+                throw new IllegalArgumentException("Invalid asset type: " + fields.get(TYPE));
+        }
+    }
+
+    private static String optional(Map<String, String> fields, String field) {
+        String value = fields.get(field);
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String required(Map<String, String> fields, String field) {
+        String value = optional(fields, field);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value;
+    }
+
+    /**
+     * Parses a finite amount that is positive, or also zero if allowed.
+     */
+    private static float parsePositive(Map<String, String> fields, String field, boolean allowZero) {
+        String text = required(fields, field);
+        float value;
+        try {
+            value = Float.parseFloat(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + text);
+        }
+        if (Float.isNaN(value) || Float.isInfinite(value) || value < 0 || (value == 0 && !allowZero)) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + text);
+        }
+        return value;
+    }
+
+    private static Date parseDate(String text) {
+        if (text == null) {
+            return new Date();
+        }
+        try {
+            return Date.from(LocalDate.parse(text).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + PURCHASE_DATE + ": " + text);
+        }
+    }
+
+    private static boolean parseBoolean(String text) {
+        if (text == null || text.equalsIgnoreCase("false")) {
+            return false;
+        }
+        if (text.equalsIgnoreCase("true")) {
+            return true;
+        }
+        throw new IllegalArgumentException("Invalid " + ZAKAT + ": " + text);
+    }
+
+    /**
+     * Checks that a karat names a number of karats between 1 and 24.
+     */
+    private static boolean isValidKarat(String karat) {
+        String digits = karat.toUpperCase(Locale.ROOT).replace("KARAT", "").replace("K", "").trim();
+        try {
+            double value = Double.parseDouble(digits);
+            return value >= 1 && value <= 24;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports holdings in bulk from a CSV or JSON Lines file, for onboarding
+ * clients without entering every asset through the console.
+ *
+ * <p>Every row names the owning investor ({@code owner}), the portfolio
+ * ({@code portfolio}) and the asset's fields as accepted by
+ * {@link AssetFactory#createAsset(Map)}. CSV files start with a header row
+ * naming the columns; JSON Lines files hold one flat object per line.
+ * Portfolios that do not exist yet are created.</p>
+ *
+ * <p>The file is streamed: rows are validated as they are read and rows
+ * that fail are reported with their line number and skipped. Valid assets
+ * are committed every {@code batchSize} rows, with one database edit per
+ * touched portfolio and one journal flush per batch, so memory stays bounded
+ * and an interrupted import keeps every committed batch.</p>
+ */
+public class AssetImporter {
+    /** Default number of rows committed together */
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+    /** Field holding the username of the owning investor */
+    public static final String OWNER = "owner";
+    /** Field holding the name of the portfolio the asset belongs to */
+    public static final String PORTFOLIO = "portfolio";
+    /** Number of rejected rows whose error message is kept */
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final UserDatabase userDatabase;
+    private final PortfolioDatabase portfolioDatabase;
+    private final int batchSize;
+
+    /**
+     * Constructs an importer committing in batches of the default size.
+     *
+     * @param userDatabase      The database the owners are looked up in
+     * @param portfolioDatabase The database the assets are added to
+     */
+    public AssetImporter(UserDatabase userDatabase, PortfolioDatabase portfolioDatabase) {
+        this(userDatabase, portfolioDatabase, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs an importer.
+     *
+     * @param userDatabase      The database the owners are looked up in
+     * @param portfolioDatabase The database the assets are added to
+     * @param batchSize         The number of rows committed together
+     */
+    public AssetImporter(UserDatabase userDatabase, PortfolioDatabase portfolioDatabase, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.userDatabase = userDatabase;
+        this.portfolioDatabase = portfolioDatabase;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public static final class Summary {
+        private final int rows;
+        private final int imported;
+        private final int rejected;
+        private final int portfoliosCreated;
+        private final long elapsedMillis;
+        private final List<String> errors;
+
+        Summary(int rows, int imported, int rejected, int portfoliosCreated, long elapsedMillis,
+                List<String> errors) {
+            this.rows = rows;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.portfoliosCreated = portfoliosCreated;
+            this.elapsedMillis = elapsedMillis;
+            this.errors = errors;
+        }
+
+        /**
+         * Gets the number of data rows read.
+         *
+         * @return The row count
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the number of assets added to portfolios.
+         *
+         * @return The imported asset count
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * Gets the number of rows skipped because they were invalid.
+         *
+         * @return The rejected row count
+         */
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Gets the number of portfolios created by the import.
+         *
+         * @return The created portfolio count
+         */
+        public int getPortfoliosCreated() {
+            return portfoliosCreated;
+        }
+
+        /**
+         * Gets the wall-clock duration of the import.
+         *
+         * @return The duration in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Gets the errors of the first rejected rows, each with its line number.
+         *
+         * @return At most 100 error messages
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns a one-line summary of the import.
+         *
+         * @return The summary
+         */
+        @Override
+        public String toString() {
+            return String.format("%d rows, %d assets imported, %d rejected, %d portfolios created in %.1f s",
+                    rows, imported, rejected, portfoliosCreated, elapsedMillis / 1000.0);
+        }
+    }
+
+    /**
+     * Imports a file, read as JSON Lines if its name ends with .jsonl or
+     * .json and as CSV otherwise.
+     *
+     * @param fileName The file to import
+     * @return The summary of the import
+     * @throws IOException if the file cannot be read
+     */
+    public Summary importFile(String fileName) throws IOException {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        try (Reader reader = new FileReader(fileName)) {
+            if (lower.endsWith(".jsonl") || lower.endsWith(".json")) {
+                return importJsonLines(reader);
+            }
+            return importCsv(reader);
+        }
+    }
+
+    /**
+     * Imports CSV rows. The first non-blank line is the header.
+     *
+     * @param reader The CSV text
+     * @return The summary of the import
+     * @throws IOException if the text cannot be read
+     */
+    public Summary importCsv(Reader reader) throws IOException {
+        return run(reader, true);
+    }
+
+    /**
+     * Imports JSON Lines, one flat object per line.
+     *
+     * @param reader The JSON Lines text
+     * @return The summary of the import
+     * @throws IOException if the text cannot be read
+     */
+    public Summary importJsonLines(Reader reader) throws IOException {
+        return run(reader, false);
+    }
+
+    private Summary run(Reader reader, boolean csv) throws IOException {
+        Batch batch = new Batch();
+        Durability previous = portfolioDatabase.getDurability();
+        if (previous == Durability.PER_OP) {
+            portfolioDatabase.setDurability(Durability.BATCHED);
+        }
+        try {
+            BufferedReader lines = reader instanceof BufferedReader
+                    ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+            String[] header = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseCsvLine(line).toArray(new String[0]);
+                    for (int i = 0; i < header.length; i++) {
+                        header[i] = header[i].trim().toLowerCase(Locale.ROOT);
+                    }
+                    continue;
+                }
+                batch.rows++;
+                try {
+                    batch.add(csv ? csvFields(header, line) : Json.parseObject(line));
+                } catch (IllegalArgumentException e) {
+                    batch.reject("Line " + lineNumber + ": " + e.getMessage());
+                }
+                if (batch.pendingCount >= batchSize) {
+                    batch.commit();
+                }
+            }
+            batch.commit();
+        } finally {
+            if (previous == Durability.PER_OP) {
+                portfolioDatabase.setDurability(previous);
+            }
+        }
+        return new Summary(batch.rows, batch.imported, batch.rejected, batch.portfoliosCreated,
+                (System.nanoTime() - batch.start) / 1_000_000, batch.errors);
+    }
+
+    /**
+     * The rows read since the last commit and the running counts.
+     */
+    private final class Batch {
+        private final long start = System.nanoTime();
+        /** Owners looked up so far; null for usernames that are not investors */
+        private final Map<String, Investor> investors = new HashMap<>();
+        /** Pending assets by owner, then by portfolio name */
+        private final Map<String, Map<String, List<Asset>>> pending = new LinkedHashMap<>();
+        private final List<String> errors = new ArrayList<>();
+        private int pendingCount;
+        private int rows;
+        private int imported;
+        private int rejected;
+        private int portfoliosCreated;
+
+        void add(Map<String, String> fields) {
+            String owner = fields.get(OWNER);
+            String portfolio = fields.get(PORTFOLIO);
+            if (owner == null || owner.isBlank()) {
+                throw new IllegalArgumentException("Missing " + OWNER);
+            }
+            if (portfolio == null || portfolio.isBlank()) {
+                throw new IllegalArgumentException("Missing " + PORTFOLIO);
+            }
+            owner = owner.trim();
+            if (findInvestor(owner) == null) {
+                throw new IllegalArgumentException("Unknown investor: " + owner);
+            }
+            Asset asset = AssetFactory.createAsset(fields);
+            pending.computeIfAbsent(owner, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(portfolio.trim(), k -> new ArrayList<>()).add(asset);
+            pendingCount++;
+        }
+
+        void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        /**
+         * Adds the pending assets to their portfolios, one edit per
+         * portfolio, and flushes the journal once.
+         */
+        void commit() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, Map<String, List<Asset>>> owner : pending.entrySet()) {
+                Investor investor = investors.get(owner.getKey());
+                portfolioDatabase.runForOwner(owner.getKey(), () -> {
+                    List<Portfolio> existing = portfolioDatabase.getUserPortfolios(investor);
+                    for (Map.Entry<String, List<Asset>> assets : owner.getValue().entrySet()) {
+                        Portfolio portfolio = findPortfolio(existing, assets.getKey());
+                        if (portfolio == null) {
+                            portfolio = new Portfolio(investor, portfolioDatabase, assets.getKey());
+                            existing.add(portfolio);
+                            portfoliosCreated++;
+                        }
+                        if (portfolio.addAssets(assets.getValue())) {
+                            imported += assets.getValue().size();
+                        } else {
+                            for (int i = 0; i < assets.getValue().size(); i++) {
+                                reject("Portfolio " + assets.getKey() + " of " + owner.getKey()
+                                        + " was removed during the import");
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            portfolioDatabase.flush();
+            pending.clear();
+            pendingCount = 0;
+        }
+
+        private Investor findInvestor(String userName) {
+            if (!investors.containsKey(userName)) {
+                User user = userDatabase.findUser(userName);
+                investors.put(userName, user instanceof Investor ? (Investor) user : null);
+            }
+            return investors.get(userName);
+        }
+    }
+
+    private static Portfolio findPortfolio(List<Portfolio> portfolios, String name) {
+        for (Portfolio portfolio : portfolios) {
+            if (portfolio.getName().equals(name)) {
+                return portfolio;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> csvFields(String[] header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.length) {
+            throw new IllegalArgumentException("Expected " + header.length + " columns but found " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            fields.put(header[i], values.get(i));
+        }
+        return fields;
+    }
+
+    /**
+     * Splits one CSV line into fields. Quoted fields may contain commas and
+     * doubled quotes, but not line breaks.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,179 @@
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Describes an asset to create, or the new details of an asset to edit,
+ * without any console input. Requests are validated when the asset is
+ * built, by {@link AssetFactory#createAsset(Map)}.
+ *
+ * <p>Common details are given to the constructor and type-specific details
+ * are set with the chained setters, e.g.
+ * {@code new AssetRequest(AssetType.STOCKS, "Apple", 10, 150f).symbol("AAPL")}.</p>
+ */
+public class AssetRequest {
+    private final Map<String, String> fields = new HashMap<>();
+
+    /**
+     * Constructs a request with the details every asset has. Zakat does not
+     * apply and the purchase date is today unless set otherwise.
+     *
+     * @param type          The type of the asset
+     * @param name          The name of the asset
+     * @param quantity      The number of units
+     * @param purchasePrice The purchase price per unit
+     */
+    public AssetRequest(AssetType type, String name, int quantity, float purchasePrice) {
+        fields.put(AssetFactory.TYPE, typeName(type));
+        fields.put(AssetFactory.NAME, name);
+        fields.put(AssetFactory.QUANTITY, Integer.toString(quantity));
+        fields.put(AssetFactory.PRICE, Float.toString(purchasePrice));
+    }
+
+    /**
+     * Constructs a request from named fields, e.g. a parsed form or file row.
+     * Field names are the constants of {@link AssetFactory}.
+     *
+     * @param fields The asset's fields by name
+     */
+    public AssetRequest(Map<String, String> fields) {
+        this.fields.putAll(fields);
+    }
+
+    /**
+     * Sets the purchase date.
+     *
+     * @param purchaseDate The date the asset was bought
+     * @return This request
+     */
+    public AssetRequest purchaseDate(LocalDate purchaseDate) {
+        return set(AssetFactory.PURCHASE_DATE, purchaseDate == null ? null : purchaseDate.toString());
+    }
+
+    /**
+     * Sets whether Zakat applies to the asset.
+     *
+     * @param zakatApplicable true if Zakat applies
+     * @return This request
+     */
+    public AssetRequest zakatApplicable(boolean zakatApplicable) {
+        return set(AssetFactory.ZAKAT, Boolean.toString(zakatApplicable));
+    }
+
+    /**
+     * Sets the ticker of stocks or crypto.
+     *
+     * @param symbol The ticker symbol
+     * @return This request
+     */
+    public AssetRequest symbol(String symbol) {
+        return set(AssetFactory.SYMBOL, symbol);
+    }
+
+    /**
+     * Sets the exchange of stocks or crypto.
+     *
+     * @param exchange The exchange the asset trades on
+     * @return This request
+     */
+    public AssetRequest exchange(String exchange) {
+        return set(AssetFactory.EXCHANGE, exchange);
+    }
+
+    /**
+     * Sets the location of real estate.
+     *
+     * @param location The property's location
+     * @return This request
+     */
+    public AssetRequest location(String location) {
+        return set(AssetFactory.LOCATION, location);
+    }
+
+    /**
+     * Sets the property type of real estate.
+     *
+     * @param propertyType The property type, e.g. Apartment
+     * @return This request
+     */
+    public AssetRequest propertyType(String propertyType) {
+        return set(AssetFactory.PROPERTY_TYPE, propertyType);
+    }
+
+    /**
+     * Sets the karat of gold.
+     *
+     * @param karat The karat, e.g. 21K
+     * @return This request
+     */
+    public AssetRequest karat(String karat) {
+        return set(AssetFactory.KARAT, karat);
+    }
+
+    /**
+     * Sets the weight of gold.
+     *
+     * @param weightInGrams The weight in grams
+     * @return This request
+     */
+    public AssetRequest weight(float weightInGrams) {
+        return set(AssetFactory.WEIGHT, Float.toString(weightInGrams));
+    }
+
+    /**
+     * Gets the fields of this request.
+     *
+     * @return An unmodifiable view of the fields by name
+     */
+    public Map<String, String> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Checks whether the purchase date was given.
+     *
+     * @return true if the request sets a purchase date
+     */
+    boolean hasPurchaseDate() {
+        return fields.get(AssetFactory.PURCHASE_DATE) != null;
+    }
+
+    /**
+     * Builds and validates the asset.
+     *
+     * @return The new asset
+     * @throws IllegalArgumentException if a detail is missing or invalid
+     */
+    public Asset toAsset() {
+        return AssetFactory.createAsset(fields);
+    }
+
+    /**
+     * Gets the name {@link AssetFactory} uses for an asset type.
+     *
+     * @param type The asset type
+     * @return The type's name, e.g. "real estate"
+     */
+    static String typeName(AssetType type) {
+        switch (type) {
+            case STOCKS:
+                return "stocks";
+            case CRYPTO:
+                return "crypto";
+            case GOLD:
+                return "gold";
+            default:
+                return "real estate";
+        }
+    }
+
+    private AssetRequest set(String field, String value) {
+        if (value == null) {
+            fields.remove(field);
+        } else {
+            fields.put(field, value);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Enumerates the concrete asset types supported by the system.
+ * Each type carries a stable one-byte tag used by binary storage formats.
+ */
+public enum AssetType {
+    STOCKS((byte) 1),
+    CRYPTO((byte) 2),
+    GOLD((byte) 3),
+    REAL_STATE((byte) 4);
+
+    private static final AssetType[] BY_TAG = new AssetType[5];
+    static {
+        for (AssetType type : values()) {
+            BY_TAG[type.tag] = type;
+        }
+    }
+
+    private final byte tag;
+
+    AssetType(byte tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Gets the tag stored on disk for this type.
+     *
+     * @return The type tag
+     */
+    public byte getTag() {
+        return tag;
+    }
+
+    /**
+     * Resolves a type from its stored tag.
+     *
+     * @param tag The tag read from storage
+     * @return The matching asset type
+     * @throws IllegalArgumentException if the tag is unknown
+     */
+    public static AssetType fromTag(byte tag) {
+        if (tag > 0 && tag < BY_TAG.length) {
+            return BY_TAG[tag];
+        }
+        throw new IllegalArgumentException("Unknown asset type tag: " + tag);
+    }
+}
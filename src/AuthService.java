@@ -9,10 +9,19 @@ public class AuthService implements Serializable {
     private static final long serialVersionUID = 1L;
     private final UserDatabase userDB;
     /**
-     * Constructs a new AuthService with an empty user database.
+     * Constructs a new AuthService backed by the shared user database.
      */
     public AuthService() {
-        this.userDB = new UserDatabase();
+        this(DatabaseService.getInstance().getUserDatabase());
+    }
+    /**
+     * Constructs a new AuthService backed by the given user database, e.g. a
+     * {@link ConcurrentUserDatabase} shared by several sessions.
+     *
+     * @param userDB the user database to authenticate against
+     */
+    public AuthService(UserDatabase userDB) {
+        this.userDB = userDB;
     }
     
    /**
@@ -67,7 +76,8 @@ public class AuthService implements Serializable {
             }
         }
     /**
-     * Logs in a user with the provided credentials.
+     * Logs in a user with the provided credentials without printing
+     * anything; callers show the result's message.
      * 
      * @param username the username of the user
      * @param password the password of the user
@@ -76,32 +86,27 @@ public class AuthService implements Serializable {
     public LoginResult login(String username, String password) {
         // 1. Input validation
         if (username == null || username.trim().isEmpty()) {
-            System.out.println("Username cannot be empty");
-            return LoginResult.INVALID_CREDENTIALS;
+            return LoginResult.failure(LoginStatus.EMPTY_USERNAME);
         }
         
         if (password == null || password.trim().isEmpty()) {
-            System.out.println("Password cannot be empty");
-            return LoginResult.INVALID_CREDENTIALS;
+            return LoginResult.failure(LoginStatus.EMPTY_PASSWORD);
         }
         
         // 2. Format validation (consistent with signup rules)
         if (!isValidUsernameFormat(username)) {
-            System.out.println("Invalid username format");
-            return LoginResult.INVALID_CREDENTIALS;
+            return LoginResult.failure(LoginStatus.INVALID_USERNAME);
         }
         
         // 3. Find user
         User user = userDB.findUser(username);
         if (user == null) {
-            System.out.println("User not found");
-            return LoginResult.INVALID_CREDENTIALS;
+            return LoginResult.failure(LoginStatus.USER_NOT_FOUND);
         }
         
         // 4. Password check (using your existing checkPassword method)
         if (!user.checkPassword(password)) {
-            System.out.println("Incorrect password");
-            return LoginResult.INVALID_CREDENTIALS;
+            return LoginResult.failure(LoginStatus.INCORRECT_PASSWORD);
         }
         
         // 5. Return success
@@ -158,15 +163,37 @@ public class AuthService implements Serializable {
             return result;
         }
     }
+    /**
+     * Enum representing possible outcomes of a login attempt.
+     */
+    public enum LoginStatus {
+        SUCCESS("Login successful"),
+        EMPTY_USERNAME("Username cannot be empty"),
+        EMPTY_PASSWORD("Password cannot be empty"),
+        INVALID_USERNAME("Invalid username format"),
+        USER_NOT_FOUND("User not found"),
+        INCORRECT_PASSWORD("Incorrect password");
+
+        private final String message;
+
+        LoginStatus(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
     /**
      * Represents the result of a login attempt, which may contain the authenticated user.
      */
     public static class LoginResult {
-        public static final LoginResult INVALID_CREDENTIALS = new LoginResult(null);
         private final User user;
+        private final LoginStatus status;
 
-        private LoginResult(User user) {
+        private LoginResult(User user, LoginStatus status) {
             this.user = user;
+            this.status = status;
         }
         /**
          * Creates a successful login result with the authenticated user.
@@ -175,7 +202,32 @@ public class AuthService implements Serializable {
          * @return a successful LoginResult containing the user
          */
         public static LoginResult success(User user) {
-            return new LoginResult(user);
+            return new LoginResult(user, LoginStatus.SUCCESS);
+        }
+        /**
+         * Creates a failed login result.
+         * 
+         * @param status the reason the login failed
+         * @return a failed LoginResult without a user
+         */
+        public static LoginResult failure(LoginStatus status) {
+            return new LoginResult(null, status);
+        }
+        /**
+         * Gets the outcome of the login attempt.
+         * 
+         * @return the login status
+         */
+        public LoginStatus getStatus() {
+            return status;
+        }
+        /**
+         * Gets a message describing the outcome, for display to the user.
+         * 
+         * @return the status message
+         */
+        public String getMessage() {
+            return status.getMessage();
         }
         /**
          * Checks if the login attempt was successful.
@@ -231,7 +283,8 @@ public class AuthService implements Serializable {
         return true;
     }
     /**
-     * Validates a username according to system rules.
+     * Validates a username according to system rules. Taken usernames are
+     * refused by the database when the user is added.
      * 
      * @param username the username to validate
      * @return true if the username is valid, false otherwise
@@ -241,10 +294,6 @@ public class AuthService implements Serializable {
             System.out.println("Invalid username: must be under 50 characters.");
             return false;
         }
-        if (userDB.findUser(username) != null) {
-            System.out.println("Username already exists.");
-            return false;
-        }
         return true;
     }
         /**
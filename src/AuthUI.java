@@ -5,7 +5,7 @@ import java.util.Scanner;
  * Once authenticated, launches the PortfolioManager for the logged-in investor.
  */
 public class AuthUI {
-    private final AuthService authService;
+    private final PortfolioService portfolioService;
     private final Scanner scanner;
     private boolean isRunning;
     private Investor currentUser;  // Changed to Investor 
@@ -14,10 +14,19 @@ public class AuthUI {
      * Constructs an AuthUI instance with required services.
      * 
      * @param authService the authentication service to handle login/registration
-     * @param portfolioDatabase the database service for portfolio operations
      */
     public AuthUI(AuthService authService) {
-        this.authService = authService;
+        this(new PortfolioService(authService, DatabaseService.getInstance().getPortfolioDatabase()));
+    }
+
+    /**
+     * Constructs an AuthUI instance over a service that carries out logins,
+     * registrations and portfolio operations.
+     * 
+     * @param portfolioService the service behind this interface
+     */
+    public AuthUI(PortfolioService portfolioService) {
+        this.portfolioService = portfolioService;
         this.scanner = new Scanner(System.in);
         this.isRunning = true;
         this.currentUser = null;
@@ -80,13 +89,15 @@ public class AuthUI {
         System.out.print("Password: ");
         String password = scanner.nextLine();
         
-        AuthService.LoginResult result = authService.login(username, password);
+        AuthService.LoginResult result = portfolioService.authenticate(username, password);
         
-        if (result.isSuccess()) {
-            currentUser = (Investor) result.getUser();  // Cast to Investor
+        if (result.getUser() instanceof Investor) {
+            currentUser = (Investor) result.getUser();
             System.out.println("\nLogin successful! Loading your portfolios...");
+        } else if (result.isSuccess()) {
+            System.out.println("Login failed. Only investors can log in.");
         } else {
-            System.out.println("Login failed. Invalid credentials.");
+            System.out.println("Login failed: " + result.getMessage());
         }
     }
 
@@ -110,7 +121,7 @@ public class AuthUI {
         System.out.print("Confirm Password: ");
         String confirmPassword = scanner.nextLine();
         
-        AuthService.SignupResult result = authService.signUp(
+        AuthService.SignupResult result = portfolioService.signUp(
             name, email, username, password, confirmPassword
         );
         
@@ -125,7 +136,7 @@ public class AuthUI {
      * Launches the portfolio management interface for the authenticated investor.
      */
     private void launchPortfolioManager() {
-        PortfolioManager portfolioManager = new PortfolioManager(currentUser);
+        PortfolioManager portfolioManager = new PortfolioManager(currentUser, portfolioService);
         portfolioManager.start();
     }
 
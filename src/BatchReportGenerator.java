@@ -0,0 +1,338 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the portfolio report and the Zakat reports of every investor in
+ * the database, for end-of-period runs over all clients.
+ *
+ * <p>Investors are processed concurrently on an {@link IoExecutors} executor,
+ * with at most a fixed number in flight. Their holdings are kept in a
+ * temporary {@link MappedAssetStore} for the run rather than as asset
+ * objects, so memory stays bounded however many investors there are. Each run writes into its own directory under the
+ * reports directory, and each file carries the investor's username, so
+ * reports never overwrite each other. Progress is printed every tenth of the
+ * run and a {@link Summary} is returned at the end.</p>
+ */
+public class BatchReportGenerator {
+    /** Default number of investors whose reports are written at the same time */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    private final UserDatabase userDatabase;
+    private final PortfolioDatabase portfolioDatabase;
+    private final int concurrency;
+    private final ValuationEngine valuationEngine;
+    private final RiskAllocation riskAllocation;
+
+    /**
+     * Constructs a batch generator over the shared databases.
+     */
+    public BatchReportGenerator() {
+        this(DatabaseService.getInstance().getUserDatabase(),
+                DatabaseService.getInstance().getPortfolioDatabase(), DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructs a batch generator over the given databases that reads
+     * market prices from {@link CsvPriceSource#DEFAULT_FILE} and, if it
+     * exists, measures risk against the price history in
+     * {@link PerformancCalculator.PriceHistory#DEFAULT_FILE}.
+     *
+     * @param userDatabase      The database listing the investors
+     * @param portfolioDatabase The database holding their portfolios
+     * @param concurrency       The number of investors processed at the same time
+     * @throws java.io.UncheckedIOException if the price history exists but cannot be read
+     */
+    public BatchReportGenerator(UserDatabase userDatabase, PortfolioDatabase portfolioDatabase, int concurrency) {
+        this(userDatabase, portfolioDatabase, concurrency,
+                new ValuationEngine(new CsvPriceSource(CsvPriceSource.DEFAULT_FILE)), readRiskAllocation());
+    }
+
+    /**
+     * Constructs a batch generator over the given databases and market prices.
+     * The engine's cache is shared by all investors of a run, so each symbol
+     * is fetched about once per run.
+     *
+     * @param userDatabase      The database listing the investors
+     * @param portfolioDatabase The database holding their portfolios
+     * @param concurrency       The number of investors processed at the same time
+     * @param valuationEngine   The engine assets are marked to market with
+     */
+    public BatchReportGenerator(UserDatabase userDatabase, PortfolioDatabase portfolioDatabase, int concurrency,
+            ValuationEngine valuationEngine) {
+        this(userDatabase, portfolioDatabase, concurrency, valuationEngine, null);
+    }
+
+    /**
+     * Constructs a batch generator over the given databases and market prices
+     * whose portfolio reports also show the risk of each portfolio. The
+     * analyzer is shared by all investors of a run.
+     *
+     * @param userDatabase      The database listing the investors
+     * @param portfolioDatabase The database holding their portfolios
+     * @param concurrency       The number of investors processed at the same time
+     * @param valuationEngine   The engine assets are marked to market with
+     * @param riskAllocation    The analyzer to measure risk with, or null to leave risk out
+     */
+    public BatchReportGenerator(UserDatabase userDatabase, PortfolioDatabase portfolioDatabase, int concurrency,
+            ValuationEngine valuationEngine, RiskAllocation riskAllocation) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.userDatabase = userDatabase;
+        this.portfolioDatabase = portfolioDatabase;
+        this.concurrency = concurrency;
+        this.valuationEngine = valuationEngine;
+        this.riskAllocation = riskAllocation;
+    }
+
+    /**
+     * The outcome of a batch run.
+     */
+    public static final class Summary {
+        private final String directory;
+        private final int investors;
+        private final int portfolioReports;
+        private final int zakatReports;
+        private final int failures;
+        private final long bytes;
+        private final long elapsedMillis;
+
+        Summary(String directory, int investors, int portfolioReports, int zakatReports, int failures,
+                long bytes, long elapsedMillis) {
+            this.directory = directory;
+            this.investors = investors;
+            this.portfolioReports = portfolioReports;
+            this.zakatReports = zakatReports;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Gets the directory the reports were written to.
+         *
+         * @return The run directory
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Gets the number of investors processed.
+         *
+         * @return The investor count
+         */
+        public int getInvestors() {
+            return investors;
+        }
+
+        /**
+         * Gets the number of portfolio reports written.
+         *
+         * @return The portfolio report count
+         */
+        public int getPortfolioReports() {
+            return portfolioReports;
+        }
+
+        /**
+         * Gets the number of Zakat reports written.
+         *
+         * @return The Zakat report count
+         */
+        public int getZakatReports() {
+            return zakatReports;
+        }
+
+        /**
+         * Gets the number of investors whose reports could not all be written.
+         *
+         * @return The failure count
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Gets the total size of the written reports.
+         *
+         * @return The size in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Gets the wall-clock duration of the run.
+         *
+         * @return The duration in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns a one-line summary of the run.
+         *
+         * @return The summary
+         */
+        @Override
+        public String toString() {
+            double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+            return String.format("%d investors, %d portfolio reports, %d Zakat reports, %d failures, "
+                            + "%.1f MB in %.1f s (%.0f reports/s) -> %s",
+                    investors, portfolioReports, zakatReports, failures, bytes / 1e6, seconds,
+                    (portfolioReports + zakatReports) / seconds, directory);
+        }
+    }
+
+    /**
+     * Generates the reports of every investor. Their holdings are first
+     * copied into a temporary {@link MappedAssetStore}, and the reports then
+     * read them through the store's views, so the run keeps no asset objects
+     * once an investor's portfolios have been loaded.
+     *
+     * @return The summary of the run
+     * @throws IOException if the run directory or the temporary store cannot be created
+     */
+    public Summary generateAll() throws IOException {
+        long start = System.nanoTime();
+        String directory = createRunDirectory();
+        List<Investor> investors = new ArrayList<>();
+        for (User user : userDatabase.getAllUsers()) {
+            if (user instanceof Investor) {
+                investors.add((Investor) user);
+            }
+        }
+        AtomicInteger portfolioReports = new AtomicInteger();
+        AtomicInteger zakatReports = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        ZakatEstimator zakatEstimator = new ZakatEstimator();
+        zakatEstimator.updateGoldPrice(valuationEngine);
+
+        try (MappedAssetStore store = MappedAssetStore.createTemporary(investors.size())) {
+            Map<Investor, List<Portfolio>> holdings = new ConcurrentHashMap<>();
+            forEachInvestor(investors, failures, false, investor -> {
+                List<Portfolio> portfolios = portfolioDatabase.getUserPortfolios(investor);
+                if (!portfolios.isEmpty()) {
+                    synchronized (store) {
+                        holdings.put(investor, store.appendPortfolios(portfolios));
+                    }
+                }
+            });
+            forEachInvestor(new ArrayList<>(holdings.keySet()), failures, true, investor -> writeInvestorReports(
+                    investor, holdings.get(investor), directory, zakatEstimator, portfolioReports, zakatReports,
+                    bytes));
+        }
+        return new Summary(directory, investors.size(), portfolioReports.get(), zakatReports.get(),
+                failures.get(), bytes.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * A step of the run carried out for one investor.
+     */
+    private interface InvestorTask {
+        void run(Investor investor) throws IOException;
+    }
+
+    /**
+     * Runs a step for each investor on the executor, with at most
+     * {@code concurrency} in flight, and waits until all are done.
+     */
+    private void forEachInvestor(List<Investor> investors, AtomicInteger failures, boolean progress,
+            InvestorTask task) {
+        int total = investors.size();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger nextMilestone = new AtomicInteger(1);
+        Semaphore inFlight = new Semaphore(concurrency);
+        ExecutorService executor = IoExecutors.newExecutor("report-batch", concurrency);
+        try {
+            for (Investor investor : investors) {
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        task.run(investor);
+                    } catch (IOException | RuntimeException e) {
+                        failures.incrementAndGet();
+                        System.out.println("Error: " + investor.getUserName() + ": " + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                        if (progress) {
+                            reportProgress(done.incrementAndGet(), total, nextMilestone);
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeInvestorReports(Investor investor, List<Portfolio> portfolios, String directory,
+            ZakatEstimator zakatEstimator, AtomicInteger portfolioReports, AtomicInteger zakatReports,
+            AtomicLong bytes) throws IOException {
+        String fileName = new PortfolioReport(portfolios, investor, directory, valuationEngine,
+                riskAllocation).writeReport();
+        bytes.addAndGet(new File(fileName).length());
+        portfolioReports.incrementAndGet();
+        for (Portfolio portfolio : portfolios) {
+            fileName = new ZakatReport(portfolio, directory, zakatEstimator).writeReport();
+            bytes.addAndGet(new File(fileName).length());
+            zakatReports.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the application's price history into a risk analyzer.
+     *
+     * @return The analyzer, or null if there is no price history
+     */
+    private static RiskAllocation readRiskAllocation() {
+        PerformancCalculator.PriceHistory history = PortfolioService.readPriceHistory();
+        return history == null ? null : new RiskAllocation(history);
+    }
+
+    /**
+     * Prints progress each time another tenth of the investors is done.
+     */
+    private static void reportProgress(int done, int total, AtomicInteger nextMilestone) {
+        int milestone = nextMilestone.get();
+        if (milestone <= 10 && done * 10L >= (long) milestone * total
+                && nextMilestone.compareAndSet(milestone, (int) (done * 10L / total) + 1)) {
+            System.out.printf("Reports: %d/%d investors (%d%%)%n", done, total, done * 100L / total);
+        }
+    }
+
+    /**
+     * Creates a new directory for this run under the reports directory.
+     */
+    private static String createRunDirectory() throws IOException {
+        String base = ReportGenerator.REPORTS_DIR + "batch_"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        new File(ReportGenerator.REPORTS_DIR).mkdirs();
+        for (int n = 1; n < 1000; n++) {
+            File directory = new File(n == 1 ? base : base + "_" + n);
+            if (directory.mkdir()) {
+                return directory.getPath() + "/";
+            }
+        }
+        throw new IOException("Cannot create a report directory under " + ReportGenerator.REPORTS_DIR);
+    }
+}
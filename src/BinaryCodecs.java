@@ -0,0 +1,209 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compact hand-written binary codecs for users and portfolios.
+ * Fields are written in a fixed order with primitive encodings instead of
+ * Java serialization's class descriptors, which makes files several times
+ * smaller and faster to read and write.
+ *
+ * <p>Every record starts with a small tag byte, so a binary record can never
+ * be mistaken for a Java serialization stream.</p>
+ */
+public final class BinaryCodecs {
+    /** The codec id written in file headers */
+    public static final String ID = "binary-v1";
+
+    /** Codec for {@link User} records */
+    public static final RecordCodec<User> USER = new UserCodec();
+
+    /** Codec for {@link Portfolio} records, including their assets */
+    public static final RecordCodec<Portfolio> PORTFOLIO = new PortfolioCodec();
+
+    /** Investor record written before record ids existed */
+    private static final byte INVESTOR_V1_TAG = 1;
+    private static final byte INVESTOR_TAG = 2;
+    /** Portfolio record written before record ids existed */
+    private static final byte PORTFOLIO_V1_TAG = 1;
+    private static final byte PORTFOLIO_TAG = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte NULL = 2;
+
+    private BinaryCodecs() {
+    }
+
+    private static final class UserCodec implements RecordCodec<User> {
+        @Override
+        public String getId() {
+            return ID;
+        }
+
+        @Override
+        public void write(DataOutput out, User user) throws IOException {
+            out.writeByte(INVESTOR_TAG);
+            writeString(out, user.id);
+            writeString(out, user.name);
+            writeString(out, user.email);
+            writeString(out, user.userName);
+            writeString(out, user.password);
+        }
+
+        @Override
+        public User read(DataInput in) throws IOException {
+            byte tag = in.readByte();
+            if (tag != INVESTOR_TAG && tag != INVESTOR_V1_TAG) {
+                throw new IOException("Unknown user tag: " + tag);
+            }
+            String id = tag == INVESTOR_TAG ? readString(in) : null;
+            User user = new Investor(readString(in), readString(in), readString(in), readString(in));
+            user.restoreId(id);
+            return user;
+        }
+    }
+
+    private static final class PortfolioCodec implements RecordCodec<Portfolio> {
+        @Override
+        public String getId() {
+            return ID;
+        }
+
+        @Override
+        public void write(DataOutput out, Portfolio portfolio) throws IOException {
+            out.writeByte(PORTFOLIO_TAG);
+            writeString(out, portfolio.getId());
+            writeString(out, portfolio.getOwnerUserName());
+            writeString(out, portfolio.getName());
+            List<Asset> assets = portfolio.getAssets();
+            out.writeInt(assets.size());
+            for (Asset asset : assets) {
+                writeAsset(out, asset);
+            }
+        }
+
+        @Override
+        public Portfolio read(DataInput in) throws IOException {
+            byte tag = in.readByte();
+            if (tag != PORTFOLIO_TAG && tag != PORTFOLIO_V1_TAG) {
+                throw new IOException("Unknown portfolio tag: " + tag);
+            }
+            String id = tag == PORTFOLIO_TAG ? readString(in) : null;
+            String owner = readString(in);
+            String name = readString(in);
+            int count = in.readInt();
+            List<Asset> assets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                assets.add(readAsset(in));
+            }
+            return new Portfolio(id, owner, name, assets);
+        }
+    }
+
+    /**
+     * Writes an asset: the type tag, the common fields, then the type-specific fields.
+     *
+     * @param out   The output to write to
+     * @param asset The asset to write
+     * @throws IOException if the asset cannot be written
+     */
+    static void writeAsset(DataOutput out, Asset asset) throws IOException {
+        AssetType type = asset.getType();
+        out.writeByte(type.getTag());
+        writeString(out, asset.getName());
+        out.writeInt(asset.getQuantity());
+        Date purchaseDate = asset.getPurchaseDate();
+        out.writeLong(purchaseDate == null ? NO_DATE : purchaseDate.getTime());
+        out.writeFloat(asset.getPurchasePrice());
+        Boolean zakat = asset.isZakatApplicable();
+        out.writeByte(zakat == null ? NULL : zakat ? TRUE : FALSE);
+        switch (type) {
+            case STOCKS:
+                Stocks stock = (Stocks) asset;
+                writeString(out, stock.getStockSymbol());
+                writeString(out, stock.getExchange());
+                break;
+            case CRYPTO:
+                Crypto crypto = (Crypto) asset;
+                writeString(out, crypto.getCryptoSymbol());
+                writeString(out, crypto.getExchange());
+                break;
+            case GOLD:
+                Gold gold = (Gold) asset;
+                writeString(out, gold.getKarat());
+                out.writeFloat(gold.getWeightInGrams());
+                break;
+            case REAL_STATE:
+                RealState realState = (RealState) asset;
+                writeString(out, realState.getLocation());
+                writeString(out, realState.getPropertyType());
+                break;
+        }
+    }
+
+    /**
+     * Reads an asset written by {@link #writeAsset}.
+     *
+     * @param in The input to read from
+     * @return The decoded asset
+     * @throws IOException if the asset cannot be read
+     */
+    static Asset readAsset(DataInput in) throws IOException {
+        AssetType type;
+        try {
+            type = AssetType.fromTag(in.readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        String name = readString(in);
+        int quantity = in.readInt();
+        long time = in.readLong();
+        Date purchaseDate = time == NO_DATE ? null : new Date(time);
+        float purchasePrice = in.readFloat();
+        byte zakatByte = in.readByte();
+        Boolean zakat = zakatByte == NULL ? null : zakatByte == TRUE;
+        switch (type) {
+            case STOCKS:
+                return new Stocks(name, quantity, purchaseDate, purchasePrice, zakat,
+                        readString(in), readString(in));
+            case CRYPTO:
+                return new Crypto(name, quantity, purchaseDate, purchasePrice, zakat,
+                        readString(in), readString(in));
+            case GOLD:
+                return new Gold(name, quantity, purchaseDate, purchasePrice, zakat,
+                        readString(in), in.readFloat());
+            default:
+                return new RealState(name, quantity, purchaseDate, purchasePrice, zakat,
+                        readString(in), readString(in));
+        }
+    }
+
+    /**
+     * Writes a possibly-null string as a presence flag followed by modified UTF-8.
+     *
+     * @param out   The output to write to
+     * @param value The string to write, may be null
+     * @throws IOException if the string cannot be written
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param in The input to read from
+     * @return The string, or null if none was written
+     * @throws IOException if the string cannot be read
+     */
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe PortfolioDatabase for serving many investor sessions from
+ * one process.
+ *
+ * <p>All portfolios share one list, one position index and one journal,
+ * whose records address portfolios by their position in that list, so
+ * changes cannot be committed per owner: every addition, removal and edit
+ * runs under one database-wide write lock, held only for the in-memory
+ * update and for queueing its journal record. In {@link Durability#PER_OP}
+ * mode the record is fsync'd after the lock is released, before the change
+ * returns, so readers and other writers never wait for the disk and
+ * concurrent changes share their fsyncs. Reads take the matching read lock
+ * just long enough to copy the owner's portfolio list, so concurrent
+ * readers never block each other.</p>
+ *
+ * <p>Owners are also hashed onto a fixed set of lock stripes, used only by
+ * {@link #runForOwner}. They serialize read-modify-write sequences on one
+ * owner's portfolios, such as adding an asset and saving the portfolio,
+ * without holding the database lock while the change is prepared, so
+ * changes to different owners only queue for the short commit.</p>
+ *
+ * <p>Returned portfolios are the stored objects, but their asset lists are
+ * copy-on-write (see {@link Portfolio}), so a reader iterating a portfolio's
+ * assets never sees them change underneath it.</p>
+ */
+public class ConcurrentPortfolioDatabase extends PortfolioDatabase {
+    private static final long serialVersionUID = 1L;
+    private static final int STRIPES = 64;
+
+    /** Serializes read-modify-write sequences of the owners hashed onto each stripe */
+    private final transient ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    /** Guards the shared portfolio list, its indexes and their persistence */
+    private final transient ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Set when each change must be on disk before it returns; the journal itself then batches */
+    private transient volatile boolean syncEachChange;
+
+    /**
+     * Constructs a thread-safe database using the default portfolio file.
+     */
+    public ConcurrentPortfolioDatabase() {
+        this("src/database/portfolioDatabase.ser", BinaryCodecs.PORTFOLIO);
+    }
+
+    /**
+     * Constructs a thread-safe database backed by the given file and storage format.
+     *
+     * @param fileName The file to store portfolios in
+     * @param codec    The codec used to encode portfolios on disk
+     */
+    public ConcurrentPortfolioDatabase(String fileName, RecordCodec<Portfolio> codec) {
+        super(fileName, codec);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        setDurability(super.getDurability());
+    }
+
+    /**
+     * Sets when changes reach the disk. In {@link Durability#PER_OP} mode
+     * the journal batches records and each change commits them itself once
+     * the database lock is released.
+     *
+     * @param durability The durability mode
+     */
+    @Override
+    public void setDurability(Durability durability) {
+        syncEachChange = durability == Durability.PER_OP;
+        super.setDurability(syncEachChange ? Durability.BATCHED : durability);
+    }
+
+    @Override
+    public Durability getDurability() {
+        return syncEachChange ? Durability.PER_OP : super.getDurability();
+    }
+
+    @Override
+    public boolean addData(Portfolio newPort) {
+        boolean changed;
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            changed = super.addData(newPort);
+        } finally {
+            write.unlock();
+        }
+        commitChange(changed);
+        return changed;
+    }
+
+    @Override
+    public boolean deleteData(Portfolio port) {
+        boolean changed;
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            changed = super.deleteData(port);
+        } finally {
+            write.unlock();
+        }
+        commitChange(changed);
+        return changed;
+    }
+
+    @Override
+    public boolean editData(Portfolio oldData, Portfolio newData) {
+        boolean changed;
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            changed = super.editData(oldData, newData);
+        } finally {
+            write.unlock();
+        }
+        commitChange(changed);
+        return changed;
+    }
+
+    @Override
+    boolean editAssets(Portfolio port, byte[] patch) {
+        boolean changed;
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            changed = super.editAssets(port, patch);
+        } finally {
+            write.unlock();
+        }
+        commitChange(changed);
+        return changed;
+    }
+
+    @Override
+    public <R> R runForOwner(String ownerUserName, Supplier<R> change) {
+        Lock ownerLock = stripes[stripeIndex(ownerUserName)];
+        ownerLock.lock();
+        try {
+            return change.get();
+        } finally {
+            ownerLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Portfolio> getUserPortfolios(Investor owner) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return super.getUserPortfolios(owner);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public List<Portfolio> getUserPortfolios(Investor owner, int offset, int limit) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return super.getUserPortfolios(owner, offset, limit);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Streams a copy of an investor's portfolios, so the stream stays valid
+     * while other sessions modify the database.
+     *
+     * @param owner The investor whose portfolios to stream
+     * @return A stream of the portfolios owned by the investor
+     */
+    @Override
+    public Stream<Portfolio> streamUserPortfolios(Investor owner) {
+        return getUserPortfolios(owner).stream();
+    }
+
+    /**
+     * Retrieves a consistent copy of every portfolio in the database.
+     *
+     * @return An unmodifiable copy of all portfolios
+     */
+    @Override
+    public List<Portfolio> getAllPortfolios() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(super.getAllPortfolios()));
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Fsyncs a change's journal record in {@link Durability#PER_OP} mode,
+     * outside the database lock.
+     */
+    private void commitChange(boolean changed) {
+        if (changed && syncEachChange) {
+            commitJournal();
+        }
+    }
+
+    private static int stripeIndex(String ownerUserName) {
+        int hash = ownerUserName == null ? 0 : ownerUserName.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.List;
+
+/**
+ * A thread-safe UserDatabase for serving many sessions from one process.
+ *
+ * <p>Lookups such as {@link #findUser(String)} read the concurrent username
+ * index without locking, so logins never wait for each other. Changes are
+ * single short updates and run under one commit lock, which makes the
+ * duplicate check and insert of a signup atomic and orders updates to the
+ * shared user list and their journal records.</p>
+ */
+public class ConcurrentUserDatabase extends UserDatabase {
+    private static final long serialVersionUID = 1L;
+
+    /** Orders changes to the shared user list and their persistence */
+    private final transient Object commitLock = new Object();
+
+    /**
+     * Constructs a thread-safe database using the default user file.
+     */
+    public ConcurrentUserDatabase() {
+        this("src/database/userDatabase.ser", BinaryCodecs.USER);
+    }
+
+    /**
+     * Constructs a thread-safe database backed by the given file and storage format.
+     *
+     * @param fileName The file to store users in
+     * @param codec    The codec used to encode users on disk
+     */
+    public ConcurrentUserDatabase(String fileName, RecordCodec<User> codec) {
+        super(fileName, codec);
+    }
+
+    @Override
+    public boolean addData(User newUser) {
+        synchronized (commitLock) {
+            return super.addData(newUser);
+        }
+    }
+
+    @Override
+    public boolean deleteData(User user) {
+        synchronized (commitLock) {
+            return super.deleteData(user);
+        }
+    }
+
+    @Override
+    public boolean editData(User oldData, User newData) {
+        synchronized (commitLock) {
+            return super.editData(oldData, newData);
+        }
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        synchronized (commitLock) {
+            return super.getAllUsers();
+        }
+    }
+
+    @Override
+    public void displayUsers() {
+        synchronized (commitLock) {
+            super.displayUsers();
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (commitLock) {
+            super.clear();
+        }
+    }
+}
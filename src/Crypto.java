@@ -5,6 +5,7 @@ import java.util.Scanner;
  * Includes cryptocurrency-specific properties like symbol and exchange.
  */
 public class Crypto extends Asset {
+    private static final long serialVersionUID = 3286550150882091512L;
     private String cryptoSymbol;
     private String exchange;
      /**
@@ -68,6 +69,25 @@ public class Crypto extends Asset {
     public String toString() {
         return super.toString() + ", CryptoSymbol: " + cryptoSymbol + ", Exchange: " + exchange;
     }
+    /**
+     * Gets the symbol the coin is quoted under.
+     *
+     * @return The crypto symbol
+     */
+    @Override
+    public String getPriceSymbol() {
+        return cryptoSymbol;
+    }
+    /**
+     * Gets the concrete type of this asset.
+     *
+     * @return {@link AssetType#CRYPTO}
+     */
+    @Override
+    public AssetType getType() {
+        return AssetType.CRYPTO;
+    }
+
     /**
      * Implements the abstract method to edit cryptocurrency-specific details.
      * Prompts the user for new crypto symbol and exchange values.
@@ -0,0 +1,73 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A PriceSource backed by a local CSV file of {@code symbol,price} lines.
+ *
+ * <p>Blank lines, lines starting with '#' and a header line whose price
+ * column is not a number are ignored. The file is read once and read again
+ * only when its modification time changes, so it can be refreshed by an
+ * external job while the application is running. While the file does not
+ * exist the source knows no prices.</p>
+ */
+public class CsvPriceSource implements PriceSource {
+    /** File the application reads market prices from */
+    public static final String DEFAULT_FILE = "src/database/prices.csv";
+
+    private final File file;
+    private Map<String, Double> prices = new HashMap<>();
+    private long loadedModified = Long.MIN_VALUE;
+
+    /**
+     * Creates a price source reading the given file.
+     *
+     * @param fileName The CSV file of prices
+     */
+    public CsvPriceSource(String fileName) {
+        this.file = new File(fileName);
+    }
+
+    @Override
+    public synchronized Map<String, Double> getPrices(Collection<String> symbols) throws IOException {
+        long modified = file.lastModified();
+        if (modified != loadedModified) {
+            prices = modified == 0 && !file.exists() ? new HashMap<>() : load();
+            loadedModified = modified;
+        }
+        Map<String, Double> found = new HashMap<>();
+        for (String symbol : symbols) {
+            Double price = prices.get(symbol);
+            if (price != null) {
+                found.put(symbol, price);
+            }
+        }
+        return found;
+    }
+
+    private Map<String, Double> load() throws IOException {
+        Map<String, Double> loaded = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int comma = line.indexOf(',');
+                if (line.isEmpty() || line.startsWith("#") || comma < 0) {
+                    continue;
+                }
+                try {
+                    double price = Double.parseDouble(line.substring(comma + 1).trim());
+                    loaded.put(line.substring(0, comma).trim().toUpperCase(Locale.ROOT), price);
+                } catch (NumberFormatException e) {
+                    // header or malformed line
+                }
+            }
+        }
+        return loaded;
+    }
+}
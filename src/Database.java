@@ -5,39 +5,222 @@ import java.util.List;
  * An abstract database class that provides basic file-based CRUD operations
  * for serializable objects. Implements serialization for data persistence.
  *
+ * <p>In journaled mode each mutation is appended to a write-ahead log next to
+ * the database file instead of rewriting the whole file. The log is compacted
+ * into the snapshot in the background and replayed on load.</p>
+ *
+ * <p>Records are encoded by a {@link RecordCodec} chosen per database. Files
+ * written with a different codec, including plain Java serialization files,
+ * are converted to the database's codec when loaded.</p>
+ *
+ * <p>All file writes for one database go through a single writer lock, so
+ * concurrent mutations never interleave journal records or snapshot writes.</p>
+ *
+ * <p>The {@link Durability} mode decides whether each journal record is
+ * fsync'd on its own or grouped with the records that arrive within the
+ * commit window into one write and one fsync. {@link #flush()} commits
+ * pending records immediately.</p>
+ *
  * @param <T> The type of objects stored in the database, must implement Serializable
  */
 public abstract class Database<T> implements Serializable {
     private static final long serialVersionUID = 1L;
+    /** Number of journal records after which the log is compacted into the snapshot */
+    protected static final int COMPACTION_THRESHOLD = 500;
+    /** Default time a batched journal record waits for others to join its commit */
+    public static final long DEFAULT_COMMIT_WINDOW_MILLIS = 20;
+    /** Default number of pending journal records that forces a commit */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
     protected String fileName;
+    private boolean journaled;
+    private transient RecordCodec<T> codec;
+    private transient DatabaseJournal<T> journal;
+    /** Journal sequence reached before the journal was closed, kept so later snapshots supersede the log */
+    private transient long closedSequence;
+    private transient Durability durability = Durability.PER_OP;
+    private transient long commitWindowMillis = DEFAULT_COMMIT_WINDOW_MILLIS;
+    private transient int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    /** Serializes journal appends and snapshot saves issued by mutations */
+    private final transient Object writeLock = new Object();
+    /** Serializes writes of the snapshot file, which go through one temporary file */
+    private final transient Object snapshotLock = new Object();
     /**
      * Constructs a new Database instance with the specified file name.
      *
      * @param fileName The name of the file to use for data storage
      */
     public Database(String fileName) {
+        this(fileName, false);
+    }
+    /**
+     * Constructs a new Database instance with the specified file name and
+     * persistence mode.
+     *
+     * @param fileName  The name of the file to use for data storage
+     * @param journaled true to append mutations to a write-ahead log,
+     *                  false to rewrite the whole file on every mutation
+     */
+    public Database(String fileName, boolean journaled) {
+        this(fileName, journaled, new SerializationCodec<>());
+    }
+    /**
+     * Constructs a new Database instance with the specified file name,
+     * persistence mode and storage format.
+     *
+     * @param fileName  The name of the file to use for data storage
+     * @param journaled true to append mutations to a write-ahead log,
+     *                  false to rewrite the whole file on every mutation
+     * @param codec     The codec used to encode records on disk
+     */
+    public Database(String fileName, boolean journaled, RecordCodec<T> codec) {
         this.fileName = fileName;
+        this.journaled = journaled;
+        this.codec = codec;
+    }
+    /**
+     * Gets the codec this database encodes records with.
+     *
+     * @return The record codec
+     */
+    protected RecordCodec<T> getCodec() {
+        return codec;
+    }
+    /**
+     * Gets the durability mode of journal writes.
+     *
+     * @return The durability mode
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+    /**
+     * Sets when journal writes reach the disk. Switching to
+     * {@link Durability#PER_OP} commits any pending records first.
+     * Has no effect on databases that are not journaled.
+     *
+     * @param durability The durability mode
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+        applyDurability();
+    }
+    /**
+     * Sets the group-commit limits used by the batched and async modes.
+     *
+     * @param windowMillis How long a record may wait for others to join its commit
+     * @param maxBatchSize Number of pending records that forces an immediate commit
+     */
+    public void setGroupCommit(long windowMillis, int maxBatchSize) {
+        this.commitWindowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        applyDurability();
+    }
+    /**
+     * Writes and fsyncs all journal records that are waiting for a group commit.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+    /**
+     * Writes all journal records that are waiting for a group commit and
+     * fsyncs them without holding the database's write lock, so mutations
+     * can go on during the fsync. For subclasses that commit after
+     * releasing their own locks.
+     */
+    protected void commitJournal() {
+        DatabaseJournal<T> log;
+        synchronized (writeLock) {
+            log = journal;
+        }
+        if (log == null) {
+            return;
+        }
+        try {
+            log.commit();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+    /**
+     * Commits pending journal records, waits for a background compaction to
+     * finish and closes the journal. Mutations made after closing rewrite
+     * the whole file instead of being journaled.
+     */
+    public void close() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.awaitCompaction(); // compaction takes the database lock, so wait outside it
+            synchronized (writeLock) {
+                closedSequence = journal.getLastSequence();
+                journal.close();
+                journal = null;
+            }
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+    private void applyDurability() {
+        synchronized (writeLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.setDurability(durability, commitWindowMillis, maxBatchSize);
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
     }
     /**
      * Loads data from the database file. If the file doesn't exist,
-     * creates a new empty database file.
+     * creates a new empty database file. In journaled mode the write-ahead
+     * log is replayed on top of the snapshot and opened for appending.
+     * A file written with another codec, or holding records in an older
+     * layout, is rewritten with this database's codec.
+     *
+     * <p>A file that exists but cannot be read, for example because it is
+     * truncated or fails its checksum, is left untouched and reported by
+     * throwing, so it is never replaced by an empty database.</p>
      *
      * @return A List containing all loaded data items
-     * @throws RuntimeException if there's an error during file operations
-     */ 
+     * @throws IllegalStateException if the database file exists but cannot be loaded
+     */
     protected List<T> loadFromFile() {
         File file = new File(fileName);
         if (!file.exists()) {
             System.out.println("Database file not found. Creating a new one...");
             saveToFile(new ArrayList<>()); // Create an empty database file
         }
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(fileName))) {
-            @SuppressWarnings("unchecked")
-            List<T> data = (List<T>) in.readObject();
+        try {
+            SnapshotFormat.Snapshot<T> snapshot = SnapshotFormat.read(file, codec);
+            List<T> data = snapshot.getData();
+            if (journaled) {
+                journal = new DatabaseJournal<>(fileName, COMPACTION_THRESHOLD, codec);
+                journal.open(data, snapshot.getSequence());
+                journal.setDurability(durability, commitWindowMillis, maxBatchSize);
+                journal.resumeCompaction(this::compact);
+            }
+            if (!snapshot.getCodecId().equals(codec.getId())) {
+                System.out.println("Converting " + fileName + " to " + codec.getId() + " format...");
+                saveToFile(data);
+            } else if (data.stream().anyMatch(this::needsRewrite)) {
+                System.out.println("Upgrading records in " + fileName + "...");
+                saveToFile(data);
+            }
             return data;
         } catch (Exception e) {
-            System.out.println("Error: " + e.getMessage());
-            return new ArrayList<>();
+            throw new IllegalStateException("Cannot load " + fileName + ": " + e.getMessage(), e);
         }
     }
     /**
@@ -47,10 +230,129 @@ public abstract class Database<T> implements Serializable {
      * @throws RuntimeException if there's an error during file operations
      */
     protected void saveToFile(List<T> data) {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fileName))) {
-            out.writeObject(data);
+        synchronized (writeLock) {
+            try {
+                writeSnapshot(data, journal == null ? closedSequence : journal.getLastSequence());
+            } catch (Exception e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+    /**
+     * Persists the addition of an item that was appended to the end of the data list.
+     * Appends a journal record in journaled mode, otherwise rewrites the file.
+     *
+     * @param data The List of items after the addition
+     * @param item The item that was added
+     */
+    protected void persistAdd(List<T> data, T item) {
+        appendToJournal(data, DatabaseJournal.OP_ADD, -1, item);
+    }
+    /**
+     * Persists the removal of the item that was at the given position of the data list.
+     * Appends a journal record in journaled mode, otherwise rewrites the file.
+     *
+     * @param data  The List of items after the removal
+     * @param index The position the removed item occupied
+     */
+    protected void persistRemove(List<T> data, int index) {
+        appendToJournal(data, DatabaseJournal.OP_REMOVE, index, null);
+    }
+    /**
+     * Persists the replacement of the item at the given position of the data list.
+     * Appends a journal record in journaled mode, otherwise rewrites the file.
+     *
+     * @param data  The List of items after the replacement
+     * @param index The position of the replaced item
+     * @param item  The item now stored at that position
+     */
+    protected void persistReplace(List<T> data, int index, T item) {
+        appendToJournal(data, DatabaseJournal.OP_REPLACE, index, item);
+    }
+    /**
+     * Persists the removal of every item. Appends a journal record in
+     * journaled mode, otherwise rewrites the file, so that records journaled
+     * afterwards are replayed onto the emptied list.
+     *
+     * @param data The List of items after the removal, which is empty
+     */
+    protected void persistClear(List<T> data) {
+        appendToJournal(data, DatabaseJournal.OP_CLEAR, -1, null);
+    }
+    /**
+     * Persists a change to part of the item at the given position of the data list.
+     * Appends a journal record holding only the change in journaled mode,
+     * otherwise rewrites the file.
+     *
+     * @param data  The List of items after the change
+     * @param index The position of the changed item, which must be a {@link PatchableRecord}
+     * @param patch The change, as encoded by the item
+     */
+    protected void persistPatch(List<T> data, int index, byte[] patch) {
+        appendToJournal(data, DatabaseJournal.OP_PATCH, index, null, patch);
+    }
+    /**
+     * Checks whether a loaded item was stored in an older layout and should be
+     * written again in the current one. Databases holding such items rewrite
+     * their snapshot once after loading.
+     *
+     * @param item An item read from the database file
+     * @return true if the item should be re-saved; false by default
+     */
+    protected boolean needsRewrite(T item) {
+        return false;
+    }
+    private void appendToJournal(List<T> data, byte op, int index, T item) {
+        appendToJournal(data, op, index, item, null);
+    }
+    private void appendToJournal(List<T> data, byte op, int index, T item, byte[] patch) {
+        synchronized (writeLock) {
+            if (journal == null) {
+                saveToFile(data);
+                return;
+            }
+            try {
+                boolean compactionDue = op == DatabaseJournal.OP_PATCH
+                        ? journal.appendPatch(index, patch)
+                        : journal.append(op, index, item);
+                if (compactionDue) {
+                    journal.rotate(this::compact);
+                }
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                saveToFile(data); // Fall back to a full snapshot so the change is not lost
+            }
+        }
+    }
+    /**
+     * Folds the rotated journal into a new snapshot. Runs on the background
+     * compaction thread and only reads files, never the live data list, so
+     * it holds no lock while reading and replaying; only the final write of
+     * the snapshot is serialized with other snapshot writes.
+     * A failed compaction is reported and retried later.
+     */
+    private void compact() {
+        DatabaseJournal<T> log = journal;
+        if (log == null) {
+            return; // closed; the rotated log is compacted when the database is next opened
+        }
+        try {
+            SnapshotFormat.Snapshot<T> snapshot = SnapshotFormat.read(new File(fileName), codec);
+            List<T> data = snapshot.getData();
+            long sequence = log.replayCompacting(data, snapshot.getSequence());
+            writeSnapshot(data, sequence);
+            log.finishCompaction();
         } catch (Exception e) {
-            System.out.println("Error: " + e.getMessage());
+            System.out.println("Error: Cannot compact " + fileName + ": " + e.getMessage());
+            log.retryCompaction(this::compact);
+        }
+    }
+    /**
+     * Writes the full list together with the journal sequence number it contains.
+     */
+    private void writeSnapshot(List<T> data, long sequence) throws IOException {
+        synchronized (snapshotLock) {
+            SnapshotFormat.write(new File(fileName), data, sequence, codec);
         }
     }
     /**
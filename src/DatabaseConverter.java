@@ -0,0 +1,66 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Command-line tool that converts database files between storage formats.
+ * Reads a snapshot in any supported format, applies its write-ahead log if
+ * present, and writes a new snapshot with the requested codec. The input
+ * files are never modified.
+ *
+ * <p>Usage: {@code java DatabaseConverter <users|portfolios> <input> <output> [binary|java]}</p>
+ */
+public class DatabaseConverter {
+    /**
+     * Runs the conversion described by the command-line arguments.
+     *
+     * @param args the database kind, input file, output file and optional target format
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 4
+                || (args.length == 4 && !args[3].equalsIgnoreCase("binary") && !args[3].equalsIgnoreCase("java"))) {
+            System.out.println("Usage: java DatabaseConverter <users|portfolios> <input> <output> [binary|java]");
+            return;
+        }
+        boolean binary = args.length < 4 || args[3].equalsIgnoreCase("binary");
+        try {
+            int count;
+            switch (args[0].toLowerCase()) {
+                case "users":
+                    count = convert(args[1], args[2], BinaryCodecs.USER,
+                            binary ? BinaryCodecs.USER : new SerializationCodec<>());
+                    break;
+                case "portfolios":
+                    count = convert(args[1], args[2], BinaryCodecs.PORTFOLIO,
+                            binary ? BinaryCodecs.PORTFOLIO : new SerializationCodec<>());
+                    break;
+                default:
+                    System.out.println("Unknown database kind: " + args[0]);
+                    return;
+            }
+            System.out.println("Converted " + count + " records to " + args[2]);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Converts one database file, including its journal, to the given codec.
+     *
+     * @param <T>    The type of records in the database
+     * @param input  The database file to read
+     * @param output The file to write
+     * @param reader The binary codec for the record type, which also reads Java serialization
+     * @param writer The codec to write records with
+     * @return The number of records written
+     * @throws IOException if reading or writing fails
+     */
+    public static <T> int convert(String input, String output, RecordCodec<T> reader,
+            RecordCodec<T> writer) throws IOException {
+        SnapshotFormat.Snapshot<T> snapshot = SnapshotFormat.read(new File(input), reader);
+        List<T> data = snapshot.getData();
+        DatabaseJournal.replayReadOnly(input, data, snapshot.getSequence(), reader);
+        SnapshotFormat.write(new File(output), data, 0, writer);
+        return data.size();
+    }
+}
@@ -0,0 +1,540 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead log used by {@link Database} in journaled mode.
+ * Each mutation is appended as a small record instead of rewriting the whole
+ * database file. Once enough records accumulate, the log is rotated and folded
+ * into the snapshot by a background compaction that works purely on files.
+ *
+ * <p>Record layout: payload length, CRC32, operation, sequence number,
+ * list position and the item encoded by the database's codec (additions
+ * and replacements only), or a patch that a {@link PatchableRecord} applies
+ * to itself, so small edits to large items are not journaled whole. Records whose sequence number is not newer than the snapshot are
+ * skipped on replay. Payloads written with Java serialization are recognised
+ * whatever the database's current codec is.</p>
+ *
+ * <p>Depending on the {@link Durability} mode, records are either written and
+ * fsync'd one at a time or collected into a group commit: pending records are
+ * written with one gathering write and at most one fsync when the commit
+ * window elapses, when enough records are pending, on {@link #flush()}, before
+ * rotation, and when the JVM exits. A background commit that fails is
+ * reported and retried; until one succeeds, appends commit synchronously so
+ * the failure reaches the caller, whose database then falls back to writing
+ * a full snapshot.</p>
+ *
+ * @param <T> The type of objects stored in the owning database
+ */
+class DatabaseJournal<T> {
+    /** Appends the record's item to the end of the list */
+    static final byte OP_ADD = 1;
+    /** Removes the element at the record's position */
+    static final byte OP_REMOVE = 2;
+    /** Replaces the element at the record's position with the record's item */
+    static final byte OP_REPLACE = 3;
+    /** Removes every element */
+    static final byte OP_CLEAR = 4;
+    /** Applies the record's patch to the {@link PatchableRecord} at the record's position */
+    static final byte OP_PATCH = 5;
+
+    /** op + sequence + position */
+    private static final int HEADER_BODY_SIZE = 1 + 8 + 4;
+    /** length + crc + op + sequence + position */
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + HEADER_BODY_SIZE;
+
+    /** Single daemon thread shared by all journals for snapshot compaction */
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "database-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Single daemon thread shared by all journals for delayed group commits */
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "database-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Delay before a failed compaction or background commit is first retried */
+    private static final long FIRST_RETRY_MILLIS = 1000;
+    /** Longest delay between retries of a failing compaction or background commit */
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    /** Journals holding records that have not been written yet, flushed on exit */
+    private static final Set<DatabaseJournal<?>> UNWRITTEN = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (DatabaseJournal<?> journal : UNWRITTEN) {
+                try {
+                    journal.flush();
+                } catch (IOException e) {
+                    System.out.println("Error: " + e.getMessage());
+                }
+            }
+        }, "database-flush-on-exit"));
+    }
+
+    private final File logFile;
+    private final File compactingFile;
+    private final int compactionThreshold;
+    private final RecordCodec<T> codec;
+    private FileChannel channel;
+    private long lastSequence;
+    private int pendingRecords;
+    private volatile boolean compacting;
+    private volatile Future<?> compaction;
+    private Durability durability = Durability.PER_OP;
+    private long commitWindowMillis;
+    private int maxBatchSize;
+    /** Encoded records waiting for the next group commit */
+    private final List<ByteBuffer> unwritten = new ArrayList<>();
+    private boolean commitScheduled;
+    /** Set while the last background commit failed; appends then commit synchronously */
+    private boolean commitFailed;
+    private long commitRetryMillis = FIRST_RETRY_MILLIS;
+    private long retryMillis = FIRST_RETRY_MILLIS;
+    private boolean closed;
+
+    /**
+     * Creates a journal for the given database file. The log lives next to it
+     * with a ".log" suffix.
+     *
+     * @param fileName            The database (snapshot) file name
+     * @param compactionThreshold Number of records after which compaction is requested
+     * @param codec               The codec used to encode added items
+     */
+    DatabaseJournal(String fileName, int compactionThreshold, RecordCodec<T> codec) {
+        this.logFile = new File(fileName + ".log");
+        this.compactingFile = new File(fileName + ".log.compacting");
+        this.compactionThreshold = compactionThreshold;
+        this.codec = codec;
+    }
+
+    /**
+     * Sets when appended records are written and fsync'd. Records already
+     * pending are written first when switching to {@link Durability#PER_OP}.
+     *
+     * @param durability         The durability mode
+     * @param commitWindowMillis How long a batched record may wait for others to join its commit
+     * @param maxBatchSize       Number of pending records that triggers an immediate commit
+     * @throws IOException if pending records could not be written
+     */
+    synchronized void setDurability(Durability durability, long commitWindowMillis, int maxBatchSize)
+            throws IOException {
+        this.durability = durability;
+        this.commitWindowMillis = commitWindowMillis;
+        this.maxBatchSize = maxBatchSize;
+        if (durability == Durability.PER_OP) {
+            flush();
+        }
+    }
+
+    /**
+     * Applies the journal of a database file onto its snapshot without
+     * opening, repairing or otherwise modifying the log files.
+     *
+     * @param <T>              The type of records in the database
+     * @param fileName         The database (snapshot) file name
+     * @param data             The list loaded from the snapshot
+     * @param snapshotSequence The sequence number the snapshot already contains
+     * @param codec            The codec the database encodes items with
+     * @return The sequence number of the last applied record
+     * @throws IOException if the log cannot be read
+     */
+    static <T> long replayReadOnly(String fileName, List<T> data, long snapshotSequence,
+            RecordCodec<T> codec) throws IOException {
+        DatabaseJournal<T> journal = new DatabaseJournal<>(fileName, Integer.MAX_VALUE, codec);
+        long last = journal.replay(journal.compactingFile, data, snapshotSequence, false);
+        return Math.max(last, journal.replay(journal.logFile, data, snapshotSequence, false));
+    }
+
+    /**
+     * Replays every record newer than the snapshot onto the loaded data. A
+     * torn record at the end of the log (from a crash mid-write) is
+     * discarded. The log is opened for appending by the first commit, so a
+     * database that is only read never creates one.
+     *
+     * @param data             The list loaded from the snapshot
+     * @param snapshotSequence The sequence number the snapshot already contains
+     * @throws IOException if the log cannot be read or opened
+     */
+    void open(List<T> data, long snapshotSequence) throws IOException {
+        lastSequence = snapshotSequence;
+        compacting = compactingFile.exists();
+        if (compacting) {
+            lastSequence = Math.max(lastSequence, replay(compactingFile, data, snapshotSequence, false));
+        }
+        lastSequence = Math.max(lastSequence, replay(logFile, data, snapshotSequence, true));
+    }
+
+    /**
+     * Appends one mutation record to the log. In {@link Durability#PER_OP}
+     * mode the record is written and fsync'd before returning; otherwise it
+     * joins the pending group commit.
+     *
+     * @param op       The operation code
+     * @param position The list position the operation applies to (-1 for appends and clears)
+     * @param item     The item being added, or null for removals and clears
+     * @return true if enough records accumulated that compaction should be started
+     * @throws IOException if the record could not be written; the log is left
+     *                     unchanged and the record is retried with the next commit
+     */
+    synchronized boolean append(byte op, int position, T item) throws IOException {
+        return appendPayload(op, position, item == null ? new byte[0] : serialize(item));
+    }
+
+    /**
+     * Appends a record holding a change to part of the element at a position,
+     * written and committed like {@link #append}.
+     *
+     * @param position The list position of the changed element
+     * @param patch    The change, as encoded by the element's {@link PatchableRecord} type
+     * @return true if enough records accumulated that compaction should be started
+     * @throws IOException if the record could not be written; the log is left
+     *                     unchanged and the record is retried with the next commit
+     */
+    synchronized boolean appendPatch(int position, byte[] patch) throws IOException {
+        return appendPayload(OP_PATCH, position, patch);
+    }
+
+    private boolean appendPayload(byte op, int position, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("The journal of " + logFile + " is closed");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(0); // checksum placeholder
+        record.put(op);
+        record.putLong(lastSequence + 1);
+        record.putInt(position);
+        record.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, HEADER_BODY_SIZE + payload.length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        unwritten.add(record);
+        lastSequence++;
+        pendingRecords++;
+        if (durability == Durability.PER_OP || unwritten.size() >= maxBatchSize || commitFailed) {
+            writeUnwritten(durability != Durability.ASYNC);
+        } else {
+            UNWRITTEN.add(this);
+            if (!commitScheduled) {
+                commitScheduled = true;
+                FLUSHER.schedule(this::commitScheduled, commitWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return !compacting && pendingRecords >= compactionThreshold;
+    }
+
+    /**
+     * Writes and fsyncs every pending record, whatever the durability mode.
+     *
+     * @throws IOException if the records could not be written; they stay pending
+     */
+    synchronized void flush() throws IOException {
+        writeUnwritten(true);
+    }
+
+    /**
+     * Writes every pending record and then fsyncs the log without holding
+     * this journal's lock, so other threads can append while the disk
+     * catches up and have their records covered by the same or the next fsync.
+     *
+     * @throws IOException if the records could not be written or synced
+     */
+    void commit() throws IOException {
+        FileChannel written;
+        synchronized (this) {
+            writeUnwritten(false);
+            written = channel;
+        }
+        if (written == null) {
+            return;
+        }
+        try {
+            written.force(false);
+        } catch (ClosedChannelException e) {
+            // Rotated or closed meanwhile, both of which fsync the log before closing it
+        }
+    }
+
+    /**
+     * Moves the current log aside so it can be compacted while new records go
+     * to a fresh log, then runs the given compaction on the background thread.
+     * Pending records are committed to the old log first.
+     *
+     * @param compaction The task that folds the rotated log into the snapshot
+     * @throws IOException if the log could not be rotated
+     */
+    synchronized void rotate(Runnable compaction) throws IOException {
+        writeUnwritten(true);
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Files.move(logFile.toPath(), compactingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        pendingRecords = 0;
+        compacting = true;
+        this.compaction = COMPACTOR.submit(compaction);
+    }
+
+    /**
+     * Waits until a running or queued compaction has finished, so another
+     * journal can safely open the same files afterwards.
+     *
+     * @throws IOException if waiting was interrupted
+     */
+    void awaitCompaction() throws IOException {
+        Future<?> pending = compaction;
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for compaction", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Commits pending records and closes the log. Later appends fail.
+     *
+     * @throws IOException if pending records could not be written
+     */
+    synchronized void close() throws IOException {
+        closed = true;
+        try {
+            writeUnwritten(true);
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private synchronized void commitScheduled() {
+        commitScheduled = false;
+        try {
+            writeUnwritten(durability == Durability.BATCHED);
+        } catch (IOException e) {
+            System.out.println("Error: Cannot write journal " + logFile.getName() + ": " + e.getMessage());
+            commitFailed = true;
+            if (!closed && !commitScheduled) {
+                // The records stay pending; retry without waiting for another append
+                commitScheduled = true;
+                FLUSHER.schedule(this::commitScheduled, commitRetryMillis, TimeUnit.MILLISECONDS);
+                commitRetryMillis = Math.min(commitRetryMillis * 2, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending records with one gathering write. On failure the log
+     * is truncated back to its previous length and the records stay pending.
+     */
+    private void writeUnwritten(boolean sync) throws IOException {
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        if (channel == null) {
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer[] records = unwritten.toArray(new ByteBuffer[0]);
+        long size = channel.size();
+        try {
+            while (records[records.length - 1].hasRemaining()) {
+                channel.write(records);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            for (ByteBuffer record : records) {
+                record.rewind();
+            }
+            channel.truncate(size);
+            throw e;
+        }
+        unwritten.clear();
+        UNWRITTEN.remove(this);
+        commitFailed = false;
+        commitRetryMillis = FIRST_RETRY_MILLIS;
+    }
+
+    /**
+     * Restarts a compaction that was interrupted before the rotated log could
+     * be discarded, e.g. because the process exited.
+     *
+     * @param compaction The task that folds the rotated log into the snapshot
+     */
+    void resumeCompaction(Runnable compaction) {
+        if (compacting) {
+            this.compaction = COMPACTOR.submit(compaction);
+        }
+    }
+
+    /**
+     * Schedules another attempt at a compaction that failed. The rotated log
+     * is kept, since the snapshot does not contain its records yet, and no
+     * further rotation is requested until a compaction succeeds. The delay
+     * between attempts doubles up to a minute; a journal closed in the
+     * meantime resumes the compaction when it is next opened.
+     *
+     * @param compaction The task that folds the rotated log into the snapshot
+     */
+    synchronized void retryCompaction(Runnable compaction) {
+        long delay = retryMillis;
+        retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+        FLUSHER.schedule(() -> resubmitCompaction(compaction), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void resubmitCompaction(Runnable compaction) {
+        if (!closed) {
+            this.compaction = COMPACTOR.submit(compaction);
+        }
+    }
+
+    /**
+     * Applies the rotated log onto a snapshot being compacted.
+     *
+     * @param data             The list read from the current snapshot
+     * @param snapshotSequence The sequence number of that snapshot
+     * @return The sequence number the compacted snapshot will contain
+     * @throws IOException if the rotated log cannot be read
+     */
+    long replayCompacting(List<T> data, long snapshotSequence) throws IOException {
+        return Math.max(snapshotSequence, replay(compactingFile, data, snapshotSequence, false));
+    }
+
+    /**
+     * Discards the rotated log once its records are part of the snapshot.
+     */
+    synchronized void finishCompaction() {
+        compactingFile.delete();
+        compacting = false;
+        retryMillis = FIRST_RETRY_MILLIS;
+    }
+
+    /**
+     * Gets the sequence number of the last record written or replayed.
+     *
+     * @return The last sequence number
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    private long replay(File file, List<T> data, long afterSequence, boolean repair) throws IOException {
+        if (!file.exists()) {
+            return afterSequence;
+        }
+        long last = afterSequence;
+        long goodLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] body = new byte[HEADER_BODY_SIZE + length];
+                int checksum;
+                try {
+                    checksum = in.readInt();
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte op = record.get();
+                long sequence = record.getLong();
+                int position = record.getInt();
+                if (sequence > afterSequence) {
+                    apply(data, op, position, body, HEADER_BODY_SIZE, length);
+                    last = sequence;
+                }
+                goodLength += RECORD_HEADER_SIZE + length;
+            }
+        }
+        if (repair && goodLength < file.length()) {
+            System.out.println("Discarding incomplete journal record in " + file.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(goodLength);
+            }
+        }
+        return last;
+    }
+
+    private void apply(List<T> data, byte op, int position, byte[] body, int offset, int length)
+            throws IOException {
+        switch (op) {
+            case OP_ADD:
+                data.add(deserialize(body, offset, length));
+                break;
+            case OP_REMOVE:
+                data.remove(position);
+                break;
+            case OP_REPLACE:
+                data.set(position, deserialize(body, offset, length));
+                break;
+            case OP_CLEAR:
+                data.clear();
+                break;
+            case OP_PATCH:
+                T item = data.get(position);
+                if (!(item instanceof PatchableRecord)) {
+                    throw new IOException("Journal patch for a record that cannot be patched at " + position);
+                }
+                ((PatchableRecord) item).applyPatch(new DataInputStream(new ByteArrayInputStream(body, offset, length)));
+                break;
+            default:
+                throw new IOException("Unknown journal operation: " + op);
+        }
+    }
+
+    private byte[] serialize(T item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(bytes), item);
+        return bytes.toByteArray();
+    }
+
+    private T deserialize(byte[] body, int offset, int length) throws IOException {
+        if (SerializationCodec.isSerializedStream(body, offset)) {
+            return SerializationCodec.deserialize(body, offset, length); // written before codecs existed
+        }
+        if (SerializationCodec.isSerializedStream(body, offset + 4)) {
+            return SerializationCodec.deserialize(body, offset + 4, length - 4); // length-prefixed by SerializationCodec
+        }
+        return codec.read(new DataInputStream(new ByteArrayInputStream(body, offset, length)));
+    }
+}
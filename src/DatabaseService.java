@@ -0,0 +1,96 @@
+/**
+ * The process-wide owner of the application's databases.
+ *
+ * <p>Every session shares one user database and one portfolio database, so
+ * logging in again, or serving many sessions from one process, reuses data
+ * that is already loaded instead of reading the files again. Users are small
+ * and stay fully indexed in memory. Portfolios are loaded per investor and
+ * kept in an LRU cache bounded by investor count and by the number of
+ * portfolios and assets held, whose hit and miss counters are exposed for
+ * monitoring.</p>
+ *
+ * <p>The cache limits can be changed with {@link #configure(int, long)}
+ * before the service is first used.</p>
+ */
+public final class DatabaseService {
+    /** Default number of investors whose portfolios stay loaded */
+    public static final int DEFAULT_CACHED_INVESTORS = 256;
+    /** Default number of portfolios plus assets kept loaded */
+    public static final long DEFAULT_CACHED_RECORDS = 100_000;
+
+    private static DatabaseService instance;
+    private static int cachedInvestors = DEFAULT_CACHED_INVESTORS;
+    private static long cachedRecords = DEFAULT_CACHED_RECORDS;
+
+    private final UserDatabase userDatabase;
+    private final LazyPortfolioDatabase portfolioDatabase;
+
+    private DatabaseService(UserDatabase userDatabase, LazyPortfolioDatabase portfolioDatabase) {
+        this.userDatabase = userDatabase;
+        this.portfolioDatabase = portfolioDatabase;
+    }
+
+    /**
+     * Gets the shared service, opening the databases on first use.
+     *
+     * @return The shared database service
+     */
+    public static synchronized DatabaseService getInstance() {
+        if (instance == null) {
+            instance = new DatabaseService(new ConcurrentUserDatabase(),
+                    new LazyPortfolioDatabase(LazyPortfolioDatabase.DEFAULT_DIRECTORY, BinaryCodecs.PORTFOLIO,
+                            cachedInvestors, cachedRecords));
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the portfolio cache limits. Must be called before the service is first used.
+     *
+     * @param investors The number of investors whose portfolios stay loaded
+     * @param records   The number of portfolios plus assets kept loaded
+     * @throws IllegalStateException if the service has already been created
+     */
+    public static synchronized void configure(int investors, long records) {
+        if (instance != null) {
+            throw new IllegalStateException("The database service is already running");
+        }
+        cachedInvestors = investors;
+        cachedRecords = records;
+    }
+
+    /**
+     * Gets the shared user database.
+     *
+     * @return The user database
+     */
+    public UserDatabase getUserDatabase() {
+        return userDatabase;
+    }
+
+    /**
+     * Gets the shared portfolio database.
+     *
+     * @return The portfolio database
+     */
+    public PortfolioDatabase getPortfolioDatabase() {
+        return portfolioDatabase;
+    }
+
+    /**
+     * Gets the hit, miss and eviction counters of the portfolio cache.
+     *
+     * @return The cache statistics
+     */
+    public LruCache.Stats getPortfolioCacheStats() {
+        return portfolioDatabase.getCacheStats();
+    }
+
+    /**
+     * Commits all pending journal records of both databases.
+     */
+    public void flush() {
+        userDatabase.flush();
+        portfolioDatabase.flush();
+    }
+}
@@ -0,0 +1,550 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Generates synthetic investors and portfolios for load tests, soak tests
+ * and benchmarks, written directly in the database formats.
+ *
+ * <p>Investors are numbered from 0 and named user0, user1 and so on; all
+ * share one password so tests can log in as any of them. Each investor has
+ * a number of portfolios, and each portfolio a number of assets, drawn
+ * uniformly from configurable ranges; asset types are drawn with
+ * configurable weights and purchase dates fall within the three years
+ * before a reference date.</p>
+ *
+ * <p>Generation is deterministic: the same seed and settings always produce
+ * the same data, including record ids. Every investor is generated from its
+ * own random stream derived from the seed and its number, so any investor
+ * can be regenerated on its own, e.g. by a test that needs only investor
+ * 42, and investors can be generated in parallel.</p>
+ *
+ * <p>Files are streamed: records are encoded as they are generated, so
+ * memory use does not grow with the size of the dataset.</p>
+ *
+ * <p>Usage: {@code java DatasetGenerator <directory> <investors>
+ * [portfoliosPerInvestor] [assetsPerPortfolio] [seed] [split|single]}, where
+ * counts are a number or a range such as {@code 1-5}. The directory receives
+ * {@code userDatabase.ser} and either the per-investor {@code portfolios}
+ * directory the application reads ({@code split}, the default) or a single
+ * {@code portfolioDatabase.ser}.</p>
+ */
+public class DatasetGenerator {
+    /** The password every generated investor has */
+    public static final String PASSWORD = "Passw0rd!";
+    /** Seed used unless another is given */
+    public static final long DEFAULT_SEED = 42;
+    /** Number of investors whose portfolio files are written by one task */
+    private static final int INVESTORS_PER_TASK = 256;
+    private static final int WRITER_THREADS = 16;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int PURCHASE_WINDOW_DAYS = 3 * 365;
+    /** Distinguishes the random stream of an investor's user record from that of its portfolios */
+    private static final long PORTFOLIO_STREAM = 0x5DEECE66DL;
+
+    private static final String[] FIRST_NAMES = {"Ahmed", "Mona", "Omar", "Sara", "Youssef", "Nour",
+        "Karim", "Laila", "Hassan", "Aya", "Mahmoud", "Salma", "Tarek", "Hana", "Ali", "Farida"};
+    private static final String[] LAST_NAMES = {"Hassan", "Ibrahim", "Mostafa", "Saleh", "Fawzy",
+        "Khalil", "Nasser", "Farouk", "Mansour", "Rashad", "Adel", "Samir"};
+    private static final String[][] STOCKS = {{"Apple", "AAPL", "NASDAQ"}, {"Microsoft", "MSFT", "NASDAQ"},
+        {"Amazon", "AMZN", "NASDAQ"}, {"Coca-Cola", "KO", "NYSE"}, {"Johnson & Johnson", "JNJ", "NYSE"},
+        {"Commercial International Bank", "COMI", "EGX"}, {"Saudi Aramco", "2222", "Tadawul"},
+        {"Toyota", "7203", "TSE"}};
+    private static final String[][] CRYPTO = {{"Bitcoin", "BTC", "Binance"}, {"Ethereum", "ETH", "Coinbase"},
+        {"Solana", "SOL", "Binance"}, {"Cardano", "ADA", "Kraken"}, {"Polkadot", "DOT", "Kraken"}};
+    private static final String[] KARATS = {"18K", "21K", "22K", "24K"};
+    private static final String[] LOCATIONS = {"Cairo", "Giza", "Alexandria", "Dubai", "Riyadh", "Jeddah"};
+    private static final String[] PROPERTY_TYPES = {"Apartment", "Villa", "Office", "Shop", "Land"};
+
+    private final long seed;
+    private int investors = 1000;
+    private int minPortfolios = 1;
+    private int maxPortfolios = 3;
+    private int minAssets = 1;
+    private int maxAssets = 20;
+    private final double[] typeWeights = {4, 2, 2, 1};
+    private double zakatShare = 0.5;
+    private LocalDate asOf = LocalDate.of(2025, 1, 1);
+
+    /**
+     * Constructs a generator with the default seed.
+     */
+    public DatasetGenerator() {
+        this(DEFAULT_SEED);
+    }
+
+    /**
+     * Constructs a generator.
+     *
+     * @param seed The seed all generated data is derived from
+     */
+    public DatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * The outcome of writing a dataset.
+     */
+    public static final class Summary {
+        private final int investors;
+        private final long portfolios;
+        private final long assets;
+        private final long elapsedMillis;
+
+        Summary(int investors, long portfolios, long assets, long elapsedMillis) {
+            this.investors = investors;
+            this.portfolios = portfolios;
+            this.assets = assets;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Gets the number of investors written.
+         *
+         * @return The investor count
+         */
+        public int getInvestors() {
+            return investors;
+        }
+
+        /**
+         * Gets the number of portfolios written.
+         *
+         * @return The portfolio count
+         */
+        public long getPortfolios() {
+            return portfolios;
+        }
+
+        /**
+         * Gets the number of assets written.
+         *
+         * @return The asset count
+         */
+        public long getAssets() {
+            return assets;
+        }
+
+        /**
+         * Gets the wall-clock duration of the write.
+         *
+         * @return The duration in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns a one-line summary of the write.
+         *
+         * @return The summary
+         */
+        @Override
+        public String toString() {
+            return String.format("%d investors, %d portfolios, %d assets in %.1f s",
+                    investors, portfolios, assets, elapsedMillis / 1000.0);
+        }
+    }
+
+    /**
+     * Sets the number of investors.
+     *
+     * @param count The number of investors
+     * @return This generator
+     */
+    public DatasetGenerator investors(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Investor count cannot be negative");
+        }
+        this.investors = count;
+        return this;
+    }
+
+    /**
+     * Sets the range the number of portfolios of each investor is drawn from.
+     *
+     * @param min The fewest portfolios an investor has
+     * @param max The most portfolios an investor has
+     * @return This generator
+     */
+    public DatasetGenerator portfoliosPerInvestor(int min, int max) {
+        checkRange("Portfolios per investor", min, max);
+        this.minPortfolios = min;
+        this.maxPortfolios = max;
+        return this;
+    }
+
+    /**
+     * Sets the range the number of assets of each portfolio is drawn from.
+     *
+     * @param min The fewest assets a portfolio holds
+     * @param max The most assets a portfolio holds
+     * @return This generator
+     */
+    public DatasetGenerator assetsPerPortfolio(int min, int max) {
+        checkRange("Assets per portfolio", min, max);
+        this.minAssets = min;
+        this.maxAssets = max;
+        return this;
+    }
+
+    /**
+     * Sets the relative frequency of each asset type. The default mix is
+     * 4 : 2 : 2 : 1.
+     *
+     * @param stocks     The weight of stocks
+     * @param crypto     The weight of crypto
+     * @param gold       The weight of gold
+     * @param realEstate The weight of real estate
+     * @return This generator
+     */
+    public DatasetGenerator assetMix(double stocks, double crypto, double gold, double realEstate) {
+        if (stocks < 0 || crypto < 0 || gold < 0 || realEstate < 0 || stocks + crypto + gold + realEstate <= 0) {
+            throw new IllegalArgumentException("Asset weights must be non-negative and not all zero");
+        }
+        typeWeights[0] = stocks;
+        typeWeights[1] = crypto;
+        typeWeights[2] = gold;
+        typeWeights[3] = realEstate;
+        return this;
+    }
+
+    /**
+     * Sets the share of assets Zakat applies to.
+     *
+     * @param share The share, from 0 to 1
+     * @return This generator
+     */
+    public DatasetGenerator zakatShare(double share) {
+        if (share < 0 || share > 1) {
+            throw new IllegalArgumentException("Zakat share must be between 0 and 1");
+        }
+        this.zakatShare = share;
+        return this;
+    }
+
+    /**
+     * Sets the date purchase dates are counted back from; the default is
+     * fixed so that datasets do not change from day to day.
+     *
+     * @param date The latest purchase date
+     * @return This generator
+     */
+    public DatasetGenerator asOf(LocalDate date) {
+        this.asOf = date;
+        return this;
+    }
+
+    /**
+     * Gets the number of investors.
+     *
+     * @return The investor count
+     */
+    public int getInvestors() {
+        return investors;
+    }
+
+    /**
+     * Gets the username of a generated investor.
+     *
+     * @param index The number of the investor
+     * @return The username
+     */
+    public static String userName(int index) {
+        return "user" + index;
+    }
+
+    /**
+     * Generates one investor.
+     *
+     * @param index The number of the investor, from 0 to {@link #getInvestors()} - 1
+     * @return The investor
+     */
+    public Investor investor(int index) {
+        SplittableRandom random = random(index, 0);
+        String name = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+        Investor investor = new Investor(name, userName(index) + "@example.com", userName(index), PASSWORD);
+        investor.restoreId(uuid(random));
+        return investor;
+    }
+
+    /**
+     * Generates the portfolios of one investor.
+     *
+     * @param index The number of the investor, from 0 to {@link #getInvestors()} - 1
+     * @return The investor's portfolios, not attached to a database
+     */
+    public List<Portfolio> portfolios(int index) {
+        SplittableRandom random = random(index, PORTFOLIO_STREAM);
+        String owner = userName(index);
+        int count = between(random, minPortfolios, maxPortfolios);
+        List<Portfolio> portfolios = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            int assetCount = between(random, minAssets, maxAssets);
+            List<Asset> assets = new ArrayList<>(assetCount);
+            for (int a = 0; a < assetCount; a++) {
+                assets.add(asset(random, a));
+            }
+            portfolios.add(new Portfolio(uuid(random), owner, "Portfolio " + (p + 1), assets));
+        }
+        return portfolios;
+    }
+
+    /**
+     * Writes all investors to a user database file.
+     *
+     * @param file The file to write, replacing it if it exists
+     * @return The summary of the write
+     * @throws IOException if the file cannot be written
+     */
+    public Summary writeUsers(File file) throws IOException {
+        long start = System.nanoTime();
+        SnapshotFormat.write(file, generate(this::investor), 0, BinaryCodecs.USER);
+        return new Summary(investors, 0, 0, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes all portfolios to a single portfolio database file, the format
+     * of {@link PortfolioDatabase}.
+     *
+     * @param file The file to write, replacing it if it exists
+     * @return The summary of the write
+     * @throws IOException if the file cannot be written
+     */
+    public Summary writePortfolios(File file) throws IOException {
+        long start = System.nanoTime();
+        long[] counts = new long[2];
+        Iterable<List<Portfolio>> owners = generate(index -> count(portfolios(index), counts));
+        SnapshotFormat.write(file, () -> flatten(owners.iterator()), 0, BinaryCodecs.PORTFOLIO);
+        return new Summary(investors, counts[0], counts[1], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes all portfolios to a directory with one file per investor, the
+     * format of {@link LazyPortfolioDatabase}. Investors are written in
+     * parallel, since every file is forced to disk.
+     *
+     * @param directory The directory to write, which must not hold files for these investors
+     * @return The summary of the write
+     * @throws IOException if a file cannot be written
+     */
+    public Summary writePortfolioDirectory(File directory) throws IOException {
+        long start = System.nanoTime();
+        LazyPortfolioDatabase database = new LazyPortfolioDatabase(directory.getPath(), BinaryCodecs.PORTFOLIO, 1);
+        AtomicLong portfolioCount = new AtomicLong();
+        AtomicLong assetCount = new AtomicLong();
+        ExecutorService executor = IoExecutors.newExecutor("dataset-writer", WRITER_THREADS);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int from = 0; from < investors; from += INVESTORS_PER_TASK) {
+                int first = from;
+                int last = Math.min(investors, from + INVESTORS_PER_TASK);
+                tasks.add(executor.submit(() -> {
+                    long[] counts = new long[2];
+                    List<Portfolio> portfolios = new ArrayList<>();
+                    for (int index = first; index < last; index++) {
+                        portfolios.addAll(count(portfolios(index), counts));
+                    }
+                    database.importPortfolios(portfolios);
+                    portfolioCount.addAndGet(counts[0]);
+                    assetCount.addAndGet(counts[1]);
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + directory, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot write " + directory + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdown();
+            database.close();
+        }
+        return new Summary(investors, portfolioCount.get(), assetCount.get(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Generates a dataset from the command-line arguments.
+     *
+     * @param args the directory, investor count and optional portfolio and
+     *             asset counts, seed and portfolio layout
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java DatasetGenerator <directory> <investors> [portfoliosPerInvestor]"
+                    + " [assetsPerPortfolio] [seed] [split|single]");
+            return;
+        }
+        try {
+            DatasetGenerator generator = new DatasetGenerator(args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED)
+                    .investors(Integer.parseInt(args[1]));
+            if (args.length > 2) {
+                int[] range = parseRange(args[2]);
+                generator.portfoliosPerInvestor(range[0], range[1]);
+            }
+            if (args.length > 3) {
+                int[] range = parseRange(args[3]);
+                generator.assetsPerPortfolio(range[0], range[1]);
+            }
+            boolean single = args.length > 5 && args[5].equalsIgnoreCase("single");
+            File directory = new File(args[0]);
+            File users = new File(directory, "userDatabase.ser");
+            File portfolios = new File(directory, single ? "portfolioDatabase.ser" : "portfolios");
+            if (users.exists() || portfolios.exists()) {
+                System.out.println("Error: " + directory + " already holds a database");
+                return;
+            }
+            directory.mkdirs();
+            System.out.println("Users written: " + generator.writeUsers(users));
+            System.out.println("Portfolios written: " + (single
+                    ? generator.writePortfolios(portfolios) : generator.writePortfolioDirectory(portfolios)));
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private Asset asset(SplittableRandom random, int index) {
+        boolean zakat = random.nextDouble() < zakatShare;
+        Date purchased = new Date(asOf.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli()
+                - random.nextInt(PURCHASE_WINDOW_DAYS) * MILLIS_PER_DAY);
+        String lot = " lot " + (index + 1);
+        switch (pickType(random)) {
+            case 0: {
+                String[] stock = pick(random, STOCKS);
+                return new Stocks(stock[0] + lot, between(random, 1, 500), purchased,
+                        price(random, 5, 1_000), zakat, stock[1], stock[2]);
+            }
+            case 1: {
+                String[] coin = pick(random, CRYPTO);
+                return new Crypto(coin[0] + lot, between(random, 1, 50), purchased,
+                        price(random, 0.5, 70_000), zakat, coin[1], coin[2]);
+            }
+            case 2:
+                return new Gold("Gold" + lot, between(random, 1, 10), purchased,
+                        price(random, 40, 90), zakat, pick(random, KARATS), (float) between(random, 1, 250));
+            default:
+                return new RealState(pick(random, PROPERTY_TYPES) + lot, 1, purchased,
+                        price(random, 50_000, 5_000_000), zakat, pick(random, LOCATIONS), pick(random, PROPERTY_TYPES));
+        }
+    }
+
+    private int pickType(SplittableRandom random) {
+        double total = typeWeights[0] + typeWeights[1] + typeWeights[2] + typeWeights[3];
+        double point = random.nextDouble() * total;
+        for (int type = 0; type < 3; type++) {
+            point -= typeWeights[type];
+            if (point < 0) {
+                return type;
+            }
+        }
+        return 3;
+    }
+
+    /**
+     * Derives the random stream of one investor, so that investors do not
+     * depend on the ones generated before them.
+     */
+    private SplittableRandom random(int index, long stream) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index + stream);
+    }
+
+    private <T> Iterable<T> generate(IntFunction<T> generator) {
+        return () -> new Iterator<T>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < investors;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return generator.apply(next++);
+            }
+        };
+    }
+
+    private static Iterator<Portfolio> flatten(Iterator<List<Portfolio>> owners) {
+        return new Iterator<Portfolio>() {
+            private Iterator<Portfolio> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && owners.hasNext()) {
+                    current = owners.next().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Portfolio next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private static List<Portfolio> count(List<Portfolio> portfolios, long[] counts) {
+        counts[0] += portfolios.size();
+        for (Portfolio portfolio : portfolios) {
+            counts[1] += portfolio.getAssets().size();
+        }
+        return portfolios;
+    }
+
+    private static String uuid(SplittableRandom random) {
+        long most = (random.nextLong() & ~0xF000L) | 0x4000L; // version 4
+        long least = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48); // IETF variant
+        return new UUID(most, least).toString();
+    }
+
+    private static int between(SplittableRandom random, int min, int max) {
+        return min == max ? min : random.nextInt(min, max + 1);
+    }
+
+    private static float price(SplittableRandom random, double min, double max) {
+        return Math.round(random.nextDouble(min, max) * 100) / 100f;
+    }
+
+    private static <T> T pick(SplittableRandom random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static void checkRange(String what, int min, int max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException(what + " must be a range of non-negative counts");
+        }
+    }
+
+    private static int[] parseRange(String range) {
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+            int count = Integer.parseInt(range.trim());
+            return new int[] {count, count};
+        }
+        return new int[] {Integer.parseInt(range.substring(0, dash).trim()),
+            Integer.parseInt(range.substring(dash + 1).trim())};
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Controls when journaled mutations of a {@link Database} reach the disk.
+ */
+public enum Durability {
+    /** Every mutation is written and fsync'd before the call returns */
+    PER_OP,
+    /**
+     * Mutations are collected and written together with a single fsync once
+     * the group-commit window elapses or enough mutations are pending
+     */
+    BATCHED,
+    /**
+     * Mutations are collected and handed to the operating system in the
+     * background without waiting for an fsync
+     */
+    ASYNC
+}
@@ -10,12 +10,18 @@ import java.util.Scanner;
  * compliance with the asset management system requirements.</p>
  */
 public class Gold extends Asset {
+    private static final long serialVersionUID = 2470337217770569291L;
+    /** Price symbol of gold, quoted per gram of pure (24 karat) gold */
+    public static final String PRICE_SYMBOL = "XAU";
     /** The purity of the gold in karats (e.g., "24K", "18K") */
     private String karat;
     
     /** The weight of the gold in grams */
     private float weightInGrams;
 
+    /** The karat as a fraction of pure gold, parsed on first use; 0 until then */
+    private transient double purity;
+
     /**
      * Constructs a new Gold asset with all required properties.
      *
@@ -50,6 +56,30 @@ public class Gold extends Asset {
      */
     public void setKarat(String karat) {
         this.karat = karat;
+        this.purity = 0;
+    }
+
+    /**
+     * Gets the fraction of pure gold, parsing the karat only once.
+     *
+     * @return The purity between 0 and 1
+     */
+    public double getPurity() {
+        double parsed = purity;
+        if (parsed == 0) {
+            parsed = purity(karat);
+            purity = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * Gets the weight of pure gold held, across all pieces.
+     *
+     * @return The pure-gold-equivalent weight in grams
+     */
+    public double getPureGoldGrams() {
+        return weightInGrams * getPurity() * getQuantity();
     }
 
     /**
@@ -70,6 +100,75 @@ public class Gold extends Asset {
         this.weightInGrams = weightInGrams;
     }
 
+    /**
+     * Gets the concrete type of this asset.
+     *
+     * @return {@link AssetType#GOLD}
+     */
+    @Override
+    public AssetType getType() {
+        return AssetType.GOLD;
+    }
+
+    /**
+     * Gets the symbol gold is quoted under.
+     *
+     * @return {@link #PRICE_SYMBOL}
+     */
+    @Override
+    public String getPriceSymbol() {
+        return PRICE_SYMBOL;
+    }
+
+    /**
+     * Values the gold at a price per gram of pure gold, adjusted for its karat.
+     *
+     * @param unitPrice The current price of one gram of pure gold
+     * @return The market value of all pieces
+     */
+    @Override
+    public double getMarketValue(double unitPrice) {
+        return unitPrice * getPureGoldGrams();
+    }
+
+    /**
+     * Values gold for Zakat by the pure gold it contains when the gold price
+     * is known, and at cost otherwise.
+     *
+     * @param goldPricePerGram The price of one gram of pure gold, or 0 if unknown
+     * @return The zakatable value, or 0 if Zakat does not apply to this gold
+     */
+    @Override
+    public double getZakatableValue(double goldPricePerGram) {
+        if (!Boolean.TRUE.equals(isZakatApplicable())) {
+            return 0.0;
+        }
+        if (goldPricePerGram <= 0) {
+            return super.getZakatableValue(goldPricePerGram);
+        }
+        return getPureGoldGrams() * goldPricePerGram;
+    }
+
+    /**
+     * Converts a karat value such as "18" or "21K" into the fraction of pure gold.
+     * Values that cannot be read are treated as pure gold.
+     *
+     * @param karat The karat text
+     * @return The purity between 0 and 1
+     */
+    static double purity(String karat) {
+        if (karat == null) {
+            return 1.0;
+        }
+        String digits = karat.trim().toUpperCase().replace("KARAT", "").replace("K", "").trim();
+        try {
+            double value = Double.parseDouble(digits);
+            return value > 0 && value < 24 ? value / 24.0 : 1.0;
+        } catch (NumberFormatException e) {
+            return 1.0;
+        }
+    }
+
     /**
      * Implements the abstract method to edit gold-specific details.
      * Prompts the user for new karat and weight values.
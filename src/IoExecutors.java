@@ -0,0 +1,69 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors for tasks that spend most of their time waiting on files
+ * or sockets.
+ *
+ * <p>On runtimes with virtual threads (Java 21 and later) every task runs on
+ * its own virtual thread, so blocked tasks cost no platform thread. The code
+ * base compiles for Java 17, so the virtual thread factory is looked up
+ * reflectively and tried once; on older runtimes, and on Java 19 and 20
+ * without preview features enabled, a fixed pool of daemon threads is used
+ * instead. Either way callers bound how many tasks they submit at once.</p>
+ */
+public final class IoExecutors {
+    private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    private IoExecutors() {
+    }
+
+    /**
+     * Creates an executor for I/O-bound tasks.
+     *
+     * @param name            The name prefix of the pool's threads when virtual threads are unavailable
+     * @param platformThreads The number of pool threads when virtual threads are unavailable
+     * @return A virtual-thread-per-task executor, or a fixed pool of daemon threads
+     */
+    public static ExecutorService newExecutor(String name, int platformThreads) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // fall through to a platform pool
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether executors from this class run tasks on virtual threads.
+     *
+     * @return true on runtimes with virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Gets the virtual thread executor factory if it exists and works. On
+     * Java 19 and 20 the method exists but fails unless preview features are
+     * enabled.
+     */
+    private static Method findVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ((ExecutorService) factory.invoke(null)).shutdown();
+            return factory;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the small subset of JSON the application exchanges:
+ * flat objects whose values are strings, numbers, booleans or null, as in
+ * JSON Lines imports and API request bodies.
+ */
+public final class Json {
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object into its fields. Strings are unescaped,
+     * numbers and booleans are kept as written and null fields are left out.
+     *
+     * @param text The JSON text of one object
+     * @return The object's fields by name
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpace(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = parseString(text, pos);
+                expect(text, pos, ':');
+                char c = peek(text, pos);
+                if (c == '"') {
+                    fields.put(key, parseString(text, pos));
+                } else if (c == '{' || c == '[') {
+                    throw new IllegalArgumentException("Nested value for " + key + " is not supported");
+                } else {
+                    int start = pos[0];
+                    while (pos[0] < text.length() && ",} \t\r\n".indexOf(text.charAt(pos[0])) < 0) {
+                        pos[0]++;
+                    }
+                    String literal = text.substring(start, pos[0]);
+                    if (literal.isEmpty()) {
+                        throw new IllegalArgumentException("Missing value for " + key);
+                    }
+                    if (!literal.equals("null")) {
+                        fields.put(key, literal);
+                    }
+                }
+                if (peek(text, pos) == ',') {
+                    pos[0]++;
+                } else {
+                    expect(text, pos, '}');
+                    break;
+                }
+            }
+        }
+        if (skipSpace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after object");
+        }
+        return fields;
+    }
+
+    private static String parseString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder value = new StringBuilder();
+        int i = pos[0];
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                break;
+            }
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("Invalid escape in string");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid escape in string");
+                    }
+                    i += 4;
+                    break;
+                default: value.append(escaped);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static void expect(String text, int[] pos, char expected) {
+        if (peek(text, pos) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at column " + (pos[0] + 1));
+        }
+        pos[0]++;
+    }
+
+    /**
+     * Skips whitespace and returns the next character, or 0 at the end of the text.
+     */
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipSpace(text, pos[0]);
+        return pos[0] < text.length() ? text.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     *
+     * @param out   The text to append to
+     * @param value The string to quote; null is written as null
+     * @return The text appended to
+     */
+    public static StringBuilder quote(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+}
@@ -0,0 +1,567 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A PortfolioDatabase that loads each investor's portfolios only when they
+ * are first needed.
+ *
+ * <p>Portfolios are stored in a directory with one small journaled database
+ * file per owner. Nothing is read at startup; the first access to an
+ * investor opens only that investor's file, so starting a session costs the
+ * same however many investors the database holds. Recently used investors
+ * stay loaded in an LRU cache bounded by investor count and by the number of
+ * portfolios and assets held; evicted investors are closed. An investor is
+ * counted once when loaded, and the count adjusted by the size of each change.
+ * Journals are created by an investor's first change, so reading investors
+ * leaves no log files behind.</p>
+ *
+ * <p>Loaded portfolios are attached to this database rather than to the
+ * per-owner file, and are matched by record id, so a portfolio whose owner
+ * was evicted can still be edited: the owner's file is reopened and the
+ * stored record replaced.</p>
+ *
+ * <p>The database can be shared by several sessions. Each owner is guarded
+ * by one of a fixed set of locks, which serializes loading, changes and
+ * closing of that owner's file; different owners proceed in parallel.</p>
+ *
+ * <p>File names are the URL-encoded owner name with upper-case letters also
+ * escaped, so owners differing only in case get distinct files on
+ * case-insensitive filesystems. Directories written with plain encoded names
+ * are renamed once when opened.</p>
+ */
+public class LazyPortfolioDatabase extends PortfolioDatabase {
+    private static final long serialVersionUID = 1L;
+    /** Default number of investors kept loaded */
+    public static final int DEFAULT_CACHED_INVESTORS = 64;
+    /** Directory the application stores portfolios in */
+    public static final String DEFAULT_DIRECTORY = "src/database/portfolios";
+    /** Name of the single-file database, next to the directory, that is split into it */
+    private static final String LEGACY_FILE_NAME = "portfolioDatabase.ser";
+    private static final String SHARD_SUFFIX = ".ser";
+    /** Suffixes of the journal and temporary files kept next to an owner's file */
+    private static final String[] COMPANION_SUFFIXES = { ".log.compacting", ".log", ".tmp" };
+    /** Marker in the directory recording that its file names escape upper-case letters */
+    private static final String NAMES_MARKER = ".escaped-names";
+    /** Suffix of the marker, next to the directory, present while the legacy file is being split */
+    private static final String SPLIT_MARKER_SUFFIX = ".splitting";
+    private static final int STRIPES = 64;
+
+    private final transient File directory;
+    private final transient LruCache<String, PortfolioDatabase> shards;
+    /** Evicted owners whose files are closed once their lock is free */
+    private final transient Map<String, PortfolioDatabase> pendingClose = new ConcurrentHashMap<>();
+    private final transient ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    /**
+     * Constructs a lazy database in the default directory.
+     */
+    public LazyPortfolioDatabase() {
+        this(DEFAULT_DIRECTORY, BinaryCodecs.PORTFOLIO, DEFAULT_CACHED_INVESTORS);
+    }
+
+    /**
+     * Constructs a lazy database stored in the given directory. When the
+     * directory does not exist yet and a single-file database named
+     * {@code portfolioDatabase.ser} lies next to it, its portfolios are split
+     * into per-owner files; the single file itself is left in place. A split
+     * that was interrupted is redone on the next start.
+     *
+     * @param directory       The directory holding one file per investor
+     * @param codec           The codec used to encode portfolios on disk
+     * @param cachedInvestors The number of investors whose portfolios stay loaded
+     */
+    public LazyPortfolioDatabase(String directory, RecordCodec<Portfolio> codec, int cachedInvestors) {
+        this(directory, codec, cachedInvestors, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a lazy database stored in the given directory whose cache is
+     * also bounded by the number of records it holds.
+     *
+     * @param directory       The directory holding one file per investor
+     * @param codec           The codec used to encode portfolios on disk
+     * @param cachedInvestors The number of investors whose portfolios stay loaded
+     * @param cachedRecords   The number of portfolios plus assets kept loaded;
+     *                        the most recently used investor is always kept
+     */
+    public LazyPortfolioDatabase(String directory, RecordCodec<Portfolio> codec, int cachedInvestors,
+            long cachedRecords) {
+        super(directory, codec, false);
+        this.directory = new File(directory);
+        this.shards = new LruCache<>(cachedInvestors, cachedRecords, LazyPortfolioDatabase::countRecords,
+                pendingClose::put);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        // The split marker is created before the directory, so a split interrupted at any point resumes
+        File splitMarker = new File(directory + SPLIT_MARKER_SUFFIX);
+        File legacyFile = new File(this.directory.getAbsoluteFile().getParentFile(), LEGACY_FILE_NAME);
+        boolean split = legacyFile.exists() && (!this.directory.isDirectory() || splitMarker.exists());
+        if (split) {
+            createMarker(splitMarker);
+        }
+        File namesMarker = new File(this.directory, NAMES_MARKER);
+        if (!this.directory.isDirectory()) {
+            if (!this.directory.mkdirs()) {
+                throw new IllegalStateException("Cannot create portfolio directory " + directory);
+            }
+            createMarker(namesMarker);
+        } else if (!namesMarker.exists()) {
+            renameShardFiles();
+            createMarker(namesMarker);
+        }
+        if (split) {
+            System.out.println("Splitting " + legacyFile + " into per-investor files...");
+            PortfolioDatabase legacy = new PortfolioDatabase(legacyFile.getPath(), codec);
+            boolean written = writeOwners(legacy.getAllPortfolios());
+            legacy.close();
+            if (!written) {
+                System.out.println("Error: Splitting " + legacyFile + " is incomplete and will be redone on the next start");
+            } else if (!splitMarker.delete()) {
+                throw new IllegalStateException("Cannot delete " + splitMarker);
+            }
+        }
+    }
+
+    /**
+     * Writes portfolios into per-owner files, one snapshot write per owner.
+     * Owners must not have a file yet.
+     *
+     * @param portfolios The portfolios to import
+     */
+    public void importPortfolios(Collection<Portfolio> portfolios) {
+        writeOwners(portfolios);
+    }
+
+    /**
+     * Writes portfolios into per-owner files, reporting owners that failed.
+     *
+     * @param portfolios The portfolios to write
+     * @return true if every owner's file was written
+     */
+    private boolean writeOwners(Collection<Portfolio> portfolios) {
+        Map<String, List<Portfolio>> byOwner = new LinkedHashMap<>();
+        for (Portfolio port : portfolios) {
+            byOwner.computeIfAbsent(port.getOwnerUserName(), k -> new ArrayList<>()).add(port);
+        }
+        boolean written = true;
+        for (Map.Entry<String, List<Portfolio>> owner : byOwner.entrySet()) {
+            try {
+                SnapshotFormat.write(shardFile(owner.getKey()), owner.getValue(), 0, getCodec());
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                written = false;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Renames files written with plain URL-encoded owner names to the
+     * case-safe names. Each file is renamed on its own, so an interrupted
+     * pass is completed by running it again.
+     */
+    private void renameShardFiles() {
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            String companion = "";
+            for (String suffix : COMPANION_SUFFIXES) {
+                if (name.endsWith(SHARD_SUFFIX + suffix)) {
+                    companion = suffix;
+                    break;
+                }
+            }
+            String base = name.substring(0, name.length() - companion.length());
+            if (!base.endsWith(SHARD_SUFFIX)) {
+                continue;
+            }
+            String target = shardFile(ownerOf(base)).getName() + companion;
+            if (!target.equals(name) && !new File(directory, name).renameTo(new File(directory, target))) {
+                throw new IllegalStateException("Cannot rename " + name + " to " + target);
+            }
+        }
+    }
+
+    private static void createMarker(File marker) {
+        try {
+            marker.createNewFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create " + marker + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the hit, miss and eviction counters of the investor cache.
+     *
+     * @return The cache statistics
+     */
+    public LruCache.Stats getCacheStats() {
+        return shards.getStats();
+    }
+
+    @Override
+    public boolean addData(Portfolio newPort) {
+        return withOwner(newPort.getOwnerUserName(), true, shard -> {
+            if (shard.addData(newPort)) {
+                newPort.attachDatabase(this);
+                shards.adjustWeight(newPort.getOwnerUserName(), weigh(newPort));
+                return true;
+            }
+            return false;
+        }, false);
+    }
+
+    @Override
+    public boolean deleteData(Portfolio port) {
+        return withOwner(port.getOwnerUserName(), false, shard -> {
+            long stored = weigh(shard.getStored(port.getId()));
+            if (shard.deleteData(port)) {
+                shards.adjustWeight(port.getOwnerUserName(), -stored);
+                return true;
+            }
+            return false;
+        }, false);
+    }
+
+    /**
+     * Edits a portfolio in place in its owner's file. A portfolio moved to
+     * another owner is removed from the old owner's file and appended to the
+     * new owner's.
+     *
+     * @param oldData The portfolio to be replaced
+     * @param newData The new version of the portfolio
+     * @return true if the portfolio was replaced, false if the old portfolio wasn't found
+     */
+    @Override
+    public boolean editData(Portfolio oldData, Portfolio newData) {
+        if (!oldData.getOwnerUserName().equals(newData.getOwnerUserName())) {
+            return deleteData(oldData) && addData(newData);
+        }
+        return withOwner(oldData.getOwnerUserName(), false, shard -> {
+            long stored = weigh(shard.getStored(oldData.getId()));
+            boolean edited = shard.editData(oldData, newData);
+            newData.attachDatabase(this);
+            if (edited) {
+                shards.adjustWeight(oldData.getOwnerUserName(), weigh(newData) - stored);
+            }
+            return edited;
+        }, false);
+    }
+
+    /**
+     * Persists a change to a portfolio's assets in its owner's file. The
+     * owner's cache weight changes by the number of assets the patch adds
+     * or removes; only a change that could not be encoded makes the owner's
+     * portfolios be counted again.
+     *
+     * @param port  The portfolio whose assets changed
+     * @param patch The change, or null if it could not be encoded
+     * @return true if the change was persisted, false if the portfolio wasn't found
+     */
+    @Override
+    boolean editAssets(Portfolio port, byte[] patch) {
+        return withOwner(port.getOwnerUserName(), false, shard -> {
+            Portfolio stored = shard.getStored(port.getId());
+            long before = weigh(stored);
+            boolean edited = shard.editAssets(port, patch);
+            port.attachDatabase(this);
+            if (edited && stored != port) {
+                shards.adjustWeight(port.getOwnerUserName(), weigh(port) - before);
+            } else if (edited && patch != null) {
+                shards.adjustWeight(port.getOwnerUserName(), Portfolio.assetCountChange(patch));
+            } else if (edited) {
+                shards.put(port.getOwnerUserName(), shard, countRecords(shard));
+            }
+            return edited;
+        }, false);
+    }
+
+    /**
+     * Runs a change to one owner's portfolios while holding that owner's lock.
+     *
+     * @param <R>           The result type of the change
+     * @param ownerUserName The owner whose portfolios are changed
+     * @param change        The change to run
+     * @return The result of the change
+     */
+    @Override
+    public <R> R runForOwner(String ownerUserName, Supplier<R> change) {
+        ReentrantLock lock = stripe(ownerUserName);
+        lock.lock();
+        try {
+            return change.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Portfolio> getUserPortfolios(Investor owner) {
+        return withOwner(owner.getUserName(), false, shard -> shard.getUserPortfolios(owner),
+                new ArrayList<>());
+    }
+
+    @Override
+    public List<Portfolio> getUserPortfolios(Investor owner, int offset, int limit) {
+        return withOwner(owner.getUserName(), false, shard -> shard.getUserPortfolios(owner, offset, limit),
+                new ArrayList<>());
+    }
+
+    /**
+     * Streams a copy of an investor's portfolios, so the stream stays valid
+     * while other sessions modify the database.
+     *
+     * @param owner The investor whose portfolios to stream
+     * @return A stream of the portfolios owned by the investor
+     */
+    @Override
+    public Stream<Portfolio> streamUserPortfolios(Investor owner) {
+        return getUserPortfolios(owner).stream();
+    }
+
+    /**
+     * Retrieves every portfolio in the database by reading every investor's
+     * file, for bulk processing. Investors that are not cached are read
+     * without being loaded into the cache. Files are read in parallel.
+     *
+     * @return An unmodifiable list of all portfolios
+     */
+    @Override
+    public List<Portfolio> getAllPortfolios() {
+        String[] names = directory.list();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.stream(names)
+                .parallel()
+                .filter(name -> name.endsWith(SHARD_SUFFIX))
+                .flatMap(name -> readOwner(ownerOf(name), new File(directory, name)).stream())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Sets the durability of every loaded investor's file and of files loaded later.
+     *
+     * @param durability The durability mode
+     */
+    @Override
+    public void setDurability(Durability durability) {
+        super.setDurability(durability);
+        for (Map.Entry<String, PortfolioDatabase> shard : shards.snapshot().entrySet()) {
+            runForOwner(shard.getKey(), () -> {
+                shard.getValue().setDurability(durability);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Commits pending journal records of every loaded investor.
+     */
+    @Override
+    public void flush() {
+        for (Map.Entry<String, PortfolioDatabase> shard : shards.snapshot().entrySet()) {
+            runForOwner(shard.getKey(), () -> {
+                shard.getValue().flush();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Closes every loaded investor's file.
+     */
+    @Override
+    public void close() {
+        for (Map.Entry<String, PortfolioDatabase> shard : shards.snapshot().entrySet()) {
+            runForOwner(shard.getKey(), () -> {
+                if (shards.remove(shard.getKey()) != null) {
+                    shard.getValue().close();
+                }
+                return null;
+            });
+        }
+        closeEvicted();
+    }
+
+    /**
+     * Runs an action on one owner's database while holding the owner's lock,
+     * loading the owner's file first if needed.
+     *
+     * @param <R>           The result type
+     * @param ownerUserName The owner's username
+     * @param create        true to create the owner's file if it does not exist
+     * @param action        The action to run on the owner's database
+     * @param absent        The result if the owner has no file and create is false
+     * @return The result of the action, or {@code absent}
+     */
+    private <R> R withOwner(String ownerUserName, boolean create, Function<PortfolioDatabase, R> action,
+            R absent) {
+        ReentrantLock lock = stripe(ownerUserName);
+        lock.lock();
+        try {
+            PortfolioDatabase shard = shard(ownerUserName, create);
+            if (shard == null) {
+                return absent;
+            }
+            return action.apply(shard);
+        } finally {
+            lock.unlock();
+            closeEvicted();
+        }
+    }
+
+    /**
+     * Gets the loaded database of one owner, loading it on first access.
+     * The caller holds the owner's lock.
+     *
+     * @param ownerUserName The owner's username
+     * @param create        true to create the owner's file if it does not exist
+     * @return The owner's database, or null if it does not exist and create is false
+     */
+    private PortfolioDatabase shard(String ownerUserName, boolean create) {
+        PortfolioDatabase shard = shards.get(ownerUserName);
+        if (shard != null) {
+            return shard;
+        }
+        shard = pendingClose.remove(ownerUserName); // evicted but still open: reuse it
+        if (shard == null) {
+            File file = shardFile(ownerUserName);
+            if (!file.exists()) {
+                if (!create) {
+                    return null;
+                }
+                try {
+                    SnapshotFormat.write(file, Collections.emptyList(), 0, getCodec());
+                } catch (IOException e) {
+                    System.out.println("Error: " + e.getMessage());
+                }
+            }
+            shard = new PortfolioDatabase(file.getPath(), getCodec());
+            shard.setDurability(getDurability());
+            for (Portfolio port : shard.getAllPortfolios()) {
+                port.attachDatabase(this);
+            }
+        }
+        shards.put(ownerUserName, shard, countRecords(shard));
+        return shard;
+    }
+
+    /**
+     * Reads one owner's portfolios under the owner's lock, from the loaded
+     * database if there is one, otherwise directly from the files.
+     */
+    private List<Portfolio> readOwner(String ownerUserName, File file) {
+        ReentrantLock lock = stripe(ownerUserName);
+        lock.lock();
+        try {
+            PortfolioDatabase loaded = shards.snapshot().get(ownerUserName);
+            if (loaded == null) {
+                loaded = pendingClose.get(ownerUserName);
+            }
+            if (loaded != null) {
+                return new ArrayList<>(loaded.getAllPortfolios());
+            }
+            SnapshotFormat.Snapshot<Portfolio> snapshot = SnapshotFormat.read(file, getCodec());
+            List<Portfolio> ports = snapshot.getData();
+            DatabaseJournal.replayReadOnly(file.getPath(), ports, snapshot.getSequence(), getCodec());
+            for (Portfolio port : ports) {
+                port.attachDatabase(this);
+            }
+            return ports;
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return Collections.emptyList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes evicted owners whose lock is free. Owners locked by another
+     * session stay pending and are closed by a later call, or reused if the
+     * owner is needed again first.
+     */
+    private void closeEvicted() {
+        for (Map.Entry<String, PortfolioDatabase> evicted : pendingClose.entrySet()) {
+            ReentrantLock lock = stripe(evicted.getKey());
+            if (lock.tryLock()) {
+                try {
+                    if (pendingClose.remove(evicted.getKey(), evicted.getValue())) {
+                        evicted.getValue().close();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the portfolios and assets of one owner, the owner's weight in
+     * the cache. Called when the owner is loaded, outside the cache's lock.
+     */
+    private static long countRecords(PortfolioDatabase shard) {
+        long records = 0;
+        for (Portfolio port : shard.getAllPortfolios()) {
+            records += weigh(port);
+        }
+        return records;
+    }
+
+    private static long weigh(Portfolio port) {
+        return port == null ? 0 : 1 + port.getAssets().size();
+    }
+
+    private ReentrantLock stripe(String ownerUserName) {
+        int hash = ownerUserName == null ? 0 : ownerUserName.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Gets an owner's file. Upper-case letters are escaped like other
+     * characters, so letters outside escapes are always lower case and no
+     * two owners' names differ only in case.
+     */
+    private File shardFile(String ownerUserName) {
+        String encoded = URLEncoder.encode(ownerUserName == null ? "" : ownerUserName, StandardCharsets.UTF_8);
+        StringBuilder name = new StringBuilder(encoded.length() + SHARD_SUFFIX.length());
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '%') {
+                name.append(encoded, i, i + 3); // already escaped with upper-case hex digits
+                i += 2;
+            } else if (c >= 'A' && c <= 'Z') {
+                name.append('%').append(Integer.toHexString(c).toUpperCase(Locale.ROOT));
+            } else {
+                name.append(c);
+            }
+        }
+        return new File(directory, name.append(SHARD_SUFFIX).toString());
+    }
+
+    private static String ownerOf(String fileName) {
+        return URLDecoder.decode(fileName.substring(0, fileName.length() - SHARD_SUFFIX.length()),
+                StandardCharsets.UTF_8);
+    }
+}
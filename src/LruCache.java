@@ -0,0 +1,317 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded map that evicts its least recently used entries once it holds
+ * more entries, or more total weight, than its limits allow. The weight of
+ * an entry is measured by a weigher when it is put, or given by the caller,
+ * and can be adjusted as the value changes, so a cache can be bounded by
+ * the size of its values rather than just their number. An
+ * optional listener is told about every evicted entry, e.g. to release
+ * resources the value holds.
+ *
+ * <p>All methods are synchronized, so one cache can be shared by several
+ * threads. Weighers run before the cache is locked, but the eviction
+ * listener runs while it is locked. Hits,
+ * misses and evictions are counted for monitoring.</p>
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of cached values
+ */
+public class LruCache<K, V> {
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final BiConsumer<K, V> onEvict;
+    private final LinkedHashMap<K, Weighted<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache holding at most the given number of entries.
+     *
+     * @param capacity The maximum number of entries, at least 1
+     * @param onEvict  Called with each evicted entry, or null
+     */
+    public LruCache(int capacity, BiConsumer<K, V> onEvict) {
+        this(capacity, Long.MAX_VALUE, value -> 1, onEvict);
+    }
+
+    /**
+     * Creates a cache bounded by both entry count and total weight. The most
+     * recently used entry is always kept, even if it alone exceeds the weight limit.
+     *
+     * @param maxEntries The maximum number of entries, at least 1
+     * @param maxWeight  The maximum total weight of all entries
+     * @param weigher    Measures the weight of a value when it is put
+     * @param onEvict    Called with each evicted entry, or null
+     */
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<? super V> weigher,
+            BiConsumer<K, V> onEvict) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * A snapshot of a cache's counters.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        /**
+         * Gets the number of lookups that found a cached value.
+         *
+         * @return The hit count
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Gets the number of lookups that found nothing.
+         *
+         * @return The miss count
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Gets the number of entries evicted to stay within the limits.
+         *
+         * @return The eviction count
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Gets the number of cached entries.
+         *
+         * @return The entry count
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the total weight of the cached entries.
+         *
+         * @return The total weight
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * Gets the share of lookups that were hits.
+         *
+         * @return The hit ratio between 0 and 1, or 0 if there were no lookups
+         */
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * Returns a one-line summary of the counters.
+         *
+         * @return The summary
+         */
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", size=" + size + ", weight=" + weight;
+        }
+    }
+
+    private static final class Weighted<V> {
+        final V value;
+        long weight;
+
+        Weighted(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Gets a cached value and marks it as most recently used.
+     *
+     * @param key The key to look up
+     * @return The cached value, or null if it is not cached
+     */
+    public synchronized V get(K key) {
+        Weighted<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Caches a value as the most recently used entry, evicting the least
+     * recently used ones while the cache is over its limits. Putting a key
+     * again re-measures the weight of its value. The value is weighed
+     * before the cache is locked.
+     *
+     * @param key   The key to cache under
+     * @param value The value to cache
+     */
+    public void put(K key, V value) {
+        put(key, value, weigher.applyAsLong(value));
+    }
+
+    /**
+     * Caches a value whose weight the caller has already measured, as the
+     * most recently used entry, evicting the least recently used ones while
+     * the cache is over its limits.
+     *
+     * @param key    The key to cache under
+     * @param value  The value to cache
+     * @param weight The weight of the value
+     */
+    public synchronized void put(K key, V value, long weight) {
+        Weighted<V> added = new Weighted<>(value, weight);
+        Weighted<V> previous = entries.put(key, added);
+        if (previous != null) {
+            this.weight -= previous.weight;
+        }
+        this.weight += weight;
+        evictOverLimits();
+    }
+
+    /**
+     * Changes the weight of a cached value by the size of a change made to
+     * it, marking it as most recently used and evicting other entries if the
+     * cache is now over its limits.
+     *
+     * @param key   The key whose value changed
+     * @param delta The weight added to the value, negative if it shrank
+     */
+    public synchronized void adjustWeight(K key, long delta) {
+        Weighted<V> entry = entries.get(key);
+        if (entry != null && delta != 0) {
+            entry.weight += delta;
+            weight += delta;
+            evictOverLimits();
+        }
+    }
+
+    private void evictOverLimits() {
+        Iterator<Map.Entry<K, Weighted<V>>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && entries.size() > 1) {
+            Map.Entry<K, Weighted<V>> entry = eldest.next();
+            eldest.remove();
+            weight -= entry.getValue().weight;
+            evictions++;
+            if (onEvict != null) {
+                onEvict.accept(entry.getKey(), entry.getValue().value);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry without notifying the eviction listener.
+     *
+     * @param key The key to remove
+     * @return The removed value, or null if it was not cached
+     */
+    public synchronized V remove(K key) {
+        Weighted<V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        weight -= entry.weight;
+        return entry.value;
+    }
+
+    /**
+     * Gets the cached values, least recently used first.
+     *
+     * @return A copy of the cached values
+     */
+    public synchronized List<V> values() {
+        List<V> values = new ArrayList<>(entries.size());
+        for (Weighted<V> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Copies the cached entries without counting lookups or changing their
+     * recency, for scans over the whole cache.
+     *
+     * @return A copy of the cached entries, least recently used first
+     */
+    public synchronized Map<K, V> snapshot() {
+        Map<K, V> copy = new LinkedHashMap<>();
+        for (Map.Entry<K, Weighted<V>> entry : entries.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().value);
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return The entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the maximum number of entries.
+     *
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return maxEntries;
+    }
+
+    /**
+     * Gets the maximum total weight of the cached entries.
+     *
+     * @return The weight limit
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Gets a snapshot of the cache's counters.
+     *
+     * @return The current statistics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), weight);
+    }
+}
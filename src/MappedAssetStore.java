@@ -0,0 +1,767 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * A column-oriented asset store kept in a memory-mapped file.
+ * Each holding is a row of fixed-width columns (purchase time, quantity,
+ * purchase price, gold weight, owner, name, two type-specific attributes,
+ * type tag and Zakat flag), with all strings interned in a dictionary
+ * stored next to the file. Scans read the columns directly and never
+ * create per-asset objects; {@link AssetView} exposes a row through the
+ * regular {@link Asset} getters when an object is needed.
+ *
+ * <p>The file holds at most {@code Integer.MAX_VALUE} bytes, about 55 million rows.</p>
+ */
+public class MappedAssetStore implements Iterable<Asset>, Closeable {
+    private static final int MAGIC = 0x49574153; // "IWAS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    /** Bytes used by one row across all columns */
+    private static final int ROW_SIZE = 8 + 7 * 4 + 2;
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte NULL = 2;
+    private static final int NO_STRING = -1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final File file;
+    private final File dictionaryFile;
+    /** Set for stores whose files are deleted when they are closed */
+    private boolean temporary;
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    /** Gold purity of each dictionary string, parsed on first use; 0 until then */
+    private double[] purities = new double[0];
+    private FileOutputStream dictionaryFileOut;
+    private DataOutputStream dictionaryOut;
+    /** Set when strings were interned that have not been handed to the file system yet */
+    private boolean dictionaryDirty;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    // Column start offsets, derived from the capacity
+    private int epochColumn;
+    private int quantityColumn;
+    private int priceColumn;
+    private int weightColumn;
+    private int ownerColumn;
+    private int nameColumn;
+    private int attributeColumn;
+    private int secondAttributeColumn;
+    private int typeColumn;
+    private int zakatColumn;
+
+    /**
+     * Opens the store in the given file, creating it if it doesn't exist.
+     *
+     * @param fileName        The file holding the columns; the string dictionary
+     *                        is kept in the same file name with a ".dict" suffix
+     * @param initialCapacity The number of rows to reserve for a new file
+     * @throws IOException if the files cannot be opened or are not asset stores
+     */
+    public MappedAssetStore(String fileName, int initialCapacity) throws IOException {
+        this.file = new File(fileName);
+        this.dictionaryFile = new File(fileName + ".dict");
+        if (file.exists()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(fileName + " is not an asset store");
+            }
+            capacity = buffer.getInt(8);
+            size = buffer.getInt(12);
+            layoutColumns(capacity);
+            loadDictionary();
+        } else {
+            map(file, Math.max(initialCapacity, 16));
+            size = 0;
+            buffer.putInt(12, 0);
+            dictionaryFile.delete();
+        }
+        dictionaryFileOut = new FileOutputStream(dictionaryFile, true);
+        dictionaryOut = new DataOutputStream(new BufferedOutputStream(dictionaryFileOut));
+    }
+
+    /**
+     * Builds a new store holding every asset of the given portfolios.
+     *
+     * @param fileName   The file to create; an existing file is replaced
+     * @param portfolios The portfolios whose assets to copy
+     * @return The populated store
+     * @throws IOException if the store cannot be written
+     */
+    public static MappedAssetStore fromPortfolios(String fileName, Collection<Portfolio> portfolios)
+            throws IOException {
+        new File(fileName).delete();
+        int count = 0;
+        for (Portfolio portfolio : portfolios) {
+            count += portfolio.getAssets().size();
+        }
+        MappedAssetStore store = new MappedAssetStore(fileName, count);
+        for (Portfolio portfolio : portfolios) {
+            for (Asset asset : portfolio.getAssets()) {
+                store.append(portfolio.getOwnerUserName(), asset);
+            }
+        }
+        store.force();
+        return store;
+    }
+
+    /**
+     * Creates an empty store in a new temporary file, e.g. to hold the
+     * holdings of one batch run. Its files are deleted when it is closed.
+     *
+     * @param initialCapacity The number of rows to reserve
+     * @return The empty store
+     * @throws IOException if the temporary file cannot be created
+     */
+    public static MappedAssetStore createTemporary(int initialCapacity) throws IOException {
+        File file = File.createTempFile("assets", ".dat");
+        file.delete();
+        MappedAssetStore store = new MappedAssetStore(file.getPath(), initialCapacity);
+        store.temporary = true;
+        return store;
+    }
+
+    /**
+     * Appends the assets of the given portfolios, each portfolio's rows
+     * together, and returns copies of the portfolios whose assets are views
+     * of those rows. The copies are not attached to a database, and read
+     * their holdings from the store for as long as it is open.
+     *
+     * @param portfolios The portfolios whose assets to copy
+     * @return The copies, in the same order
+     * @throws IOException if the file had to grow and could not be remapped
+     */
+    public List<Portfolio> appendPortfolios(Collection<Portfolio> portfolios) throws IOException {
+        List<Portfolio> copies = new ArrayList<>(portfolios.size());
+        for (Portfolio portfolio : portfolios) {
+            int first = size;
+            for (Asset asset : portfolio.getAssets()) {
+                append(portfolio.getOwnerUserName(), asset);
+            }
+            Portfolio copy = new Portfolio(portfolio.getId(), portfolio.getOwnerUserName(), portfolio.getName(),
+                    views(first, size));
+            copy.attachOwner(portfolio.getOwner());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Appends an asset as a new row.
+     *
+     * @param owner The username of the investor holding the asset
+     * @param asset The asset to store
+     * @return The row number of the stored asset
+     * @throws IOException if the file had to grow and could not be remapped
+     */
+    public int append(String owner, Asset asset) throws IOException {
+        if (size == capacity) {
+            grow();
+        }
+        int row = size;
+        buffer.putInt(ownerColumn + row * 4, intern(owner));
+        writeAsset(row, asset);
+        size++;
+        buffer.putInt(12, size);
+        return row;
+    }
+
+    /**
+     * Overwrites every column of an existing row except its owner, so the
+     * row may also change to another asset type.
+     *
+     * @param row   The row to update
+     * @param asset The asset holding the new values
+     */
+    public void update(int row, Asset asset) {
+        checkRow(row);
+        writeAsset(row, asset);
+    }
+
+    /**
+     * Gets the number of stored rows.
+     *
+     * @return The row count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads the asset type of a row.
+     *
+     * @param row The row to read
+     * @return The asset type of the row
+     */
+    public AssetType getType(int row) {
+        return AssetType.fromTag(buffer.get(typeColumn + row));
+    }
+
+    /**
+     * Reads the owner of a row.
+     *
+     * @param row The row to read
+     * @return The owner's username
+     */
+    public String getOwner(int row) {
+        return string(buffer.getInt(ownerColumn + row * 4));
+    }
+
+    /**
+     * Reads the asset name of a row.
+     *
+     * @param row The row to read
+     * @return The asset name
+     */
+    public String getName(int row) {
+        return string(buffer.getInt(nameColumn + row * 4));
+    }
+
+    /**
+     * Reads the quantity of a row.
+     *
+     * @param row The row to read
+     * @return The quantity held
+     */
+    public int getQuantity(int row) {
+        return buffer.getInt(quantityColumn + row * 4);
+    }
+
+    /**
+     * Reads the purchase price of a row.
+     *
+     * @param row The row to read
+     * @return The purchase price per unit
+     */
+    public float getPurchasePrice(int row) {
+        return buffer.getFloat(priceColumn + row * 4);
+    }
+
+    /**
+     * Reads the purchase time of a row.
+     *
+     * @param row The row to read
+     * @return The purchase time in epoch milliseconds, or Long.MIN_VALUE if unknown
+     */
+    public long getPurchaseEpoch(int row) {
+        return buffer.getLong(epochColumn + row * 8);
+    }
+
+    /**
+     * Reads the Zakat flag of a row.
+     *
+     * @param row The row to read
+     * @return The Zakat flag, or null if unknown
+     */
+    public Boolean isZakatApplicable(int row) {
+        byte flag = buffer.get(zakatColumn + row);
+        return flag == NULL ? null : flag == TRUE;
+    }
+
+    /**
+     * Checks whether a row is known to be Zakat applicable.
+     *
+     * @param row The row to read
+     * @return true only if the row is known to be Zakat applicable
+     */
+    public boolean isZakatFlagSet(int row) {
+        return buffer.get(zakatColumn + row) == TRUE;
+    }
+
+    /**
+     * Reads the gold weight of a row.
+     *
+     * @param row The row to read
+     * @return The gold weight in grams, 0 for other types
+     */
+    public float getWeightInGrams(int row) {
+        return buffer.getFloat(weightColumn + row * 4);
+    }
+
+    /**
+     * Gets the weight of pure gold held in a row. Each distinct karat string
+     * is parsed once and its purity cached. Rows may be read from several
+     * threads at once: a purity cached by one thread and not yet seen by
+     * another is parsed again, giving the same value.
+     *
+     * @param row The row to read
+     * @return The pure-gold-equivalent weight in grams, 0 for other types
+     */
+    public double getPureGoldGrams(int row) {
+        if (getType(row) != AssetType.GOLD) {
+            return 0.0;
+        }
+        int karat = buffer.getInt(attributeColumn + row * 4);
+        double purity;
+        if (karat == NO_STRING) {
+            purity = 1.0;
+        } else {
+            double[] cache = purities;
+            if (karat >= cache.length) {
+                cache = Arrays.copyOf(cache, Math.max(strings.size(), karat + 1));
+                purities = cache;
+            }
+            purity = cache[karat];
+            if (purity == 0) {
+                purity = Gold.purity(strings.get(karat));
+                cache[karat] = purity;
+            }
+        }
+        return getWeightInGrams(row) * purity * getQuantity(row);
+    }
+
+    /**
+     * Reads the first type-specific attribute of a row.
+     *
+     * @param row The row to read
+     * @return The symbol, karat or location, depending on the type
+     */
+    public String getAttribute(int row) {
+        return string(buffer.getInt(attributeColumn + row * 4));
+    }
+
+    /**
+     * Reads the second type-specific attribute of a row.
+     *
+     * @param row The row to read
+     * @return The exchange or property type, depending on the type
+     */
+    public String getSecondAttribute(int row) {
+        return string(buffer.getInt(secondAttributeColumn + row * 4));
+    }
+
+    /**
+     * Creates a flyweight view positioned on the given row.
+     *
+     * @param row The row to view
+     * @return A view that reads and writes the row in place
+     */
+    public AssetView view(int row) {
+        return new AssetView().moveTo(row);
+    }
+
+    /**
+     * Creates one view for each row in a range.
+     *
+     * @param from The first row
+     * @param to   The row after the last one
+     * @return An unmodifiable list of views, one per row
+     */
+    public List<Asset> views(int from, int to) {
+        List<Asset> views = new ArrayList<>(to - from);
+        for (int row = from; row < to; row++) {
+            views.add(view(row));
+        }
+        return Collections.unmodifiableList(views);
+    }
+
+    /**
+     * Creates a regular asset object holding a copy of the given row.
+     *
+     * @param row The row to copy
+     * @return A new Stocks, Crypto, Gold or RealState instance
+     */
+    public Asset materialize(int row) {
+        checkRow(row);
+        long epoch = getPurchaseEpoch(row);
+        Date date = epoch == NO_DATE ? null : new Date(epoch);
+        switch (getType(row)) {
+            case STOCKS:
+                return new Stocks(getName(row), getQuantity(row), date, getPurchasePrice(row),
+                        isZakatApplicable(row), getAttribute(row), getSecondAttribute(row));
+            case CRYPTO:
+                return new Crypto(getName(row), getQuantity(row), date, getPurchasePrice(row),
+                        isZakatApplicable(row), getAttribute(row), getSecondAttribute(row));
+            case GOLD:
+                return new Gold(getName(row), getQuantity(row), date, getPurchasePrice(row),
+                        isZakatApplicable(row), getAttribute(row), getWeightInGrams(row));
+            default:
+                return new RealState(getName(row), getQuantity(row), date, getPurchasePrice(row),
+                        isZakatApplicable(row), getAttribute(row), getSecondAttribute(row));
+        }
+    }
+
+    /**
+     * Iterates over all rows with a single reused view, so the returned
+     * asset must not be kept after advancing the iterator.
+     *
+     * @return An iterator over the stored assets
+     */
+    @Override
+    public Iterator<Asset> iterator() {
+        AssetView view = new AssetView();
+        return new Iterator<Asset>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Asset next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return view.moveTo(next++);
+            }
+        };
+    }
+
+    /**
+     * Flushes the mapped columns and the string dictionary to disk. The
+     * dictionary is forced first, so rows on disk never refer to strings
+     * that are not.
+     *
+     * @throws IOException if the dictionary cannot be written
+     */
+    public void force() throws IOException {
+        dictionaryOut.flush();
+        dictionaryDirty = false;
+        dictionaryFileOut.getFD().sync();
+        buffer.force();
+    }
+
+    /**
+     * Flushes and closes the store, or deletes its files if it is temporary.
+     *
+     * @throws IOException if the store cannot be flushed
+     */
+    @Override
+    public void close() throws IOException {
+        if (temporary) {
+            dictionaryOut.close();
+            file.delete();
+            dictionaryFile.delete();
+            return;
+        }
+        force();
+        dictionaryOut.close();
+    }
+
+    /**
+     * A flyweight {@link Asset} backed by one row of the store. Getters and
+     * setters read and write the mapped columns directly, and
+     * {@link #moveTo(int)} repositions the same object on another row.
+     * Interactive editing is not supported through a view: {@link #editAsset()}
+     * is rejected before any detail changes.
+     */
+    public class AssetView extends Asset {
+        private static final long serialVersionUID = 1L;
+        private int row;
+
+        private AssetView() {
+            super(null, 0, null, 0f, null);
+        }
+
+        /**
+         * Positions this view on another row.
+         *
+         * @param row The row to view
+         * @return This view
+         */
+        public AssetView moveTo(int row) {
+            checkRow(row);
+            this.row = row;
+            return this;
+        }
+
+        /**
+         * Gets the row this view is positioned on.
+         *
+         * @return The row number
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Gets the username of the investor holding this asset.
+         *
+         * @return The owner's username
+         */
+        public String getOwner() {
+            return MappedAssetStore.this.getOwner(row);
+        }
+
+        @Override
+        public AssetType getType() {
+            return MappedAssetStore.this.getType(row);
+        }
+
+        @Override
+        public String getName() {
+            return MappedAssetStore.this.getName(row);
+        }
+
+        @Override
+        public void setName(String name) {
+            int id = intern(name);
+            publishDictionary();
+            buffer.putInt(nameColumn + row * 4, id);
+        }
+
+        @Override
+        public int getQuantity() {
+            return MappedAssetStore.this.getQuantity(row);
+        }
+
+        @Override
+        public void setQuantity(int quantity) {
+            buffer.putInt(quantityColumn + row * 4, quantity);
+        }
+
+        @Override
+        public Date getPurchaseDate() {
+            long epoch = getPurchaseEpoch(row);
+            return epoch == NO_DATE ? null : new Date(epoch);
+        }
+
+        @Override
+        public float getPurchasePrice() {
+            return MappedAssetStore.this.getPurchasePrice(row);
+        }
+
+        @Override
+        public void setPurchasePrice(float purchasePrice) {
+            buffer.putFloat(priceColumn + row * 4, purchasePrice);
+        }
+
+        @Override
+        public Boolean isZakatApplicable() {
+            return MappedAssetStore.this.isZakatApplicable(row);
+        }
+
+        @Override
+        public void setZakatApplicable(Boolean zakatApplicable) {
+            buffer.put(zakatColumn + row, zakatFlag(zakatApplicable));
+        }
+
+        @Override
+        public String getPriceSymbol() {
+            switch (getType()) {
+                case STOCKS:
+                case CRYPTO:
+                    return getAttribute(row);
+                case GOLD:
+                    return Gold.PRICE_SYMBOL;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public double getMarketValue(double unitPrice) {
+            if (getType() == AssetType.GOLD) {
+                return unitPrice * getPureGoldGrams(row);
+            }
+            return super.getMarketValue(unitPrice);
+        }
+
+        @Override
+        public double getZakatableValue(double goldPricePerGram) {
+            if (getType() == AssetType.GOLD && goldPricePerGram > 0 && Boolean.TRUE.equals(isZakatApplicable())) {
+                return getPureGoldGrams(row) * goldPricePerGram;
+            }
+            return super.getZakatableValue(goldPricePerGram);
+        }
+
+        @Override
+        protected void checkEditable() {
+            throw new UnsupportedOperationException("Materialize the asset to edit it");
+        }
+
+        @Override
+        protected void editSpecificDetails(Scanner scanner) {
+            throw new UnsupportedOperationException("Materialize the asset to edit it");
+        }
+
+        @Override
+        public String toString() {
+            return materialize(row).toString();
+        }
+    }
+
+    /**
+     * Writes all columns of a row but the owner. The strings are interned
+     * and handed to the file system first, since the row may already be visible.
+     */
+    private void writeAsset(int row, Asset asset) {
+        int name = intern(asset.getName());
+        int attribute = NO_STRING;
+        int secondAttribute = NO_STRING;
+        float weight = 0f;
+        switch (asset.getType()) {
+            case STOCKS:
+                attribute = intern(((Stocks) asset).getStockSymbol());
+                secondAttribute = intern(((Stocks) asset).getExchange());
+                break;
+            case CRYPTO:
+                attribute = intern(((Crypto) asset).getCryptoSymbol());
+                secondAttribute = intern(((Crypto) asset).getExchange());
+                break;
+            case GOLD:
+                attribute = intern(((Gold) asset).getKarat());
+                weight = ((Gold) asset).getWeightInGrams();
+                break;
+            case REAL_STATE:
+                attribute = intern(((RealState) asset).getLocation());
+                secondAttribute = intern(((RealState) asset).getPropertyType());
+                break;
+        }
+        publishDictionary();
+        buffer.put(typeColumn + row, asset.getType().getTag());
+        buffer.putInt(nameColumn + row * 4, name);
+        buffer.putInt(quantityColumn + row * 4, asset.getQuantity());
+        buffer.putFloat(priceColumn + row * 4, asset.getPurchasePrice());
+        Date purchaseDate = asset.getPurchaseDate();
+        buffer.putLong(epochColumn + row * 8, purchaseDate == null ? NO_DATE : purchaseDate.getTime());
+        buffer.put(zakatColumn + row, zakatFlag(asset.isZakatApplicable()));
+        buffer.putInt(attributeColumn + row * 4, attribute);
+        buffer.putInt(secondAttributeColumn + row * 4, secondAttribute);
+        buffer.putFloat(weightColumn + row * 4, weight);
+    }
+
+    private static byte zakatFlag(Boolean zakatApplicable) {
+        return zakatApplicable == null ? NULL : zakatApplicable ? TRUE : FALSE;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private String string(int id) {
+        return id == NO_STRING ? null : strings.get(id);
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+            try {
+                dictionaryOut.writeUTF(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            dictionaryDirty = true;
+        }
+        return id;
+    }
+
+    /**
+     * Hands newly interned strings to the file system before a row that
+     * refers to them is visible, so a crash never leaves rows pointing at
+     * strings that were still buffered.
+     */
+    private void publishDictionary() {
+        if (!dictionaryDirty) {
+            return;
+        }
+        try {
+            dictionaryOut.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dictionaryDirty = false;
+    }
+
+    private void loadDictionary() throws IOException {
+        if (!dictionaryFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dictionaryFile)))) {
+            while (true) {
+                String value;
+                try {
+                    value = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                stringIds.put(value, strings.size());
+                strings.add(value);
+            }
+        }
+    }
+
+    private void layoutColumns(int capacity) {
+        epochColumn = HEADER_SIZE;
+        quantityColumn = epochColumn + capacity * 8;
+        priceColumn = quantityColumn + capacity * 4;
+        weightColumn = priceColumn + capacity * 4;
+        ownerColumn = weightColumn + capacity * 4;
+        nameColumn = ownerColumn + capacity * 4;
+        attributeColumn = nameColumn + capacity * 4;
+        secondAttributeColumn = attributeColumn + capacity * 4;
+        typeColumn = secondAttributeColumn + capacity * 4;
+        zakatColumn = typeColumn + capacity;
+    }
+
+    private void map(File target, int newCapacity) throws IOException {
+        long bytes = HEADER_SIZE + (long) newCapacity * ROW_SIZE;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Asset store cannot hold " + newCapacity + " rows");
+        }
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, newCapacity);
+        capacity = newCapacity;
+        layoutColumns(newCapacity);
+    }
+
+    /**
+     * Doubles the capacity. Columns move when the capacity changes, so the
+     * rows are copied column by column into a new file that replaces the old one.
+     */
+    private void grow() throws IOException {
+        MappedByteBuffer old = buffer;
+        int[] oldColumns = { epochColumn, quantityColumn, priceColumn, weightColumn, ownerColumn,
+                nameColumn, attributeColumn, secondAttributeColumn, typeColumn, zakatColumn };
+        int[] widths = { 8, 4, 4, 4, 4, 4, 4, 4, 1, 1 };
+        int newCapacity = (int) Math.min((long) capacity * 2, (Integer.MAX_VALUE - HEADER_SIZE) / ROW_SIZE);
+        if (newCapacity <= capacity) {
+            throw new IOException("Asset store is full at " + capacity + " rows");
+        }
+        File grown = new File(file.getPath() + ".grow");
+        grown.delete();
+        map(grown, newCapacity);
+        int[] newColumns = { epochColumn, quantityColumn, priceColumn, weightColumn, ownerColumn,
+                nameColumn, attributeColumn, secondAttributeColumn, typeColumn, zakatColumn };
+        for (int c = 0; c < oldColumns.length; c++) {
+            buffer.put(newColumns[c], old, oldColumns[c], size * widths[c]);
+        }
+        buffer.putInt(12, size);
+        buffer.force();
+        Files.move(grown.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,18 @@
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A database record that can be changed in part by a journal record, so a
+ * small edit to a large record does not journal the whole record again.
+ * The owning database appends the patch with {@link Database#persistPatch}
+ * and the journal hands it back to the replayed record.
+ */
+interface PatchableRecord {
+    /**
+     * Applies a patch written for this record, without persisting anything.
+     *
+     * @param in The input holding the patch
+     * @throws IOException if the patch cannot be read or does not fit this record
+     */
+    void applyPatch(DataInput in) throws IOException;
+}
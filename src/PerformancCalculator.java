@@ -1,3 +1,612 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Computes returns and unrealized profit and loss of portfolios and investors
+ * against a price history.
+ *
+ * <p>{@link #load(List)} makes a single pass over all holdings. For each
+ * holding it resolves its price column once and adds its value and purchase
+ * cash flow at every point of the history into per-portfolio and per-investor
+ * series. Holdings and series are kept in primitive arrays, so returns are
+ * computed from the series without touching assets again. When one asset
+ * changes, {@link #updateAsset(Portfolio, int)} removes its old contribution
+ * and adds the new one instead of reloading the portfolio. When assets are
+ * added or removed, {@link #updatePortfolio(Portfolio)} replaces only that
+ * portfolio's holdings; it also adds portfolios that were not loaded.</p>
+ *
+ * <p>A holding bought before the first point of the history enters at its
+ * market value there; one bought later enters at its cost, at the first
+ * point on or after its purchase date. Assets without a price, such as real
+ * estate, are valued at cost throughout.</p>
+ */
 public class PerformancCalculator {
-    
+    private static final double YEAR_MILLIS = 365.25 * 24 * 60 * 60 * 1000;
+    private static final int MAX_IRR_ITERATIONS = 100;
+    private static final double IRR_TOLERANCE = 1e-10;
+
+    private final PriceHistory history;
+    private final int points;
+
+    private final Map<String, Integer> portfolioIndex = new HashMap<>();
+    private final Map<String, Integer> investorIndex = new HashMap<>();
+    private int[] portfolioStart = new int[1];
+    private int[] portfolioInvestor = new int[0];
+
+    private double[] cost = new double[0];
+    private double[] factor = new double[0];
+    private int[] column = new int[0];
+    private int[] entry = new int[0];
+
+    private double[] portfolioCost = new double[0];
+    private double[] portfolioCurrent = new double[0];
+    private double[] portfolioValues = new double[0];
+    private double[] portfolioFlows = new double[0];
+    private double[] investorCost = new double[0];
+    private double[] investorCurrent = new double[0];
+    private double[] investorValues = new double[0];
+    private double[] investorFlows = new double[0];
+
+    /**
+     * Creates a calculator for the given price history.
+     *
+     * @param history The prices to value holdings at, with at least one point
+     */
+    public PerformancCalculator(PriceHistory history) {
+        if (history.getTimes().length == 0) {
+            throw new IllegalArgumentException("The price history has no points");
+        }
+        this.history = history;
+        this.points = history.getTimes().length;
+    }
+
+    /**
+     * Prices of a set of symbols at a series of points in time.
+     */
+    public static final class PriceHistory {
+        /** File the application reads the price history from */
+        public static final String DEFAULT_FILE = "src/database/price_history.csv";
+
+        private final long[] times;
+        private final String[] symbols;
+        private final double[] prices;
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        /**
+         * Creates a price history. A missing price, given as NaN, is filled
+         * with the symbol's last earlier price.
+         *
+         * @param times   The points in time, in epoch milliseconds, ascending
+         * @param symbols The symbols priced at each point
+         * @param prices  The prices, one row per point and one column per symbol
+         */
+        public PriceHistory(long[] times, String[] symbols, double[] prices) {
+            if (prices.length != times.length * symbols.length) {
+                throw new IllegalArgumentException("Expected " + times.length * symbols.length
+                        + " prices but got " + prices.length);
+            }
+            for (int k = 1; k < times.length; k++) {
+                if (times[k] <= times[k - 1]) {
+                    throw new IllegalArgumentException("Price history times must be ascending");
+                }
+            }
+            this.times = times.clone();
+            this.symbols = symbols.clone();
+            this.prices = prices.clone();
+            for (int c = 0; c < symbols.length; c++) {
+                columns.put(symbols[c].toUpperCase(Locale.ROOT), c);
+                for (int k = 1; k < times.length; k++) {
+                    int at = k * symbols.length + c;
+                    if (Double.isNaN(this.prices[at])) {
+                        this.prices[at] = this.prices[at - symbols.length];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets the points in time of the history.
+         *
+         * @return The times in epoch milliseconds, ascending
+         */
+        public long[] getTimes() {
+            return times.clone();
+        }
+
+        /**
+         * Gets the price of a symbol at a point of the history.
+         *
+         * @param point  The index of the point in time
+         * @param symbol The symbol, in any case
+         * @return The price, or NaN if the symbol has no price yet at that point
+         */
+        public double getPrice(int point, String symbol) {
+            int c = columnOf(symbol);
+            return c < 0 ? Double.NaN : prices[point * symbols.length + c];
+        }
+
+        /**
+         * Reads a price history from a CSV file whose header is {@code date}
+         * followed by the symbols, and whose lines are an ISO date, e.g.
+         * 2025-01-31, followed by the prices on that date. An empty price is
+         * missing. Blank lines and lines starting with '#' are ignored.
+         *
+         * @param fileName The CSV file to read
+         * @return The price history, with times at the start of each day
+         * @throws IOException if the file cannot be read or a line is malformed
+         */
+        public static PriceHistory read(String fileName) throws IOException {
+            try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+                String[] symbols = null;
+                List<Long> times = new ArrayList<>();
+                List<double[]> rows = new ArrayList<>();
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split(",", -1);
+                    if (symbols == null) {
+                        symbols = new String[fields.length - 1];
+                        for (int c = 0; c < symbols.length; c++) {
+                            symbols[c] = fields[c + 1].trim();
+                        }
+                        continue;
+                    }
+                    if (fields.length != symbols.length + 1) {
+                        throw new IOException(fileName + ":" + lineNumber + ": expected "
+                                + (symbols.length + 1) + " fields but got " + fields.length);
+                    }
+                    double[] row = new double[symbols.length];
+                    try {
+                        times.add(LocalDate.parse(fields[0].trim())
+                                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                        for (int c = 0; c < row.length; c++) {
+                            String price = fields[c + 1].trim();
+                            row[c] = price.isEmpty() ? Double.NaN : Double.parseDouble(price);
+                        }
+                    } catch (DateTimeParseException | NumberFormatException e) {
+                        throw new IOException(fileName + ":" + lineNumber + ": " + e.getMessage(), e);
+                    }
+                    rows.add(row);
+                }
+                if (symbols == null) {
+                    symbols = new String[0];
+                }
+                long[] timeArray = new long[times.size()];
+                double[] prices = new double[rows.size() * symbols.length];
+                for (int k = 0; k < timeArray.length; k++) {
+                    timeArray[k] = times.get(k);
+                    System.arraycopy(rows.get(k), 0, prices, k * symbols.length, symbols.length);
+                }
+                try {
+                    return new PriceHistory(timeArray, symbols, prices);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(fileName + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        int pointCount() {
+            return times.length;
+        }
+
+        int symbolCount() {
+            return symbols.length;
+        }
+
+        int columnOf(String symbol) {
+            if (symbol == null) {
+                return -1;
+            }
+            Integer c = columns.get(symbol.toUpperCase(Locale.ROOT));
+            return c == null ? -1 : c;
+        }
+
+        double priceAt(int point, int column) {
+            return prices[point * symbols.length + column];
+        }
+    }
+
+    /**
+     * Loads the holdings of the given portfolios in one pass, replacing any
+     * previously loaded ones.
+     *
+     * @param portfolios The portfolios to measure
+     */
+    public void load(List<Portfolio> portfolios) {
+        portfolioIndex.clear();
+        investorIndex.clear();
+        int portfolioCount = portfolios.size();
+        portfolioStart = new int[portfolioCount + 1];
+        portfolioInvestor = new int[portfolioCount];
+        for (int p = 0; p < portfolioCount; p++) {
+            Portfolio portfolio = portfolios.get(p);
+            portfolioIndex.put(portfolio.getId(), p);
+            Integer investor = investorIndex.get(portfolio.getOwnerUserName());
+            if (investor == null) {
+                investor = investorIndex.size();
+                investorIndex.put(portfolio.getOwnerUserName(), investor);
+            }
+            portfolioInvestor[p] = investor;
+            portfolioStart[p + 1] = portfolioStart[p] + portfolio.getAssets().size();
+        }
+        int holdings = portfolioStart[portfolioCount];
+        int investors = investorIndex.size();
+        cost = new double[holdings];
+        factor = new double[holdings];
+        column = new int[holdings];
+        entry = new int[holdings];
+        portfolioCost = new double[portfolioCount];
+        portfolioCurrent = new double[portfolioCount];
+        portfolioValues = new double[portfolioCount * points];
+        portfolioFlows = new double[portfolioCount * points];
+        investorCost = new double[investors];
+        investorCurrent = new double[investors];
+        investorValues = new double[investors * points];
+        investorFlows = new double[investors * points];
+
+        for (int p = 0; p < portfolioCount; p++) {
+            List<Asset> assets = portfolios.get(p).getAssets();
+            for (int a = 0; a < assets.size(); a++) {
+                int h = portfolioStart[p] + a;
+                readHolding(h, assets.get(a));
+                contribute(h, p, 1);
+            }
+        }
+    }
+
+    /**
+     * Updates the results after one asset of a loaded portfolio changed, e.g.
+     * its quantity or price was edited, without recomputing the portfolio.
+     *
+     * @param portfolio  The loaded portfolio holding the asset
+     * @param assetIndex The position of the asset in the portfolio
+     * @throws IllegalArgumentException if the portfolio is not loaded or its
+     *                                  number of assets changed since loading,
+     *                                  in which case use {@link #updatePortfolio(Portfolio)}
+     */
+    public void updateAsset(Portfolio portfolio, int assetIndex) {
+        int p = indexOf(portfolio);
+        if (portfolio.getAssets().size() != portfolioStart[p + 1] - portfolioStart[p]) {
+            throw new IllegalArgumentException("Assets were added to or removed from "
+                    + portfolio.getName() + " since it was loaded; use updatePortfolio");
+        }
+        int h = portfolioStart[p] + assetIndex;
+        contribute(h, p, -1);
+        readHolding(h, portfolio.getAssets().get(assetIndex));
+        contribute(h, p, 1);
+    }
+
+    /**
+     * Replaces the holdings of one portfolio with its current assets, e.g.
+     * after assets were added or removed, or loads it if it is not loaded.
+     * Only that portfolio's holdings are read again; the other portfolios'
+     * series are untouched.
+     *
+     * @param portfolio The portfolio that changed
+     */
+    public void updatePortfolio(Portfolio portfolio) {
+        Integer loaded = portfolioIndex.get(portfolio.getId());
+        int p = loaded == null ? addPortfolio(portfolio) : loaded;
+        List<Asset> assets = portfolio.getAssets();
+        replaceHoldings(p, assets.size());
+        for (int a = 0; a < assets.size(); a++) {
+            int h = portfolioStart[p] + a;
+            readHolding(h, assets.get(a));
+            contribute(h, p, 1);
+        }
+    }
+
+    /**
+     * Removes a portfolio's holdings from the results, e.g. after it was
+     * deleted. Does nothing if the portfolio is not loaded.
+     *
+     * @param portfolio The portfolio to remove
+     */
+    public void removePortfolio(Portfolio portfolio) {
+        Integer p = portfolioIndex.remove(portfolio.getId());
+        if (p != null) {
+            replaceHoldings(p, 0);
+        }
+    }
+
+    /**
+     * Checks whether a portfolio is loaded.
+     *
+     * @param portfolio The portfolio
+     * @return true if its holdings are part of the results
+     */
+    public boolean isLoaded(Portfolio portfolio) {
+        return portfolioIndex.containsKey(portfolio.getId());
+    }
+
+    /**
+     * Gets the number of loaded holdings.
+     *
+     * @return The holding count
+     */
+    public int getHoldingCount() {
+        return cost.length;
+    }
+
+    /**
+     * Gets the unrealized profit or loss of one asset at the latest prices.
+     *
+     * @param portfolio  The loaded portfolio holding the asset
+     * @param assetIndex The position of the asset in the portfolio
+     * @return The current value minus the cost of the asset
+     */
+    public double getAssetUnrealizedPnL(Portfolio portfolio, int assetIndex) {
+        int h = portfolioStart[indexOf(portfolio)] + assetIndex;
+        return currentValue(h) - cost[h];
+    }
+
+    /**
+     * Gets the unrealized profit or loss of a portfolio at the latest prices.
+     *
+     * @param portfolio The loaded portfolio
+     * @return The current value minus the cost of its assets
+     */
+    public double getPortfolioUnrealizedPnL(Portfolio portfolio) {
+        int p = indexOf(portfolio);
+        return portfolioCurrent[p] - portfolioCost[p];
+    }
+
+    /**
+     * Gets the unrealized profit or loss of all loaded portfolios of an investor.
+     *
+     * @param userName The investor's username
+     * @return The current value minus the cost of the investor's assets, 0 if none are loaded
+     */
+    public double getInvestorUnrealizedPnL(String userName) {
+        Integer i = investorIndex.get(userName);
+        return i == null ? 0.0 : investorCurrent[i] - investorCost[i];
+    }
+
+    /**
+     * Gets the time-weighted return of a portfolio over the whole history,
+     * which chains the return of each period so that money added in between
+     * does not count as growth.
+     *
+     * @param portfolio The loaded portfolio
+     * @return The cumulative return, e.g. 0.1 for 10%
+     */
+    public double getPortfolioTimeWeightedReturn(Portfolio portfolio) {
+        return timeWeightedReturn(portfolioValues, portfolioFlows, indexOf(portfolio) * points);
+    }
+
+    /**
+     * Gets the money-weighted return of a portfolio over the whole history:
+     * the internal rate of return of its purchases against its final value.
+     *
+     * @param portfolio The loaded portfolio
+     * @return The annualized return, or NaN if it cannot be determined
+     */
+    public double getPortfolioMoneyWeightedReturn(Portfolio portfolio) {
+        return moneyWeightedReturn(portfolioValues, portfolioFlows, indexOf(portfolio) * points);
+    }
+
+    /**
+     * Gets the time-weighted return of all loaded portfolios of an investor.
+     *
+     * @param userName The investor's username
+     * @return The cumulative return, 0 if none of the investor's portfolios are loaded
+     */
+    public double getInvestorTimeWeightedReturn(String userName) {
+        Integer i = investorIndex.get(userName);
+        return i == null ? 0.0 : timeWeightedReturn(investorValues, investorFlows, i * points);
+    }
+
+    /**
+     * Gets the money-weighted return of all loaded portfolios of an investor.
+     *
+     * @param userName The investor's username
+     * @return The annualized return, or NaN if it cannot be determined
+     */
+    public double getInvestorMoneyWeightedReturn(String userName) {
+        Integer i = investorIndex.get(userName);
+        return i == null ? Double.NaN : moneyWeightedReturn(investorValues, investorFlows, i * points);
+    }
+
+    /**
+     * Gets the usernames of all investors with loaded portfolios.
+     *
+     * @return The usernames
+     */
+    public Collection<String> getInvestors() {
+        return investorIndex.keySet();
+    }
+
+    private int indexOf(Portfolio portfolio) {
+        Integer p = portfolioIndex.get(portfolio.getId());
+        if (p == null) {
+            throw new IllegalArgumentException("Portfolio " + portfolio.getName() + " is not loaded");
+        }
+        return p;
+    }
+
+    /**
+     * Appends an empty portfolio, and its investor if they are new.
+     *
+     * @return The index of the new portfolio
+     */
+    private int addPortfolio(Portfolio portfolio) {
+        int p = portfolioInvestor.length;
+        Integer investor = investorIndex.get(portfolio.getOwnerUserName());
+        if (investor == null) {
+            investor = investorIndex.size();
+            investorIndex.put(portfolio.getOwnerUserName(), investor);
+            investorCost = Arrays.copyOf(investorCost, investor + 1);
+            investorCurrent = Arrays.copyOf(investorCurrent, investor + 1);
+            investorValues = Arrays.copyOf(investorValues, (investor + 1) * points);
+            investorFlows = Arrays.copyOf(investorFlows, (investor + 1) * points);
+        }
+        portfolioIndex.put(portfolio.getId(), p);
+        portfolioStart = Arrays.copyOf(portfolioStart, p + 2);
+        portfolioStart[p + 1] = portfolioStart[p];
+        portfolioInvestor = Arrays.copyOf(portfolioInvestor, p + 1);
+        portfolioInvestor[p] = investor;
+        portfolioCost = Arrays.copyOf(portfolioCost, p + 1);
+        portfolioCurrent = Arrays.copyOf(portfolioCurrent, p + 1);
+        portfolioValues = Arrays.copyOf(portfolioValues, (p + 1) * points);
+        portfolioFlows = Arrays.copyOf(portfolioFlows, (p + 1) * points);
+        return p;
+    }
+
+    /**
+     * Takes a portfolio's holdings out of the results and resizes its range
+     * of the holding arrays to the given count, shifting later portfolios.
+     * The portfolio's own totals are reset rather than subtracted, so no
+     * rounding error is left behind.
+     */
+    private void replaceHoldings(int p, int count) {
+        int start = portfolioStart[p];
+        int previous = portfolioStart[p + 1] - start;
+        for (int h = start; h < start + previous; h++) {
+            contribute(h, p, -1);
+        }
+        portfolioCost[p] = 0.0;
+        portfolioCurrent[p] = 0.0;
+        Arrays.fill(portfolioValues, p * points, (p + 1) * points, 0.0);
+        Arrays.fill(portfolioFlows, p * points, (p + 1) * points, 0.0);
+        if (count == previous) {
+            return;
+        }
+        cost = resize(cost, start, previous, count);
+        factor = resize(factor, start, previous, count);
+        column = resize(column, start, previous, count);
+        entry = resize(entry, start, previous, count);
+        for (int q = p + 1; q < portfolioStart.length; q++) {
+            portfolioStart[q] += count - previous;
+        }
+    }
+
+    private static double[] resize(double[] array, int start, int previous, int count) {
+        double[] resized = new double[array.length - previous + count];
+        System.arraycopy(array, 0, resized, 0, start);
+        System.arraycopy(array, start + previous, resized, start + count, array.length - start - previous);
+        return resized;
+    }
+
+    private static int[] resize(int[] array, int start, int previous, int count) {
+        int[] resized = new int[array.length - previous + count];
+        System.arraycopy(array, 0, resized, 0, start);
+        System.arraycopy(array, start + previous, resized, start + count, array.length - start - previous);
+        return resized;
+    }
+
+    /**
+     * Reads the figures of one asset into the holding arrays.
+     */
+    private void readHolding(int h, Asset asset) {
+        cost[h] = (double) asset.getPurchasePrice() * asset.getQuantity();
+        factor[h] = asset.getMarketValue(1.0);
+        column[h] = history.columnOf(asset.getPriceSymbol());
+        long purchased = asset.getPurchaseDate() == null ? Long.MIN_VALUE : asset.getPurchaseDate().getTime();
+        int k = Arrays.binarySearch(history.times, purchased);
+        entry[h] = k >= 0 ? k : -k - 1;
+    }
+
+    /**
+     * Adds (sign 1) or removes (sign -1) the contribution of one holding to
+     * its portfolio's and investor's totals and series.
+     */
+    private void contribute(int h, int p, int sign) {
+        int i = portfolioInvestor[p];
+        double current = sign * currentValue(h);
+        double paid = sign * cost[h];
+        portfolioCurrent[p] += current;
+        portfolioCost[p] += paid;
+        investorCurrent[i] += current;
+        investorCost[i] += paid;
+
+        int pBase = p * points;
+        int iBase = i * points;
+        for (int k = entry[h]; k < points; k++) {
+            double value = sign * valueAt(h, k);
+            portfolioValues[pBase + k] += value;
+            investorValues[iBase + k] += value;
+        }
+        if (entry[h] < points) {
+            double flow = entry[h] == 0 ? sign * valueAt(h, 0) : paid;
+            portfolioFlows[pBase + entry[h]] += flow;
+            investorFlows[iBase + entry[h]] += flow;
+        }
+    }
+
+    private double valueAt(int h, int k) {
+        if (column[h] < 0) {
+            return cost[h];
+        }
+        double price = history.priceAt(k, column[h]);
+        return Double.isNaN(price) ? cost[h] : factor[h] * price;
+    }
+
+    private double currentValue(int h) {
+        return valueAt(h, points - 1);
+    }
+
+    private double timeWeightedReturn(double[] values, double[] flows, int base) {
+        double growth = 1.0;
+        for (int k = 1; k < points; k++) {
+            double previous = values[base + k - 1];
+            if (previous > 0) {
+                growth *= (values[base + k] - flows[base + k]) / previous;
+            }
+        }
+        return growth - 1.0;
+    }
+
+    /**
+     * Solves for the annual rate r at which the purchases, compounded to the
+     * last point, equal the final value, using Newton's method.
+     */
+    private double moneyWeightedReturn(double[] values, double[] flows, int base) {
+        long end = history.times[points - 1];
+        double finalValue = values[base + points - 1];
+        double rate = 0.1;
+        for (int iteration = 0; iteration < MAX_IRR_ITERATIONS; iteration++) {
+            double npv = -finalValue;
+            double slope = 0.0;
+            boolean invested = false;
+            for (int k = 0; k < points; k++) {
+                double flow = flows[base + k];
+                if (flow == 0) {
+                    continue;
+                }
+                invested = true;
+                double years = (end - history.times[k]) / YEAR_MILLIS;
+                double growth = Math.pow(1 + rate, years);
+                npv += flow * growth;
+                slope += flow * years * growth / (1 + rate);
+            }
+            if (!invested || slope == 0) {
+                return Double.NaN;
+            }
+            double step = npv / slope;
+            rate -= step;
+            if (rate <= -1) {
+                rate = -1 + 1e-9;
+            }
+            if (Math.abs(step) < IRR_TOLERANCE) {
+                return rate;
+            }
+        }
+        return Double.NaN;
+    }
 }
@@ -1,17 +1,54 @@
 import java.util.List;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
 
 /**
  * Represents an investment portfolio containing various assets.
  * Implements Serializable to support object serialization for persistence.
  * Each portfolio is associated with an investor and maintains a list of assets.
+ *
+ * <p>A portfolio is persisted as a standalone record: the owner is stored by
+ * username and the database reference is transient, so neither the investor
+ * nor the rest of the database is serialized with it. Both are re-attached
+ * by {@link PortfolioDatabase} after loading.</p>
+ *
+ * <p>Each portfolio carries a record id assigned when it is created. The id
+ * identifies the stored record across edits and is the basis of equality.</p>
+ *
+ * <p>The asset list is copy-on-write: adding, replacing or removing an
+ * asset builds a new list under the owner's lock and swaps it in, so a list
+ * obtained from {@link #getAssets()} never changes while it is being read,
+ * even if another session edits the portfolio.</p>
+ *
+ * <p>Asset changes are persisted as patches holding only the changed assets,
+ * so a journaled database does not write the whole portfolio again for every
+ * added, replaced or removed asset.</p>
  */
-public class Portfolio implements Serializable {
-    private Investor owner;
+public class Portfolio implements Serializable, PatchableRecord {
+    // Matches the value computed for the original class so old files still load
+    private static final long serialVersionUID = 2269467020401835623L;
+    /** Patch kinds, see {@link #applyPatch} */
+    private static final byte ASSETS_ADDED = 1;
+    private static final byte ASSET_REPLACED = 2;
+    private static final byte ASSET_REMOVED = 3;
+    private String id;
+    private transient Investor owner;
+    private String ownerUserName;
     private String name;
-    private List<Asset> assets;
-    private PortfolioDatabase portfolioDatabase;
+    /** Never modified once assigned; changes replace the whole list */
+    private volatile List<Asset> assets;
+    private transient PortfolioDatabase portfolioDatabase;
+    /** Set when this portfolio was read from a record written in an older format */
+    private transient boolean legacyRecord;
 
     /**
      * Constructs a new Portfolio with the specified owner, database reference, and name.
@@ -22,29 +59,108 @@ public class Portfolio implements Serializable {
      * @param name The name of the portfolio
      */
     public Portfolio(Investor createdBy, PortfolioDatabase portfolioDatabase, String name) {
+        this.id = UUID.randomUUID().toString();
         this.owner = createdBy;
+        this.ownerUserName = createdBy.getUserName();
         this.portfolioDatabase = portfolioDatabase;
         this.name = name;
         this.assets = new ArrayList<>();
         portfolioDatabase.addData(this);
     }
 
+    /**
+     * Reconstructs a stored portfolio without adding it to a database.
+     * Used by storage codecs; the database and owner are attached after loading.
+     *
+     * @param id            The stored record id, or null for records written
+     *                      before ids existed, which are given a new one
+     * @param ownerUserName The username of the owning investor
+     * @param name          The name of the portfolio
+     * @param assets        The assets held in the portfolio
+     */
+    Portfolio(String id, String ownerUserName, String name, List<Asset> assets) {
+        this.id = id != null ? id : UUID.randomUUID().toString();
+        this.legacyRecord = id == null;
+        this.ownerUserName = ownerUserName;
+        this.name = name;
+        this.assets = assets;
+    }
+
+    /**
+     * Gets the record id of this portfolio.
+     *
+     * @return The id assigned when the portfolio was created
+     */
+    public String getId() {
+        return this.id;
+    }
+
     /**
      * Gets the owner of this portfolio.
      *
-     * @return The Investor who owns this portfolio
+     * @return The Investor who owns this portfolio, or null if the portfolio
+     *         was loaded from disk and its owner has not been attached yet
      */
     public Investor getOwner() {
         return this.owner;
     }
 
     /**
-     * Gets the list of assets in this portfolio.
+     * Gets the username of the investor who owns this portfolio.
+     * Always available, including for portfolios loaded from disk.
+     *
+     * @return The owner's username
+     */
+    public String getOwnerUserName() {
+        return this.ownerUserName;
+    }
+
+    /**
+     * Gets the name of this portfolio.
+     *
+     * @return The portfolio name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Re-attaches the database this portfolio is stored in after loading.
+     *
+     * @param portfolioDatabase The database that loaded this portfolio
+     */
+    void attachDatabase(PortfolioDatabase portfolioDatabase) {
+        this.portfolioDatabase = portfolioDatabase;
+    }
+
+    /**
+     * Re-attaches the owning investor after loading.
+     *
+     * @param owner The investor whose username matches this portfolio's owner
+     */
+    void attachOwner(Investor owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Checks whether this portfolio was read from a record in an older format,
+     * either one that embedded the owner and the whole database in every
+     * portfolio or one written before record ids existed.
+     *
+     * @return true if the portfolio should be re-saved in the current format
+     */
+    boolean isLegacyRecord() {
+        return legacyRecord;
+    }
+
+    /**
+     * Gets the list of assets in this portfolio. The list is a read-only
+     * snapshot: later changes to the portfolio do not affect it.
      *
-     * @return A List of Asset objects in the portfolio
+     * @return An unmodifiable List of the Asset objects in the portfolio
      */
     public List<Asset> getAssets() {
-        return assets;
+        return Collections.unmodifiableList(assets);
     }
 
     /**
@@ -59,14 +175,65 @@ public class Portfolio implements Serializable {
             System.out.println("Failed to create asset. Please try again.");
             return false;
         }
-        Portfolio oldPortfolio = this;
-        assets.add(createdAsset);
-        portfolioDatabase.editData(oldPortfolio, this);
+        if (!addAsset(createdAsset)) {
+            System.out.println("Failed to save the asset: the portfolio no longer exists.");
+            return false;
+        }
         System.out.println("Asset created successfully!");
         System.out.println("Asset details: " + createdAsset.toString());
         return true;
     }
 
+    /**
+     * Adds an asset to the portfolio without any console input.
+     * Updates the portfolio in the database.
+     *
+     * @param asset The asset to add
+     * @return true if the asset was added, false if the portfolio is no longer stored
+     */
+    public boolean addAsset(Asset asset) {
+        return addAssets(Collections.singletonList(asset));
+    }
+
+    /**
+     * Adds several assets to the portfolio at once, without any console
+     * input. Updates the portfolio in the database once.
+     *
+     * @param added The assets to add, in order
+     * @return true if the assets were added, false if the portfolio is no
+     *         longer stored, in which case it is left unchanged
+     */
+    public boolean addAssets(Collection<? extends Asset> added) {
+        return portfolioDatabase.runForOwner(ownerUserName, () -> {
+            List<Asset> updated = new ArrayList<>(assets.size() + added.size());
+            updated.addAll(assets);
+            updated.addAll(added);
+            return commitAssets(updated, encodePatch(ASSETS_ADDED, -1, added));
+        });
+    }
+
+    /**
+     * Replaces an asset with an edited version, keeping its position.
+     * Updates the portfolio in the database after a successful replacement.
+     *
+     * @param asset       The asset to replace
+     * @param replacement The new version of the asset
+     * @return true if the asset was replaced, false if it is not in the
+     *         portfolio or the portfolio is no longer stored
+     */
+    public boolean replaceAsset(Asset asset, Asset replacement) {
+        return portfolioDatabase.runForOwner(ownerUserName, () -> {
+            int index = assets.indexOf(asset);
+            if (index < 0) {
+                return false;
+            }
+            List<Asset> updated = new ArrayList<>(assets);
+            updated.set(index, replacement);
+            return commitAssets(updated,
+                    encodePatch(ASSET_REPLACED, index, Collections.singletonList(replacement)));
+        });
+    }
+
     /**
      * Removes an asset from the portfolio.
      * Updates the portfolio in the database after successful removal.
@@ -75,20 +242,25 @@ public class Portfolio implements Serializable {
      * @return true if the asset was removed successfully, false otherwise
      */
     public Boolean removeAsset(Asset asset){
-        if(assets.contains(asset)){
-            Portfolio oldPortfolio = this;
-            assets.remove(asset);
-            portfolioDatabase.editData(oldPortfolio, this);
-            return true;
-        }
-        else {
-            return false;
-        }
+        return portfolioDatabase.runForOwner(ownerUserName, () -> {
+            int index = assets.indexOf(asset);
+            if(index >= 0){
+                List<Asset> updated = new ArrayList<>(assets);
+                updated.remove(index);
+                return commitAssets(updated, encodePatch(ASSET_REMOVED, index, Collections.emptyList()));
+            }
+            else {
+                return false;
+            }
+        });
     }
 
     /**
      * Edits an existing asset in the portfolio by name.
      * Updates the portfolio in the database after successful edit.
+     * The asset is changed in place while its details are entered, so this
+     * console edit is meant for single-session use; shared services edit
+     * through {@link #replaceAsset(Asset, Asset)}.
      *
      * @param Name The name of the asset to edit
      * @return true if the asset was edited successfully, false otherwise
@@ -96,9 +268,15 @@ public class Portfolio implements Serializable {
     public boolean editAsset(String Name){
         Asset assetToEdit = getAssetByName(Name);
         if(!(assetToEdit == null)){
-            Portfolio oldPortfolio = this;
             assetToEdit.editAsset();
-            portfolioDatabase.editData(oldPortfolio, this);
+            portfolioDatabase.runForOwner(ownerUserName, () -> {
+                int index = indexOfInstance(assetToEdit);
+                if (index < 0) {
+                    return portfolioDatabase.editData(this, this); // removed meanwhile; store the whole portfolio
+                }
+                return portfolioDatabase.editAssets(this,
+                        encodePatch(ASSET_REPLACED, index, Collections.singletonList(assetToEdit)));
+            });
             return true;
         }
         else{
@@ -128,15 +306,188 @@ public class Portfolio implements Serializable {
      * @return The Asset object if found, null otherwise
      */
     public Asset getAssetByName(String name){
+        Asset asset = findAsset(name);
+        if(asset == null){
+            System.out.println("Asset not found in the portfolio.");
+        }
+        return asset;
+    }
+
+    /**
+     * Finds an asset in the portfolio by its name without printing anything.
+     *
+     * @param name The name of the asset to find
+     * @return The first asset with that name, or null if there is none
+     */
+    public Asset findAsset(String name){
         for(Asset asset : assets){
             if(asset.getName().equals(name)){
                 return asset;
             }
         }
-        System.out.println("Asset not found in the portfolio.");
         return null;
     }
 
+    /**
+     * Applies an asset change journaled by this portfolio's mutators, without
+     * persisting it. Called while a database journal is replayed.
+     *
+     * @param in The input holding the patch
+     * @throws IOException if the patch cannot be read or its position is not in the portfolio
+     */
+    @Override
+    public void applyPatch(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        int index = in.readInt();
+        int count = in.readInt();
+        List<Asset> updated = new ArrayList<>(assets.size() + count);
+        updated.addAll(assets);
+        if (kind == ASSETS_ADDED) {
+            for (int i = 0; i < count; i++) {
+                updated.add(BinaryCodecs.readAsset(in));
+            }
+        } else if (index < 0 || index >= updated.size()) {
+            throw new IOException("Asset patch position " + index + " is outside portfolio " + id);
+        } else if (kind == ASSET_REPLACED) {
+            updated.set(index, BinaryCodecs.readAsset(in));
+        } else if (kind == ASSET_REMOVED) {
+            updated.remove(index);
+        } else {
+            throw new IOException("Unknown asset patch: " + kind);
+        }
+        assets = updated;
+    }
+
+    /**
+     * Encodes an asset change for {@link #applyPatch}. Assets are written in
+     * the binary codec's layout whatever codec the database uses.
+     *
+     * @param kind    The kind of change
+     * @param index   The position of the replaced or removed asset, or -1 for additions
+     * @param changed The added assets, or the replacement asset
+     * @return The encoded change, or null if an asset cannot be encoded, in
+     *         which case the whole portfolio is stored instead
+     */
+    private byte[] encodePatch(byte kind, int index, Collection<? extends Asset> changed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(kind);
+            out.writeInt(index);
+            out.writeInt(changed.size());
+            for (Asset asset : changed) {
+                BinaryCodecs.writeAsset(out, asset);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Swaps in a changed asset list and persists the change, restoring the
+     * previous list if the database no longer holds this portfolio, e.g.
+     * because another session deleted it. The caller holds the owner's lock.
+     *
+     * @param updated The new asset list
+     * @param patch   The change, as encoded by {@link #encodePatch}
+     * @return true if the change was persisted
+     */
+    private boolean commitAssets(List<Asset> updated, byte[] patch) {
+        List<Asset> previous = assets;
+        assets = updated;
+        if (!portfolioDatabase.editAssets(this, patch)) {
+            assets = previous;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the change in the number of assets made by a patch, without
+     * decoding its assets.
+     *
+     * @param patch A change encoded by this class's mutators
+     * @return The number of assets added, negative if an asset was removed
+     */
+    static int assetCountChange(byte[] patch) {
+        ByteBuffer header = ByteBuffer.wrap(patch);
+        byte kind = header.get();
+        header.getInt(); // position
+        int count = header.getInt();
+        return kind == ASSETS_ADDED ? count : kind == ASSET_REMOVED ? -1 : 0;
+    }
+
+    /**
+     * Finds the position of this exact asset object, ignoring equal copies.
+     *
+     * @param asset The asset to find
+     * @return Its position, or -1 if it is no longer in the portfolio
+     */
+    private int indexOfInstance(Asset asset) {
+        List<Asset> current = assets;
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i) == asset) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Restores a portfolio from either the current format or the old one,
+     * taking the owner's username from the embedded investor in old files.
+     *
+     * @param in The stream to read from
+     * @throws IOException if the stream cannot be read
+     * @throws ClassNotFoundException if a class in the stream cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        @SuppressWarnings("unchecked")
+        List<Asset> storedAssets = (List<Asset>) fields.get("assets", null);
+        assets = storedAssets != null ? storedAssets : new ArrayList<>();
+        id = (String) fields.get("id", null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            legacyRecord = true;
+        }
+        ownerUserName = (String) fields.get("ownerUserName", null);
+        if (ownerUserName == null) {
+            Investor legacyOwner = (Investor) fields.get("owner", null);
+            ownerUserName = legacyOwner == null ? null : legacyOwner.getUserName();
+            legacyRecord = true;
+        }
+    }
+
+    /**
+     * Compares this portfolio with another object by record id.
+     *
+     * @param obj The object to compare with
+     * @return true if the object is a portfolio with the same id
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Portfolio)) {
+            return false;
+        }
+        return id.equals(((Portfolio) obj).id);
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return The hash code of the record id
+     */
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
     /**
      * Returns a string representation of the portfolio.
      *
@@ -1,23 +1,81 @@
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * A database implementation for managing Portfolio objects.
  * Extends the generic Database class with Portfolio-specific operations.
  * Handles persistence of portfolio data to a serialized file.
+ *
+ * <p>Portfolios are also indexed by owner username, so looking up one
+ * investor's portfolios costs time proportional to their own portfolio count.
+ * Their positions in the stored list are indexed by record id, so an edit
+ * replaces the portfolio in place with a single journal record.</p>
  */
 public class PortfolioDatabase extends Database<Portfolio> {
     private static final long serialVersionUID = 1L;
     private List<Portfolio> ports;
+    private transient Map<String, List<Portfolio>> portsByOwner;
+    private transient Map<String, Integer> positionsById;
 
     /**
      * Constructs a new PortfolioDatabase.
-     * Initializes the database by loading existing portfolios from the serialized file.
-     * Uses "src/database/portfolioDatabase.ser" as the storage file.
+     * Uses "src/database/portfolioDatabase.ser" as the storage file, stored with
+     * the compact binary codec and with mutations journaled to a write-ahead log.
      */
     public PortfolioDatabase() {
-        super("src/database/portfolioDatabase.ser");
-        this.ports = loadFromFile();
+        this("src/database/portfolioDatabase.ser", BinaryCodecs.PORTFOLIO);
+    }
+
+    /**
+     * Constructs a PortfolioDatabase backed by the given file and storage format.
+     * Initializes the database by loading existing portfolios from the file
+     * and re-attaching each of them to this database. Files in the old format, where
+     * every portfolio embedded the whole database, are rewritten in the current format.
+     *
+     * @param fileName The file to store portfolios in
+     * @param codec    The codec used to encode portfolios on disk
+     */
+    public PortfolioDatabase(String fileName, RecordCodec<Portfolio> codec) {
+        this(fileName, codec, true);
+    }
+
+    /**
+     * Constructs a PortfolioDatabase that either loads its file or starts
+     * empty without touching the disk, for subclasses that keep portfolios in
+     * their own storage layout.
+     *
+     * @param fileName The file (or directory, for subclasses) to store portfolios in
+     * @param codec    The codec used to encode portfolios on disk
+     * @param load     true to load the portfolios stored in the file
+     */
+    protected PortfolioDatabase(String fileName, RecordCodec<Portfolio> codec, boolean load) {
+        super(fileName, true, codec);
+        this.ports = load ? loadFromFile() : new ArrayList<>();
+        this.portsByOwner = new ConcurrentHashMap<>();
+        this.positionsById = new HashMap<>();
+        for (int i = 0; i < ports.size(); i++) {
+            Portfolio port = ports.get(i);
+            port.attachDatabase(this);
+            indexPortfolio(port);
+            positionsById.put(port.getId(), i);
+        }
+    }
+
+    /**
+     * Checks whether a loaded portfolio was stored in an older format.
+     *
+     * @param port A portfolio read from the database file
+     * @return true if the portfolio should be re-saved in the current format
+     */
+    @Override
+    protected boolean needsRewrite(Portfolio port) {
+        return port.isLegacyRecord();
     }
 
     /**
@@ -28,9 +86,11 @@ public class PortfolioDatabase extends Database<Portfolio> {
      */
     @Override
     public boolean addData(Portfolio newPort) {
-        if (!ports.contains(newPort)) {
+        if (!positionsById.containsKey(newPort.getId())) {
+            positionsById.put(newPort.getId(), ports.size());
             ports.add(newPort);
-            saveToFile(ports); // Save the updated list to the file
+            indexPortfolio(newPort);
+            persistAdd(ports, newPort); // Journal the addition
             return true;
         } else {
             return false;
@@ -45,9 +105,14 @@ public class PortfolioDatabase extends Database<Portfolio> {
      */
     @Override
     public boolean deleteData(Portfolio port) {
-        if (ports.contains(port)) {
-            ports.remove(port);
-            saveToFile(ports);
+        Integer index = positionsById.remove(port.getId());
+        if (index != null) {
+            Portfolio stored = ports.remove((int) index);
+            unindexPortfolio(stored);
+            for (int i = index; i < ports.size(); i++) {
+                positionsById.put(ports.get(i).getId(), i);
+            }
+            persistRemove(ports, index);
             return true;
         } else {
             return false;
@@ -55,33 +120,195 @@ public class PortfolioDatabase extends Database<Portfolio> {
     }
 
     /**
-     * Edits a portfolio by replacing the old version with the new version.
+     * Edits a portfolio by replacing the stored version in place, keeping its
+     * position in the database.
      * 
      * @param oldData The portfolio to be replaced
      * @param newData The new version of the portfolio
-     * @return Always returns true (consider adding error handling)
+     * @return true if the portfolio was replaced, false if the old portfolio wasn't found
+     *         or the new one has the id of another stored portfolio
      */
     @Override
     public boolean editData(Portfolio oldData, Portfolio newData) {
-        deleteData(oldData);
-        addData(newData);
+        Integer index = positionsById.get(oldData.getId());
+        if (index == null) {
+            return false;
+        }
+        if (!newData.getId().equals(oldData.getId())) {
+            if (positionsById.containsKey(newData.getId())) {
+                return false;
+            }
+            positionsById.remove(oldData.getId());
+            positionsById.put(newData.getId(), index);
+        }
+        Portfolio stored = ports.set(index, newData);
+        if (stored != newData) {
+            replaceIndexedPortfolio(stored, newData);
+            newData.attachDatabase(this);
+        }
+        persistReplace(ports, index, newData);
         return true;
     }
 
+    /**
+     * Persists a change to a stored portfolio's assets by journaling only the
+     * change, which the portfolio has encoded as a patch. The whole portfolio
+     * is stored instead if the patch could not be encoded or the stored
+     * record is another copy of the portfolio.
+     *
+     * @param port  The portfolio whose assets changed
+     * @param patch The change, or null if it could not be encoded
+     * @return true if the change was persisted, false if the portfolio wasn't found
+     */
+    boolean editAssets(Portfolio port, byte[] patch) {
+        Integer index = positionsById.get(port.getId());
+        if (index == null) {
+            return false;
+        }
+        if (patch == null || ports.get(index) != port) {
+            return editData(port, port);
+        }
+        persistPatch(ports, index, patch);
+        return true;
+    }
+
+    /**
+     * Gets the stored version of a portfolio.
+     *
+     * @param id The record id of the portfolio
+     * @return The stored portfolio, or null if there is none with that id
+     */
+    Portfolio getStored(String id) {
+        Integer index = positionsById.get(id);
+        return index == null ? null : ports.get(index);
+    }
+
     /**
      * Retrieves all portfolios belonging to a specific investor.
+     * Portfolios are matched by the owner's username and the investor is
+     * attached to each of them.
      * 
      * @param owner The investor whose portfolios to find
      * @return A list of portfolios owned by the specified investor
      */
     public List<Portfolio> getUserPortfolios(Investor owner) {
-        List<Portfolio> foundPorts = new ArrayList<>();
-        for (Portfolio port : ports) {
-            if (port.getOwner().equals(owner)) {
-                foundPorts.add(port);
-            }
+        List<Portfolio> foundPorts = new ArrayList<>(ownerPortfolios(owner.getUserName()));
+        for (Portfolio port : foundPorts) {
+            port.attachOwner(owner);
         }
         return foundPorts;
     }
+
+    /**
+     * Runs a change to one owner's portfolios, such as modifying a portfolio's
+     * assets and saving it, as a single unit. This implementation simply runs
+     * the change; thread-safe subclasses hold the owner's lock while it runs.
+     *
+     * @param <R>           The result type of the change
+     * @param ownerUserName The owner whose portfolios are changed
+     * @param change        The change to run
+     * @return The result of the change
+     */
+    public <R> R runForOwner(String ownerUserName, Supplier<R> change) {
+        return change.get();
+    }
+
+    /**
+     * Retrieves every portfolio in the database, for bulk processing.
+     * Owners are not attached; use {@link Portfolio#getOwnerUserName()}.
+     *
+     * @return An unmodifiable view of all portfolios
+     */
+    public List<Portfolio> getAllPortfolios() {
+        return Collections.unmodifiableList(ports);
+    }
+
+    /**
+     * Retrieves one page of an investor's portfolios, in the order they were added.
+     *
+     * @param owner  The investor whose portfolios to find
+     * @param offset The index of the first portfolio to return
+     * @param limit  The maximum number of portfolios to return
+     * @return A list of at most {@code limit} portfolios owned by the investor
+     */
+    public List<Portfolio> getUserPortfolios(Investor owner, int offset, int limit) {
+        List<Portfolio> owned = ownerPortfolios(owner.getUserName());
+        int from = Math.min(Math.max(offset, 0), owned.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), owned.size());
+        List<Portfolio> page = new ArrayList<>(owned.subList(from, to));
+        for (Portfolio port : page) {
+            port.attachOwner(owner);
+        }
+        return page;
+    }
+
+    /**
+     * Streams an investor's portfolios without copying them into a list.
+     * The database must not be modified while the stream is being consumed.
+     *
+     * @param owner The investor whose portfolios to stream
+     * @return A stream of the portfolios owned by the investor
+     */
+    public Stream<Portfolio> streamUserPortfolios(Investor owner) {
+        return ownerPortfolios(owner.getUserName()).stream().map(port -> {
+            port.attachOwner(owner);
+            return port;
+        });
+    }
+
+    /**
+     * Gets the indexed portfolios of an owner.
+     *
+     * @param ownerUserName The owner's username
+     * @return The owner's live portfolio list, or an empty list if there is none
+     */
+    private List<Portfolio> ownerPortfolios(String ownerUserName) {
+        return portsByOwner.getOrDefault(ownerUserName, Collections.emptyList());
+    }
+
+    /**
+     * Adds a portfolio to the owner index.
+     *
+     * @param port The portfolio to index
+     */
+    private void indexPortfolio(Portfolio port) {
+        portsByOwner.computeIfAbsent(port.getOwnerUserName(), k -> new ArrayList<>()).add(port);
+    }
+
+    /**
+     * Replaces a portfolio in the owner index, keeping its place among the
+     * owner's portfolios when the owner is unchanged.
+     *
+     * @param stored  The portfolio being replaced
+     * @param newPort The portfolio replacing it
+     */
+    private void replaceIndexedPortfolio(Portfolio stored, Portfolio newPort) {
+        List<Portfolio> owned = portsByOwner.get(stored.getOwnerUserName());
+        if (owned != null && stored.getOwnerUserName().equals(newPort.getOwnerUserName())) {
+            for (int i = 0; i < owned.size(); i++) {
+                if (owned.get(i) == stored) {
+                    owned.set(i, newPort);
+                    return;
+                }
+            }
+        }
+        unindexPortfolio(stored);
+        indexPortfolio(newPort);
+    }
+
+    /**
+     * Removes a portfolio from the owner index.
+     *
+     * @param port The stored portfolio to remove
+     */
+    private void unindexPortfolio(Portfolio port) {
+        List<Portfolio> owned = portsByOwner.get(port.getOwnerUserName());
+        if (owned != null) {
+            owned.removeIf(p -> p == port);
+            if (owned.isEmpty()) {
+                portsByOwner.remove(port.getOwnerUserName());
+            }
+        }
+    }
     
 }
\ No newline at end of file
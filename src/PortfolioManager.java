@@ -1,33 +1,53 @@
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Scanner;
 
 /**
  * Manages portfolio operations for an investor, including creating, viewing,
  * editing, and removing portfolios and their assets.
- * Provides a user-friendly console interface for portfolio management.
+ * Provides a user-friendly console interface for portfolio management; the
+ * operations themselves are carried out by a {@link PortfolioService}.
  */
 public class PortfolioManager {
     private Investor investor;
-    private PortfolioDatabase portfolioDatabase;
+    private PortfolioService portfolioService;
     private List<Portfolio> portfolios;
-    private ZakatEstimator zakatEstimator;
-    private ZakatReport zakatReport;
-    private PortfolioReport portfolioReport;
     private Scanner scanner;
 
     /**
      * Constructs a PortfolioManager for the specified investor.
-     * Initializes the portfolio database and loads the investor's portfolios.
+     * Uses the shared portfolio database, which loads only this investor's
+     * portfolios if they are not cached already.
      *
      * @param investor The investor whose portfolios will be managed
      */
     public PortfolioManager(Investor investor) {
+        this(investor, new PortfolioService());
+    }
+
+    /**
+     * Constructs a PortfolioManager for the specified investor over an existing
+     * database, e.g. a {@link ConcurrentPortfolioDatabase} shared by several sessions.
+     *
+     * @param investor The investor whose portfolios will be managed
+     * @param portfolioDatabase The database holding the investor's portfolios
+     */
+    public PortfolioManager(Investor investor, PortfolioDatabase portfolioDatabase) {
+        this(investor, new PortfolioService(new AuthService(), portfolioDatabase));
+    }
+
+    /**
+     * Constructs a PortfolioManager for the specified investor over a service
+     * that may be shared by several sessions.
+     *
+     * @param investor The investor whose portfolios will be managed
+     * @param portfolioService The service carrying out the operations
+     */
+    public PortfolioManager(Investor investor, PortfolioService portfolioService) {
         this.investor = investor;
-        this.portfolioDatabase = new PortfolioDatabase();
-        this.portfolios = portfolioDatabase.getUserPortfolios(investor);
-        this.zakatEstimator = new ZakatEstimator();
-        this.zakatReport = null;
-        this.portfolioReport = new PortfolioReport(portfolios, investor);
+        this.portfolioService = portfolioService;
+        this.portfolios = portfolioService.getPortfolios(investor);
         this.scanner = new Scanner(System.in);
     }
 
@@ -89,9 +109,13 @@ public class PortfolioManager {
     private void addPortfolio() {
         System.out.print("Enter Portfolio Name: ");
         String portName = scanner.nextLine();
-        Portfolio newPortfolio = new Portfolio(investor, portfolioDatabase, portName);
-        System.out.println("Portfolio added successfully: " + newPortfolio);
-        portfolios = portfolioDatabase.getUserPortfolios(investor);
+        try {
+            Portfolio newPortfolio = portfolioService.createPortfolio(investor, portName);
+            System.out.println("Portfolio added successfully: " + newPortfolio);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+        portfolios = portfolioService.getPortfolios(investor);
     }
 
     /**
@@ -129,8 +153,8 @@ public class PortfolioManager {
         System.out.print("Are you sure you want to remove this portfolio? (yes/no): ");
         String confirmation = scanner.nextLine().trim().toLowerCase();
         if (confirmation.equals("yes")) {
-            portfolioDatabase.deleteData(portfolioToRemove);
-            portfolios = portfolioDatabase.getUserPortfolios(investor);
+            portfolioService.removePortfolio(portfolioToRemove);
+            portfolios = portfolioService.getPortfolios(investor);
             System.out.println("Portfolio removed successfully: " + portfolioToRemove);
         } else {
             System.out.println("Portfolio removal canceled.");
@@ -147,8 +171,11 @@ public class PortfolioManager {
         }
 
         System.out.println("\nGenerating portfolio report...");
-        portfolioReport = new PortfolioReport(portfolios, investor);
-        portfolioReport.generateReport();
+        try {
+            System.out.println("Portfolio report generated: " + portfolioService.generatePortfolioReport(investor));
+        } catch (IOException e) {
+            System.err.println("Error generating portfolio report: " + e.getMessage());
+        }
     }
 
     /**
@@ -196,7 +223,7 @@ public class PortfolioManager {
 
                 switch (choice) {
                     case 1:
-                        portfolio.addAsset();
+                        addAsset(portfolio);
                         break;
                     case 2:
                         portfolio.viewAssets();
@@ -204,20 +231,18 @@ public class PortfolioManager {
                     case 3:
                         portfolio.viewAssets();
                         System.out.print("Enter the name of the asset to edit: ");
-                        String assetName = scanner.nextLine();
-                        portfolio.editAsset(assetName);
+                        editAsset(portfolio, scanner.nextLine());
                         break;
                     case 4:
                         portfolio.viewAssets();
                         System.out.print("Enter the name of the asset to remove: ");
                         String assetNameToRemove = scanner.nextLine();
-                        Asset assetToRemove = portfolio.getAssetByName(assetNameToRemove);
-                        if (assetToRemove != null) {
+                        if (portfolio.findAsset(assetNameToRemove) != null) {
                             System.out.print("Are you sure you want to remove this asset? (yes/no): ");
                             String confirmation = scanner.nextLine().trim().toLowerCase();
                             if (confirmation.equals("yes")) {
-                                portfolio.removeAsset(assetToRemove);
-                                System.out.println("Asset removed successfully: " + assetToRemove);
+                                Asset removed = portfolioService.removeAsset(portfolio, assetNameToRemove);
+                                System.out.println("Asset removed successfully: " + removed);
                             } else {
                                 System.out.println("Asset removal canceled.");
                             }
@@ -226,12 +251,16 @@ public class PortfolioManager {
                         }
                         break;
                     case 5:
-                        zakatEstimator.displayZakatDetails(portfolio);
+                        displayZakat(portfolio);
                         System.out.print("Would you like to generate a Zakat report? (yes/no): ");
                         String generateReport = scanner.nextLine().trim().toLowerCase();
                         if (generateReport.equals("yes")) {
-                            zakatReport = new ZakatReport(portfolio);
-                            zakatReport.generateReport();
+                            try {
+                                System.out.println("Zakat report generated: "
+                                        + portfolioService.generateZakatReport(portfolio));
+                            } catch (IOException e) {
+                                System.err.println("Error generating Zakat report: " + e.getMessage());
+                            }
                         }
                         break;
                     case 6:
@@ -247,6 +276,142 @@ public class PortfolioManager {
         }
     }
 
+    /**
+     * Prompts for a new asset and adds it to the portfolio.
+     *
+     * @param portfolio The portfolio to add to
+     */
+    private void addAsset(Portfolio portfolio) {
+        System.out.println("Enter asset type (stocks, crypto, real estate, gold): ");
+        AssetType type = parseAssetType(scanner.nextLine());
+        if (type == null) {
+            System.out.println("Failed to create asset. Please try again.");
+            return;
+        }
+        try {
+            Asset asset = portfolioService.addAsset(portfolio, promptAssetDetails(type, "asset ", ""));
+            if (asset == null) {
+                System.out.println("Failed to save the asset: the portfolio no longer exists.");
+                return;
+            }
+            System.out.println("Asset created successfully!");
+            System.out.println("Asset details: " + asset);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.out.println("Failed to create asset. Please try again.");
+        }
+    }
+
+    /**
+     * Prompts for the new details of an asset and replaces it in the portfolio.
+     *
+     * @param portfolio The portfolio holding the asset
+     * @param assetName The name of the asset to edit
+     */
+    private void editAsset(Portfolio portfolio, String assetName) {
+        Asset asset = portfolio.getAssetByName(assetName);
+        if (asset == null) {
+            return;
+        }
+        try {
+            portfolioService.editAsset(portfolio, assetName, promptAssetDetails(asset.getType(), "new ", "new "));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prompts for the details of an asset of the given type.
+     *
+     * @param type           The asset type
+     * @param commonPrefix   The word before common detail names, e.g. "asset "
+     * @param specificPrefix The word before type-specific detail names, e.g. "new "
+     * @return The request holding the entered details
+     */
+    private AssetRequest promptAssetDetails(AssetType type, String commonPrefix, String specificPrefix) {
+        System.out.println("Enter " + commonPrefix + "name: ");
+        String name = scanner.nextLine();
+        System.out.println("Enter " + commonPrefix + "quantity: ");
+        int quantity = scanner.nextInt();
+        scanner.nextLine(); // Consume newline
+        System.out.println("Enter " + commonPrefix + "purchase price: ");
+        float purchasePrice = scanner.nextFloat();
+        scanner.nextLine(); // Consume newline
+        System.out.println("Is Zakat applicable? (true/false): ");
+        boolean zakatApplicable = scanner.nextBoolean();
+        scanner.nextLine(); // Consume newline
+        AssetRequest request = new AssetRequest(type, name, quantity, purchasePrice).zakatApplicable(zakatApplicable);
+        switch (type) {
+            case STOCKS:
+            case CRYPTO:
+                System.out.println("Enter " + specificPrefix + (type == AssetType.STOCKS ? "StockSymbol: " : "CryptoSymbol: "));
+                request.symbol(scanner.nextLine());
+                System.out.println("Enter " + specificPrefix + "Exchange: ");
+                return request.exchange(scanner.nextLine());
+            case GOLD:
+                System.out.println("Enter " + specificPrefix + "Karat: ");
+                request.karat(scanner.nextLine());
+                System.out.println("Enter " + specificPrefix + "Weight in Grams: ");
+                float weight = scanner.nextFloat();
+                scanner.nextLine(); // Consume newline
+                return request.weight(weight);
+            default:
+                System.out.println("Enter " + specificPrefix + "Location: ");
+                request.location(scanner.nextLine());
+                System.out.println("Enter " + specificPrefix + "PropertyType: ");
+                return request.propertyType(scanner.nextLine());
+        }
+    }
+
+    /**
+     * Parses an asset type as typed at the prompt.
+     *
+     * @param text The entered type
+     * @return The asset type, or null if it is not one of the supported types
+     */
+    private static AssetType parseAssetType(String text) {
+        switch (text.trim().toLowerCase()) {
+            case "stocks":
+                return AssetType.STOCKS;
+            case "crypto":
+                return AssetType.CRYPTO;
+            case "real estate":
+                return AssetType.REAL_STATE;
+            case "gold":
+                return AssetType.GOLD;
+            default:
+                System.out.println("Invalid asset type: " + text + ". Asset creation failed.");
+                return null;
+        }
+    }
+
+    /**
+     * Displays the Zakat of each Zakat-applicable asset and of the portfolio,
+     * then the Zakat due from the investor across all portfolios, counting
+     * only assets held for a full hawl and applying the nisab if it is known.
+     *
+     * @param portfolio The portfolio to display Zakat details for
+     */
+    private void displayZakat(Portfolio portfolio) {
+        PortfolioService.ZakatSummary zakat = portfolioService.calculateZakat(investor, portfolio, LocalDate.now());
+        System.out.println("\n=== Zakat Calculation Details ===");
+        System.out.println("Portfolio: " + portfolio);
+        for (int i = 0; i < zakat.getAssetCount(); i++) {
+            System.out.printf("Asset: %s - Zakat Amount: %.2f%n", zakat.getAssetName(i), zakat.getAssetZakat(i));
+        }
+        System.out.printf("Total Portfolio Zakat: %.2f%n", zakat.getPortfolioZakat());
+
+        System.out.println("\n=== Zakat Due Across All Portfolios ===");
+        System.out.printf("Wealth held for a full Hawl: %.2f%n", zakat.getZakatableWealth());
+        if (zakat.getNisab() > 0) {
+            System.out.printf("Nisab: %.2f%n", zakat.getNisab());
+        }
+        System.out.printf("Total Zakat Due: %.2f%n", zakat.getZakatDue());
+        if (zakat.getNextHawlDate() != null) {
+            System.out.println("More assets complete their Hawl on: " + zakat.getNextHawlDate());
+        }
+    }
+
     /**
      * Validates and retrieves integer input from the user.
      * Continues prompting until valid integer input is received.
@@ -262,4 +427,4 @@ public class PortfolioManager {
         scanner.nextLine(); // Consume the leftover newline
         return input;
     }
-}
\ No newline at end of file
+}
@@ -1,72 +1,180 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
- * Generates a detailed report of an investor's portfolios, including asset information
- * and zakat applicability. The report is saved to a file with a timestamp in the filename.
+ * Generates a detailed report of an investor's portfolios, including asset information,
+ * market values and zakat applicability. The report is saved to a file with a timestamp
+ * in the filename. Rows are streamed through a {@link ReportWriter}, so large portfolios
+ * are written in bounded memory.
+ *
+ * <p>Assets are marked to market with a {@link ValuationEngine}, which prices every
+ * symbol in the report with one lookup. Assets without a known price are shown at cost.
+ * Given a {@link RiskAllocation}, each portfolio also gets its allocation across asset
+ * classes, its concentration and its value at risk.</p>
  */
 public class PortfolioReport extends ReportGenerator {
     private List<Portfolio> portfolios;
     private Investor investor;
+    private ValuationEngine valuationEngine;
+    private RiskAllocation riskAllocation;
 
     /**
      * Constructs a PortfolioReport for the specified investor and portfolios.
      *
      * @param portfolios the list of portfolios to include in the report
      * @param investor the investor whose portfolios are being reported
+     * @param valuationEngine the engine to value assets with, or null to value them at cost
      */
-    public PortfolioReport(List<Portfolio> portfolios, Investor investor) {
+    public PortfolioReport(List<Portfolio> portfolios, Investor investor, ValuationEngine valuationEngine) {
+        this(portfolios, investor, valuationEngine, null);
+    }
+
+    /**
+     * Constructs a PortfolioReport for the specified investor and portfolios
+     * that also shows the risk of each portfolio.
+     *
+     * @param portfolios the list of portfolios to include in the report
+     * @param investor the investor whose portfolios are being reported
+     * @param valuationEngine the engine to value assets with, or null to value them at cost
+     * @param riskAllocation the analyzer to measure risk with, or null to leave risk out
+     */
+    public PortfolioReport(List<Portfolio> portfolios, Investor investor, ValuationEngine valuationEngine,
+            RiskAllocation riskAllocation) {
         super();
         this.portfolios = portfolios;
         this.investor = investor;
+        this.valuationEngine = valuationEngine;
+        this.riskAllocation = riskAllocation;
+    }
+
+    /**
+     * Constructs a PortfolioReport saved into the given directory, with the
+     * investor's username in its filename, e.g. for batch runs.
+     *
+     * @param portfolios the list of portfolios to include in the report
+     * @param investor the investor whose portfolios are being reported
+     * @param directory the directory to save the report in
+     * @param valuationEngine the engine to value assets with, or null to value them at cost
+     */
+    public PortfolioReport(List<Portfolio> portfolios, Investor investor, String directory,
+            ValuationEngine valuationEngine) {
+        this(portfolios, investor, directory, valuationEngine, null);
+    }
+
+    /**
+     * Constructs a PortfolioReport saved into the given directory, with the
+     * investor's username in its filename, that also shows the risk of each
+     * portfolio.
+     *
+     * @param portfolios the list of portfolios to include in the report
+     * @param investor the investor whose portfolios are being reported
+     * @param directory the directory to save the report in
+     * @param valuationEngine the engine to value assets with, or null to value them at cost
+     * @param riskAllocation the analyzer to measure risk with, or null to leave risk out
+     */
+    public PortfolioReport(List<Portfolio> portfolios, Investor investor, String directory,
+            ValuationEngine valuationEngine, RiskAllocation riskAllocation) {
+        super(directory, investor.getUserName());
+        this.portfolios = portfolios;
+        this.investor = investor;
+        this.valuationEngine = valuationEngine;
+        this.riskAllocation = riskAllocation;
     }
 
     /**
      * Generates a comprehensive portfolio report and saves it to a file.
-     * The report includes details for each portfolio, its assets, values,
-     * and zakat applicability. The filename is generated automatically with
+     * The report includes details for each portfolio, its assets, cost and
+     * market values, and zakat applicability. The filename is generated automatically with
      * a timestamp.
      */
     @Override
     public void generateReport() {
+        try {
+            String fileName = writeReport();
+            System.out.println("Portfolio report generated: " + fileName);
+        } catch (IOException e) {
+            System.err.println("Error generating portfolio report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the portfolio report to a new file without printing anything.
+     *
+     * @return the path of the written file
+     * @throws IOException if the report cannot be written
+     */
+    @Override
+    public String writeReport() throws IOException {
         String fileName = generateFileName("portfolio_summary");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write("=== Portfolio Summary Report ===\n");
-            writer.write("Generated on: "
-                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n");
-            writer.write("Investor: " + investor.getName() + "\n\n");
+        Map<String, Double> prices = valuationEngine == null
+                ? Collections.emptyMap()
+                : valuationEngine.getPrices(ValuationEngine.collectSymbols(portfolios));
+        RiskAllocation.Result[] risks = riskAllocation == null ? null : riskAllocation.analyzeAll(portfolios);
+        try (ReportWriter writer = new ReportWriter(fileName)) {
+            writer.text("=== Portfolio Summary Report ===").newline();
+            writer.text("Generated on: ")
+                    .text(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).newline();
+            writer.text("Investor: ").text(investor.getName()).newline().newline();
 
-            for (Portfolio portfolio : portfolios) {
-                writer.write("Portfolio: " + portfolio.toString() + "\n");
-                writer.write(String.format("%-20s %-10s %-15s %-15s %-15s\n",
-                        "Asset Name", "Quantity", "Price (USD)", "Total Value", "Zakat Applicable"));
-                writer.write("-".repeat(85) + "\n");
+            for (int p = 0; p < portfolios.size(); p++) {
+                Portfolio portfolio = portfolios.get(p);
+                writer.text("Portfolio: ").text(portfolio.toString()).newline();
+                writer.padded("Asset Name", 20).text(" ").padded("Quantity", 10).text(" ")
+                        .padded("Price (USD)", 15).text(" ").padded("Total Value", 15).text(" ")
+                        .padded("Market Value", 15).text(" ").padded("Zakat Applicable", 15).newline();
+                writer.rule(101).newline();
 
                 double portfolioTotal = 0;
+                double portfolioMarketValue = 0;
                 for (Asset asset : portfolio.getAssets()) {
                     double totalValue = asset.getPurchasePrice() * asset.getQuantity();
+                    double marketValue = ValuationEngine.valueAsset(asset, prices);
                     portfolioTotal += totalValue;
+                    portfolioMarketValue += marketValue;
 
-                    writer.write(String.format("%-20s %-10d %-15.2f %-15.2f %-15s\n",
-                            asset.getName(),
-                            asset.getQuantity(),
-                            asset.getPurchasePrice(),
-                            totalValue,
-                            asset.isZakatApplicable() ? "Zakat: Yes" : "Zakat: No"));
+                    writer.padded(asset.getName(), 20).text(" ")
+                            .padded(asset.getQuantity(), 10).text(" ")
+                            .padded(asset.getPurchasePrice(), 15).text(" ")
+                            .padded(totalValue, 15).text(" ")
+                            .padded(marketValue, 15).text(" ")
+                            .padded(asset.isZakatApplicable() ? "Zakat: Yes" : "Zakat: No", 15).newline();
                 }
 
-                writer.write("-".repeat(85) + "\n");
-                writer.write(String.format("Portfolio Total Value: $%.2f\n\n", portfolioTotal));
+                writer.rule(101).newline();
+                writer.text("Portfolio Total Value: $").amount(portfolioTotal).newline();
+                writer.text("Portfolio Market Value: $").amount(portfolioMarketValue).newline();
+                if (risks != null) {
+                    writeRisk(writer, risks[p]);
+                }
+                writer.newline();
             }
+        }
+        return fileName;
+    }
 
-            System.out.println("Portfolio report generated: " + fileName);
-
-        } catch (IOException e) {
-            System.err.println("Error generating portfolio report: " + e.getMessage());
+    /**
+     * Writes the allocation, concentration and value at risk of one portfolio.
+     */
+    private static void writeRisk(ReportWriter writer, RiskAllocation.Result risk) throws IOException {
+        writer.text("Allocation:");
+        for (AssetType type : AssetType.values()) {
+            if (risk.getValue(type) != 0) {
+                writer.text(" ").text(type.name()).text(" ").text(percent(risk.getAllocation(type)));
+            }
         }
+        writer.newline();
+        writer.text("Largest Position: ").text(percent(risk.getLargestWeight()))
+                .text(", Effective Positions: ").amount(risk.getEffectivePositions()).newline();
+        writer.text("Volatility per Period: ").text(percent(risk.getVolatility()))
+                .text(", 95% Value at Risk (1 period): $").amount(risk.getValueAtRisk(0.95, 1)).newline();
+    }
+
+    private static String percent(double share) {
+        return String.format(Locale.ROOT, "%.1f%%", share * 100);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,612 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The headless entry point to the system: signing up and logging in,
+ * managing portfolios and their assets, valuing them at market prices,
+ * calculating Zakat and generating reports. Every operation takes typed
+ * arguments and returns a result, and nothing is read from or printed to the
+ * console, so the same operations back the console UI, batch jobs, services
+ * and benchmarks.
+ *
+ * <p>The nisab and gold valuations use the price of {@link Gold#PRICE_SYMBOL}
+ * from the valuation engine, taken again each time Zakat is calculated.</p>
+ *
+ * <p>Returns and risk are measured against a price history. The
+ * {@link PerformancCalculator}, like the Zakat ledger, loads an
+ * investor's portfolios the first time they are asked about and is then
+ * updated portfolio by portfolio as assets change.</p>
+ *
+ * <p>Invalid requests throw {@link IllegalArgumentException}. A service can
+ * be shared by several sessions: changes to an investor's portfolios run
+ * under the database's per-owner lock, and the Zakat ledger and the
+ * performance calculator are synchronized.</p>
+ */
+public class PortfolioService {
+    private final AuthService authService;
+    private final PortfolioDatabase portfolioDatabase;
+    private final ValuationEngine valuationEngine;
+    private final ZakatEstimator zakatEstimator;
+    private final ZakatLedger zakatLedger;
+    /** Investors whose portfolios have been recorded in the ledger */
+    private final Set<String> ledgerOwners = ConcurrentHashMap.newKeySet();
+    /** Measures returns, or null without a price history */
+    private final PerformancCalculator performanceCalculator;
+    /** Measures allocation and risk, or null without a price history */
+    private final RiskAllocation riskAllocation;
+    /** Investors whose portfolios have been loaded into the performance calculator */
+    private final Set<String> performanceOwners = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a service over the shared databases.
+     */
+    public PortfolioService() {
+        this(new AuthService(), DatabaseService.getInstance().getPortfolioDatabase());
+    }
+
+    /**
+     * Constructs a service over the given authentication service and
+     * portfolio database that reads market prices from
+     * {@link CsvPriceSource#DEFAULT_FILE}.
+     *
+     * @param authService       The service users sign up and log in with
+     * @param portfolioDatabase The database holding the portfolios
+     */
+    public PortfolioService(AuthService authService, PortfolioDatabase portfolioDatabase) {
+        this(authService, portfolioDatabase, new ValuationEngine(new CsvPriceSource(CsvPriceSource.DEFAULT_FILE)));
+    }
+
+    /**
+     * Constructs a service over the given authentication service, portfolio
+     * database and market prices, measuring returns against
+     * {@link PerformancCalculator.PriceHistory#DEFAULT_FILE} if it exists.
+     *
+     * @param authService       The service users sign up and log in with
+     * @param portfolioDatabase The database holding the portfolios
+     * @param valuationEngine   The engine assets are marked to market with
+     * @throws UncheckedIOException if the price history exists but cannot be read
+     */
+    public PortfolioService(AuthService authService, PortfolioDatabase portfolioDatabase,
+            ValuationEngine valuationEngine) {
+        this(authService, portfolioDatabase, valuationEngine, readPriceHistory());
+    }
+
+    /**
+     * Constructs a service over the given authentication service, portfolio
+     * database, market prices and price history.
+     *
+     * @param authService       The service users sign up and log in with
+     * @param portfolioDatabase The database holding the portfolios
+     * @param valuationEngine   The engine assets are marked to market with
+     * @param priceHistory      The prices returns are measured against, or null to not measure them
+     */
+    public PortfolioService(AuthService authService, PortfolioDatabase portfolioDatabase,
+            ValuationEngine valuationEngine, PerformancCalculator.PriceHistory priceHistory) {
+        this.authService = authService;
+        this.portfolioDatabase = portfolioDatabase;
+        this.valuationEngine = valuationEngine;
+        this.zakatEstimator = new ZakatEstimator();
+        this.zakatLedger = new ZakatLedger(zakatEstimator);
+        this.performanceCalculator = priceHistory == null ? null : new PerformancCalculator(priceHistory);
+        this.riskAllocation = priceHistory == null ? null : new RiskAllocation(priceHistory);
+    }
+
+    /**
+     * The returns of one portfolio and of its investor across all portfolios.
+     */
+    public static final class PerformanceSummary {
+        private final double unrealizedPnL;
+        private final double timeWeightedReturn;
+        private final double moneyWeightedReturn;
+        private final double investorUnrealizedPnL;
+        private final double investorTimeWeightedReturn;
+        private final double investorMoneyWeightedReturn;
+
+        PerformanceSummary(double unrealizedPnL, double timeWeightedReturn, double moneyWeightedReturn,
+                double investorUnrealizedPnL, double investorTimeWeightedReturn,
+                double investorMoneyWeightedReturn) {
+            this.unrealizedPnL = unrealizedPnL;
+            this.timeWeightedReturn = timeWeightedReturn;
+            this.moneyWeightedReturn = moneyWeightedReturn;
+            this.investorUnrealizedPnL = investorUnrealizedPnL;
+            this.investorTimeWeightedReturn = investorTimeWeightedReturn;
+            this.investorMoneyWeightedReturn = investorMoneyWeightedReturn;
+        }
+
+        /**
+         * Gets the portfolio's value at the latest prices minus its cost.
+         *
+         * @return The unrealized profit or loss
+         */
+        public double getUnrealizedPnL() {
+            return unrealizedPnL;
+        }
+
+        /**
+         * Gets the portfolio's time-weighted return over the price history.
+         *
+         * @return The cumulative return, e.g. 0.1 for 10%
+         */
+        public double getTimeWeightedReturn() {
+            return timeWeightedReturn;
+        }
+
+        /**
+         * Gets the portfolio's money-weighted return over the price history.
+         *
+         * @return The annualized return, or NaN if it cannot be determined
+         */
+        public double getMoneyWeightedReturn() {
+            return moneyWeightedReturn;
+        }
+
+        /**
+         * Gets the investor's value at the latest prices minus their cost, across all portfolios.
+         *
+         * @return The unrealized profit or loss
+         */
+        public double getInvestorUnrealizedPnL() {
+            return investorUnrealizedPnL;
+        }
+
+        /**
+         * Gets the investor's time-weighted return across all portfolios.
+         *
+         * @return The cumulative return, e.g. 0.1 for 10%
+         */
+        public double getInvestorTimeWeightedReturn() {
+            return investorTimeWeightedReturn;
+        }
+
+        /**
+         * Gets the investor's money-weighted return across all portfolios.
+         *
+         * @return The annualized return, or NaN if it cannot be determined
+         */
+        public double getInvestorMoneyWeightedReturn() {
+            return investorMoneyWeightedReturn;
+        }
+    }
+
+    /**
+     * The Zakat of one portfolio and of its investor across all portfolios.
+     */
+    public static final class ZakatSummary {
+        private final List<String> assetNames;
+        private final double[] assetZakat;
+        private final double portfolioZakat;
+        private final double zakatableWealth;
+        private final double nisab;
+        private final double zakatDue;
+        private final LocalDate nextHawlDate;
+
+        ZakatSummary(List<String> assetNames, double[] assetZakat, double portfolioZakat,
+                double zakatableWealth, double nisab, double zakatDue, LocalDate nextHawlDate) {
+            this.assetNames = assetNames;
+            this.assetZakat = assetZakat;
+            this.portfolioZakat = portfolioZakat;
+            this.zakatableWealth = zakatableWealth;
+            this.nisab = nisab;
+            this.zakatDue = zakatDue;
+            this.nextHawlDate = nextHawlDate;
+        }
+
+        /**
+         * Gets the number of Zakat-applicable assets in the portfolio.
+         *
+         * @return The asset count
+         */
+        public int getAssetCount() {
+            return assetNames.size();
+        }
+
+        /**
+         * Gets the name of a Zakat-applicable asset.
+         *
+         * @param index The index of the asset, from 0 to {@link #getAssetCount()} - 1
+         * @return The asset's name
+         */
+        public String getAssetName(int index) {
+            return assetNames.get(index);
+        }
+
+        /**
+         * Gets the Zakat on a Zakat-applicable asset, before nisab and hawl.
+         *
+         * @param index The index of the asset, from 0 to {@link #getAssetCount()} - 1
+         * @return The asset's Zakat
+         */
+        public double getAssetZakat(int index) {
+            return assetZakat[index];
+        }
+
+        /**
+         * Gets the Zakat on the whole portfolio, before nisab and hawl.
+         *
+         * @return The portfolio's Zakat
+         */
+        public double getPortfolioZakat() {
+            return portfolioZakat;
+        }
+
+        /**
+         * Gets the investor's wealth held for a full hawl, across all portfolios.
+         *
+         * @return The zakatable wealth
+         */
+        public double getZakatableWealth() {
+            return zakatableWealth;
+        }
+
+        /**
+         * Gets the nisab the wealth was compared with.
+         *
+         * @return The nisab, or 0 if the gold price is unknown
+         */
+        public double getNisab() {
+            return nisab;
+        }
+
+        /**
+         * Gets the Zakat due from the investor across all portfolios.
+         *
+         * @return The Zakat due
+         */
+        public double getZakatDue() {
+            return zakatDue;
+        }
+
+        /**
+         * Gets the next date on which more of the investor's assets complete their hawl.
+         *
+         * @return The date, or null if no asset is still within its hawl
+         */
+        public LocalDate getNextHawlDate() {
+            return nextHawlDate;
+        }
+    }
+
+    /**
+     * Registers a new investor.
+     *
+     * @param name            The full name of the investor
+     * @param email           The email address of the investor
+     * @param userName        The desired username
+     * @param password        The password
+     * @param confirmPassword The password again, which must match
+     * @return The outcome of the registration
+     */
+    public AuthService.SignupResult signUp(String name, String email, String userName, String password,
+            String confirmPassword) {
+        return authService.signUp(name, email, userName, password, confirmPassword);
+    }
+
+    /**
+     * Checks a user's credentials without printing anything.
+     *
+     * @param userName The username
+     * @param password The password
+     * @return The outcome, holding the user if the credentials are valid
+     */
+    public AuthService.LoginResult authenticate(String userName, String password) {
+        return authService.login(userName, password);
+    }
+
+    /**
+     * Logs an investor in.
+     *
+     * @param userName The username
+     * @param password The password
+     * @return The investor, or null if the credentials are invalid or the user is not an investor
+     */
+    public Investor login(String userName, String password) {
+        AuthService.LoginResult result = authenticate(userName, password);
+        return result.getUser() instanceof Investor ? (Investor) result.getUser() : null;
+    }
+
+    /**
+     * Gets an investor's portfolios, in the order they were created.
+     *
+     * @param investor The investor
+     * @return The investor's portfolios
+     */
+    public List<Portfolio> getPortfolios(Investor investor) {
+        return portfolioDatabase.getUserPortfolios(investor);
+    }
+
+    /**
+     * Finds one of an investor's portfolios by name.
+     *
+     * @param investor The investor
+     * @param name     The portfolio's name
+     * @return The first portfolio with that name, or null if there is none
+     */
+    public Portfolio findPortfolio(Investor investor, String name) {
+        for (Portfolio portfolio : getPortfolios(investor)) {
+            if (portfolio.getName().equals(name)) {
+                return portfolio;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates an empty portfolio.
+     *
+     * @param investor The investor who owns the portfolio
+     * @param name     The portfolio's name
+     * @return The new portfolio
+     * @throws IllegalArgumentException if the name is blank
+     */
+    public Portfolio createPortfolio(Investor investor, String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Portfolio name cannot be empty");
+        }
+        Portfolio portfolio = new Portfolio(investor, portfolioDatabase, name.trim());
+        if (ledgerOwners.contains(portfolio.getOwnerUserName())) {
+            zakatLedger.update(portfolio);
+        }
+        recordChange(portfolio);
+        return portfolio;
+    }
+
+    /**
+     * Removes a portfolio and all its assets.
+     *
+     * @param portfolio The portfolio to remove
+     * @return true if the portfolio was removed, false if it was not found
+     */
+    public boolean removePortfolio(Portfolio portfolio) {
+        boolean removed = portfolioDatabase.deleteData(portfolio);
+        if (removed) {
+            zakatLedger.remove(portfolio);
+            if (performanceCalculator != null) {
+                synchronized (performanceCalculator) {
+                    performanceCalculator.removePortfolio(portfolio);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Adds a new asset to a portfolio.
+     *
+     * @param portfolio The portfolio to add to
+     * @param request   The details of the asset
+     * @return The new asset, or null if the portfolio no longer exists
+     * @throws IllegalArgumentException if a detail is missing or invalid
+     */
+    public Asset addAsset(Portfolio portfolio, AssetRequest request) {
+        Asset asset = request.toAsset();
+        if (!portfolio.addAsset(asset)) {
+            return null;
+        }
+        if (ledgerOwners.contains(portfolio.getOwnerUserName())) {
+            zakatLedger.assetAdded(portfolio, asset);
+        }
+        recordChange(portfolio);
+        return asset;
+    }
+
+    /**
+     * Replaces the details of an asset. The asset keeps its type, its
+     * position and, unless the request sets one, its purchase date.
+     *
+     * @param portfolio The portfolio holding the asset
+     * @param assetName The current name of the asset
+     * @param request   The new details of the asset
+     * @return The edited asset, or null if the portfolio has no asset with that name
+     * @throws IllegalArgumentException if a detail is missing or invalid, or the type changes
+     */
+    public Asset editAsset(Portfolio portfolio, String assetName, AssetRequest request) {
+        Asset asset = portfolio.findAsset(assetName);
+        if (asset == null) {
+            return null;
+        }
+        Asset edited = request.toAsset();
+        if (edited.getType() != asset.getType()) {
+            throw new IllegalArgumentException("An asset's type cannot be changed");
+        }
+        if (!request.hasPurchaseDate()) {
+            edited.setPurchaseDate(asset.getPurchaseDate());
+        }
+        if (!portfolio.replaceAsset(asset, edited)) {
+            return null;
+        }
+        if (ledgerOwners.contains(portfolio.getOwnerUserName())) {
+            zakatLedger.assetReplaced(portfolio, asset, edited);
+        }
+        recordChange(portfolio);
+        return edited;
+    }
+
+    /**
+     * Removes an asset from a portfolio.
+     *
+     * @param portfolio The portfolio holding the asset
+     * @param assetName The name of the asset
+     * @return The removed asset, or null if the portfolio has no asset with that name
+     */
+    public Asset removeAsset(Portfolio portfolio, String assetName) {
+        Asset asset = portfolio.findAsset(assetName);
+        if (asset == null || !portfolio.removeAsset(asset)) {
+            return null;
+        }
+        if (ledgerOwners.contains(portfolio.getOwnerUserName())) {
+            zakatLedger.assetRemoved(portfolio, asset);
+        }
+        recordChange(portfolio);
+        return asset;
+    }
+
+    /**
+     * Calculates the Zakat of a portfolio and the Zakat due from its owner
+     * across all portfolios, counting only assets held for a full hawl and
+     * applying the nisab if it is known.
+     *
+     * @param investor  The owner of the portfolio
+     * @param portfolio The portfolio
+     * @param asOf      The date to calculate on
+     * @return The Zakat summary
+     */
+    public ZakatSummary calculateZakat(Investor investor, Portfolio portfolio, LocalDate asOf) {
+        refreshGoldPrice();
+        loadLedger(investor);
+        List<String> names = new ArrayList<>();
+        List<Asset> assets = portfolio.getAssets();
+        double[] amounts = new double[assets.size()];
+        for (Asset asset : assets) {
+            if (asset.isZakatApplicable()) {
+                amounts[names.size()] = zakatEstimator.calculateAssetZakat(asset);
+                names.add(asset.getName());
+            }
+        }
+        String userName = investor.getUserName();
+        return new ZakatSummary(names, Arrays.copyOf(amounts, names.size()),
+                zakatEstimator.calculatePortfolioZakat(portfolio),
+                zakatLedger.getZakatableWealth(userName, asOf), zakatEstimator.getNisab(),
+                zakatLedger.getZakatDue(userName, asOf), zakatLedger.getNextHawlDate(userName, asOf));
+    }
+
+    /**
+     * Measures the returns of a portfolio and of its owner across all
+     * portfolios against the price history.
+     *
+     * @param investor  The owner of the portfolio
+     * @param portfolio The portfolio
+     * @return The returns, or null if the service has no price history
+     */
+    public PerformanceSummary getPerformance(Investor investor, Portfolio portfolio) {
+        if (performanceCalculator == null) {
+            return null;
+        }
+        synchronized (performanceCalculator) {
+            if (performanceOwners.add(investor.getUserName())) {
+                for (Portfolio owned : getPortfolios(investor)) {
+                    performanceCalculator.updatePortfolio(owned);
+                }
+            }
+            if (!performanceCalculator.isLoaded(portfolio)) {
+                performanceCalculator.updatePortfolio(portfolio);
+            }
+            String userName = investor.getUserName();
+            return new PerformanceSummary(performanceCalculator.getPortfolioUnrealizedPnL(portfolio),
+                    performanceCalculator.getPortfolioTimeWeightedReturn(portfolio),
+                    performanceCalculator.getPortfolioMoneyWeightedReturn(portfolio),
+                    performanceCalculator.getInvestorUnrealizedPnL(userName),
+                    performanceCalculator.getInvestorTimeWeightedReturn(userName),
+                    performanceCalculator.getInvestorMoneyWeightedReturn(userName));
+        }
+    }
+
+    /**
+     * Analyzes the allocation across asset classes, the concentration and the
+     * volatility of each of an investor's portfolios against the price history.
+     *
+     * @param investor The investor
+     * @return The result for each portfolio, in the order of {@link #getPortfolios(Investor)},
+     *         or null if the service has no price history
+     */
+    public RiskAllocation.Result[] analyzeRisk(Investor investor) {
+        return riskAllocation == null ? null : riskAllocation.analyzeAll(getPortfolios(investor));
+    }
+
+    /**
+     * Values one portfolio at current market prices.
+     *
+     * @param portfolio The portfolio
+     * @return The market value of its assets, counting assets without a known price at cost
+     */
+    public double getMarketValue(Portfolio portfolio) {
+        return valuationEngine.valuePortfolio(portfolio);
+    }
+
+    /**
+     * Writes a report of all of an investor's portfolios, with assets
+     * valued at current market prices and, given a price history, the risk
+     * of each portfolio.
+     *
+     * @param investor The investor
+     * @return The path of the written report
+     * @throws IOException if the report cannot be written
+     */
+    public String generatePortfolioReport(Investor investor) throws IOException {
+        return new PortfolioReport(getPortfolios(investor), investor, valuationEngine, riskAllocation).writeReport();
+    }
+
+    /**
+     * Writes a Zakat report of a portfolio.
+     *
+     * @param portfolio The portfolio
+     * @return The path of the written report
+     * @throws IOException if the report cannot be written
+     */
+    public String generateZakatReport(Portfolio portfolio) throws IOException {
+        refreshGoldPrice();
+        return new ZakatReport(portfolio, zakatEstimator).writeReport();
+    }
+
+    /**
+     * Takes the current gold price from the valuation engine. The ledger
+     * holds values taken at the old price, so when the price changes every
+     * investor is recorded again the next time their Zakat is needed.
+     */
+    private void refreshGoldPrice() {
+        synchronized (zakatEstimator) {
+            double previous = zakatEstimator.getGoldPricePerGram();
+            if (zakatEstimator.updateGoldPrice(valuationEngine)
+                    && zakatEstimator.getGoldPricePerGram() != previous) {
+                ledgerOwners.clear();
+            }
+        }
+    }
+
+    /**
+     * Records the investor's portfolios in the Zakat ledger the first time
+     * their Zakat is needed.
+     */
+    private void loadLedger(Investor investor) {
+        if (ledgerOwners.add(investor.getUserName())) {
+            zakatLedger.load(getPortfolios(investor));
+        }
+    }
+
+    /**
+     * Records a changed portfolio in the performance calculator, if its
+     * owner's portfolios are recorded there. The Zakat ledger is told of
+     * each changed asset by the caller.
+     */
+    private void recordChange(Portfolio portfolio) {
+        if (performanceCalculator != null && performanceOwners.contains(portfolio.getOwnerUserName())) {
+            synchronized (performanceCalculator) {
+                performanceCalculator.updatePortfolio(portfolio);
+            }
+        }
+    }
+
+    /**
+     * Reads the application's price history.
+     *
+     * @return The price history, or null if there is no price history file or it has no prices
+     */
+    static PerformancCalculator.PriceHistory readPriceHistory() {
+        if (!new File(PerformancCalculator.PriceHistory.DEFAULT_FILE).exists()) {
+            return null;
+        }
+        try {
+            PerformancCalculator.PriceHistory history =
+                    PerformancCalculator.PriceHistory.read(PerformancCalculator.PriceHistory.DEFAULT_FILE);
+            return history.getTimes().length == 0 ? null : history;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
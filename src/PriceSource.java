@@ -0,0 +1,21 @@
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A source of current market prices, looked up in batches of symbols.
+ *
+ * <p>Symbols are upper-case, e.g. "AAPL", "BTC" or {@link Gold#PRICE_SYMBOL}.
+ * Implementations should answer a whole batch with as few round trips to
+ * their backing store as possible.</p>
+ */
+public interface PriceSource {
+    /**
+     * Looks up the current price of each of the given symbols.
+     *
+     * @param symbols The symbols to price
+     * @return The price of every symbol the source knows; unknown symbols are left out
+     * @throws IOException if the prices cannot be retrieved
+     */
+    Map<String, Double> getPrices(Collection<String> symbols) throws IOException;
+}
@@ -7,6 +7,7 @@ import java.util.Scanner;
  * including location and property type.
  */
 public class RealState extends Asset {
+    private static final long serialVersionUID = 5217124280825702393L;
 
     /** The physical location of the property */
     private String location;
@@ -68,6 +69,16 @@ public class RealState extends Asset {
         this.propertyType = propertyType;
     }
 
+    /**
+     * Gets the concrete type of this asset.
+     *
+     * @return {@link AssetType#REAL_STATE}
+     */
+    @Override
+    public AssetType getType() {
+        return AssetType.REAL_STATE;
+    }
+
     /**
      * Implements the abstract method to edit real estate-specific details.
      * Prompts the user for new location and property type values.
@@ -0,0 +1,37 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the records stored by a {@link Database}.
+ * A codec is selected per database and its id is written into the file
+ * header, so every file is read back with the codec that wrote it.
+ *
+ * @param <T> The type of records handled by the codec
+ */
+public interface RecordCodec<T> {
+    /**
+     * Gets the identifier stored in file headers for this codec.
+     *
+     * @return A short, stable codec identifier
+     */
+    String getId();
+
+    /**
+     * Writes one record.
+     *
+     * @param out  The output to write to
+     * @param item The record to write
+     * @throws IOException if the record cannot be written
+     */
+    void write(DataOutput out, T item) throws IOException;
+
+    /**
+     * Reads one record written by {@link #write}.
+     *
+     * @param in The input to read from
+     * @return The decoded record
+     * @throws IOException if the record cannot be read
+     */
+    T read(DataInput in) throws IOException;
+}
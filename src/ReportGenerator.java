@@ -1,6 +1,9 @@
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * An abstract base class for generating various types of reports.
@@ -11,17 +14,39 @@ public abstract class ReportGenerator {
     /** The directory where all reports will be saved */
     protected static final String REPORTS_DIR = "reports/";
 
+    /** The directory this report is saved in, ending with a separator */
+    private final String directory;
+    /** Identifies whose report this is in its filename, or null */
+    private final String subject;
+
     /**
      * Constructs a ReportGenerator and ensures the reports directory exists.
      * Creates the reports directory if it doesn't already exist.
      */
     public ReportGenerator() {
-        new File(REPORTS_DIR).mkdirs();
+        this(REPORTS_DIR, null);
+    }
+
+    /**
+     * Constructs a ReportGenerator that saves into the given directory and
+     * names its file after a subject, e.g. an investor, so that reports for
+     * many subjects can be written side by side.
+     *
+     * @param directory the directory to save the report in
+     * @param subject   the subject to include in the filename, or null
+     */
+    protected ReportGenerator(String directory, String subject) {
+        this.directory = directory.endsWith("/") ? directory : directory + "/";
+        this.subject = subject;
+        new File(this.directory).mkdirs();
     }
 
     /**
      * Generates a unique filename with the given prefix and current timestamp.
-     * The file will be created in the reports directory.
+     * The file will be created in the reports directory. If another report
+     * already took that name, e.g. one generated in the same second, a
+     * counter is appended; the name is reserved by creating the file, so
+     * reports generated concurrently never share a file.
      *
      * @param prefix the prefix to use for the filename
      * @return the complete file path including directory, prefix, and timestamp
@@ -29,9 +54,29 @@ public abstract class ReportGenerator {
     protected String generateFileName(String prefix) {
         LocalDateTime now = LocalDateTime.now();
         String timestamp = now.format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        return REPORTS_DIR + prefix + "_" + timestamp + ".txt";
+        String base = directory + prefix
+                + (subject == null ? "" : "_" + URLEncoder.encode(subject, StandardCharsets.UTF_8))
+                + "_" + timestamp;
+        for (int n = 1; ; n++) {
+            String fileName = n == 1 ? base + ".txt" : base + "_" + n + ".txt";
+            try {
+                if (new File(fileName).createNewFile()) {
+                    return fileName;
+                }
+            } catch (IOException e) {
+                return fileName; // let the report itself fail with the real error
+            }
+        }
     }
 
+    /**
+     * Writes the report to a new file without printing anything.
+     *
+     * @return the path of the written file
+     * @throws IOException if the report cannot be written
+     */
+    public abstract String writeReport() throws IOException;
+
     /**
      * Abstract method to be implemented by subclasses for generating specific reports.
      * Each subclass should provide its own implementation of report generation logic.
@@ -0,0 +1,237 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Writes text reports through one reusable line buffer and a large file
+ * channel buffer, so a report costs the same memory however many rows it has.
+ *
+ * <p>Fields are appended to the current line with the same layout as the
+ * {@code String.format} conversions reports use ({@code %-20s},
+ * {@code %-15.2f}, {@code %-10d} and {@code %.2f}) but without creating a
+ * formatter or intermediate strings per field. The output, including the
+ * rounding of amounts and the platform's default charset, is the same as
+ * writing the formatted strings through a {@code FileWriter}. If the default
+ * locale does not use ASCII digits and a '.' decimal separator, amounts fall
+ * back to {@code String.format} to stay identical.</p>
+ */
+public class ReportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 18;
+    /** Line length at which the line buffer is encoded even without a newline */
+    private static final int LINE_FLUSH = 1 << 13;
+    /** Largest amount whose scaled value is exact enough for the fast formatting path */
+    private static final double FAST_LIMIT = 1e7;
+    /** Distance from a rounding tie within which amounts are rounded exactly */
+    private static final double TIE_MARGIN = 1e-4;
+
+    private final FileChannel channel;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder;
+    private final StringBuilder line = new StringBuilder(256);
+    private final boolean plainDigits;
+
+    /**
+     * Opens a report file for writing, replacing any existing file.
+     *
+     * @param fileName The file to write
+     * @throws IOException if the file cannot be opened
+     */
+    public ReportWriter(String fileName) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        this.plainDigits = symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+    }
+
+    /**
+     * Appends text as is.
+     *
+     * @param text The text to append
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter text(String text) throws IOException {
+        line.append(text);
+        return spill();
+    }
+
+    /**
+     * Appends text left-justified in a field, like {@code %-<width>s}.
+     *
+     * @param text  The text to append; null is written as "null"
+     * @param width The minimum field width
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter padded(String text, int width) throws IOException {
+        int start = line.length();
+        line.append(text);
+        return pad(start, width);
+    }
+
+    /**
+     * Appends a whole number left-justified in a field, like {@code %-<width>d}.
+     *
+     * @param value The number to append
+     * @param width The minimum field width
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter padded(long value, int width) throws IOException {
+        int start = line.length();
+        if (plainDigits) {
+            line.append(value);
+        } else {
+            line.append(String.format("%d", value));
+        }
+        return pad(start, width);
+    }
+
+    /**
+     * Appends an amount with two decimals left-justified in a field, like
+     * {@code %-<width>.2f}.
+     *
+     * @param value The amount to append
+     * @param width The minimum field width
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter padded(double value, int width) throws IOException {
+        int start = line.length();
+        appendAmount(value);
+        return pad(start, width);
+    }
+
+    /**
+     * Appends an amount with two decimals, like {@code %.2f}.
+     *
+     * @param value The amount to append
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter amount(double value) throws IOException {
+        appendAmount(value);
+        return spill();
+    }
+
+    /**
+     * Appends a horizontal rule of dashes.
+     *
+     * @param width The number of dashes
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter rule(int width) throws IOException {
+        for (int i = 0; i < width; i++) {
+            line.append('-');
+        }
+        return spill();
+    }
+
+    /**
+     * Ends the current line.
+     *
+     * @return This writer
+     * @throws IOException if the file cannot be written
+     */
+    public ReportWriter newline() throws IOException {
+        line.append('\n');
+        encodeLine(false);
+        return this;
+    }
+
+    /**
+     * Writes everything appended so far and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            encodeLine(true);
+            while (encoder.flush(bytes) == CoderResult.OVERFLOW) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ReportWriter pad(int start, int width) throws IOException {
+        for (int i = line.length() - start; i < width; i++) {
+            line.append(' ');
+        }
+        return spill();
+    }
+
+    private ReportWriter spill() throws IOException {
+        if (line.length() >= LINE_FLUSH) {
+            encodeLine(false);
+        }
+        return this;
+    }
+
+    /**
+     * Appends an amount rounded half-up to two decimals, as {@code Formatter}
+     * does: from the shortest decimal that represents the double, so 2.675
+     * becomes 2.68. Amounts close to a rounding tie take the exact slow path.
+     */
+    private void appendAmount(double value) {
+        if (!plainDigits || Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= FAST_LIMIT) {
+            line.append(String.format("%.2f", value));
+            return;
+        }
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * 100;
+        double fraction = scaled - Math.floor(scaled);
+        long cents;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            cents = new BigDecimal(Double.toString(magnitude)).setScale(2, RoundingMode.HALF_UP)
+                    .unscaledValue().longValue();
+        } else {
+            cents = (long) Math.floor(scaled + 0.5);
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            line.append('-');
+        }
+        line.append(cents / 100).append('.');
+        long remainder = cents % 100;
+        if (remainder < 10) {
+            line.append('0');
+        }
+        line.append(remainder);
+    }
+
+    private void encodeLine(boolean endOfInput) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (encoder.encode(chars, bytes, endOfInput) == CoderResult.OVERFLOW) {
+            drain();
+        }
+        // A trailing high surrogate stays in the line until its pair arrives
+        line.delete(0, chars.position());
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
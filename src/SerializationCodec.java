@@ -0,0 +1,80 @@
+import java.io.*;
+
+/**
+ * A {@link RecordCodec} that stores each record with standard Java
+ * serialization, prefixed by its length. Works for any Serializable type
+ * and is used to read files written before binary codecs existed.
+ *
+ * @param <T> The type of records handled by the codec
+ */
+public class SerializationCodec<T> implements RecordCodec<T> {
+    /** The codec id written in file headers */
+    public static final String ID = "java";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public void write(DataOutput out, T item) throws IOException {
+        byte[] bytes = serialize(item);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public T read(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Serializes a single object to a byte array.
+     *
+     * @param item The object to serialize
+     * @return The serialized bytes
+     * @throws IOException if the object cannot be serialized
+     */
+    static byte[] serialize(Object item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(item);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a single object from part of a byte array.
+     *
+     * @param <T>    The expected type of the object
+     * @param bytes  The buffer holding the serialized object
+     * @param offset The start of the object in the buffer
+     * @param length The number of bytes the object occupies
+     * @return The deserialized object
+     * @throws IOException if the bytes cannot be deserialized
+     */
+    static <T> T deserialize(byte[] bytes, int offset, int length) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            @SuppressWarnings("unchecked")
+            T item = (T) in.readObject();
+            return item;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Checks whether bytes start with the Java serialization stream magic.
+     * Binary codecs never start a record with these bytes.
+     *
+     * @param bytes  The buffer to inspect
+     * @param offset The position to inspect
+     * @return true if a Java serialization stream starts at the offset
+     */
+    static boolean isSerializedStream(byte[] bytes, int offset) {
+        return bytes.length >= offset + 2
+                && bytes[offset] == (byte) 0xAC && bytes[offset + 1] == (byte) 0xED;
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An in-memory PriceSource that simulates a market, for testing and load runs.
+ *
+ * <p>Every symbol starts at a price derived from the seed and the symbol, so
+ * runs with the same seed see the same prices. Prices can be set explicitly
+ * and move as a random walk each time {@link #advance()} is called.</p>
+ */
+public class SimulatedPriceSource implements PriceSource {
+    private final long seed;
+    private final double volatility;
+    private final Random random;
+    private final Map<String, Double> prices = new HashMap<>();
+
+    /**
+     * Creates a simulated market.
+     *
+     * @param seed       The seed that determines starting prices and price moves
+     * @param volatility The standard deviation of one step's relative price change, e.g. 0.01
+     */
+    public SimulatedPriceSource(long seed, double volatility) {
+        this.seed = seed;
+        this.volatility = volatility;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets the current price of a symbol.
+     *
+     * @param symbol The symbol, in any case
+     * @param price  Its new price
+     */
+    public synchronized void setPrice(String symbol, double price) {
+        prices.put(symbol.trim().toUpperCase(Locale.ROOT), price);
+    }
+
+    /**
+     * Moves every known price by one random step.
+     */
+    public synchronized void advance() {
+        for (Map.Entry<String, Double> price : prices.entrySet()) {
+            price.setValue(price.getValue() * Math.exp(volatility * random.nextGaussian()));
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Double> getPrices(Collection<String> symbols) {
+        Map<String, Double> found = new HashMap<>();
+        for (String symbol : symbols) {
+            found.put(symbol, prices.computeIfAbsent(symbol, this::startingPrice));
+        }
+        return found;
+    }
+
+    private double startingPrice(String symbol) {
+        long mixed = (seed ^ symbol.hashCode()) * 0x9E3779B97F4A7C15L;
+        return 1.0 + (mixed >>> 11) % 100_000 / 100.0; // between 1 and 1000
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes database snapshot files.
+ *
+ * <p>Layout: a fixed header of magic "IWDB", format version, record count,
+ * payload length and the CRC32C of the payload, followed by the payload:
+ * codec id, journal sequence number and the records encoded by the codec.
+ * A file whose length, record count or checksum does not match its header
+ * is rejected with an {@link IOException} rather than read partially.</p>
+ *
+ * <p>Snapshots are written to a temporary file, fsync'd and then atomically
+ * renamed over the target, so a crash leaves either the old or the new file.
+ * Version 1 files, which had no checksum, and files written with plain Java
+ * serialization (a serialized List, optionally followed by a sequence number)
+ * are still read.</p>
+ */
+public final class SnapshotFormat {
+    private static final int MAGIC = 0x49574442; // "IWDB"
+    private static final short VERSION = 2;
+    /** Files written before the header carried a checksum */
+    private static final short VERSION_UNCHECKED = 1;
+    /** magic + version + count + payload length + checksum */
+    private static final int HEADER_SIZE = 4 + 2 + 4 + 8 + 4;
+    /** Position of the count, payload length and checksum, filled in after the payload is written */
+    private static final int TRAILING_FIELDS_OFFSET = 4 + 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * The contents of a snapshot file.
+     *
+     * @param <T> The type of records in the snapshot
+     */
+    public static final class Snapshot<T> {
+        private final List<T> data;
+        private final long sequence;
+        private final String codecId;
+
+        Snapshot(List<T> data, long sequence, String codecId) {
+            this.data = data;
+            this.sequence = sequence;
+            this.codecId = codecId;
+        }
+
+        /**
+         * Gets the records in the snapshot.
+         *
+         * @return The loaded records
+         */
+        public List<T> getData() {
+            return data;
+        }
+
+        /**
+         * Gets the journal sequence number the snapshot contains.
+         *
+         * @return The sequence number, 0 for files without one
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets the id of the codec the file was written with.
+         *
+         * @return The codec id
+         */
+        public String getCodecId() {
+            return codecId;
+        }
+    }
+
+    /**
+     * Reads a snapshot file. Files written by another codec can be read only
+     * if that codec is Java serialization, which needs no type knowledge.
+     *
+     * @param <T>   The type of records in the snapshot
+     * @param file  The file to read
+     * @param codec The codec of the reading database
+     * @return The snapshot contents
+     * @throws IOException if the file cannot be read, is truncated or corrupt,
+     *                     or uses an unknown codec
+     */
+    public static <T> Snapshot<T> read(File file, RecordCodec<T> codec) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() >= 2 && (header.getShort(0) & 0xFFFF) == 0xACED) {
+                channel.position(0);
+                return readSerialized(new BufferedInputStream(stream, BUFFER_SIZE));
+            }
+            if (header.remaining() < 6 || header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a database file");
+            }
+            short version = header.getShort();
+            if (version == VERSION_UNCHECKED) {
+                channel.position(6);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+                String codecId = in.readUTF();
+                long sequence = in.readLong();
+                return new Snapshot<>(readRecords(in, in.readInt(), codecId, codec), sequence, codecId);
+            }
+            if (version != VERSION) {
+                throw new IOException("Unsupported database file version: " + version);
+            }
+            if (header.remaining() < HEADER_SIZE - 6) {
+                throw new IOException(file + " is truncated: incomplete header");
+            }
+            int count = header.getInt();
+            long payloadLength = header.getLong();
+            int checksum = header.getInt();
+            if (channel.size() != HEADER_SIZE + payloadLength) {
+                throw new IOException(file + " is truncated or corrupt: expected "
+                        + (HEADER_SIZE + payloadLength) + " bytes but found " + channel.size());
+            }
+
+            CRC32C crc = new CRC32C();
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new CheckedInputStream(stream, crc), BUFFER_SIZE));
+            String codecId;
+            long sequence;
+            List<T> data;
+            try {
+                codecId = in.readUTF();
+                sequence = in.readLong();
+                data = readRecords(in, count, codecId, codec);
+            } catch (IOException | RuntimeException e) {
+                // Undecodable records are usually damaged ones; report that if the checksum agrees
+                in.transferTo(OutputStream.nullOutputStream());
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException(file + " is corrupt: checksum mismatch", e);
+                }
+                throw e;
+            }
+            if (in.read() != -1) {
+                throw new IOException(file + " is corrupt: data after the last of " + count + " records");
+            }
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException(file + " is corrupt: checksum mismatch");
+            }
+            return new Snapshot<>(data, sequence, codecId);
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file next to the target, forces it to
+     * disk and atomically renames it over the target.
+     *
+     * @param <T>      The type of records in the snapshot
+     * @param file     The file to write
+     * @param data     The records to write; they are encoded as they are
+     *                 iterated, so a generated sequence is never held in memory
+     * @param sequence The journal sequence number the records contain
+     * @param codec    The codec to encode records with
+     * @throws IOException if the file cannot be written; the target is left unchanged
+     */
+    public static <T> void write(File file, Iterable<T> data, long sequence, RecordCodec<T> codec)
+            throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.flip();
+            channel.write(header, 0);
+            channel.position(HEADER_SIZE);
+
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(stream, crc), BUFFER_SIZE));
+            out.writeUTF(codec.getId());
+            out.writeLong(sequence);
+            int count = 0;
+            for (T item : data) {
+                codec.write(out, item);
+                count++;
+            }
+            out.flush();
+
+            ByteBuffer fields = ByteBuffer.allocate(HEADER_SIZE - TRAILING_FIELDS_OFFSET);
+            fields.putInt(count);
+            fields.putLong(channel.position() - HEADER_SIZE);
+            fields.putInt((int) crc.getValue());
+            fields.flip();
+            channel.write(fields, TRAILING_FIELDS_OFFSET);
+            channel.force(true);
+        }
+        moveAtomically(temp.toPath(), file.toPath());
+    }
+
+    /**
+     * Picks the codec able to read records written with the given codec id.
+     *
+     * @param <T>     The type of records
+     * @param codecId The codec id found in a file or record
+     * @param codec   The codec of the reading database
+     * @return A codec able to decode the records
+     * @throws IOException if no such codec is available
+     */
+    static <T> RecordCodec<T> resolveCodec(String codecId, RecordCodec<T> codec) throws IOException {
+        if (codecId.equals(codec.getId())) {
+            return codec;
+        }
+        if (codecId.equals(SerializationCodec.ID)) {
+            return new SerializationCodec<>();
+        }
+        throw new IOException("Cannot read records written with codec '" + codecId
+                + "' using codec '" + codec.getId() + "'");
+    }
+
+    private static <T> List<T> readRecords(DataInputStream in, int count, String codecId,
+            RecordCodec<T> codec) throws IOException {
+        RecordCodec<T> fileCodec = resolveCodec(codecId, codec);
+        List<T> data = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            data.add(fileCodec.read(in));
+        }
+        return data;
+    }
+
+    /**
+     * Renames the source over the target in one step and syncs the directory
+     * so the rename itself survives a crash. Falls back to a plain replacing
+     * move on file systems without atomic rename.
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open or sync a directory; the rename is still atomic there
+        }
+    }
+
+    private static <T> Snapshot<T> readSerialized(InputStream in) throws IOException {
+        ObjectInputStream objects = new ObjectInputStream(in);
+        try {
+            @SuppressWarnings("unchecked")
+            List<T> data = (List<T>) objects.readObject();
+            long sequence;
+            try {
+                sequence = objects.readLong();
+            } catch (EOFException e) {
+                sequence = 0;
+            }
+            return new Snapshot<>(data, sequence, SerializationCodec.ID);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Scanner;
  * including stock symbol and exchange information.
  */
 public class Stocks extends Asset {
+    private static final long serialVersionUID = -8520353112737120859L;
     /** The ticker symbol of the stock (e.g., "AAPL" for Apple) */
     private String stockSymbol;
     
@@ -67,6 +68,26 @@ public class Stocks extends Asset {
         this.exchange = exchange;
     }
 
+    /**
+     * Gets the symbol the stock is quoted under.
+     *
+     * @return The ticker symbol
+     */
+    @Override
+    public String getPriceSymbol() {
+        return stockSymbol;
+    }
+
+    /**
+     * Gets the concrete type of this asset.
+     *
+     * @return {@link AssetType#STOCKS}
+     */
+    @Override
+    public AssetType getType() {
+        return AssetType.STOCKS;
+    }
+
     /**
      * Implements the abstract method to edit stock-specific details.
      * Prompts the user for new stock symbol and exchange values.
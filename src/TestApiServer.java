@@ -0,0 +1,204 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for verifying the HTTP API. A server is started on a free port
+ * over databases kept in a temporary directory, and every endpoint is
+ * called over HTTP, checking the status code and body of successful
+ * requests, of requests without a valid session and of invalid requests.
+ */
+public class TestApiServer extends TestSupport {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    private static String base;
+
+    /**
+     * Main method that executes all API test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws Exception if the server cannot be started or a request cannot be sent
+     */
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("api-test").toFile();
+        SimulatedPriceSource prices = new SimulatedPriceSource(1, 0.0);
+        prices.setPrice(Gold.PRICE_SYMBOL, 70.0);
+        PortfolioDatabase portfolios = new ConcurrentPortfolioDatabase(new File(dir, "portfolios.ser").getPath(),
+                BinaryCodecs.PORTFOLIO);
+        UserDatabase users = new UserDatabase(new File(dir, "users.ser").getPath(), BinaryCodecs.USER);
+        PortfolioService service = new PortfolioService(new AuthService(users), portfolios,
+                new ValuationEngine(prices), null);
+        ApiServer server = new ApiServer(service, 0);
+        server.start();
+        base = "http://localhost:" + server.getPort() + "/api";
+        try {
+            run();
+        } finally {
+            server.stop(0);
+            portfolios.close();
+            users.close();
+        }
+
+        finish("API");
+    }
+
+    private static void run() throws Exception {
+        // Case 1: Signing up and logging in
+        System.out.println("Test 1: Sign up and log in");
+        String alice = "{\"name\":\"Alice A\",\"email\":\"alice@example.com\",\"username\":\"alice\","
+                + "\"password\":\"Password1!\",\"confirmPassword\":\"Password1!\"}";
+        check("a new investor signs up", send("POST", "/signup", null, alice).status == 200);
+        check("the same username is a conflict", send("POST", "/signup", null, alice).status == 409);
+        Response weak = send("POST", "/signup", null, "{\"name\":\"Bob\",\"email\":\"bob@example.com\","
+                + "\"username\":\"bob\",\"password\":\"weak\",\"confirmPassword\":\"weak\"}");
+        check("a weak password is refused with a message", weak.status == 400 && weak.body.contains("\"error\":"));
+        check("wrong credentials are unauthorized",
+                send("POST", "/login", null, "{\"username\":\"alice\",\"password\":\"Wrong1!\"}").status == 401);
+        String token = login("alice", "Password1!");
+        check("the investor logs in with a token", token != null && !token.isEmpty());
+        System.out.println();
+
+        // Case 2: Requests without a valid session
+        System.out.println("Test 2: Authentication");
+        check("no token is unauthorized", send("GET", "/portfolios", null, null).status == 401);
+        check("an unknown token is unauthorized", send("GET", "/portfolios", "forged", null).status == 401);
+        String other = login("alice", "Password1!");
+        check("logging out ends only that session", send("POST", "/logout", other, null).status == 200
+                && send("GET", "/portfolios", other, null).status == 401
+                && send("GET", "/portfolios", token, null).status == 200);
+        System.out.println();
+
+        // Case 3: Portfolios
+        System.out.println("Test 3: Portfolios");
+        Response created = send("POST", "/portfolios", token, "{\"name\":\"Main\"}");
+        String id = Json.parseObject(created.body).get("id");
+        check("a portfolio is created", created.status == 200 && created.body.contains("\"name\":\"Main\"")
+                && id != null);
+        String spare = Json.parseObject(send("POST", "/portfolios", token, "{\"name\":\"Spare\"}").body).get("id");
+        Response listed = send("GET", "/portfolios", token, null);
+        check("both portfolios are listed", listed.status == 200 && listed.body.contains("\"Main\"")
+                && listed.body.contains("\"Spare\""));
+        check("a blank name is a bad request", send("POST", "/portfolios", token, "{\"name\":\" \"}").status == 400);
+        check("a removed portfolio is gone", send("DELETE", "/portfolios/" + spare, token, null).status == 200
+                && send("DELETE", "/portfolios/" + spare, token, null).status == 404);
+        check("another investor's portfolio is not found", send("GET", "/portfolios/" + id + "/assets",
+                signUpAndLogin("carol"), null).status == 404);
+        System.out.println();
+
+        // Case 4: Assets
+        System.out.println("Test 4: Assets");
+        String assets = "/portfolios/" + id + "/assets";
+        String bought = LocalDate.now().minusDays(400).toString();
+        Response added = send("POST", assets, token, "{\"type\":\"gold\",\"name\":\"Gold bar\",\"quantity\":\"1\","
+                + "\"price\":\"5000\",\"karat\":\"24\",\"weight\":\"100\",\"zakat\":\"true\","
+                + "\"purchase_date\":\"" + bought + "\"}");
+        check("an asset is added and returned with its fields", added.status == 200
+                && added.body.contains("\"name\":\"Gold bar\"") && added.body.contains("\"weight\":100.0")
+                && added.body.contains("\"purchase_date\":\"" + bought + "\""));
+        Response invalid = send("POST", assets, token,
+                "{\"type\":\"stocks\",\"name\":\"X\",\"quantity\":\"0\",\"price\":\"1\",\"symbol\":\"X\"}");
+        check("an invalid asset is a bad request naming the problem",
+                invalid.status == 400 && invalid.body.contains("Quantity must be positive"));
+        check("an asset name with spaces is found in the path", send("PUT", assets + "/Gold%20bar", token,
+                "{\"type\":\"gold\",\"name\":\"Gold bar\",\"quantity\":\"2\",\"price\":\"5000\",\"karat\":\"24\","
+                        + "\"weight\":\"100\",\"zakat\":\"true\"}").body.contains("\"quantity\":2"));
+        check("the listed asset keeps its purchase date",
+                send("GET", assets, token, null).body.contains("\"purchase_date\":\"" + bought + "\""));
+        check("an unknown asset is not found", send("PUT", assets + "/Nothing", token,
+                "{\"type\":\"gold\",\"name\":\"X\",\"quantity\":\"1\",\"price\":\"1\",\"karat\":\"24\","
+                        + "\"weight\":\"1\"}").status == 404
+                && send("DELETE", assets + "/Nothing", token, null).status == 404);
+        System.out.println();
+
+        // Case 5: Zakat and reports
+        System.out.println("Test 5: Zakat and reports");
+        Response zakat = send("GET", "/portfolios/" + id + "/zakat", token, null);
+        check("200 g of gold at 70 per gram owe 350", zakat.status == 200
+                && zakat.body.contains("\"nisab\":5950.0") && zakat.body.contains("\"zakatDue\":350.0"));
+        Response report = send("POST", "/portfolios/" + id + "/reports/zakat", token, null);
+        check("a Zakat report is written", report.status == 200
+                && new File(Json.parseObject(report.body).get("file")).delete());
+        report = send("POST", "/reports/portfolio", token, null);
+        check("a portfolio report is written", report.status == 200
+                && new File(Json.parseObject(report.body).get("file")).delete());
+        check("a removed asset is returned", send("DELETE", assets + "/Gold%20bar", token, null).status == 200
+                && send("GET", assets, token, null).body.equals("{\"assets\":[]}"));
+        System.out.println();
+
+        // Case 6: Requests that do not fit an endpoint
+        System.out.println("Test 6: Invalid requests");
+        check("an unknown path is not found", send("GET", "/nothing", token, null).status == 404);
+        check("a wrong method is not allowed", send("GET", "/login", null, null).status == 405
+                && send("PUT", "/portfolios/" + id, token, "{}").status == 405);
+        check("a malformed body is a bad request", send("POST", "/portfolios", token, "{name}").status == 400);
+        System.out.println();
+
+        // Case 7: Many investors at the same time
+        System.out.println("Test 7: Concurrent investors");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String userName = "investor" + i;
+            results.add(pool.submit(() -> {
+                String session = signUpAndLogin(userName);
+                for (int n = 0; n < 5; n++) {
+                    send("POST", "/portfolios", session, "{\"name\":\"P" + n + "\"}");
+                }
+                String body = send("GET", "/portfolios", session, null).body;
+                return body.split("\"id\"", -1).length == 6;
+            }));
+        }
+        boolean allFive = true;
+        for (Future<Boolean> result : results) {
+            allFive &= result.get();
+        }
+        pool.shutdown();
+        check("each of 8 investors sees exactly their 5 portfolios", allFive);
+    }
+
+    /**
+     * The status code and body of a response.
+     */
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static Response send(String method, String path, String token, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + path)).method(method,
+                body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        return new Response(response.statusCode(), response.body());
+    }
+
+    private static String login(String userName, String password) throws IOException, InterruptedException {
+        Map<String, String> body = Json.parseObject(send("POST", "/login", null,
+                "{\"username\":\"" + userName + "\",\"password\":\"" + password + "\"}").body);
+        return body.get("token");
+    }
+
+    private static String signUpAndLogin(String userName) throws IOException, InterruptedException {
+        send("POST", "/signup", null, "{\"name\":\"Investor\",\"email\":\"" + userName
+                + "@example.com\",\"username\":\"" + userName + "\",\"password\":\"Password1!\",\"confirmPassword\":\"Password1!\"}");
+        return login(userName, "Password1!");
+    }
+}
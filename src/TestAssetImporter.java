@@ -0,0 +1,151 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test class for verifying bulk asset imports. CSV and JSON Lines files are
+ * imported into databases kept in a temporary directory, which are then
+ * reopened to check that every committed asset was stored with its fields.
+ * Invalid rows must be skipped and reported with their line number.
+ */
+public class TestAssetImporter extends TestSupport {
+    /**
+     * Main method that executes all import test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("import-test").toFile();
+        String usersFile = new File(dir, "users.ser").getPath();
+        String portfoliosFile = new File(dir, "portfolios.ser").getPath();
+        UserDatabase users = new UserDatabase(usersFile, BinaryCodecs.USER);
+        Investor alice = new Investor("Alice A", "alice@example.com", "alice", "Password1!");
+        Investor bob = new Investor("Bob B", "bob@example.com", "bob", "Password1!");
+        users.addData(alice);
+        users.addData(bob);
+        PortfolioDatabase portfolios = new PortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+
+        // Case 1: Every asset type from CSV, stored and read back
+        System.out.println("Test 1: CSV import round trip");
+        File csv = new File(dir, "holdings.csv");
+        Files.write(csv.toPath(), Arrays.asList(
+                "Owner,Portfolio,Type,Name,Quantity,Price,Purchase_Date,Zakat,Symbol,Exchange,Location,"
+                        + "Property_Type,Karat,Weight",
+                "alice,Main,stocks,Apple,10,150.5,2024-03-01,true,AAPL,NASDAQ,,,,",
+                "alice,Main,crypto,Bitcoin,2,30000,,false,BTC,Binance,,,,",
+                "",
+                "alice,Savings,gold,Rings,3,500,2023-01-15,true,,,,,21K,7.5",
+                "bob,Home,real estate,\"Flat, Nile view\",1,90000,,false,,,\"Cairo, \"\"Zamalek\"\"\",Apartment,,"));
+        AssetImporter.Summary summary = new AssetImporter(users, portfolios).importFile(csv.getPath());
+        check("4 rows imported into 3 new portfolios", summary.getRows() == 4 && summary.getImported() == 4
+                && summary.getRejected() == 0 && summary.getPortfoliosCreated() == 3 && summary.getErrors().isEmpty());
+        portfolios.close();
+        portfolios = new PortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+        Map<String, Portfolio> alices = byName(portfolios.getUserPortfolios(alice));
+        List<Asset> main = alices.get("Main").getAssets();
+        Stocks apple = (Stocks) main.get(0);
+        check("the stock keeps its fields and date", apple.getName().equals("Apple") && apple.getQuantity() == 10
+                && apple.getPurchasePrice() == 150.5f && apple.isZakatApplicable()
+                && apple.getStockSymbol().equals("AAPL") && apple.getExchange().equals("NASDAQ")
+                && String.format("%tF", apple.getPurchaseDate()).equals("2024-03-01"));
+        Crypto bitcoin = (Crypto) main.get(1);
+        check("the crypto asset is stored without Zakat and dated today", bitcoin.getCryptoSymbol().equals("BTC")
+                && !bitcoin.isZakatApplicable() && bitcoin.getPurchaseDate() != null);
+        Gold rings = (Gold) alices.get("Savings").getAssets().get(0);
+        check("the gold keeps its karat and weight", rings.getKarat().equals("21K")
+                && rings.getWeightInGrams() == 7.5f && rings.getQuantity() == 3);
+        RealState flat = (RealState) portfolios.getUserPortfolios(bob).get(0).getAssets().get(0);
+        check("quoted fields keep their commas and quotes", flat.getName().equals("Flat, Nile view")
+                && flat.getLocation().equals("Cairo, \"Zamalek\"") && flat.getPropertyType().equals("Apartment"));
+        System.out.println();
+
+        // Case 2: JSON Lines into existing portfolios, over several batches
+        System.out.println("Test 2: JSON Lines import in batches");
+        File jsonl = new File(dir, "holdings.jsonl");
+        Files.write(jsonl.toPath(), Arrays.asList(
+                "{\"owner\":\"alice\",\"portfolio\":\"Main\",\"type\":\"stock\",\"name\":\"Microsoft\","
+                        + "\"quantity\":\"5\",\"price\":\"300\",\"symbol\":\"MSFT\"}",
+                "{\"owner\":\"alice\",\"portfolio\":\"Main\",\"type\":\"stocks\",\"name\":\"Google\","
+                        + "\"quantity\":\"1\",\"price\":\"120\",\"symbol\":\"GOOG\"}",
+                "{\"owner\":\"bob\",\"portfolio\":\"Home\",\"type\":\"real_estate\",\"name\":\"Villa\","
+                        + "\"quantity\":\"1\",\"price\":\"0\",\"location\":\"Giza\"}"));
+        summary = new AssetImporter(users, portfolios, 2).importFile(jsonl.getPath());
+        check("3 rows imported without creating portfolios",
+                summary.getImported() == 3 && summary.getPortfoliosCreated() == 0);
+        portfolios.close();
+        portfolios = new PortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+        check("the assets follow the earlier ones in import order",
+                names(byName(portfolios.getUserPortfolios(alice)).get("Main").getAssets())
+                        .equals(Arrays.asList("Apple", "Bitcoin", "Microsoft", "Google"))
+                        && portfolios.getUserPortfolios(bob).get(0).getAssets().size() == 2);
+        System.out.println();
+
+        // Case 3: Invalid rows are skipped and reported with their line
+        System.out.println("Test 3: Invalid rows");
+        String rows = String.join("\n",
+                "owner,portfolio,type,name,quantity,price,symbol,karat,weight",
+                "alice,Bad,stocks,No symbol,1,10,,,",
+                "carol,Bad,stocks,Unknown owner,1,10,X,,",
+                ",Bad,stocks,No owner,1,10,X,,",
+                "alice,Bad,stocks,Zero,0,10,X,,",
+                "alice,Bad,stocks,Negative,1,-10,X,,",
+                "alice,Bad,gold,Heavy,1,10,,30K,5",
+                "alice,Bad,gold,Weightless,1,10,,18,0",
+                "alice,Bad,bonds,Bond,1,10,X,,",
+                "alice,Bad,stocks,Short row,1",
+                "alice,Bad,stocks,\"Unterminated,1,10,X,,",
+                "alice,Good,stocks,Valid,1,10,V,,");
+        summary = new AssetImporter(users, portfolios).importCsv(new StringReader(rows));
+        check("10 of 11 rows are rejected", summary.getRows() == 11 && summary.getRejected() == 10
+                && summary.getImported() == 1 && summary.getPortfoliosCreated() == 1);
+        List<String> errors = summary.getErrors();
+        check("each error names its line and problem", errors.size() == 10
+                && errors.get(0).equals("Line 2: Missing symbol")
+                && errors.get(1).equals("Line 3: Unknown investor: carol")
+                && errors.get(2).equals("Line 4: Missing owner")
+                && errors.get(3).equals("Line 5: Quantity must be positive: 0")
+                && errors.get(4).equals("Line 6: Invalid price: -10")
+                && errors.get(5).equals("Line 7: Invalid karat: 30K")
+                && errors.get(6).equals("Line 8: Invalid weight: 0")
+                && errors.get(7).equals("Line 9: Invalid asset type: bonds")
+                && errors.get(8).equals("Line 10: Expected 9 columns but found 5")
+                && errors.get(9).equals("Line 11: Unterminated quoted field"));
+        check("no portfolio is created for rejected rows", !byName(portfolios.getUserPortfolios(alice))
+                .containsKey("Bad"));
+        summary = new AssetImporter(users, portfolios).importJsonLines(new StringReader("{\"owner\": alice}\n"));
+        check("a malformed JSON line is rejected", summary.getRejected() == 1 && summary.getErrors().get(0)
+                .startsWith("Line 1: "));
+        System.out.println();
+
+        // Case 4: Empty input and invalid settings
+        System.out.println("Test 4: Edge cases");
+        summary = new AssetImporter(users, portfolios).importCsv(new StringReader(""));
+        check("an empty file imports nothing", summary.getRows() == 0 && summary.getImported() == 0);
+        summary = new AssetImporter(users, portfolios).importCsv(new StringReader("owner,portfolio,type\n\n"));
+        check("a header without rows imports nothing", summary.getRows() == 0);
+        check("a batch size below 1 is rejected", rejects(() -> new AssetImporter(users, null, 0)));
+        check("the durability is restored after the import", portfolios.getDurability() == Durability.PER_OP);
+        portfolios.close();
+        users.close();
+
+        finish("import");
+    }
+
+    private static Map<String, Portfolio> byName(List<Portfolio> portfolios) {
+        Map<String, Portfolio> named = new HashMap<>();
+        for (Portfolio portfolio : portfolios) {
+            named.put(portfolio.getName(), portfolio);
+        }
+        return named;
+    }
+
+    private static List<String> names(List<Asset> assets) {
+        return Arrays.asList(assets.stream().map(Asset::getName).toArray(String[]::new));
+    }
+}
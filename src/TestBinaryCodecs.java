@@ -0,0 +1,134 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for verifying the storage codecs. Users and portfolios holding
+ * every asset type are encoded and decoded again with the binary codec and
+ * with Java serialization, and records from older layouts and damaged input
+ * are checked to be read or rejected as expected.
+ */
+public class TestBinaryCodecs extends TestSupport {
+    /**
+     * Main method that executes all codec test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if a record that should round-trip cannot be encoded
+     */
+    public static void main(String[] args) throws IOException {
+        // Case 1: A user keeps its id, username and password
+        System.out.println("Test 1: User round trip");
+        User user = new Investor("Ahmed Ali", "ahmed@example.com", "ahmed123", "Password1*!");
+        User decodedUser = decode(BinaryCodecs.USER, encode(BinaryCodecs.USER, user));
+        check("id, username and email are kept", user.getId().equals(decodedUser.getId())
+                && decodedUser.getUserName().equals("ahmed123") && "ahmed@example.com".equals(decodedUser.email));
+        check("the password still matches", decodedUser.checkPassword("Password1*!"));
+        System.out.println();
+
+        // Case 2: A portfolio with every asset type, missing dates, flags and strings
+        System.out.println("Test 2: Portfolio round trip");
+        Portfolio portfolio = new Portfolio(null, "ahmed123", "Main", Arrays.asList(
+                new Stocks("Apple", 10, new Date(1_700_000_000_000L), 189.5f, true, "AAPL", "NASDAQ"),
+                new Crypto("Bitcoin", 2, null, 42000f, null, "BTC", null),
+                new Gold("Bar", 1, new Date(0), 2500f, true, "21", 50.5f),
+                new RealState("Flat", 1, new Date(-86_400_000L), 1_000_000f, false, "Cairo \u00e9", "Apartment")));
+        byte[] bytes = encode(BinaryCodecs.PORTFOLIO, portfolio);
+        Portfolio decoded = decode(BinaryCodecs.PORTFOLIO, bytes);
+        check("id, owner and name are kept", portfolio.getId().equals(decoded.getId())
+                && decoded.getOwnerUserName().equals("ahmed123") && decoded.getName().equals("Main"));
+        check("re-encoding gives the same bytes", Arrays.equals(bytes, encode(BinaryCodecs.PORTFOLIO, decoded)));
+        Asset crypto = decoded.getAssets().get(1);
+        check("a missing date, zakat flag and exchange stay missing", crypto.getPurchaseDate() == null
+                && crypto.isZakatApplicable() == null && ((Crypto) crypto).getExchange() == null);
+        Gold gold = (Gold) decoded.getAssets().get(2);
+        check("gold keeps its karat and weight", gold.getKarat().equals("21") && gold.getWeightInGrams() == 50.5f);
+        System.out.println();
+
+        // Case 3: An empty portfolio
+        System.out.println("Test 3: Empty portfolio");
+        Portfolio empty = new Portfolio(null, "ahmed123", "", Collections.emptyList());
+        check("decodes with no assets", decode(BinaryCodecs.PORTFOLIO, encode(BinaryCodecs.PORTFOLIO, empty))
+                .getAssets().isEmpty());
+        System.out.println();
+
+        // Case 4: Records written before record ids existed
+        System.out.println("Test 4: Records without ids");
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(legacy);
+        out.writeByte(1); // first portfolio layout: no id
+        BinaryCodecs.writeString(out, "ahmed123");
+        BinaryCodecs.writeString(out, "Old");
+        out.writeInt(0);
+        Portfolio legacyPortfolio = decode(BinaryCodecs.PORTFOLIO, legacy.toByteArray());
+        check("an old portfolio gets a new id and is marked for rewriting",
+                legacyPortfolio.getId() != null && legacyPortfolio.isLegacyRecord());
+        check("a current portfolio is not marked for rewriting", !decoded.isLegacyRecord());
+        System.out.println();
+
+        // Case 5: Damaged input is rejected
+        System.out.println("Test 5: Damaged input");
+        check("an unknown record tag is rejected", fails(BinaryCodecs.PORTFOLIO, new byte[] {9}));
+        check("a truncated record is rejected",
+                fails(BinaryCodecs.PORTFOLIO, Arrays.copyOf(bytes, bytes.length - 3)));
+        byte[] badAsset = bytes.clone();
+        badAsset[headerLength(portfolio)] = 99; // the first asset's type tag
+        check("an unknown asset type is rejected", fails(BinaryCodecs.PORTFOLIO, badAsset));
+        System.out.println();
+
+        // Case 6: Strings longer than modified UTF-8 allows cannot be written
+        System.out.println("Test 6: Oversized string");
+        Portfolio oversized = new Portfolio(null, "ahmed123", "x".repeat(70_000), Collections.emptyList());
+        boolean rejected;
+        try {
+            encode(BinaryCodecs.PORTFOLIO, oversized);
+            rejected = false;
+        } catch (IOException e) {
+            rejected = true;
+        }
+        check("an over-long name is rejected with an IOException", rejected);
+        System.out.println();
+
+        // Case 7: Java serialization round trip
+        System.out.println("Test 7: Serialization codec round trip");
+        SerializationCodec<Portfolio> java = new SerializationCodec<>();
+        Portfolio viaJava = decode(java, encode(java, portfolio));
+        check("the portfolio and its assets match the binary codec's result",
+                Arrays.equals(bytes, encode(BinaryCodecs.PORTFOLIO, viaJava)));
+
+        finish("codec");
+    }
+
+    private static <T> byte[] encode(RecordCodec<T> codec, T item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(bytes), item);
+        return bytes.toByteArray();
+    }
+
+    private static <T> T decode(RecordCodec<T> codec, byte[] bytes) throws IOException {
+        return codec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static <T> boolean fails(RecordCodec<T> codec, byte[] bytes) {
+        try {
+            decode(codec, bytes);
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Gets the length of a portfolio record before its first asset.
+     */
+    private static int headerLength(Portfolio portfolio) throws IOException {
+        List<Asset> none = Collections.emptyList();
+        return encode(BinaryCodecs.PORTFOLIO,
+                new Portfolio(portfolio.getId(), portfolio.getOwnerUserName(), portfolio.getName(), none)).length;
+    }
+}
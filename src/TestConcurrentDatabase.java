@@ -0,0 +1,152 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for verifying the thread-safe databases. Several threads
+ * change the same databases at once, released together by a latch, and the
+ * databases are then checked in memory and after being reopened from a
+ * temporary directory, so no change may be lost or written out of order.
+ */
+public class TestConcurrentDatabase extends TestSupport {
+    private static final int THREADS = 8;
+
+    /**
+     * Main method that executes all concurrency test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws Exception if the temporary directory cannot be created or a thread fails
+     */
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("concurrent-test").toFile();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        // Case 1: Investors add portfolios and assets at the same time
+        System.out.println("Test 1: Concurrent portfolio writes");
+        String portfoliosFile = new File(dir, "portfolios.ser").getPath();
+        PortfolioDatabase portfolios = new ConcurrentPortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+        Portfolio shared = new Portfolio(investor("shared"), portfolios, "Shared");
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Investor owner = investor("investor" + t);
+            tasks.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 25; i++) {
+                    new Portfolio(owner, portfolios, "P" + i).addAsset(stock(owner.getUserName(), i + 1));
+                    shared.addAsset(stock(owner.getUserName(), i + 1));
+                    for (Portfolio read : portfolios.getUserPortfolios(owner)) {
+                        read.getAssets().size();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        awaitAll(tasks);
+        check("each investor has all 25 portfolios with their asset", everyInvestorHas(portfolios, 25));
+        check("the shared portfolio kept every asset added to it", shared.getAssets().size() == THREADS * 25);
+        portfolios.close();
+        PortfolioDatabase reopened = new ConcurrentPortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+        check("every change is stored", everyInvestorHas(reopened, 25)
+                && reopened.getUserPortfolios(investor("shared")).get(0).getAssets().size() == THREADS * 25);
+        reopened.close();
+        System.out.println();
+
+        // Case 2: Signups with the same usernames at the same time
+        System.out.println("Test 2: Concurrent signups");
+        String usersFile = new File(dir, "users.ser").getPath();
+        UserDatabase users = new ConcurrentUserDatabase(usersFile, BinaryCodecs.USER);
+        AtomicInteger added = new AtomicInteger();
+        CountDownLatch signups = new CountDownLatch(1);
+        tasks.clear();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(pool.submit(() -> {
+                signups.await();
+                for (int i = 0; i < 20; i++) {
+                    if (users.addData(investor("user" + i))) {
+                        added.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        signups.countDown();
+        awaitAll(tasks);
+        check("each username is taken exactly once", added.get() == 20 && users.getAllUsers().size() == 20);
+        users.close();
+        UserDatabase reopenedUsers = new ConcurrentUserDatabase(usersFile, BinaryCodecs.USER);
+        check("the stored users have no duplicates", reopenedUsers.getAllUsers().size() == 20
+                && reopenedUsers.findUser("user19") != null);
+        reopenedUsers.close();
+        System.out.println();
+
+        // Case 3: A change to a removed portfolio is refused and not kept
+        System.out.println("Test 3: Changes to removed portfolios");
+        String batchedFile = new File(dir, "batched.ser").getPath();
+        PortfolioDatabase batched = new ConcurrentPortfolioDatabase(batchedFile, BinaryCodecs.PORTFOLIO);
+        batched.setDurability(Durability.BATCHED);
+        Portfolio removed = new Portfolio(investor("investor0"), batched, "Removed");
+        removed.addAsset(stock("AAA", 1));
+        CountDownLatch race = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        tasks.clear();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(pool.submit(() -> {
+                race.await();
+                for (int i = 0; i < 25; i++) {
+                    if (removed.addAsset(stock("BBB", i + 1))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        race.countDown();
+        batched.deleteData(removed);
+        awaitAll(tasks);
+        check("the portfolio holds exactly the accepted assets",
+                removed.getAssets().size() == 1 + accepted.get());
+        check("a change after the removal is refused and rolled back",
+                !removed.addAsset(stock("CCC", 1)) && removed.findAsset("CCC") == null);
+        batched.close();
+        batched = new ConcurrentPortfolioDatabase(batchedFile, BinaryCodecs.PORTFOLIO);
+        check("the removed portfolio is not stored", batched.getAllPortfolios().isEmpty());
+        batched.close();
+        pool.shutdown();
+
+        finish("concurrency");
+    }
+
+    private static void awaitAll(List<Future<?>> tasks) throws Exception {
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+    }
+
+    private static boolean everyInvestorHas(PortfolioDatabase portfolios, int count) {
+        for (int t = 0; t < THREADS; t++) {
+            List<Portfolio> owned = portfolios.getUserPortfolios(investor("investor" + t));
+            if (owned.size() != count) {
+                return false;
+            }
+            for (Portfolio portfolio : owned) {
+                if (portfolio.getAssets().size() != 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Stocks stock(String symbol, int quantity) {
+        return stock(symbol, quantity, 10f, new Date(), true);
+    }
+}
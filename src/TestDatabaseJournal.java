@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for verifying the write-ahead journal of {@link Database}.
+ * Each case mutates a journaled database, reopens its files and checks that
+ * the replayed contents match, including after clears, compaction, batched
+ * commits and damaged log records. Files are kept in a temporary directory.
+ */
+public class TestDatabaseJournal extends TestSupport {
+    /**
+     * Main method that executes all journal test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("journal-test").toFile();
+
+        // Case 1: Additions, edits and removals survive a reload
+        System.out.println("Test 1: Replay of add, edit and remove");
+        String file1 = new File(dir, "users1.ser").getPath();
+        UserDatabase db = new UserDatabase(file1, BinaryCodecs.USER);
+        db.addData(investor("alice"));
+        db.addData(investor("bob"));
+        db.addData(investor("carol"));
+        db.editData(db.findUser("bob"), investor("bobby"));
+        db.deleteData(db.findUser("alice"));
+        db.close();
+        check("reloaded users are [bobby, carol]",
+                userNames(new UserDatabase(file1, BinaryCodecs.USER)).equals(Arrays.asList("bobby", "carol")));
+        System.out.println();
+
+        // Case 2: A clear followed by additions keeps only the new users
+        System.out.println("Test 2: Replay of clear");
+        String file2 = new File(dir, "users2.ser").getPath();
+        db = new UserDatabase(file2, BinaryCodecs.USER);
+        db.addData(investor("alice"));
+        db.addData(investor("bob"));
+        db.clear();
+        db.addData(investor("dave"));
+        db.close();
+        check("reloaded users are [dave]",
+                userNames(new UserDatabase(file2, BinaryCodecs.USER)).equals(Arrays.asList("dave")));
+        System.out.println();
+
+        // Case 3: A clear as the last record leaves the database empty
+        System.out.println("Test 3: Replay of a final clear");
+        db = new UserDatabase(file2, BinaryCodecs.USER);
+        db.clear();
+        db.close();
+        check("reloaded database is empty after a final clear",
+                new UserDatabase(file2, BinaryCodecs.USER).getAllUsers().isEmpty());
+        System.out.println();
+
+        // Case 4: A torn record at the end of the log is discarded
+        System.out.println("Test 4: Torn record at the end of the log");
+        String file4 = new File(dir, "users4.ser").getPath();
+        db = new UserDatabase(file4, BinaryCodecs.USER);
+        db.addData(investor("alice"));
+        db.addData(investor("bob"));
+        db.close();
+        File log = new File(file4 + ".log");
+        long intactLength = log.length();
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[] {0, 0, 0, 40, 1, 2, 3}); // a length and part of a checksum
+        }
+        check("reloaded users are [alice, bob]",
+                userNames(new UserDatabase(file4, BinaryCodecs.USER)).equals(Arrays.asList("alice", "bob")));
+        check("the log is cut back to its intact records", log.length() == intactLength);
+        System.out.println();
+
+        // Case 5: A record with a bad checksum ends the replay
+        System.out.println("Test 5: Record with a bad checksum");
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+        check("only the record before the damaged one is replayed",
+                userNames(new UserDatabase(file4, BinaryCodecs.USER)).equals(Arrays.asList("alice")));
+        System.out.println();
+
+        // Case 6: Enough records to compact the log into the snapshot
+        System.out.println("Test 6: Replay after compaction");
+        String file6 = new File(dir, "users6.ser").getPath();
+        db = new UserDatabase(file6, BinaryCodecs.USER);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            db.addData(investor("user" + i));
+            expected.add("user" + i);
+        }
+        for (int i = 0; i < 600; i += 2) {
+            db.deleteData(db.findUser("user" + i));
+            expected.remove("user" + i);
+        }
+        db.close();
+        check("no rotated log is left behind", !new File(file6 + ".log.compacting").exists());
+        check("reloaded users match after compaction",
+                userNames(new UserDatabase(file6, BinaryCodecs.USER)).equals(expected));
+        System.out.println();
+
+        // Case 7: Batched records reach the log on flush
+        System.out.println("Test 7: Batched durability");
+        String file7 = new File(dir, "users7.ser").getPath();
+        db = new UserDatabase(file7, BinaryCodecs.USER);
+        db.setDurability(Durability.BATCHED);
+        db.setGroupCommit(60_000, 1000);
+        db.addData(investor("alice"));
+        db.addData(investor("bob"));
+        db.flush();
+        check("flushed records are in the log before the database is closed",
+                replayedNames(file7).equals(Arrays.asList("alice", "bob")));
+        db.close();
+        System.out.println();
+
+        // Case 8: Asset changes are journaled as patches and replayed onto the portfolio
+        System.out.println("Test 8: Replay of asset patches");
+        String file8 = new File(dir, "portfolios8.ser").getPath();
+        Investor owner = investor("alice");
+        PortfolioDatabase ports = new PortfolioDatabase(file8, BinaryCodecs.PORTFOLIO);
+        Portfolio portfolio = new Portfolio(owner, ports, "Main");
+        portfolio.addAsset(stock("AAA", 10));
+        portfolio.addAssets(Arrays.asList(stock("BBB", 20), stock("CCC", 30)));
+        portfolio.replaceAsset(portfolio.findAsset("BBB"), stock("BBB", 25));
+        portfolio.removeAsset(portfolio.findAsset("AAA"));
+        ports.close();
+        Portfolio reloaded = new PortfolioDatabase(file8, BinaryCodecs.PORTFOLIO).getUserPortfolios(owner).get(0);
+        check("reloaded assets are [BBB x25, CCC x30]",
+                assetSummary(reloaded).equals(Arrays.asList("BBB x25", "CCC x30")));
+        System.out.println();
+
+        // Case 9: Compaction does not wait for other users of the database object
+        System.out.println("Test 9: Compaction without the database monitor");
+        String file9 = new File(dir, "users9.ser").getPath();
+        UserDatabase held = new UserDatabase(file9, BinaryCodecs.USER);
+        File rotated = new File(file9 + ".log.compacting");
+        boolean compacted;
+        synchronized (held) {
+            for (int i = 0; i < 600; i++) {
+                held.addData(investor("user" + i));
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (rotated.exists() && System.currentTimeMillis() < deadline) {
+                Thread.onSpinWait();
+            }
+            compacted = !rotated.exists();
+        }
+        held.close();
+        check("the log is compacted while another thread holds the database's monitor", compacted
+                && userNames(new UserDatabase(file9, BinaryCodecs.USER)).size() == 600);
+
+        finish("journal");
+    }
+
+    private static Stocks stock(String symbol, int quantity) {
+        return stock(symbol, quantity, 10f, new Date(), true);
+    }
+
+    private static List<String> userNames(UserDatabase db) {
+        List<String> names = new ArrayList<>();
+        for (User user : db.getAllUsers()) {
+            names.add(user.getUserName());
+        }
+        db.close();
+        return names;
+    }
+
+    private static List<String> replayedNames(String fileName) throws IOException {
+        SnapshotFormat.Snapshot<User> snapshot = SnapshotFormat.read(new File(fileName), BinaryCodecs.USER);
+        List<User> users = snapshot.getData();
+        DatabaseJournal.replayReadOnly(fileName, users, snapshot.getSequence(), BinaryCodecs.USER);
+        List<String> names = new ArrayList<>();
+        for (User user : users) {
+            names.add(user.getUserName());
+        }
+        return names;
+    }
+
+    private static List<String> assetSummary(Portfolio portfolio) {
+        List<String> summary = new ArrayList<>();
+        for (Asset asset : portfolio.getAssets()) {
+            summary.add(asset.getName() + " x" + asset.getQuantity());
+        }
+        return summary;
+    }
+}
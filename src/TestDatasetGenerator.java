@@ -0,0 +1,132 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test class for verifying the synthetic dataset generator. The same seed
+ * must give byte-identical files in every layout and another seed other
+ * data, the files must read back through the databases with the counts the
+ * summaries report, and any investor must be regenerated on its own exactly
+ * as written. Files are kept in a temporary directory.
+ */
+public class TestDatasetGenerator extends TestSupport {
+    /**
+     * Main method that executes all dataset generator test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory or a dataset cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("dataset-test").toFile();
+
+        // Case 1: The same seed gives the same files
+        System.out.println("Test 1: Deterministic output");
+        File first = write(new File(dir, "first"), 7);
+        File second = write(new File(dir, "second"), 7);
+        File other = write(new File(dir, "other"), 8);
+        check("the user files are identical", sameBytes(new File(first, "users.ser"), new File(second, "users.ser")));
+        check("the portfolio files are identical",
+                sameBytes(new File(first, "portfolios.ser"), new File(second, "portfolios.ser")));
+        check("the portfolio directories are identical",
+                sameFiles(new File(first, "portfolios"), new File(second, "portfolios")));
+        check("another seed gives other data",
+                !sameBytes(new File(first, "portfolios.ser"), new File(other, "portfolios.ser"))
+                        && !sameBytes(new File(first, "users.ser"), new File(other, "users.ser")));
+        System.out.println();
+
+        // Case 2: The files read back with the reported counts
+        System.out.println("Test 2: Reading the dataset back");
+        DatasetGenerator generator = generator(7);
+        DatasetGenerator.Summary summary = generator.writePortfolios(new File(dir, "counted.ser"));
+        PortfolioDatabase portfolios = new PortfolioDatabase(new File(dir, "counted.ser").getPath(),
+                BinaryCodecs.PORTFOLIO);
+        long assets = portfolios.getAllPortfolios().stream()
+                .mapToLong(portfolio -> portfolio.getAssets().size()).sum();
+        check("the summary counts what was written", summary.getInvestors() == 25
+                && summary.getPortfolios() == portfolios.getAllPortfolios().size() && summary.getAssets() == assets);
+        boolean inRange = true;
+        for (int i = 0; i < 25; i++) {
+            List<Portfolio> owned = portfolios.getUserPortfolios(generator.investor(i));
+            inRange &= owned.size() >= 1 && owned.size() <= 3;
+            for (Portfolio portfolio : owned) {
+                inRange &= portfolio.getAssets().size() >= 2 && portfolio.getAssets().size() <= 6;
+            }
+        }
+        check("counts are drawn from the configured ranges", inRange);
+        portfolios.close();
+        UserDatabase users = new UserDatabase(new File(first, "users.ser").getPath(), BinaryCodecs.USER);
+        User stored = users.findUser(DatasetGenerator.userName(12));
+        check("every investor is stored and can log in", users.getAllUsers().size() == 25
+                && stored != null && stored.checkPassword(DatasetGenerator.PASSWORD));
+        Investor regenerated = generator.investor(12);
+        check("an investor regenerated on its own matches the stored one",
+                regenerated.getId().equals(stored.getId()) && regenerated.getName().equals(stored.getName()));
+        users.close();
+        LazyPortfolioDatabase lazy = new LazyPortfolioDatabase(new File(first, "portfolios").getPath(),
+                BinaryCodecs.PORTFOLIO, 4);
+        check("an investor's portfolios regenerated on their own match the stored ones",
+                lazy.getUserPortfolios(regenerated).equals(generator.portfolios(12))
+                        && holdings(lazy.getUserPortfolios(regenerated)).equals(holdings(generator.portfolios(12))));
+        lazy.close();
+        System.out.println();
+
+        // Case 3: Invalid settings are refused
+        System.out.println("Test 3: Invalid settings");
+        check("a negative investor count is refused", rejects(() -> new DatasetGenerator().investors(-1)));
+        check("an inverted range is refused", rejects(() -> new DatasetGenerator().portfoliosPerInvestor(3, 1)));
+        check("an all-zero asset mix is refused", rejects(() -> new DatasetGenerator().assetMix(0, 0, 0, 0)));
+        check("a Zakat share above one is refused", rejects(() -> new DatasetGenerator().zakatShare(1.5)));
+
+        finish("dataset generator");
+    }
+
+    private static DatasetGenerator generator(long seed) {
+        return new DatasetGenerator(seed).investors(25).portfoliosPerInvestor(1, 3).assetsPerPortfolio(2, 6);
+    }
+
+    /**
+     * Writes a dataset in every layout into a new directory.
+     */
+    private static File write(File directory, long seed) throws IOException {
+        directory.mkdirs();
+        DatasetGenerator generator = generator(seed);
+        generator.writeUsers(new File(directory, "users.ser"));
+        generator.writePortfolios(new File(directory, "portfolios.ser"));
+        generator.writePortfolioDirectory(new File(directory, "portfolios"));
+        return directory;
+    }
+
+    private static List<String> holdings(List<Portfolio> portfolios) {
+        List<String> holdings = new ArrayList<>();
+        for (Portfolio portfolio : portfolios) {
+            for (Asset asset : portfolio.getAssets()) {
+                holdings.add(portfolio.getName() + ": " + asset.getName() + " x" + asset.getQuantity() + " at "
+                        + asset.getPurchasePrice() + " on " + asset.getPurchaseDate());
+            }
+        }
+        return holdings;
+    }
+
+    private static boolean sameBytes(File a, File b) throws IOException {
+        return Arrays.equals(Files.readAllBytes(a.toPath()), Files.readAllBytes(b.toPath()));
+    }
+
+    private static boolean sameFiles(File a, File b) throws IOException {
+        String[] names = a.list();
+        Arrays.sort(names);
+        String[] others = b.list();
+        Arrays.sort(others);
+        if (names.length == 0 || !Arrays.equals(names, others)) {
+            return false;
+        }
+        for (String name : names) {
+            if (!sameBytes(new File(a, name), new File(b, name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
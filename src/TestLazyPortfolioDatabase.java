@@ -0,0 +1,125 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for verifying the per-investor portfolio directory. A
+ * single-file database is split into a directory kept in a temporary
+ * directory and read back through the lazy database, and the investor cache
+ * is checked to count hits and misses and to evict by investor count and by
+ * the number of records it holds.
+ */
+public class TestLazyPortfolioDatabase extends TestSupport {
+    /**
+     * Main method that executes all lazy database test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("lazy-test").toFile();
+        Investor alice = investor("alice");
+        Investor bob = investor("Bob");
+
+        // Case 1: A single-file database next to a new directory is split into it
+        System.out.println("Test 1: Splitting a single-file database");
+        PortfolioDatabase legacy = new PortfolioDatabase(new File(dir, "portfolioDatabase.ser").getPath(),
+                BinaryCodecs.PORTFOLIO);
+        legacy.addData(new Portfolio(null, "alice", "Main", List.of(stock("AAA", 10), stock("BBB", 20))));
+        legacy.addData(new Portfolio(null, "alice", "Savings", List.of(stock("CCC", 30))));
+        legacy.addData(new Portfolio(null, "Bob", "Home", List.of()));
+        legacy.close();
+        String directory = new File(dir, "portfolios").getPath();
+        LazyPortfolioDatabase lazy = new LazyPortfolioDatabase(directory, BinaryCodecs.PORTFOLIO, 4);
+        check("each investor's portfolios are read back with their assets",
+                summary(lazy.getUserPortfolios(alice)).equals(List.of("Main [AAA x10, BBB x20]", "Savings [CCC x30]"))
+                        && summary(lazy.getUserPortfolios(bob)).equals(List.of("Home []")));
+        check("no split marker is left behind", !new File(directory + ".splitting").exists());
+        System.out.println();
+
+        // Case 2: The split happens once
+        System.out.println("Test 2: Reopening a split directory");
+        lazy.deleteData(lazy.getUserPortfolios(alice).get(1));
+        lazy.close();
+        lazy = new LazyPortfolioDatabase(directory, BinaryCodecs.PORTFOLIO, 4);
+        check("a portfolio removed after the split stays removed",
+                summary(lazy.getUserPortfolios(alice)).equals(List.of("Main [AAA x10, BBB x20]")));
+        lazy.close();
+        File empty = new File(dir, "other/portfolios");
+        lazy = new LazyPortfolioDatabase(empty.getPath(), BinaryCodecs.PORTFOLIO, 4);
+        check("a directory without a single-file database next to it starts empty",
+                lazy.getUserPortfolios(alice).isEmpty() && empty.isDirectory());
+        lazy.close();
+        System.out.println();
+
+        // Case 3: Investors are cached up to a count, least recently used first out
+        System.out.println("Test 3: Investor cache");
+        String cached = new File(dir, "cache/portfolios").getPath();
+        lazy = new LazyPortfolioDatabase(cached, BinaryCodecs.PORTFOLIO, 2);
+        Investor carol = investor("carol");
+        lazy.importPortfolios(List.of(
+                new Portfolio(null, "alice", "Main", List.of(stock("AAA", 1), stock("BBB", 2), stock("CCC", 3))),
+                new Portfolio(null, "Bob", "Main", List.of()), new Portfolio(null, "carol", "Main", List.of())));
+        lazy.close();
+        lazy = new LazyPortfolioDatabase(cached, BinaryCodecs.PORTFOLIO, 2);
+        lazy.getUserPortfolios(alice);
+        lazy.getUserPortfolios(alice);
+        lazy.getUserPortfolios(bob);
+        lazy.getUserPortfolios(carol);
+        lazy.getUserPortfolios(alice);
+        LruCache.Stats stats = lazy.getCacheStats();
+        check("one hit, four misses and two evictions", stats.getHits() == 1 && stats.getMisses() == 4
+                && stats.getEvictions() == 2 && stats.getSize() == 2);
+        check("reading investors leaves no journal files behind", logFiles(new File(cached)) == 0);
+        lazy.close();
+        System.out.println();
+
+        // Case 4: The cache is also bounded by portfolios plus assets
+        System.out.println("Test 4: Record limit");
+        lazy = new LazyPortfolioDatabase(cached, BinaryCodecs.PORTFOLIO, 10, 5);
+        lazy.getUserPortfolios(alice);
+        Portfolio bobs = lazy.getUserPortfolios(bob).get(0);
+        stats = lazy.getCacheStats();
+        check("alice's 4 records and bob's 1 fit", stats.getWeight() == 5 && stats.getSize() == 2);
+        bobs.addAsset(stock("DDD", 4));
+        stats = lazy.getCacheStats();
+        check("bob's new asset is counted and evicts alice", stats.getWeight() == 2 && stats.getSize() == 1
+                && stats.getEvictions() == 1);
+        bobs.removeAsset(bobs.findAsset("DDD"));
+        check("a removed asset is no longer counted", lazy.getCacheStats().getWeight() == 1);
+        check("the evicted investor is read back unchanged",
+                summary(lazy.getUserPortfolios(alice)).equals(List.of("Main [AAA x1, BBB x2, CCC x3]")));
+        lazy.close();
+
+        finish("lazy database");
+    }
+
+    private static Stocks stock(String symbol, int quantity) {
+        return stock(symbol, quantity, 10f, new Date(), true);
+    }
+
+    private static int logFiles(File directory) {
+        int count = 0;
+        for (String name : directory.list()) {
+            if (name.endsWith(".log")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<String> summary(List<Portfolio> portfolios) {
+        List<String> summary = new ArrayList<>();
+        for (Portfolio portfolio : portfolios) {
+            List<String> assets = new ArrayList<>();
+            for (Asset asset : portfolio.getAssets()) {
+                assets.add(asset.getName() + " x" + asset.getQuantity());
+            }
+            summary.add(portfolio.getName() + " " + assets);
+        }
+        return summary;
+    }
+}
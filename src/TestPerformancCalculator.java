@@ -0,0 +1,176 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for verifying returns and unrealized profit and loss. Prices
+ * grow by 10% a year over a three-point history, so the expected returns
+ * are known exactly, and every incremental update is compared with a
+ * calculator loaded from scratch.
+ */
+public class TestPerformancCalculator extends TestSupport {
+    private static final long YEAR = (long) (365.25 * 24 * 60 * 60 * 1000);
+
+    /**
+     * Main method that executes all performance test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary history file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long start = 1_600_000_000_000L;
+        PerformancCalculator.PriceHistory history = new PerformancCalculator.PriceHistory(
+                new long[] {start, start + YEAR, start + 2 * YEAR},
+                new String[] {"AAA", "BBB"},
+                new double[] {100, 40, 110, Double.NaN, 121, 50});
+
+        // Case 1: A holding from before the history grows with its price
+        System.out.println("Test 1: Single holding");
+        Portfolio growth = portfolio("alice", stock("AAA", 10, 50f, new Date(0)));
+        PerformancCalculator calculator = new PerformancCalculator(history);
+        calculator.load(Arrays.asList(growth));
+        check("unrealized profit is 1210 - 500 = 710",
+                near(calculator.getPortfolioUnrealizedPnL(growth), 710));
+        check("time-weighted return is 21%", near(calculator.getPortfolioTimeWeightedReturn(growth), 0.21));
+        check("money-weighted return is 10% a year",
+                near(calculator.getPortfolioMoneyWeightedReturn(growth), 0.10));
+        System.out.println();
+
+        // Case 2: Missing prices and assets without a price
+        System.out.println("Test 2: Missing prices");
+        check("a missing price repeats the previous one", history.getPrice(1, "bbb") == 40.0);
+        check("an unknown symbol has no price", Double.isNaN(history.getPrice(0, "ZZZ")));
+        Portfolio property = portfolio("bob",
+                new RealState("Flat", 1, new Date(0), 90_000f, false, "Cairo", "Apartment"));
+        calculator.load(Arrays.asList(property));
+        check("real estate held at cost has no profit and no return",
+                calculator.getPortfolioUnrealizedPnL(property) == 0.0
+                        && near(calculator.getPortfolioTimeWeightedReturn(property), 0.0));
+        System.out.println();
+
+        // Case 3: A purchase during the history enters at cost
+        System.out.println("Test 3: Purchase during the history");
+        Portfolio later = portfolio("carol", stock("AAA", 10, 110f, new Date(start + YEAR / 2)));
+        calculator.load(Arrays.asList(later));
+        check("unrealized profit is 1210 - 1100 = 110", near(calculator.getPortfolioUnrealizedPnL(later), 110));
+        check("time-weighted return counts only growth after the purchase",
+                near(calculator.getPortfolioTimeWeightedReturn(later), 0.10));
+        System.out.println();
+
+        // Case 4: Incremental updates match a fresh load
+        System.out.println("Test 4: Incremental updates");
+        Portfolio first = portfolio("alice", stock("AAA", 10, 50f, new Date(0)), stock("BBB", 5, 30f, new Date(0)));
+        Portfolio second = portfolio("alice", stock("BBB", 20, 45f, new Date(start + YEAR)));
+        Portfolio third = portfolio("dave", stock("AAA", 1, 100f, new Date(0)));
+        calculator.load(Arrays.asList(first, second, third));
+
+        Portfolio edited = withAssets(first, stock("AAA", 12, 50f, new Date(0)), first.getAssets().get(1));
+        calculator.updateAsset(edited, 0);
+        check("an edited asset matches a fresh load",
+                matchesFreshLoad(calculator, history, Arrays.asList(edited, second, third)));
+
+        Portfolio grown = withAssets(second, second.getAssets().get(0), stock("AAA", 3, 90f, new Date(0)));
+        calculator.updatePortfolio(grown);
+        check("an added asset matches a fresh load",
+                matchesFreshLoad(calculator, history, Arrays.asList(edited, grown, third)));
+
+        Portfolio shrunk = withAssets(edited, edited.getAssets().get(1));
+        calculator.updatePortfolio(shrunk);
+        check("a removed asset matches a fresh load",
+                matchesFreshLoad(calculator, history, Arrays.asList(shrunk, grown, third)));
+
+        Portfolio added = portfolio("erin", stock("BBB", 2, 40f, new Date(0)));
+        calculator.updatePortfolio(added);
+        check("a new portfolio and investor match a fresh load",
+                matchesFreshLoad(calculator, history, Arrays.asList(shrunk, grown, third, added)));
+
+        calculator.removePortfolio(grown);
+        check("a removed portfolio matches a fresh load and is no longer loaded",
+                !calculator.isLoaded(grown)
+                        && matchesFreshLoad(calculator, history, Arrays.asList(shrunk, third, added)));
+        System.out.println();
+
+        // Case 5: Invalid requests
+        System.out.println("Test 5: Invalid requests");
+        check("updating an asset after assets were added is rejected", rejects(() ->
+                calculator.updateAsset(withAssets(third, third.getAssets().get(0), stock("BBB", 1, 1f, null)), 0)));
+        check("a portfolio that is not loaded is rejected",
+                rejects(() -> calculator.getPortfolioUnrealizedPnL(grown)));
+        check("an investor without portfolios has no profit and no money-weighted return",
+                calculator.getInvestorUnrealizedPnL("nobody") == 0.0
+                        && Double.isNaN(calculator.getInvestorMoneyWeightedReturn("nobody")));
+        check("an empty history is rejected", rejects(() -> new PerformancCalculator(
+                new PerformancCalculator.PriceHistory(new long[0], new String[] {"AAA"}, new double[0]))));
+        check("times out of order are rejected", rejects(() ->
+                new PerformancCalculator.PriceHistory(new long[] {2, 1}, new String[0], new double[0])));
+        check("a price count that does not fit the table is rejected", rejects(() ->
+                new PerformancCalculator.PriceHistory(new long[] {1}, new String[] {"AAA"}, new double[2])));
+        System.out.println();
+
+        // Case 6: Reading a price history file
+        System.out.println("Test 6: Price history file");
+        File file = Files.createTempFile("price-history", ".csv").toFile();
+        Files.write(file.toPath(), Arrays.asList("date,AAA,BBB", "# prices at the close", "",
+                "2025-01-01,100,", "2025-01-02,101,7.5"));
+        PerformancCalculator.PriceHistory read = PerformancCalculator.PriceHistory.read(file.getPath());
+        check("two points with an empty first price for BBB", read.getTimes().length == 2
+                && Double.isNaN(read.getPrice(0, "BBB")) && read.getPrice(1, "BBB") == 7.5);
+        Files.write(file.toPath(), Arrays.asList("date,AAA", "2025-01-01,100", "2025-01-02,abc"));
+        check("a malformed price names its line", failsWith(file, ":3:"));
+        Files.write(file.toPath(), Arrays.asList("date,AAA", "2025-01-02,100", "2025-01-01,101"));
+        check("dates out of order are rejected", failsWith(file, "ascending"));
+
+        finish("performance");
+    }
+
+    private static boolean failsWith(File file, String message) {
+        try {
+            PerformancCalculator.PriceHistory.read(file.getPath());
+            return false;
+        } catch (IOException e) {
+            return e.getMessage().contains(message);
+        }
+    }
+
+    /**
+     * Compares every figure of the updated calculator with one that loaded
+     * the same portfolios from scratch.
+     */
+    private static boolean matchesFreshLoad(PerformancCalculator updated,
+            PerformancCalculator.PriceHistory history, List<Portfolio> portfolios) {
+        PerformancCalculator fresh = new PerformancCalculator(history);
+        fresh.load(portfolios);
+        if (updated.getHoldingCount() != fresh.getHoldingCount()) {
+            return false;
+        }
+        for (Portfolio portfolio : portfolios) {
+            if (!near(updated.getPortfolioUnrealizedPnL(portfolio), fresh.getPortfolioUnrealizedPnL(portfolio))
+                    || !near(updated.getPortfolioTimeWeightedReturn(portfolio),
+                            fresh.getPortfolioTimeWeightedReturn(portfolio))
+                    || !sameReturn(updated.getPortfolioMoneyWeightedReturn(portfolio),
+                            fresh.getPortfolioMoneyWeightedReturn(portfolio))) {
+                return false;
+            }
+            String investor = portfolio.getOwnerUserName();
+            if (!near(updated.getInvestorUnrealizedPnL(investor), fresh.getInvestorUnrealizedPnL(investor))
+                    || !near(updated.getInvestorTimeWeightedReturn(investor),
+                            fresh.getInvestorTimeWeightedReturn(investor))
+                    || !sameReturn(updated.getInvestorMoneyWeightedReturn(investor),
+                            fresh.getInvestorMoneyWeightedReturn(investor))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameReturn(double actual, double expected) {
+        return Double.isNaN(expected) ? Double.isNaN(actual) : near(actual, expected);
+    }
+
+    private static Stocks stock(String symbol, int quantity, float purchasePrice, Date purchased) {
+        return stock(symbol, quantity, purchasePrice, purchased, true);
+    }
+}
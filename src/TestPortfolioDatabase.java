@@ -0,0 +1,122 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for verifying how PortfolioDatabase stores and finds
+ * portfolios. Each portfolio must be stored as a record of its own, loaded
+ * portfolios must be attached to their database and owner again, and an
+ * investor's portfolios must be found by owner, in the order they were
+ * added, as the database changes. Edits replace a portfolio in place, keyed
+ * by its record id. Files are kept in a temporary directory.
+ */
+public class TestPortfolioDatabase extends TestSupport {
+    /**
+     * Main method that executes all portfolio database test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("portfolio-db-test").toFile();
+        Investor alice = investor("alice");
+        Investor bob = investor("bob");
+
+        // Case 1: A portfolio is stored without the database or its owner
+        System.out.println("Test 1: Standalone records");
+        String file1 = new File(dir, "portfolios1.ser").getPath();
+        PortfolioDatabase db = new PortfolioDatabase(file1, BinaryCodecs.PORTFOLIO);
+        Portfolio main = new Portfolio(alice, db, "Main");
+        main.addAsset(stock("AAA", 10));
+        int alone = serializedLength(main);
+        for (int i = 0; i < 100; i++) {
+            new Portfolio(bob, db, "P" + i);
+        }
+        check("a serialized portfolio does not grow with the database", serializedLength(main) == alone);
+        db.close();
+        db = new PortfolioDatabase(file1, BinaryCodecs.PORTFOLIO);
+        Portfolio loaded = db.getUserPortfolios(alice).get(0);
+        check("a loaded portfolio knows its owner again", loaded.getOwner() == alice
+                && loaded.getOwnerUserName().equals("alice") && loaded.getId().equals(main.getId()));
+        check("a loaded portfolio saves its changes to its database", loaded.addAsset(stock("BBB", 20)));
+        db.close();
+        db = new PortfolioDatabase(file1, BinaryCodecs.PORTFOLIO);
+        check("the change is stored", db.getUserPortfolios(alice).get(0).getAssets().size() == 2
+                && db.getAllPortfolios().size() == 101);
+        db.close();
+        System.out.println();
+
+        // Case 2: Portfolios are found by owner as the database changes
+        System.out.println("Test 2: Owner index");
+        db = new PortfolioDatabase(new File(dir, "portfolios2.ser").getPath(), BinaryCodecs.PORTFOLIO);
+        Investor upper = investor("Alice");
+        for (int i = 0; i < 5; i++) {
+            new Portfolio(alice, db, "A" + i);
+            new Portfolio(bob, db, "B" + i);
+        }
+        new Portfolio(upper, db, "Upper");
+        check("each investor gets only their own portfolios, in order",
+                names(db.getUserPortfolios(alice)).equals(List.of("A0", "A1", "A2", "A3", "A4"))
+                        && names(db.getUserPortfolios(upper)).equals(List.of("Upper")));
+        db.deleteData(db.getUserPortfolios(alice).get(1));
+        new Portfolio(alice, db, "A5");
+        check("removed and added portfolios are reflected",
+                names(db.getUserPortfolios(alice)).equals(List.of("A0", "A2", "A3", "A4", "A5")));
+        check("pages follow the same order and stop at the end",
+                names(db.getUserPortfolios(alice, 1, 2)).equals(List.of("A2", "A3"))
+                        && names(db.getUserPortfolios(alice, 4, 10)).equals(List.of("A5"))
+                        && db.getUserPortfolios(alice, 9, 10).isEmpty());
+        check("the stream attaches the owner",
+                db.streamUserPortfolios(bob).allMatch(portfolio -> portfolio.getOwner() == bob)
+                        && db.streamUserPortfolios(bob).count() == 5);
+        check("an investor without portfolios gets none", db.getUserPortfolios(investor("carol")).isEmpty());
+        db.close();
+        System.out.println();
+
+        // Case 3: Edits replace a portfolio where it is, keyed by its id
+        System.out.println("Test 3: In-place edits");
+        String file3 = new File(dir, "portfolios3.ser").getPath();
+        db = new PortfolioDatabase(file3, BinaryCodecs.PORTFOLIO);
+        Portfolio first = new Portfolio(alice, db, "First");
+        Portfolio second = new Portfolio(alice, db, "Second");
+        new Portfolio(alice, db, "Third");
+        Portfolio edited = new Portfolio(second.getId(), "alice", "Edited", List.of(stock("AAA", 1)));
+        check("a copy with the same id equals the stored portfolio", edited.equals(second)
+                && edited.hashCode() == second.hashCode() && !edited.equals(first));
+        check("an edit keeps the portfolio's position", db.editData(second, edited)
+                && names(db.getUserPortfolios(alice)).equals(List.of("First", "Edited", "Third")));
+        check("an edit may not take another portfolio's id",
+                !db.editData(edited, new Portfolio(first.getId(), "alice", "Clash", List.of())));
+        check("editing a portfolio that is not stored does nothing",
+                !db.editData(portfolio("alice"), portfolio("alice")));
+        db.close();
+        db = new PortfolioDatabase(file3, BinaryCodecs.PORTFOLIO);
+        Portfolio reloaded = db.getUserPortfolios(alice).get(1);
+        check("the edit is stored in place", names(db.getUserPortfolios(alice)).equals(
+                List.of("First", "Edited", "Third")) && reloaded.getId().equals(second.getId())
+                && reloaded.getAssets().size() == 1);
+        db.close();
+
+        finish("portfolio database");
+    }
+
+    private static Stocks stock(String symbol, int quantity) {
+        return stock(symbol, quantity, 10f, new Date(), true);
+    }
+
+    private static List<String> names(List<Portfolio> portfolios) {
+        return portfolios.stream().map(Portfolio::getName).toList();
+    }
+
+    private static int serializedLength(Portfolio portfolio) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(portfolio);
+        }
+        return bytes.size();
+    }
+}
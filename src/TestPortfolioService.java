@@ -0,0 +1,154 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Test class for verifying the headless service layer. Investors sign up,
+ * manage portfolios and assets and calculate Zakat through the service
+ * alone, over databases kept in a temporary directory. The databases are
+ * reopened to check that every change was stored, and the Zakat figures
+ * are compared with the estimator after each change.
+ */
+public class TestPortfolioService extends TestSupport {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    /**
+     * Main method that executes all service test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory cannot be created or a report cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("service-test").toFile();
+        String usersFile = new File(dir, "users.ser").getPath();
+        String portfoliosFile = new File(dir, "portfolios.ser").getPath();
+        SimulatedPriceSource prices = new SimulatedPriceSource(1, 0.0);
+        prices.setPrice("AAPL", 200.0);
+        prices.setPrice(Gold.PRICE_SYMBOL, 70.0);
+        UserDatabase users = new UserDatabase(usersFile, BinaryCodecs.USER);
+        PortfolioDatabase portfolios = new PortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+        PortfolioService service = new PortfolioService(new AuthService(users), portfolios,
+                new ValuationEngine(prices), null);
+
+        // Case 1: Signing up and logging in
+        System.out.println("Test 1: Sign up and log in");
+        check("a new investor signs up", service.signUp("Alice A", "alice@example.com", "alice", "Password1!",
+                "Password1!") == AuthService.SignupResult.SUCCESS);
+        check("the same username is refused", service.signUp("Other", "other@example.com", "alice", "Password1!",
+                "Password1!") == AuthService.SignupResult.DUPLICATE_USERNAME);
+        Investor alice = service.login("alice", "Password1!");
+        check("the investor logs in", alice != null && alice.getUserName().equals("alice"));
+        check("a wrong password or unknown user gives no investor",
+                service.login("alice", "Wrong1!") == null && service.login("nobody", "Password1!") == null);
+        check("a failed login says why", service.authenticate("alice", "Wrong1!").getStatus()
+                == AuthService.LoginStatus.INCORRECT_PASSWORD && service.authenticate("nobody", "Password1!")
+                .getStatus() == AuthService.LoginStatus.USER_NOT_FOUND && service.authenticate(" ", "Password1!")
+                .getMessage().equals("Username cannot be empty"));
+        System.out.println();
+
+        // Case 2: Portfolios and assets
+        System.out.println("Test 2: Portfolios and assets");
+        Portfolio main = service.createPortfolio(alice, "  Main ");
+        Portfolio spare = service.createPortfolio(alice, "Spare");
+        check("portfolios are created with trimmed names, in order", main.getName().equals("Main")
+                && names(service.getPortfolios(alice)).equals(List.of("Main", "Spare"))
+                && service.findPortfolio(alice, "Spare") == spare && service.findPortfolio(alice, "None") == null);
+        check("a blank portfolio name is refused", rejects(() -> service.createPortfolio(alice, " ")));
+        LocalDate bought = TODAY.minusDays(400);
+        Asset apple = service.addAsset(main, new AssetRequest(AssetType.STOCKS, "Apple", 10, 150f)
+                .symbol("AAPL").zakatApplicable(true).purchaseDate(bought));
+        service.addAsset(main, new AssetRequest(AssetType.GOLD, "Bar", 1, 5000f).karat("24").weight(100f)
+                .zakatApplicable(true).purchaseDate(bought));
+        service.addAsset(main, new AssetRequest(AssetType.REAL_STATE, "Flat", 1, 90_000f).location("Cairo"));
+        check("assets are added in order", apple instanceof Stocks
+                && assetNames(main).equals(List.of("Apple", "Bar", "Flat")));
+        check("an incomplete asset is refused and nothing is added", rejects(() ->
+                service.addAsset(main, new AssetRequest(AssetType.STOCKS, "No symbol", 1, 1f)))
+                && main.getAssets().size() == 3);
+        check("the market value uses known prices and cost for the rest",
+                near(service.getMarketValue(main), 10 * 200 + 100 * 70 + 90_000));
+        System.out.println();
+
+        // Case 3: Editing and removing assets
+        System.out.println("Test 3: Edits and removals");
+        Asset edited = service.editAsset(main, "Apple", new AssetRequest(AssetType.STOCKS, "Apple Inc", 20, 160f)
+                .symbol("AAPL").zakatApplicable(true));
+        check("an edited asset keeps its position and purchase date", assetNames(main).get(0).equals("Apple Inc")
+                && edited.getQuantity() == 20 && edited.getPurchaseDate().equals(apple.getPurchaseDate()));
+        check("an asset's type cannot be changed", rejects(() -> service.editAsset(main, "Bar",
+                new AssetRequest(AssetType.STOCKS, "Bar", 1, 1f).symbol("X"))));
+        check("editing or removing an unknown asset gives null", service.editAsset(main, "Nothing",
+                new AssetRequest(AssetType.STOCKS, "X", 1, 1f).symbol("X")) == null
+                && service.removeAsset(main, "Nothing") == null);
+        check("a removed asset is returned", service.removeAsset(main, "Flat").getName().equals("Flat")
+                && assetNames(main).equals(List.of("Apple Inc", "Bar")));
+        check("a removed portfolio is gone, and removing it again does nothing",
+                service.removePortfolio(spare) && !service.removePortfolio(spare)
+                        && service.getPortfolios(alice).size() == 1);
+        System.out.println();
+
+        // Case 4: Every change is stored
+        System.out.println("Test 4: Stored changes");
+        portfolios.close();
+        portfolios = new PortfolioDatabase(portfoliosFile, BinaryCodecs.PORTFOLIO);
+        ValuationEngine engine = new ValuationEngine(prices);
+        PortfolioService reopened = new PortfolioService(new AuthService(users), portfolios, engine, null);
+        List<Portfolio> stored = reopened.getPortfolios(alice);
+        check("the reopened database holds the edited portfolio", stored.size() == 1
+                && assetNames(stored.get(0)).equals(List.of("Apple Inc", "Bar"))
+                && stored.get(0).getAssets().get(0).getQuantity() == 20);
+        System.out.println();
+
+        // Case 5: Zakat follows the changes and the gold price
+        System.out.println("Test 5: Zakat");
+        Portfolio held = stored.get(0);
+        ZakatEstimator estimator = new ZakatEstimator(70.0);
+        PortfolioService.ZakatSummary zakat = reopened.calculateZakat(alice, held, TODAY);
+        check("each Zakat-applicable asset is listed with its Zakat", zakat.getAssetCount() == 2
+                && zakat.getAssetName(1).equals("Bar") && near(zakat.getAssetZakat(1), 100 * 70 * 0.025));
+        check("the investor's Zakat matches the estimator", near(zakat.getNisab(), 5950)
+                && near(zakat.getZakatDue(), estimator.calculateInvestorZakat(stored, TODAY))
+                && near(zakat.getPortfolioZakat(), estimator.calculatePortfolioZakat(held)));
+        Asset newer = reopened.addAsset(held, new AssetRequest(AssetType.STOCKS, "New", 1, 10_000f).symbol("NEW")
+                .zakatApplicable(true).purchaseDate(TODAY.minusDays(10)));
+        zakat = reopened.calculateZakat(alice, held, TODAY);
+        check("a new asset counts only after its hawl", near(zakat.getZakatDue(),
+                estimator.calculateInvestorZakat(stored, TODAY)) && zakat.getNextHawlDate() != null
+                && near(reopened.calculateZakat(alice, held, TODAY.plusDays(ZakatEstimator.HAWL_DAYS)).getZakatDue(),
+                        estimator.calculateInvestorZakat(stored, TODAY.plusDays(ZakatEstimator.HAWL_DAYS))));
+        prices.setPrice(Gold.PRICE_SYMBOL, 80.0);
+        engine.invalidate();
+        reopened.removeAsset(held, newer.getName());
+        estimator.setGoldPricePerGram(80.0);
+        zakat = reopened.calculateZakat(alice, held, TODAY);
+        check("a new gold price changes the nisab and the gold's value", near(zakat.getNisab(), 6800)
+                && near(zakat.getZakatDue(), estimator.calculateInvestorZakat(stored, TODAY)));
+        check("without a price history there are no returns or risk",
+                reopened.getPerformance(alice, held) == null && reopened.analyzeRisk(alice) == null);
+        System.out.println();
+
+        // Case 6: Reports
+        System.out.println("Test 6: Reports");
+        File portfolioReport = new File(reopened.generatePortfolioReport(alice));
+        File zakatReport = new File(reopened.generateZakatReport(held));
+        check("both reports are written and name the portfolio", portfolioReport.length() > 0
+                && Files.readString(portfolioReport.toPath()).contains("Main")
+                && Files.readString(zakatReport.toPath()).contains("Main"));
+        portfolioReport.delete();
+        zakatReport.delete();
+        portfolios.close();
+        users.close();
+
+        finish("service");
+    }
+
+    private static List<String> names(List<Portfolio> portfolios) {
+        return portfolios.stream().map(Portfolio::getName).toList();
+    }
+
+    private static List<String> assetNames(Portfolio portfolio) {
+        return portfolio.getAssets().stream().map(Asset::getName).toList();
+    }
+}
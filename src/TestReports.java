@@ -0,0 +1,132 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test class for verifying the text reports. The report writer must format
+ * fields exactly like {@code String.format}, and the portfolio and Zakat
+ * reports must show the assets, their cost, market and Zakat values and the
+ * totals. A batch run must write every investor's reports side by side and
+ * count them in its summary. Reports are written into a temporary directory
+ * and read back; a batch run's directory is deleted afterwards.
+ */
+public class TestReports extends TestSupport {
+    /**
+     * Main method that executes all report test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory or a report cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("report-test").toFile();
+
+        // Case 1: The writer lays out fields like String.format
+        System.out.println("Test 1: Report writer formatting");
+        double[] amounts = {0, 0.005, 0.125, 1.005, 2.675, -3.5, 1234.5678, 9_999_999.995, 1e12, -0.001};
+        StringBuilder expected = new StringBuilder();
+        File written = new File(dir, "writer.txt");
+        try (ReportWriter writer = new ReportWriter(written.getPath())) {
+            for (double amount : amounts) {
+                writer.padded("Row", 20).text(" ").padded(amount, 15).text("|").padded(42L, 10).text("|")
+                        .amount(amount).newline();
+                expected.append(String.format("%-20s %-15.2f|%-10d|%.2f", "Row", amount, 42L, amount)).append('\n');
+            }
+            writer.padded("A name longer than its field", 20).text("|").rule(5).newline();
+            expected.append(String.format("%-20s|", "A name longer than its field")).append("-----\n");
+        }
+        check("every line matches String.format", Files.readString(written.toPath()).equals(expected.toString()));
+        System.out.println();
+
+        // Case 2: The portfolio report shows cost and market values
+        System.out.println("Test 2: Portfolio report");
+        Investor alice = investor("alice");
+        PortfolioDatabase portfolios = new PortfolioDatabase(new File(dir, "portfolios.ser").getPath(),
+                BinaryCodecs.PORTFOLIO);
+        Portfolio main = new Portfolio(alice, portfolios, "Main");
+        main.addAsset(stock("AAA", 10, 5f, new Date(0), true));
+        main.addAsset(stock("BBB", 4, 25f, new Date(0), false));
+        String reports = new File(dir, "reports").getPath();
+        ValuationEngine engine = new ValuationEngine(symbols -> Map.of("AAA", 7.5));
+        String report = Files.readString(new File(new PortfolioReport(List.of(main), alice, reports, engine)
+                .writeReport()).toPath());
+        check("the report names the investor and the portfolio", report.startsWith(
+                "=== Portfolio Summary Report ===") && report.contains("Investor: Test User\n")
+                && report.contains("Portfolio: " + main + "\n"));
+        check("each asset shows its quantity, price, cost and market value", report.contains(
+                String.format("%-20s %-10d %-15.2f %-15.2f %-15.2f %-15s\n", "AAA", 10, 5f, 50.0, 75.0,
+                        "Zakat: Yes"))
+                && report.contains(String.format("%-20s %-10d %-15.2f %-15.2f %-15.2f %-15s\n", "BBB", 4, 25f,
+                        100.0, 100.0, "Zakat: No")));
+        check("the totals are at cost and at market", report.contains("Portfolio Total Value: $150.00\n")
+                && report.contains("Portfolio Market Value: $175.00\n"));
+        check("there is no risk section without an analyzer", !report.contains("Allocation:"));
+        System.out.println();
+
+        // Case 3: The Zakat report shows each asset's Zakat and the nisab
+        System.out.println("Test 3: Zakat report");
+        report = Files.readString(new File(new ZakatReport(main, reports, new ZakatEstimator(70.0))
+                .writeReport()).toPath());
+        check("the report names the portfolio and its owner", report.startsWith("=== Zakat Calculation Report ===")
+                && report.contains("Portfolio: " + main + "\n") && report.contains("Owner: Test User\n"));
+        check("only Zakat-applicable assets are charged", report.contains(
+                String.format("%-20s %-15.2f %-15s %-15.2f\n", "AAA", 50.0, "Yes", 1.25))
+                && report.contains(String.format("%-20s %-15.2f %-15s %-15.2f\n", "BBB", 100.0, "No", 0.0)));
+        check("the total and the nisab are shown", report.contains("Total Zakat Payable: $1.25\n")
+                && report.contains("Nisab (85 g of gold): $5950.00\n"));
+        report = Files.readString(new File(new ZakatReport(main, reports, new ZakatEstimator())
+                .writeReport()).toPath());
+        check("an unknown gold price is stated instead of a nisab",
+                report.contains("Nisab: not applied, the gold price is unknown\n"));
+        check("each report is written to a file of its own", new File(reports).list().length == 3);
+        portfolios.close();
+        System.out.println();
+
+        // Case 4: A batch run writes every investor's reports into one directory
+        System.out.println("Test 4: Batch reports");
+        UserDatabase users = new UserDatabase(new File(dir, "users.ser").getPath(), BinaryCodecs.USER);
+        portfolios = new PortfolioDatabase(new File(dir, "batch.ser").getPath(), BinaryCodecs.PORTFOLIO);
+        int owned = 0;
+        for (int i = 0; i < 30; i++) {
+            Investor investor = investor("investor" + i);
+            users.addData(investor);
+            for (int p = 0; p < i % 3; p++) {
+                new Portfolio(investor, portfolios, "P" + p).addAsset(stock("S" + i, p + 1, 5f, new Date(0), true));
+                owned++;
+            }
+        }
+        BatchReportGenerator.Summary summary = new BatchReportGenerator(users, portfolios, 4, engine).generateAll();
+        File run = new File(summary.getDirectory());
+        File[] files = run.listFiles();
+        long bytes = 0;
+        int named = 0;
+        int investor2 = 0;
+        for (File file : files) {
+            bytes += file.length();
+            if (file.getName().contains("_investor")) {
+                named++;
+            }
+            if (file.getName().startsWith("portfolio_summary_investor2_")
+                    || file.getName().startsWith("zakat_report_investor2_P")) {
+                investor2++;
+            }
+        }
+        check("every investor is counted without failures", summary.getInvestors() == 30
+                && summary.getFailures() == 0);
+        check("one portfolio report per investor with portfolios and one Zakat report per portfolio",
+                summary.getPortfolioReports() == 20 && summary.getZakatReports() == owned
+                        && files.length == 20 + owned);
+        check("files carry the investor's username", named == files.length && investor2 == 3);
+        check("the summary counts the bytes written", summary.getBytes() == bytes);
+        for (File file : files) {
+            file.delete();
+        }
+        run.delete();
+        portfolios.close();
+        users.close();
+
+        finish("report");
+    }
+}
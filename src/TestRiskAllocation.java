@@ -0,0 +1,176 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test class for verifying allocation and risk analytics. The price history
+ * is chosen so that the covariance of its returns is known exactly: AAA and
+ * BBB move by 10% in opposite directions and CCC does not move.
+ */
+public class TestRiskAllocation extends TestSupport {
+    /** Tighter than the shared tolerance, since the expected figures are exact */
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Main method that executes all risk test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the batch reports cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        PerformancCalculator.PriceHistory history = new PerformancCalculator.PriceHistory(
+                new long[] {1, 2, 3},
+                new String[] {"AAA", "BBB", "CCC"},
+                new double[] {100, 50, 10, 110, 45, 10, 99, 49.5, 10});
+        RiskAllocation risk = new RiskAllocation(history);
+
+        // Case 1: The covariance of the per-period returns
+        System.out.println("Test 1: Covariance matrix");
+        check("matches the returns of +-10% and 0%", near(risk.getCovariance(),
+                new double[] {0.02, -0.02, 0, -0.02, 0.02, 0, 0, 0, 0}));
+        System.out.println();
+
+        // Case 2: One position carries the whole risk of its symbol
+        System.out.println("Test 2: Single position");
+        RiskAllocation.Result single = risk.analyze(portfolio(stock("AAA", 10)));
+        check("value 990, one effective position", near(single.getTotalValue(), 990, TOLERANCE)
+                && near(single.getEffectivePositions(), 1, TOLERANCE)
+                && near(single.getLargestWeight(), 1, TOLERANCE));
+        check("volatility is the symbol's, sqrt(0.02)", near(single.getVolatility(), Math.sqrt(0.02), TOLERANCE));
+        check("95% one-period VaR is z * volatility * value", near(single.getValueAtRisk(0.95, 1),
+                RiskAllocation.zScore(0.95) * Math.sqrt(0.02) * 990, TOLERANCE));
+        check("VaR grows with the square root of the horizon",
+                near(single.getValueAtRisk(0.95, 4), 2 * single.getValueAtRisk(0.95, 1), TOLERANCE));
+        System.out.println();
+
+        // Case 3: Opposite positions of equal value cancel out
+        System.out.println("Test 3: Hedged positions");
+        RiskAllocation.Result hedged = risk.analyze(portfolio(stock("AAA", 10), stock("BBB", 20)));
+        check("two equal positions: index 0.5, two effective positions",
+                near(hedged.getHerfindahlIndex(), 0.5, TOLERANCE)
+                        && near(hedged.getEffectivePositions(), 2, TOLERANCE));
+        check("the volatility is zero", near(hedged.getVolatility(), 0, TOLERANCE));
+        System.out.println();
+
+        // Case 4: Allocation across asset classes, with unpriced assets at cost
+        System.out.println("Test 4: Allocation");
+        RiskAllocation.Result mixed = risk.analyze(portfolio(stock("AAA", 10),
+                new RealState("Flat", 1, new Date(), 1000f, false, "Cairo", "Apartment"),
+                new Gold("Bar", 1, new Date(), 10f, true, "24", 1f)));
+        check("total is 990 + 1000 + 10", near(mixed.getTotalValue(), 2000, TOLERANCE));
+        check("shares are 49.5% stocks, 50% real estate and 0.5% gold",
+                near(mixed.getAllocation(AssetType.STOCKS), 0.495, TOLERANCE)
+                        && near(mixed.getAllocation(AssetType.REAL_STATE), 0.5, TOLERANCE)
+                        && near(mixed.getAllocation(AssetType.GOLD), 0.005, TOLERANCE)
+                        && mixed.getValue(AssetType.CRYPTO) == 0.0);
+        check("only the priced stock adds volatility",
+                near(mixed.getVolatility(), Math.sqrt(0.02) * 990 / 2000, TOLERANCE));
+        RiskAllocation.Result empty = risk.analyze(portfolio());
+        check("an empty portfolio has no value, allocation or positions", empty.getTotalValue() == 0
+                && empty.getAllocation(AssetType.STOCKS) == 0 && empty.getEffectivePositions() == 0
+                && empty.getValueAtRisk(0.95, 1) == 0);
+        System.out.println();
+
+        // Case 5: Normal quantiles
+        System.out.println("Test 5: z-scores");
+        check("0.5, 0.95, 0.01 and 0.999 give 0, 1.6449, -2.3263 and 3.0902",
+                Math.abs(RiskAllocation.zScore(0.5)) < 1e-9
+                        && Math.abs(RiskAllocation.zScore(0.95) - 1.6448536) < 1e-6
+                        && Math.abs(RiskAllocation.zScore(0.01) + 2.3263479) < 1e-6
+                        && Math.abs(RiskAllocation.zScore(0.999) - 3.0902323) < 1e-6);
+        check("confidence outside (0, 1) is rejected",
+                rejects(() -> RiskAllocation.zScore(1)) && rejects(() -> RiskAllocation.zScore(0)));
+        System.out.println();
+
+        // Case 6: Parallel analysis gives the same results in the same order
+        System.out.println("Test 6: Parallel analysis");
+        List<Portfolio> portfolios = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            portfolios.add(portfolio(stock("AAA", i), stock(i % 2 == 0 ? "BBB" : "CCC", 200 - i)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        RiskAllocation.Result[] results = risk.analyzeAll(portfolios, pool);
+        pool.shutdown();
+        boolean same = results.length == portfolios.size();
+        for (int i = 0; same && i < results.length; i++) {
+            RiskAllocation.Result expected = risk.analyze(portfolios.get(i));
+            same = results[i].getPortfolio() == portfolios.get(i)
+                    && results[i].getTotalValue() == expected.getTotalValue()
+                    && results[i].getVolatility() == expected.getVolatility();
+        }
+        check("200 portfolios match one-by-one analysis", same);
+        check("an empty list gives no results", risk.analyzeAll(new ArrayList<>()).length == 0);
+        System.out.println();
+
+        // Case 7: Short histories
+        System.out.println("Test 7: Short histories");
+        RiskAllocation flat = new RiskAllocation(new PerformancCalculator.PriceHistory(
+                new long[] {1, 2}, new String[] {"AAA"}, new double[] {100, 200}));
+        check("one period is too few for a covariance", flat.getCovariance()[0] == 0.0);
+        check("a history without points is rejected", rejects(() -> new RiskAllocation(
+                new PerformancCalculator.PriceHistory(new long[0], new String[] {"AAA"}, new double[0]))));
+        System.out.println();
+
+        // Case 8: Batch reports show the risk of each portfolio
+        System.out.println("Test 8: Batch reports");
+        File dir = Files.createTempDirectory("risk-test").toFile();
+        UserDatabase users = new UserDatabase(new File(dir, "users.ser").getPath(), BinaryCodecs.USER);
+        PortfolioDatabase database = new PortfolioDatabase(new File(dir, "portfolios.ser").getPath(),
+                BinaryCodecs.PORTFOLIO);
+        Investor tester = new Investor("Tester", "tester@example.com", "tester", "Password1!");
+        users.addData(tester);
+        database.addData(portfolio(stock("AAA", 10), stock("BBB", 10)));
+        ValuationEngine engine = new ValuationEngine(new SimulatedPriceSource(1, 0.0));
+        BatchReportGenerator.Summary withRisk = new BatchReportGenerator(users, database, 2, engine, risk)
+                .generateAll();
+        BatchReportGenerator.Summary withoutRisk = new BatchReportGenerator(users, database, 2, engine)
+                .generateAll();
+        check("the batch portfolio report has a risk section only when given an analyzer",
+                portfolioReport(withRisk).contains("Volatility per Period: ")
+                        && !portfolioReport(withoutRisk).contains("Volatility per Period: "));
+        database.close();
+        users.close();
+
+        finish("risk");
+    }
+
+    private static boolean near(double[] actual, double[] expected) {
+        if (actual.length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < actual.length; i++) {
+            if (!near(actual[i], expected[i], TOLERANCE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the portfolio report written by a batch run and deletes the run's files.
+     */
+    private static String portfolioReport(BatchReportGenerator.Summary summary) throws IOException {
+        String report = "";
+        File directory = new File(summary.getDirectory());
+        for (File file : directory.listFiles()) {
+            if (file.getName().startsWith("portfolio_summary")) {
+                report = Files.readString(file.toPath());
+            }
+            file.delete();
+        }
+        directory.delete();
+        return report;
+    }
+
+    private static Stocks stock(String symbol, int quantity) {
+        return stock(symbol, quantity, 1f, new Date(0), true);
+    }
+
+    private static Portfolio portfolio(Asset... assets) {
+        return portfolio("tester", assets);
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test class for verifying snapshot files. Snapshots are written and read
+ * back, then damaged in several ways to check that the checksum and length
+ * checks reject them instead of returning partial data, and that a failed
+ * write leaves the previous snapshot in place. Files are kept in a
+ * temporary directory.
+ */
+public class TestSnapshotFormat extends TestSupport {
+    /**
+     * Main method that executes all snapshot test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if a snapshot that should be written cannot be
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("snapshot-test").toFile();
+        File file = new File(dir, "users.ser");
+        List<User> users = Arrays.asList(investor("alice"), investor("bob"), investor("carol"));
+
+        // Case 1: Records and the journal sequence are read back
+        System.out.println("Test 1: Snapshot round trip");
+        SnapshotFormat.write(file, users, 42, BinaryCodecs.USER);
+        SnapshotFormat.Snapshot<User> snapshot = SnapshotFormat.read(file, BinaryCodecs.USER);
+        check("three users, sequence 42 and the binary codec id", userNames(snapshot.getData())
+                .equals(Arrays.asList("alice", "bob", "carol")) && snapshot.getSequence() == 42
+                && snapshot.getCodecId().equals(BinaryCodecs.ID));
+        check("no temporary file is left behind", !new File(file.getPath() + ".tmp").exists());
+        System.out.println();
+
+        // Case 2: A changed payload byte fails the checksum
+        System.out.println("Test 2: Corrupted payload");
+        byte[] intact = Files.readAllBytes(file.toPath());
+        byte[] flipped = intact.clone();
+        flipped[flipped.length - 5] ^= 0x20;
+        Files.write(file.toPath(), flipped);
+        check("the file is rejected with a checksum mismatch", failsWith(file, "checksum mismatch"));
+        System.out.println();
+
+        // Case 3: A truncated file and a file with extra bytes
+        System.out.println("Test 3: Wrong length");
+        Files.write(file.toPath(), Arrays.copyOf(intact, intact.length - 10));
+        check("a truncated file is rejected", failsWith(file, "truncated"));
+        Files.write(file.toPath(), Arrays.copyOf(intact, intact.length + 3));
+        check("a file with trailing bytes is rejected", failsWith(file, "truncated or corrupt"));
+        Files.write(file.toPath(), Arrays.copyOf(intact, 8));
+        check("a file cut inside its header is rejected", failsWith(file, "truncated"));
+        System.out.println();
+
+        // Case 4: A file that is not a snapshot at all
+        System.out.println("Test 4: Foreign file");
+        Files.write(file.toPath(), "name,email\n".getBytes("UTF-8"));
+        check("the file is rejected as not a database file", failsWith(file, "not a database file"));
+        System.out.println();
+
+        // Case 5: A database refuses to start over a damaged snapshot
+        System.out.println("Test 5: Database over a damaged snapshot");
+        Files.write(file.toPath(), flipped);
+        boolean refused;
+        try {
+            new UserDatabase(file.getPath(), BinaryCodecs.USER).close();
+            refused = false;
+        } catch (IllegalStateException e) {
+            refused = true;
+        }
+        check("loading throws and leaves the file untouched",
+                refused && Arrays.equals(flipped, Files.readAllBytes(file.toPath())));
+        System.out.println();
+
+        // Case 6: A write that fails part way keeps the previous snapshot
+        System.out.println("Test 6: Failed write");
+        Files.write(file.toPath(), intact);
+        RecordCodec<User> failing = new RecordCodec<User>() {
+            @Override
+            public String getId() {
+                return BinaryCodecs.ID;
+            }
+
+            @Override
+            public void write(DataOutput out, User user) throws IOException {
+                if (user.getUserName().equals("bob")) {
+                    throw new IOException("disk full");
+                }
+                BinaryCodecs.USER.write(out, user);
+            }
+
+            @Override
+            public User read(DataInput in) throws IOException {
+                return BinaryCodecs.USER.read(in);
+            }
+        };
+        try {
+            SnapshotFormat.write(file, Arrays.asList(investor("dave"), investor("bob")), 43, failing);
+        } catch (IOException e) {
+            System.out.println("Write failed as expected: " + e.getMessage());
+        }
+        check("the previous snapshot is still read", userNames(SnapshotFormat.read(file, BinaryCodecs.USER)
+                .getData()).equals(Arrays.asList("alice", "bob", "carol")));
+        System.out.println();
+
+        // Case 7: Files from before the checksum and before the binary format
+        System.out.println("Test 7: Older file versions");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x49574442); // "IWDB"
+            out.writeShort(1); // no checksum
+            out.writeUTF(BinaryCodecs.ID);
+            out.writeLong(7);
+            out.writeInt(1);
+            BinaryCodecs.USER.write(out, investor("erin"));
+        }
+        snapshot = SnapshotFormat.read(file, BinaryCodecs.USER);
+        check("a version 1 file is read", userNames(snapshot.getData()).equals(Arrays.asList("erin"))
+                && snapshot.getSequence() == 7);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new ArrayList<>(Arrays.asList(investor("frank"))));
+        }
+        snapshot = SnapshotFormat.read(file, BinaryCodecs.USER);
+        check("a serialized list is read with sequence 0", userNames(snapshot.getData())
+                .equals(Arrays.asList("frank")) && snapshot.getSequence() == 0
+                && snapshot.getCodecId().equals(SerializationCodec.ID));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        check("a truncated serialized list is rejected", failsWith(file, ""));
+
+        finish("snapshot");
+    }
+
+    private static boolean failsWith(File file, String message) {
+        try {
+            SnapshotFormat.read(file, BinaryCodecs.USER);
+            return false;
+        } catch (IOException e) {
+            return String.valueOf(e.getMessage()).contains(message);
+        }
+    }
+
+    private static List<String> userNames(List<User> users) {
+        List<String> names = new ArrayList<>();
+        for (User user : users) {
+            names.add(user.getUserName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Checks and fixtures shared by the test classes. A test class extends this
+ * class, reports each case with {@link #check(String, boolean)} and ends its
+ * main method with {@link #finish(String)}, which exits with status 1 if any
+ * case failed.
+ */
+abstract class TestSupport {
+    /** Default tolerance when comparing amounts */
+    protected static final double TOLERANCE = 1e-6;
+    private static int failures;
+
+    /**
+     * Prints the outcome of one check and counts it if it failed.
+     *
+     * @param description What was checked
+     * @param passed      Whether the check passed
+     */
+    protected static void check(String description, boolean passed) {
+        if (passed) {
+            System.out.println("SUCCESS: " + description);
+        } else {
+            System.out.println("FAILED: " + description);
+            failures++;
+        }
+    }
+
+    /**
+     * Prints the number of failed checks, if any, and exits with status 1.
+     *
+     * @param kind The kind of tests run, e.g. "journal"
+     */
+    protected static void finish(String kind) {
+        if (failures > 0) {
+            System.out.println("\n" + failures + " " + kind + " test(s) failed");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares two amounts within {@link #TOLERANCE}.
+     *
+     * @param actual   The amount calculated
+     * @param expected The amount expected
+     * @return true if they are within the tolerance of each other
+     */
+    protected static boolean near(double actual, double expected) {
+        return near(actual, expected, TOLERANCE);
+    }
+
+    /**
+     * Compares two amounts within the given tolerance.
+     *
+     * @param actual    The amount calculated
+     * @param expected  The amount expected
+     * @param tolerance The largest difference allowed
+     * @return true if they are within the tolerance of each other
+     */
+    protected static boolean near(double actual, double expected, double tolerance) {
+        return Math.abs(actual - expected) < tolerance;
+    }
+
+    /**
+     * Checks that a request is refused as invalid.
+     *
+     * @param request The request to make
+     * @return true if the request threw an IllegalArgumentException
+     */
+    protected static boolean rejects(Runnable request) {
+        try {
+            request.run();
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Creates an investor with the given username and a valid password.
+     *
+     * @param userName The username
+     * @return The investor
+     */
+    protected static Investor investor(String userName) {
+        return new Investor("Test User", userName + "@example.com", userName, "Password1!");
+    }
+
+    /**
+     * Creates a stock whose symbol is also its name.
+     *
+     * @param symbol        The symbol and name
+     * @param quantity      The number of shares
+     * @param purchasePrice The price paid per share
+     * @param purchased     The purchase date, or null if unknown
+     * @param zakat         Whether Zakat applies to the stock
+     * @return The stock
+     */
+    protected static Stocks stock(String symbol, int quantity, float purchasePrice, Date purchased,
+            boolean zakat) {
+        return new Stocks(symbol, quantity, purchased, purchasePrice, zakat, symbol, "TEST");
+    }
+
+    /**
+     * Creates a portfolio named "Test" that is not attached to a database.
+     *
+     * @param owner  The owner's username
+     * @param assets The assets of the portfolio
+     * @return The portfolio
+     */
+    protected static Portfolio portfolio(String owner, Asset... assets) {
+        return new Portfolio(null, owner, "Test", new ArrayList<>(Arrays.asList(assets)));
+    }
+
+    /**
+     * Gets a later version of a portfolio: the same record with other assets.
+     *
+     * @param portfolio The portfolio
+     * @param assets    The assets of the later version
+     * @return The later version
+     */
+    protected static Portfolio withAssets(Portfolio portfolio, Asset... assets) {
+        return new Portfolio(portfolio.getId(), portfolio.getOwnerUserName(), portfolio.getName(),
+                new ArrayList<>(Arrays.asList(assets)));
+    }
+}
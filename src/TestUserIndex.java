@@ -0,0 +1,74 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Test class for verifying the username index of UserDatabase. Users are
+ * looked up after every kind of change and after the database is reopened
+ * from a temporary directory, so the index must always match the stored
+ * users. Edits must replace a user where it is stored.
+ */
+public class TestUserIndex extends TestSupport {
+    /**
+     * Main method that executes all username index test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("user-index-test").toFile();
+        String file = new File(dir, "users.ser").getPath();
+        UserDatabase db = new UserDatabase(file, BinaryCodecs.USER);
+
+        // Case 1: Lookups follow additions, removals, edits and clears
+        System.out.println("Test 1: Lookups after changes");
+        Investor alice = investor("alice");
+        db.addData(alice);
+        db.addData(investor("bob"));
+        check("added users are found, others are not", db.findUser("alice") == alice
+                && db.findUser("bob") != null && db.findUser("carol") == null && db.findUser("Alice") == null);
+        check("a second user with the same username is refused", !db.addData(investor("alice"))
+                && db.getAllUsers().size() == 2);
+        db.deleteData(db.findUser("bob"));
+        check("a removed user is no longer found", db.findUser("bob") == null);
+        Investor renamed = investor("alicia");
+        db.editData(alice, renamed);
+        check("an edited user is found by the new username only", db.findUser("alicia") == renamed
+                && db.findUser("alice") == null);
+        db.addData(investor("carol"));
+        check("an edit to another user's username is refused",
+                !db.editData(db.findUser("carol"), investor("alicia")) && db.findUser("carol") != null);
+        System.out.println();
+
+        // Case 2: The index is rebuilt when the database is opened
+        System.out.println("Test 2: Lookups after reopening");
+        db.close();
+        db = new UserDatabase(file, BinaryCodecs.USER);
+        check("stored users are found after reopening", db.findUser("alicia") != null
+                && db.findUser("carol") != null && db.findUser("alice") == null && db.findUser("bob") == null);
+        db.clear();
+        check("a cleared database finds no one", db.findUser("alicia") == null && db.findUser("carol") == null);
+        check("a username is free again after a clear", db.addData(investor("carol")));
+        System.out.println();
+
+        // Case 3: Edits replace a user where it is stored
+        System.out.println("Test 3: In-place edits");
+        db.addData(investor("dave"));
+        db.addData(investor("erin"));
+        Investor david = investor("david");
+        db.editData(db.findUser("dave"), david);
+        check("an edited user keeps its position", userNames(db).equals(List.of("carol", "david", "erin")));
+        db.close();
+        db = new UserDatabase(file, BinaryCodecs.USER);
+        check("the edit is stored in place", userNames(db).equals(List.of("carol", "david", "erin"))
+                && db.findUser("david").getId().equals(david.getId()));
+        db.close();
+
+        finish("user index");
+    }
+
+    private static List<String> userNames(UserDatabase db) {
+        return db.getAllUsers().stream().map(User::getUserName).toList();
+    }
+}
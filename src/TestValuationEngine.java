@@ -0,0 +1,140 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test class for verifying market valuation. Portfolios are valued against
+ * a price source that records every request, to check market and cost
+ * values, symbol case, batching, caching and the fallback to cached prices
+ * when the source fails. The CSV and simulated price sources are checked
+ * as well.
+ */
+public class TestValuationEngine extends TestSupport {
+    /**
+     * Main method that executes all valuation test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary price file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        RecordingSource source = new RecordingSource();
+        source.prices.put("AAPL", 200.0);
+        source.prices.put("BTC", 50_000.0);
+        source.prices.put(Gold.PRICE_SYMBOL, 80.0);
+
+        // Case 1: Market value, cost value and symbol case
+        System.out.println("Test 1: Asset values");
+        ValuationEngine engine = new ValuationEngine(source);
+        check("10 AAPL at 200 are worth 2000", engine.valueAsset(stock("aapl", 10, 150f)) == 2000.0);
+        check("an unpriced symbol is valued at cost", engine.valueAsset(stock("ZZZ", 4, 25f)) == 100.0);
+        check("real estate has no symbol and is valued at cost", engine.valueAsset(
+                new RealState("Flat", 1, new Date(), 90_000f, false, "Cairo", "Apartment")) == 90_000.0);
+        check("2 pieces of 10 g 18K gold at 80 per pure gram are worth 1200", engine.valueAsset(
+                new Gold("Rings", 2, new Date(), 500f, true, "18K", 10f)) == 1200.0);
+        System.out.println();
+
+        // Case 2: A batch prices each distinct symbol once, in one request
+        System.out.println("Test 2: Batched pricing");
+        source.requests.clear();
+        engine = new ValuationEngine(source);
+        Portfolio first = portfolio(stock("AAPL", 1, 1f), stock("btc", 1, 1f));
+        Portfolio second = portfolio(stock("Aapl", 2, 1f), stock("ZZZ", 3, 5f));
+        Portfolio empty = portfolio();
+        double[] values = engine.valuePortfolios(Arrays.asList(first, second, empty));
+        check("values are [50200, 415, 0]", Arrays.equals(values, new double[] {50_200.0, 415.0, 0.0}));
+        check("one request for AAPL, BTC and ZZZ", source.requests.size() == 1
+                && source.requests.get(0).size() == 3);
+        System.out.println();
+
+        // Case 3: Fresh prices come from the cache until they expire or are invalidated
+        System.out.println("Test 3: Price cache");
+        engine.valuePortfolio(first);
+        check("a second valuation within the time to live makes no request", source.requests.size() == 1);
+        engine.invalidate();
+        engine.valuePortfolio(first);
+        check("an invalidated cache is fetched again", source.requests.size() == 2);
+        ValuationEngine uncached = new ValuationEngine(source, 0);
+        uncached.valuePortfolio(first);
+        uncached.valuePortfolio(first);
+        check("a zero time to live fetches every time", source.requests.size() == 4);
+        System.out.println();
+
+        // Case 4: A failing source falls back to expired prices
+        System.out.println("Test 4: Source failure");
+        source.failing = true;
+        check("expired prices are used while the source fails", uncached.valuePortfolio(first) == 50_200.0);
+        check("symbols never fetched fall back to cost",
+                uncached.valueAsset(stock("MSFT", 3, 10f)) == 30.0);
+        source.failing = false;
+        System.out.println();
+
+        // Case 5: Prices read from a CSV file, reloaded when the file changes
+        System.out.println("Test 5: CSV price source");
+        File dir = Files.createTempDirectory("valuation-test").toFile();
+        File file = new File(dir, "prices.csv");
+        CsvPriceSource csv = new CsvPriceSource(file.getPath());
+        check("a missing file knows no prices", csv.getPrices(Collections.singleton("AAPL")).isEmpty());
+        Files.write(file.toPath(), Arrays.asList("symbol,price", "# comment", "", " aapl , 210.5",
+                "BROKEN,abc", "nocomma"));
+        Map<String, Double> prices = csv.getPrices(Arrays.asList("AAPL", "BROKEN", "SYMBOL"));
+        check("only AAPL is read, upper-cased", prices.size() == 1 && prices.get("AAPL") == 210.5);
+        Files.write(file.toPath(), Arrays.asList("AAPL,220"));
+        file.setLastModified(file.lastModified() + 2000);
+        check("a changed file is read again", csv.getPrices(Collections.singleton("AAPL")).get("AAPL") == 220.0);
+        System.out.println();
+
+        // Case 6: Simulated prices depend only on the seed and the steps taken
+        System.out.println("Test 6: Simulated price source");
+        SimulatedPriceSource a = new SimulatedPriceSource(7, 0.01);
+        SimulatedPriceSource b = new SimulatedPriceSource(7, 0.01);
+        List<String> symbols = Arrays.asList("AAPL", "BTC");
+        check("the same seed gives the same starting prices", a.getPrices(symbols).equals(b.getPrices(symbols)));
+        a.setPrice(" aapl ", 100.0);
+        check("a set price is normalized to its symbol", a.getPrices(symbols).get("AAPL") == 100.0);
+        a.advance();
+        double moved = a.getPrices(symbols).get("AAPL");
+        check("advancing moves prices", moved != 100.0 && moved > 0);
+
+        finish("valuation");
+    }
+
+    private static Stocks stock(String symbol, int quantity, float purchasePrice) {
+        return stock(symbol, quantity, purchasePrice, new Date(), true);
+    }
+
+    private static Portfolio portfolio(Asset... assets) {
+        return portfolio("tester", assets);
+    }
+
+    /**
+     * A fixed set of prices that records each request and can be made to fail.
+     */
+    private static final class RecordingSource implements PriceSource {
+        final Map<String, Double> prices = new HashMap<>();
+        final List<Collection<String>> requests = new ArrayList<>();
+        boolean failing;
+
+        @Override
+        public Map<String, Double> getPrices(Collection<String> symbols) throws IOException {
+            requests.add(new ArrayList<>(symbols));
+            if (failing) {
+                throw new IOException("price feed unavailable");
+            }
+            Map<String, Double> found = new HashMap<>();
+            for (String symbol : symbols) {
+                if (prices.containsKey(symbol)) {
+                    found.put(symbol, prices.get(symbol));
+                }
+            }
+            return found;
+        }
+    }
+}
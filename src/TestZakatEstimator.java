@@ -0,0 +1,221 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test class for verifying Zakat calculations: the nisab and hawl rules
+ * at their boundaries, gold valued by weight and karat, and the parallel
+ * bulk calculation compared with the per-portfolio and per-investor
+ * calculations it must agree with, including its CSV output. Files are
+ * kept in a temporary directory.
+ */
+public class TestZakatEstimator extends TestSupport {
+    private static final LocalDate AS_OF = LocalDate.of(2025, 6, 1);
+
+    /**
+     * Main method that executes all Zakat test cases.
+     *
+     * @param args Command line arguments (not used)
+     * @throws IOException if the temporary directory cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("zakat-test").toFile();
+
+        // Case 1: The bulk calculation agrees with one-by-one calculation
+        System.out.println("Test 1: Bulk calculation");
+        ZakatEstimator estimator = new ZakatEstimator(70.0);
+        List<Portfolio> portfolios = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            portfolios.add(portfolio("investor" + (i % 7), stock("S" + i, 1 + i % 10, 100f, daysBefore(400)),
+                    stock("N" + i, 2, 50f, daysBefore(i % 20)), stock("X" + i, 1, 999f, null, false)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ZakatEstimator.BulkResult result = estimator.calculateAllZakat(portfolios, AS_OF, pool);
+        pool.shutdown();
+        boolean portfoliosMatch = result.getPortfolios() == portfolios;
+        for (int i = 0; i < portfolios.size(); i++) {
+            portfoliosMatch &= near(result.getPortfolioZakat(i), estimator.calculatePortfolioZakat(portfolios.get(i)));
+        }
+        check("every portfolio's Zakat matches, in order", portfoliosMatch);
+        boolean investorsMatch = result.getInvestorZakat().size() == 7;
+        double total = 0.0;
+        for (int investor = 0; investor < 7; investor++) {
+            String userName = "investor" + investor;
+            List<Portfolio> owned = new ArrayList<>();
+            for (Portfolio portfolio : portfolios) {
+                if (portfolio.getOwnerUserName().equals(userName)) {
+                    owned.add(portfolio);
+                }
+            }
+            double due = estimator.calculateInvestorZakat(owned, AS_OF);
+            investorsMatch &= near(result.getInvestorZakat().get(userName), due);
+            total += due;
+        }
+        check("every investor's Zakat matches the per-investor calculation", investorsMatch);
+        check("the total is the sum over investors", near(result.getTotalZakat(), total));
+        System.out.println();
+
+        // Case 2: The results file
+        System.out.println("Test 2: Results file");
+        List<Portfolio> small = Arrays.asList(
+                portfolio("alice", stock("A", 100, 100f, daysBefore(400))),
+                portfolio("smith, john", stock("B", 1, 10f, daysBefore(400))),
+                portfolio("alice", stock("C", 1, 50f, daysBefore(400))));
+        File csv = new File(dir, "zakat.csv");
+        check("the file is written", estimator.writeResults(estimator.calculateAllZakat(small, AS_OF), csv.getPath()));
+        check("one line per investor, names quoted where needed, and a total",
+                Files.readAllLines(csv.toPath()).equals(Arrays.asList(
+                        "investor,portfolios,zakatable_wealth,zakat_due",
+                        "alice,2,10050.00,251.25",
+                        "\"smith, john\",1,10.00,0.00",
+                        "TOTAL,3,10060.00,251.25")));
+        check("an unwritable file is reported", !estimator.writeResults(
+                estimator.calculateAllZakat(small, AS_OF), new File(dir, "missing/zakat.csv").getPath()));
+        System.out.println();
+
+        // Case 3: No portfolios at all
+        System.out.println("Test 3: Empty input");
+        ZakatEstimator.BulkResult none = estimator.calculateAllZakat(new ArrayList<>(), AS_OF);
+        check("no investors and no Zakat", none.getInvestorZakat().isEmpty() && none.getTotalZakat() == 0.0);
+        estimator.writeResults(none, csv.getPath());
+        check("the file has only the header and a zero total", Files.readAllLines(csv.toPath()).equals(Arrays.asList(
+                "investor,portfolios,zakatable_wealth,zakat_due", "TOTAL,0,0.00,0.00")));
+        System.out.println();
+
+        // Case 4: A whole database
+        System.out.println("Test 4: Database calculation");
+        PortfolioDatabase database = new PortfolioDatabase(new File(dir, "portfolios.ser").getPath(),
+                BinaryCodecs.PORTFOLIO);
+        Investor alice = new Investor("Alice A", "alice@example.com", "alice", "Password1!");
+        new Portfolio(alice, database, "Main").addAsset(stock("A", 100, 100f, daysBefore(400)));
+        new Portfolio(alice, database, "Savings").addAsset(stock("C", 1, 50f, daysBefore(400)));
+        ZakatEstimator.BulkResult stored = estimator.calculateDatabaseZakat(database, AS_OF);
+        check("matches the same portfolios calculated in memory", stored.getPortfolios().size() == 2
+                && near(stored.getInvestorZakat().get("alice"), 251.25));
+        database.close();
+        System.out.println();
+
+        // Case 5: The nisab is 85 g of gold
+        System.out.println("Test 5: Nisab");
+        check("85 g at 70 per gram is 5950", near(estimator.getNisab(), 5950));
+        check("nothing is due just below the nisab", estimator.calculateZakatDue(5949.99) == 0.0);
+        check("2.5% is due on wealth at the nisab", near(estimator.calculateZakatDue(5950), 148.75));
+        check("nothing is due on zero or negative wealth",
+                estimator.calculateZakatDue(0) == 0.0 && estimator.calculateZakatDue(-100) == 0.0);
+        ZakatEstimator unpriced = new ZakatEstimator();
+        check("without a gold price the nisab is not applied",
+                unpriced.getNisab() == 0.0 && near(unpriced.calculateZakatDue(10), 0.25));
+        System.out.println();
+
+        // Case 6: The hawl is one lunar year
+        System.out.println("Test 6: Hawl");
+        Stocks almost = stock("A", 1, 10_000f, daysBefore(ZakatEstimator.HAWL_DAYS - 1));
+        Stocks complete = stock("B", 1, 10_000f, daysBefore(ZakatEstimator.HAWL_DAYS));
+        Stocks undated = stock("C", 1, 10_000f, null);
+        check("an asset held one day short of the hawl is not yet zakatable", !estimator.isHawlComplete(almost, AS_OF)
+                && estimator.getHawlCompletionDate(almost).equals(AS_OF.plusDays(1)));
+        check("an asset held for the full hawl is zakatable", estimator.isHawlComplete(complete, AS_OF));
+        check("an asset without a purchase date counts as held", estimator.isHawlComplete(undated, AS_OF)
+                && estimator.getHawlCompletionDate(undated) == null);
+        check("only assets past their hawl count towards wealth", near(estimator.getHawlCompleteValue(
+                portfolio("alice", almost, complete, undated), AS_OF), 20_000));
+        System.out.println();
+
+        // Case 7: The nisab applies to an investor's wealth across portfolios
+        System.out.println("Test 7: Wealth across portfolios");
+        List<Portfolio> split = Arrays.asList(
+                portfolio("alice", stock("A", 1, 4000f, daysBefore(400))),
+                portfolio("alice", stock("B", 1, 4000f, daysBefore(400))));
+        check("each portfolio is below the nisab but the total of 8000 is not",
+                near(estimator.calculateInvestorZakat(split, AS_OF), 200)
+                        && near(estimator.calculateAllZakat(split, AS_OF).getInvestorZakat().get("alice"), 200));
+        check("the same wealth a day before the hawl owes nothing", estimator.calculateInvestorZakat(Arrays.asList(
+                portfolio("alice", stock("A", 2, 4000f, daysBefore(ZakatEstimator.HAWL_DAYS - 1)))), AS_OF) == 0.0);
+        check("an asset without Zakat is left out", estimator.calculateInvestorZakat(Arrays.asList(
+                portfolio("alice", stock("A", 2, 4000f, daysBefore(400), false))), AS_OF) == 0.0);
+        System.out.println();
+
+        // Case 8: Karat values
+        System.out.println("Test 8: Karat");
+        check("18, 21K, 22 karat and 24 give their share of 24", near(Gold.purity("18"), 0.75)
+                && near(Gold.purity("21K"), 0.875) && near(Gold.purity(" 22 karat "), 22 / 24.0)
+                && Gold.purity("24") == 1.0);
+        check("missing, unreadable and out-of-range karats count as pure gold", Gold.purity(null) == 1.0
+                && Gold.purity("") == 1.0 && Gold.purity("gold") == 1.0 && Gold.purity("30") == 1.0
+                && Gold.purity("0") == 1.0);
+        System.out.println();
+
+        // Case 9: Gold is zakatable by its pure gold content
+        System.out.println("Test 9: Gold valuation");
+        Gold rings = new Gold("Rings", 4, daysBefore(400), 300f, true, "18K", 10f); // 30 g of pure gold
+        check("4 rings of 10 g 18K hold 30 g of pure gold", near(rings.getPureGoldGrams(), 30));
+        check("at 70 per gram they are worth 2100, whatever they cost",
+                near(estimator.getZakatableValue(rings), 2100) && near(estimator.calculateAssetZakat(rings), 52.5));
+        check("without a gold price they are valued at cost", near(unpriced.getZakatableValue(rings), 1200));
+        check("gold without Zakat is not zakatable",
+                estimator.getZakatableValue(new Gold("Heirloom", 1, null, 300f, false, "21", 10f)) == 0.0);
+        Gold bar = new Gold("Bar", 1, daysBefore(400), 1000f, true, "24", 85f);
+        check("85 g of pure gold is exactly the nisab", near(estimator.calculateInvestorZakat(
+                Arrays.asList(portfolio("alice", bar)), AS_OF), 5950 * 0.025));
+        check("the same weight in 21K gold is below it", estimator.calculateInvestorZakat(Arrays.asList(
+                portfolio("alice", new Gold("Bar", 1, daysBefore(400), 1000f, true, "21", 85f))), AS_OF) == 0.0);
+        System.out.println();
+
+        // Case 10: The columnar store values gold the same way
+        System.out.println("Test 10: Asset store");
+        List<Portfolio> mixed = Arrays.asList(portfolio("alice", rings, bar, stock("A", 3, 100f, null),
+                stock("X", 1, 999f, null, false)));
+        try (MappedAssetStore store = MappedAssetStore.fromPortfolios(new File(dir, "assets.dat").getPath(), mixed)) {
+            check("the store's Zakat equals the portfolio's",
+                    near(estimator.calculateStoreZakat(store), estimator.calculatePortfolioZakat(mixed.get(0))));
+            check("and at cost without a gold price",
+                    near(unpriced.calculateStoreZakat(store), unpriced.calculatePortfolioZakat(mixed.get(0))));
+            store.update(2, new Gold("Coins", 2, null, 50f, true, "21", 8f));
+            store.update(0, stock("R", 4, 300f, null));
+            check("a row changed to gold reads back as gold only", store.getType(2) == AssetType.GOLD
+                    && store.getAttribute(2).equals("21") && store.getWeightInGrams(2) == 8f
+                    && store.getSecondAttribute(2) == null && near(store.getPureGoldGrams(2), 14)
+                    && store.materialize(2) instanceof Gold);
+            check("a gold row changed to a stock keeps no weight", store.getType(0) == AssetType.STOCKS
+                    && store.getAttribute(0).equals("R") && store.getWeightInGrams(0) == 0f
+                    && store.getPureGoldGrams(0) == 0.0 && store.materialize(0) instanceof Stocks);
+            List<Portfolio> viewed = store.appendPortfolios(mixed);
+            check("appended portfolios read their assets from the store", viewed.get(0).getAssets().size() == 4
+                    && store.size() == 8 && near(estimator.calculatePortfolioZakat(viewed.get(0)),
+                            estimator.calculatePortfolioZakat(mixed.get(0))));
+        }
+        System.out.println();
+
+        // Case 11: The gold price taken from a price source
+        System.out.println("Test 11: Gold price updates");
+        SimulatedPriceSource prices = new SimulatedPriceSource(1, 0.0);
+        ZakatEstimator updated = new ZakatEstimator(70.0);
+        check("a source without a gold price leaves the price unchanged",
+                !updated.updateGoldPrice(new ValuationEngine(symbols -> new HashMap<>()))
+                        && updated.getGoldPricePerGram() == 70.0);
+        prices.setPrice(Gold.PRICE_SYMBOL, 80.0);
+        check("a known gold price is taken, and the nisab with it", updated.updateGoldPrice(new ValuationEngine(prices))
+                && updated.getGoldPricePerGram() == 80.0 && near(updated.getNisab(), 6800));
+
+        finish("Zakat");
+    }
+
+    /**
+     * Gets the start of the day the given number of days before {@link #AS_OF}.
+     */
+    private static Date daysBefore(int days) {
+        return Date.from(AS_OF.minusDays(days).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Stocks stock(String symbol, int quantity, float purchasePrice, Date purchased) {
+        return stock(symbol, quantity, purchasePrice, purchased, true);
+    }
+}
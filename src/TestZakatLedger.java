@@ -0,0 +1,169 @@
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for verifying the incremental Zakat ledger. After every change
+ * to the recorded portfolios, and for dates moving both forward and back,
+ * the ledger is compared with a full recalculation by the estimator.
+ */
+public class TestZakatLedger extends TestSupport {
+    private static final LocalDate START = LocalDate.of(2025, 1, 1);
+
+    /**
+     * Main method that executes all ledger test cases.
+     *
+     * @param args Command line arguments (not used)
+     */
+    public static void main(String[] args) {
+        ZakatEstimator estimator = new ZakatEstimator(70.0); // nisab 5950
+        ZakatLedger ledger = new ZakatLedger(estimator);
+
+        Portfolio main = portfolio("alice", stock("A", 1, 4000f, START.minusDays(400)),
+                stock("B", 1, 3000f, START.minusDays(300)), stock("C", 1, 500f, null));
+        Portfolio savings = portfolio("alice", stock("D", 1, 2000f, START.minusDays(10)));
+        Portfolio other = portfolio("bob", stock("E", 1, 9000f, START.minusDays(400)));
+        List<Portfolio> recorded = new ArrayList<>(Arrays.asList(main, savings, other));
+
+        // Case 1: Loading several portfolios
+        System.out.println("Test 1: Load");
+        ledger.load(recorded);
+        check("alice's wealth is A and the undated C, under the nisab", near(ledger.getZakatableWealth("alice", START),
+                4500) && ledger.getZakatDue("alice", START) == 0.0);
+        check("bob owes 2.5% of 9000", near(ledger.getZakatDue("bob", START), 225));
+        check("an unknown investor has no wealth and no hawl dates",
+                ledger.getZakatableWealth("carol", START) == 0.0 && ledger.getNextHawlDate("carol", START) == null);
+        System.out.println();
+
+        // Case 2: Dates moving forward and back
+        System.out.println("Test 2: Hawl dates");
+        LocalDate bCompletes = START.minusDays(300).plusDays(ZakatEstimator.HAWL_DAYS);
+        check("B is the next asset to complete its hawl", bCompletes.equals(ledger.getNextHawlDate("alice", START)));
+        check("the day before B completes nothing is due", ledger.getZakatDue("alice", bCompletes.minusDays(1)) == 0.0);
+        check("on the day B completes alice is over the nisab",
+                near(ledger.getZakatableWealth("alice", bCompletes), 7500)
+                        && matches(ledger, estimator, recorded, "alice", bCompletes));
+        LocalDate later = START.plusDays(400);
+        check("a year later D has completed too", near(ledger.getZakatableWealth("alice", later), 9500)
+                && ledger.getNextHawlDate("alice", later) == null);
+        check("going back to the start gives the first answer again",
+                near(ledger.getZakatableWealth("alice", START), 4500));
+        System.out.println();
+
+        // Case 3: Changes to portfolios
+        System.out.println("Test 3: Updates");
+        ledger.getZakatableWealth("alice", later); // count up to a later date before changing
+        Portfolio edited = withAssets(main, main.getAssets().get(0), stock("B", 2, 3000f, START.minusDays(300)));
+        recorded.set(0, edited);
+        ledger.update(edited);
+        check("an edited portfolio replaces its earlier contribution",
+                matchesOn(ledger, estimator, recorded, "alice", START, bCompletes, later));
+        Portfolio emptied = withAssets(savings);
+        recorded.set(1, emptied);
+        ledger.update(emptied);
+        check("a portfolio with its assets removed contributes nothing",
+                matchesOn(ledger, estimator, recorded, "alice", START, bCompletes, later));
+        Portfolio excluded = withAssets(other, stock("E", 1, 9000f, START.minusDays(400), false));
+        recorded.set(2, excluded);
+        ledger.update(excluded);
+        check("assets without Zakat are left out", ledger.getZakatableWealth("bob", START) == 0.0);
+        System.out.println();
+
+        // Case 4: Portfolios that are removed or change owner
+        System.out.println("Test 4: Removal and ownership");
+        Portfolio moved = new Portfolio(edited.getId(), "bob", edited.getName(), edited.getAssets());
+        ledger.update(moved);
+        check("a portfolio given to another owner moves its wealth", near(ledger.getZakatableWealth("bob", later),
+                10_000) && ledger.getZakatableWealth("alice", later) == 0.0);
+        ledger.remove(moved);
+        ledger.remove(moved);
+        check("a removed portfolio is forgotten, and removing it again does nothing",
+                ledger.getZakatableWealth("bob", later) == 0.0 && ledger.getNextHawlDate("bob", START) == null);
+        System.out.println();
+
+        // Case 5: Values are taken when a portfolio is recorded
+        System.out.println("Test 5: Gold price changes");
+        Portfolio gold = portfolio("carol", new Gold("Bar", 1, null, 1000f, true, "24", 100f));
+        ledger.update(gold);
+        check("gold is valued at the gold price when recorded", near(ledger.getZakatableWealth("carol", START), 7000));
+        estimator.setGoldPricePerGram(80.0);
+        check("a new gold price is not applied until the portfolio is recorded again",
+                near(ledger.getZakatableWealth("carol", START), 7000));
+        ledger.load(Collections.singletonList(gold));
+        check("recording it again applies the new price and nisab",
+                matches(ledger, estimator, Collections.singletonList(gold), "carol", START));
+        System.out.println();
+
+        // Case 6: Changes to single assets
+        System.out.println("Test 6: Asset changes");
+        List<Asset> held = new ArrayList<>(Collections.singletonList(stock("F", 1, 7000f, START.minusDays(400))));
+        Portfolio dave = new Portfolio(null, "dave", "Test", held);
+        ledger.update(dave);
+        ledger.getZakatableWealth("dave", later);
+        for (int i = 0; i < 1000; i++) {
+            Asset small = stock("S" + i, 1, 0.1f, START.minusDays(400));
+            held.add(small);
+            ledger.assetAdded(dave, small);
+            held.remove(small);
+            ledger.assetRemoved(dave, small);
+        }
+        check("adding and removing a thousand small assets leaves the total exact",
+                ledger.getZakatableWealth("dave", later) == 7000.0 && ledger.getZakatableWealth("dave", START) == 7000.0);
+        Asset young = stock("G", 1, 1000f, START.minusDays(10));
+        held.add(young);
+        ledger.assetAdded(dave, young);
+        Asset older = stock("G", 2, 1000f, START.minusDays(300));
+        held.set(1, older);
+        ledger.assetReplaced(dave, young, older);
+        check("an edited asset moves to its new hawl date",
+                matchesOn(ledger, estimator, Collections.singletonList(dave), "dave", START, bCompletes, later));
+        List<Asset> copies = new ArrayList<>(Arrays.asList(stock("F", 1, 7000f, START.minusDays(400)),
+                stock("G", 2, 1000f, START.minusDays(300))));
+        Portfolio reread = new Portfolio(dave.getId(), "dave", "Test", copies);
+        ledger.assetRemoved(reread, copies.remove(1));
+        check("removing an asset read again since it was recorded records the portfolio again",
+                near(ledger.getZakatableWealth("dave", later), 7000)
+                        && matchesOn(ledger, estimator, Collections.singletonList(reread), "dave", START, later));
+
+        finish("ledger");
+    }
+
+    /**
+     * Compares the ledger with a full recalculation of one investor's portfolios on one date.
+     */
+    private static boolean matches(ZakatLedger ledger, ZakatEstimator estimator, List<Portfolio> portfolios,
+            String userName, LocalDate asOf) {
+        List<Portfolio> owned = new ArrayList<>();
+        for (Portfolio portfolio : portfolios) {
+            if (portfolio.getOwnerUserName().equals(userName)) {
+                owned.add(portfolio);
+            }
+        }
+        return near(ledger.getZakatDue(userName, asOf), estimator.calculateInvestorZakat(owned, asOf));
+    }
+
+    private static boolean matchesOn(ZakatLedger ledger, ZakatEstimator estimator, List<Portfolio> portfolios,
+            String userName, LocalDate... dates) {
+        for (LocalDate asOf : dates) {
+            if (!matches(ledger, estimator, portfolios, userName, asOf)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Stocks stock(String symbol, int quantity, float purchasePrice, LocalDate purchased) {
+        return stock(symbol, quantity, purchasePrice, purchased, true);
+    }
+
+    private static Stocks stock(String symbol, int quantity, float purchasePrice, LocalDate purchased,
+            boolean zakat) {
+        Date date = purchased == null ? null
+                : Date.from(purchased.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return stock(symbol, quantity, purchasePrice, date, zakat);
+    }
+}
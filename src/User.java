@@ -1,4 +1,7 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.UUID;
 
 /**
  * An abstract base class representing a User in the system.
@@ -11,10 +14,15 @@ import java.io.Serializable;
  * </p>
  */
 public abstract class User implements Serializable {
+    private static final long serialVersionUID = -1665742057199881814L;
     protected String name;
     protected String email;
     protected String userName;
     protected String password;
+    /** Stable record id; unlike the username it identifies the stored record itself */
+    protected String id;
+    /** Set when this user was read without a record id, from a file written before ids existed */
+    private transient boolean legacyRecord;
 
     /**
      * Constructs a new User with the specified details.
@@ -29,6 +37,7 @@ public abstract class User implements Serializable {
         this.email = email;
         this.userName = userName;
         this.password = password;
+        this.id = UUID.randomUUID().toString();
     }
 
     /**
@@ -47,6 +56,49 @@ public abstract class User implements Serializable {
         return this.userName.equals(user.userName);
     }
 
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return the hash code of the username
+     */
+    @Override
+    public int hashCode() {
+        return userName.hashCode();
+    }
+
+    /**
+     * Gets the user's record id.
+     *
+     * @return the id assigned when the user was created
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Restores the record id read from storage. A null id, from a record
+     * written before ids existed, keeps the freshly generated one and marks
+     * the user for re-saving.
+     *
+     * @param storedId the stored id, or null if the record had none
+     */
+    void restoreId(String storedId) {
+        if (storedId != null) {
+            this.id = storedId;
+        } else {
+            this.legacyRecord = true;
+        }
+    }
+
+    /**
+     * Checks whether this user was read from a record without an id.
+     *
+     * @return true if the user should be re-saved with its new id
+     */
+    boolean isLegacyRecord() {
+        return legacyRecord;
+    }
+
     /**
      * Gets the user's username.
      * 
@@ -76,4 +128,19 @@ public abstract class User implements Serializable {
      * user-specific display formats.
      */
     public abstract void showUser();
+
+    /**
+     * Restores a user and assigns an id if the stored record predates ids.
+     *
+     * @param in the stream to read from
+     * @throws IOException if the stream cannot be read
+     * @throws ClassNotFoundException if a class in the stream cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            legacyRecord = true;
+        }
+    }
 }
@@ -1,22 +1,60 @@
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 /**
  * The UserDatabase class manages persistence and operations for User objects.
  * It extends the generic Database class and provides user-specific functionality.
  * 
  * <p>This class handles storage and retrieval of user data from a serialized file,
  * and implements CRUD operations for User objects.</p>
+ *
+ * <p>Users are additionally indexed by username so logins and duplicate
+ * checks during signup do not scan the whole user list, and their positions
+ * in the stored list are indexed by record id so edits replace a user in
+ * place.</p>
  */
 public class UserDatabase extends Database<User> {
     private static final long serialVersionUID = 3L;
     private List<User> users;
+    private transient Map<String, User> usersByName;
+    private transient Map<String, Integer> positionsById;
     /**
      * Constructs a new UserDatabase instance.
-     * Initializes the database by loading existing users from the serialized file.
-     * The file path is hardcoded to "src/database/userDatabase.ser".
+     * The file path is hardcoded to "src/database/userDatabase.ser", stored with
+     * the compact binary codec and with mutations journaled to a write-ahead log.
      */
     public UserDatabase() {
-        super("src/database/userDatabase.ser");
+        this("src/database/userDatabase.ser", BinaryCodecs.USER);
+    }
+    /**
+     * Constructs a UserDatabase backed by the given file and storage format.
+     * Initializes the database by loading existing users from the file.
+     *
+     * @param fileName The file to store users in
+     * @param codec    The codec used to encode users on disk
+     */
+    public UserDatabase(String fileName, RecordCodec<User> codec) {
+        super(fileName, true, codec);
         this.users = loadFromFile();
+        this.usersByName = new ConcurrentHashMap<>();
+        this.positionsById = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            usersByName.put(user.getUserName(), user);
+            positionsById.put(user.getId(), i);
+        }
+    }
+    /**
+     * Checks whether a loaded user was stored before record ids existed.
+     *
+     * @param user A user read from the database file
+     * @return true if the user should be re-saved with its new id
+     */
+    @Override
+    protected boolean needsRewrite(User user) {
+        return user.isLegacyRecord();
     }
     /**
      * Adds a new user to the database if it doesn't already exist.
@@ -26,9 +64,11 @@ public class UserDatabase extends Database<User> {
      */
     @Override
     public boolean addData(User newUser) {
-        if (!users.contains(newUser)) {
+        if (!usersByName.containsKey(newUser.getUserName())) {
+            positionsById.put(newUser.getId(), users.size());
             users.add(newUser);
-            saveToFile(users);
+            usersByName.put(newUser.getUserName(), newUser);
+            persistAdd(users, newUser);
             return true;
         } else {
             System.out.println("User already exists.");
@@ -43,25 +83,46 @@ public class UserDatabase extends Database<User> {
      */
     @Override
     public boolean deleteData(User user) {
-        if (users.contains(user)) {
-            users.remove(user);
-            saveToFile(users);
+        User stored = usersByName.remove(user.getUserName());
+        if (stored != null) {
+            int index = positionsById.remove(stored.getId());
+            users.remove(index);
+            for (int i = index; i < users.size(); i++) {
+                positionsById.put(users.get(i).getId(), i);
+            }
+            persistRemove(users, index);
             return true;
         } else {
             return false;
         }
     }
     /**
-     * Updates an existing user's data by replacing old data with new data.
+     * Updates an existing user's data by replacing the stored user in place,
+     * keeping its position in the database.
      * 
      * @param oldData The User object to be replaced
      * @param newData The new User object with updated information
-     * @return true if the operation was successful, false otherwise
+     * @return true if the operation was successful, false if the old user wasn't found
+     *         or the new username belongs to another user
      */
     @Override
     public boolean editData(User oldData, User newData) {
-        deleteData(oldData);
-        return addData(newData);
+        User stored = usersByName.get(oldData.getUserName());
+        if (stored == null) {
+            return false;
+        }
+        User existing = usersByName.get(newData.getUserName());
+        if (existing != null && existing != stored) {
+            System.out.println("User already exists.");
+            return false;
+        }
+        int index = positionsById.remove(stored.getId());
+        users.set(index, newData);
+        positionsById.put(newData.getId(), index);
+        usersByName.remove(stored.getUserName());
+        usersByName.put(newData.getUserName(), newData);
+        persistReplace(users, index, newData);
+        return true;
     }
     /**
      * Finds a user by their username.
@@ -70,12 +131,15 @@ public class UserDatabase extends Database<User> {
      * @return The User object if found, null otherwise
      */
     public User findUser(String userName) {
-        for (User user : users) {
-            if (user.getUserName().equals(userName)) {
-                return user;
-            }
-        }
-        return null;
+        return usersByName.get(userName);
+    }
+    /**
+     * Retrieves every user in the database, for bulk processing.
+     *
+     * @return A copy of the list of all users, in the order they were added
+     */
+    public List<User> getAllUsers() {
+        return new ArrayList<>(users);
     }
     /**
      * Displays all users in the database to the console.
@@ -92,9 +156,13 @@ public class UserDatabase extends Database<User> {
     }
     /**
      * Clears all users from the database.
-     * Note: This operation is immediate and persistent (saves to file).
+     * Note: This operation is immediate and persistent: the removal is
+     * journaled, or saved to file if the database is not journaled.
      */
     public void clear() {
         users.clear(); 
+        usersByName.clear();
+        positionsById.clear();
+        persistClear(users);
     }
 }
\ No newline at end of file
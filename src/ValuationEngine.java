@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marks assets to market using a {@link PriceSource}.
+ *
+ * <p>Valuing a batch of portfolios first collects the distinct price symbols
+ * of all their assets, then prices each symbol once: symbols with a fresh
+ * cached price are served from the cache and the rest are fetched from the
+ * source in a single request. Cached prices expire after a configurable
+ * time to live. Assets without a price symbol, or whose symbol the source
+ * does not know, are valued at cost.</p>
+ *
+ * <p>An engine can be shared by several threads.</p>
+ */
+public class ValuationEngine {
+    /** Default time a fetched price is reused for */
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    private final PriceSource source;
+    private final long ttlNanos;
+    private final Map<String, CachedPrice> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine that reuses fetched prices for the default time to live.
+     *
+     * @param source The source of market prices
+     */
+    public ValuationEngine(PriceSource source) {
+        this(source, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Creates an engine with the given price cache time to live.
+     *
+     * @param source    The source of market prices
+     * @param ttlMillis How long a fetched price is reused, in milliseconds
+     */
+    public ValuationEngine(PriceSource source, long ttlMillis) {
+        this.source = source;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    private static final class CachedPrice {
+        final double price;
+        final long fetchedAt;
+
+        CachedPrice(double price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Gets current prices for a set of symbols, fetching only those without a
+     * fresh cached price, in one request. If the source fails, expired cached
+     * prices are used where available.
+     *
+     * @param symbols The symbols to price, in any case
+     * @return The known prices keyed by upper-case symbol
+     */
+    public Map<String, Double> getPrices(Collection<String> symbols) {
+        Map<String, Double> prices = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        long now = System.nanoTime();
+        for (String symbol : symbols) {
+            String key = normalize(symbol);
+            CachedPrice cached = cache.get(key);
+            if (cached != null && now - cached.fetchedAt < ttlNanos) {
+                prices.put(key, cached.price);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return prices;
+        }
+        try {
+            Map<String, Double> fetched = source.getPrices(missing);
+            long fetchedAt = System.nanoTime();
+            for (Map.Entry<String, Double> price : fetched.entrySet()) {
+                cache.put(price.getKey(), new CachedPrice(price.getValue(), fetchedAt));
+                prices.put(price.getKey(), price.getValue());
+            }
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            for (String symbol : missing) {
+                CachedPrice stale = cache.get(symbol);
+                if (stale != null) {
+                    prices.put(symbol, stale.price);
+                }
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * Values one asset at the given prices.
+     *
+     * @param asset  The asset to value
+     * @param prices Prices keyed by upper-case symbol, as returned by {@link #getPrices}
+     * @return The market value, or the cost basis if the asset has no known price
+     */
+    public static double valueAsset(Asset asset, Map<String, Double> prices) {
+        String symbol = asset.getPriceSymbol();
+        Double price = symbol == null ? null : prices.get(normalize(symbol));
+        if (price == null) {
+            return (double) asset.getPurchasePrice() * asset.getQuantity();
+        }
+        return asset.getMarketValue(price);
+    }
+
+    /**
+     * Values one asset at current prices.
+     *
+     * @param asset The asset to value
+     * @return The market value, or the cost basis if the asset has no known price
+     */
+    public double valueAsset(Asset asset) {
+        String symbol = asset.getPriceSymbol();
+        Map<String, Double> prices = symbol == null
+                ? Collections.emptyMap()
+                : getPrices(Collections.singleton(symbol));
+        return valueAsset(asset, prices);
+    }
+
+    /**
+     * Values one portfolio at current prices.
+     *
+     * @param portfolio The portfolio to value
+     * @return The total market value of its assets
+     */
+    public double valuePortfolio(Portfolio portfolio) {
+        return valuePortfolios(Collections.singletonList(portfolio))[0];
+    }
+
+    /**
+     * Values a batch of portfolios at current prices, pricing each distinct
+     * symbol once across the whole batch.
+     *
+     * @param portfolios The portfolios to value
+     * @return The market value of each portfolio, in the same order
+     */
+    public double[] valuePortfolios(List<Portfolio> portfolios) {
+        Map<String, Double> prices = getPrices(collectSymbols(portfolios));
+        double[] values = new double[portfolios.size()];
+        for (int i = 0; i < values.length; i++) {
+            double total = 0.0;
+            for (Asset asset : portfolios.get(i).getAssets()) {
+                total += valueAsset(asset, prices);
+            }
+            values[i] = total;
+        }
+        return values;
+    }
+
+    /**
+     * Gets the distinct price symbols of all assets in the given portfolios.
+     *
+     * @param portfolios The portfolios to scan
+     * @return The upper-case symbols
+     */
+    public static Set<String> collectSymbols(Collection<Portfolio> portfolios) {
+        Set<String> symbols = new HashSet<>();
+        for (Portfolio portfolio : portfolios) {
+            for (Asset asset : portfolio.getAssets()) {
+                String symbol = asset.getPriceSymbol();
+                if (symbol != null) {
+                    symbols.add(normalize(symbol));
+                }
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * Drops all cached prices, so the next valuation fetches fresh ones.
+     */
+    public void invalidate() {
+        cache.clear();
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -1,14 +1,135 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * A utility class for calculating and displaying Zakat obligations
  * on investment portfolios according to Islamic financial principles.
  * Zakat is calculated at a fixed rate of 2.5% on applicable assets.
+ *
+ * <p>Per-asset and per-portfolio amounts apply the rate to every applicable
+ * asset. Per-investor amounts, including those of a bulk calculation, also
+ * follow the nisab and hawl rules: only assets held for a full lunar year
+ * count, and Zakat is due only if their total reaches the nisab, the value
+ * of 85 grams of gold. The nisab applies once a gold price has been set, e.g.
+ * with {@link #updateGoldPrice(ValuationEngine)}.</p>
  */
 public class ZakatEstimator {
     /** The fixed Zakat rate (2.5%) to be applied to applicable assets */
     private static final double ZAKAT_RATE = 0.025; // 2.5%
+    /** Number of portfolios below which a bulk Zakat task stops splitting */
+    private static final int SPLIT_THRESHOLD = 64;
+    /** The nisab expressed as a weight of pure gold, in grams */
+    public static final double NISAB_GOLD_GRAMS = 85.0;
+    /** The length of the hawl, one lunar year, in days */
+    public static final int HAWL_DAYS = 354;
+
+    /** The price of one gram of pure gold, or 0 while it is not known */
+    private volatile double goldPricePerGram;
+
+    /**
+     * Constructs an estimator that does not apply the nisab until a gold
+     * price is set.
+     */
+    public ZakatEstimator() {
+        this.goldPricePerGram = 0.0;
+    }
+
+    /**
+     * Constructs an estimator whose nisab is 85 grams of gold at the given price.
+     *
+     * @param goldPricePerGram the price of one gram of pure gold
+     */
+    public ZakatEstimator(double goldPricePerGram) {
+        setGoldPricePerGram(goldPricePerGram);
+    }
+
+    /**
+     * The Zakat of many portfolios, per portfolio and per investor.
+     */
+    public static final class BulkResult {
+        private final List<Portfolio> portfolios;
+        private final double[] portfolioZakat;
+        private final Map<String, Double> investorWealth;
+        private final Map<String, Double> investorZakat;
+        private final Map<String, Integer> investorPortfolios;
+        private final double totalZakat;
+
+        BulkResult(List<Portfolio> portfolios, double[] portfolioZakat, Map<String, Double> investorWealth,
+                Map<String, Double> investorZakat, Map<String, Integer> investorPortfolios, double totalZakat) {
+            this.portfolios = portfolios;
+            this.portfolioZakat = portfolioZakat;
+            this.investorWealth = investorWealth;
+            this.investorZakat = investorZakat;
+            this.investorPortfolios = investorPortfolios;
+            this.totalZakat = totalZakat;
+        }
+
+        /**
+         * Gets the portfolios the Zakat was calculated for.
+         *
+         * @return The portfolios, in calculation order
+         */
+        public List<Portfolio> getPortfolios() {
+            return portfolios;
+        }
+
+        /**
+         * Gets the Zakat of one portfolio, before nisab and hawl, as
+         * {@link #calculatePortfolioZakat(Portfolio)} calculates it.
+         *
+         * @param index the position of the portfolio in {@link #getPortfolios()}
+         * @return the Zakat amount for the portfolio
+         */
+        public double getPortfolioZakat(int index) {
+            return portfolioZakat[index];
+        }
+
+        /**
+         * Gets the zakatable wealth of every investor: the value of their
+         * assets whose hawl is complete, across all their portfolios.
+         *
+         * @return the wealth keyed by username, in username order
+         */
+        public Map<String, Double> getInvestorWealth() {
+            return investorWealth;
+        }
+
+        /**
+         * Gets the Zakat due from every investor, applying the nisab to
+         * their zakatable wealth.
+         *
+         * @return the Zakat amounts keyed by username, in username order
+         */
+        public Map<String, Double> getInvestorZakat() {
+            return investorZakat;
+        }
+
+        /**
+         * Gets the Zakat due from all investors together.
+         *
+         * @return the total Zakat amount
+         */
+        public double getTotalZakat() {
+            return totalZakat;
+        }
+    }
 
     /**
-     * Calculates the Zakat obligation for a single asset.
+     * Calculates the Zakat obligation for a single asset, using the
+     * asset's own valuation rule (see {@link Asset#getZakatableValue(double)}).
      * Returns zero if the asset is not Zakat-applicable.
      *
      * @param asset the asset to calculate Zakat for
@@ -16,12 +137,7 @@ public class ZakatEstimator {
      * @throws IllegalArgumentException if asset is null
      */
     public double calculateAssetZakat(Asset asset) {
-        if (!asset.isZakatApplicable()) {
-            return 0.0;
-        }
-
-        double assetValue = asset.getPurchasePrice() * asset.getQuantity();
-        return assetValue * ZAKAT_RATE;
+        return getZakatableValue(asset) * ZAKAT_RATE;
     }
 
     /**
@@ -40,6 +156,298 @@ public class ZakatEstimator {
         return totalZakat;
     }
 
+    /**
+     * Calculates the total Zakat obligation for every holding in a mapped
+     * asset store. The rows are read through a single reused view, so each
+     * holding is valued by the same rule as a regular asset of its type
+     * without an object being created for it.
+     *
+     * @param store the asset store to calculate Zakat for
+     * @return the total Zakat amount for all Zakat-applicable rows
+     */
+    public double calculateStoreZakat(MappedAssetStore store) {
+        double totalZakat = 0.0;
+        for (Asset asset : store) {
+            totalZakat += calculateAssetZakat(asset);
+        }
+        return totalZakat;
+    }
+
+    /**
+     * Sets the gold price the nisab is derived from and gold is valued at.
+     *
+     * @param goldPricePerGram the price of one gram of pure gold
+     */
+    public void setGoldPricePerGram(double goldPricePerGram) {
+        this.goldPricePerGram = goldPricePerGram;
+    }
+
+    /**
+     * Sets the gold price to the current price of {@link Gold#PRICE_SYMBOL}
+     * from a valuation engine. The price is left unchanged if the engine's
+     * source does not know it.
+     *
+     * @param valuationEngine the engine to price gold with
+     * @return true if a gold price was found
+     */
+    public boolean updateGoldPrice(ValuationEngine valuationEngine) {
+        Double price = valuationEngine.getPrices(Collections.singleton(Gold.PRICE_SYMBOL)).get(Gold.PRICE_SYMBOL);
+        if (price == null || price <= 0) {
+            return false;
+        }
+        setGoldPricePerGram(price);
+        return true;
+    }
+
+    /**
+     * Gets the gold price the nisab is derived from.
+     *
+     * @return the price of one gram of pure gold, or 0 if it is not known
+     */
+    public double getGoldPricePerGram() {
+        return goldPricePerGram;
+    }
+
+    /**
+     * Gets the nisab, the minimum zakatable wealth on which Zakat is due.
+     *
+     * @return the nisab in currency, or 0 if no gold price has been set
+     */
+    public double getNisab() {
+        return NISAB_GOLD_GRAMS * goldPricePerGram;
+    }
+
+    /**
+     * Gets the value of an asset that counts towards zakatable wealth,
+     * dispatching to the asset's own rule: trade goods count at cost and gold
+     * by its pure gold content once the gold price is known.
+     *
+     * @param asset the asset to value
+     * @return the value of the asset, or 0 if it is not Zakat-applicable
+     */
+    public double getZakatableValue(Asset asset) {
+        return asset.getZakatableValue(goldPricePerGram);
+    }
+
+    /**
+     * Gets the date on which an asset will have been held for a full hawl.
+     *
+     * @param asset the asset to check
+     * @return the completion date, or null if the purchase date is unknown,
+     *         in which case the hawl is treated as complete
+     */
+    public LocalDate getHawlCompletionDate(Asset asset) {
+        if (asset.getPurchaseDate() == null) {
+            return null;
+        }
+        return Instant.ofEpochMilli(asset.getPurchaseDate().getTime())
+                .atZone(ZoneId.systemDefault()).toLocalDate().plusDays(HAWL_DAYS);
+    }
+
+    /**
+     * Checks whether an asset has been held for a full hawl.
+     *
+     * @param asset the asset to check
+     * @param asOf  the date to check on
+     * @return true if the asset has been held for at least one lunar year
+     */
+    public boolean isHawlComplete(Asset asset, LocalDate asOf) {
+        LocalDate completion = getHawlCompletionDate(asset);
+        return completion == null || !completion.isAfter(asOf);
+    }
+
+    /**
+     * Applies the nisab to an investor's zakatable wealth.
+     *
+     * @param zakatableWealth the total value of the investor's assets whose hawl is complete
+     * @return the Zakat due, or 0 if the wealth is below the nisab
+     */
+    public double calculateZakatDue(double zakatableWealth) {
+        if (zakatableWealth <= 0 || zakatableWealth < getNisab()) {
+            return 0.0;
+        }
+        return zakatableWealth * ZAKAT_RATE;
+    }
+
+    /**
+     * Calculates the Zakat due from one investor across all of their
+     * portfolios, applying the hawl to each asset and the nisab to the total.
+     * Walks every holding; use a {@link ZakatLedger} to keep the result
+     * up to date as assets change.
+     *
+     * @param portfolios the investor's portfolios
+     * @param asOf       the date to calculate on
+     * @return the Zakat due from the investor
+     */
+    public double calculateInvestorZakat(Collection<Portfolio> portfolios, LocalDate asOf) {
+        double wealth = 0.0;
+        for (Portfolio portfolio : portfolios) {
+            wealth += getHawlCompleteValue(portfolio, asOf);
+        }
+        return calculateZakatDue(wealth);
+    }
+
+    /**
+     * Gets the zakatable value of a portfolio's assets whose hawl is complete.
+     *
+     * @param portfolio the portfolio to value
+     * @param asOf      the date to check the hawl on
+     * @return the value counting towards its owner's zakatable wealth
+     */
+    public double getHawlCompleteValue(Portfolio portfolio, LocalDate asOf) {
+        double wealth = 0.0;
+        for (Asset asset : portfolio.getAssets()) {
+            if (isHawlComplete(asset, asOf)) {
+                wealth += getZakatableValue(asset);
+            }
+        }
+        return wealth;
+    }
+
+    /**
+     * Calculates the Zakat of every portfolio in a database, e.g. for the
+     * end-of-Hawl run over all clients. The holdings are copied into a
+     * temporary {@link MappedAssetStore} and valued through its views, as
+     * the batch reports are.
+     *
+     * @param portfolioDatabase the database to read all portfolios from
+     * @param asOf              the date to calculate on
+     * @return the Zakat per portfolio and per investor
+     * @throws UncheckedIOException if the temporary store cannot be written
+     */
+    public BulkResult calculateDatabaseZakat(PortfolioDatabase portfolioDatabase, LocalDate asOf) {
+        List<Portfolio> portfolios = portfolioDatabase.getAllPortfolios();
+        int count = 0;
+        for (Portfolio portfolio : portfolios) {
+            count += portfolio.getAssets().size();
+        }
+        try (MappedAssetStore store = MappedAssetStore.createTemporary(count)) {
+            BulkResult result = calculateAllZakat(store.appendPortfolios(portfolios), asOf);
+            return new BulkResult(portfolios, result.portfolioZakat, result.investorWealth, result.investorZakat,
+                    result.investorPortfolios, result.totalZakat);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Calculates the Zakat of many portfolios in parallel on the common
+     * fork-join pool.
+     *
+     * @param portfolios the portfolios to calculate Zakat for
+     * @param asOf       the date to calculate on
+     * @return the Zakat per portfolio and per investor
+     */
+    public BulkResult calculateAllZakat(List<Portfolio> portfolios, LocalDate asOf) {
+        return calculateAllZakat(portfolios, asOf, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculates the Zakat of many portfolios in parallel on the given pool.
+     * Portfolios are split into ranges that are calculated independently.
+     * Their wealth whose hawl is complete is then summed per investor in one
+     * pass, and the nisab applied to each investor's total, so investors get
+     * the same amount as from {@link #calculateInvestorZakat}.
+     *
+     * @param portfolios the portfolios to calculate Zakat for
+     * @param asOf       the date to calculate on
+     * @param pool       the pool to run on
+     * @return the Zakat per portfolio and per investor
+     */
+    public BulkResult calculateAllZakat(List<Portfolio> portfolios, LocalDate asOf, ForkJoinPool pool) {
+        double[] portfolioZakat = new double[portfolios.size()];
+        double[] portfolioWealth = new double[portfolios.size()];
+        pool.invoke(new ZakatTask(portfolios, asOf, portfolioZakat, portfolioWealth, 0, portfolioZakat.length));
+
+        Map<String, Double> investorWealth = new TreeMap<>();
+        Map<String, Integer> investorPortfolios = new TreeMap<>();
+        for (int i = 0; i < portfolioZakat.length; i++) {
+            String owner = portfolios.get(i).getOwnerUserName();
+            investorWealth.merge(owner, portfolioWealth[i], Double::sum);
+            investorPortfolios.merge(owner, 1, Integer::sum);
+        }
+        Map<String, Double> investorZakat = new TreeMap<>();
+        double total = 0.0;
+        for (Map.Entry<String, Double> investor : investorWealth.entrySet()) {
+            double due = calculateZakatDue(investor.getValue());
+            investorZakat.put(investor.getKey(), due);
+            total += due;
+        }
+        return new BulkResult(portfolios, portfolioZakat, investorWealth, investorZakat, investorPortfolios, total);
+    }
+
+    private final class ZakatTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Portfolio> portfolios;
+        private final LocalDate asOf;
+        private final double[] zakat;
+        private final double[] wealth;
+        private final int from;
+        private final int to;
+
+        ZakatTask(List<Portfolio> portfolios, LocalDate asOf, double[] zakat, double[] wealth, int from, int to) {
+            this.portfolios = portfolios;
+            this.asOf = asOf;
+            this.zakat = zakat;
+            this.wealth = wealth;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    zakat[i] = calculatePortfolioZakat(portfolios.get(i));
+                    wealth[i] = getHawlCompleteValue(portfolios.get(i), asOf);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ZakatTask(portfolios, asOf, zakat, wealth, from, middle),
+                    new ZakatTask(portfolios, asOf, zakat, wealth, middle, to));
+        }
+    }
+
+    /**
+     * Writes the per-investor totals of a bulk calculation to a CSV file in
+     * one buffered pass: a header, one line per investor with the number of
+     * portfolios, the zakatable wealth and the Zakat due, and a final total line.
+     *
+     * @param result   the bulk calculation to write
+     * @param fileName the file to write
+     * @return true if the file was written, false otherwise
+     */
+    public boolean writeResults(BulkResult result, String fileName) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            writer.write("investor,portfolios,zakatable_wealth,zakat_due\n");
+            double totalWealth = 0.0;
+            for (Map.Entry<String, Double> investor : result.investorZakat.entrySet()) {
+                double wealth = result.investorWealth.get(investor.getKey());
+                totalWealth += wealth;
+                writer.write(csvField(investor.getKey()));
+                writer.write(',');
+                writer.write(Integer.toString(result.investorPortfolios.get(investor.getKey())));
+                writer.write(',');
+                writer.write(String.format(Locale.ROOT, "%.2f,%.2f", wealth, investor.getValue()));
+                writer.write('\n');
+            }
+            writer.write(String.format(Locale.ROOT, "TOTAL,%d,%.2f,%.2f\n",
+                    result.portfolios.size(), totalWealth, result.totalZakat));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
     /**
      * Displays detailed Zakat calculation information for a portfolio
      * including individual asset Zakat amounts and the total obligation.
@@ -0,0 +1,287 @@
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the nisab- and hawl-aware Zakat of investors up to date as their
+ * portfolios change, without walking every holding again.
+ *
+ * <p>For each investor the ledger keeps the zakatable value of their assets
+ * grouped by the date each asset completes its hawl, and a running total of
+ * the values whose hawl is complete as of the last date asked about. Each
+ * asset's value is recorded once, so a single added, edited or removed asset
+ * changes only its own group; a whole portfolio is walked only when it is
+ * recorded or its recorded assets no longer match. When the date moves
+ * forward, only the groups completing in between are added to the running
+ * total. Values are kept in whole cents, so any number of changes leaves the
+ * totals exact. Values are taken when an asset is recorded, so portfolios
+ * should be recorded again after the estimator's gold price changes.</p>
+ *
+ * <p>All methods are synchronized, so a ledger can be shared by several sessions.</p>
+ */
+public class ZakatLedger {
+    /** Day number used for assets with an unknown purchase date, whose hawl counts as complete */
+    private static final long ALWAYS_COMPLETE = Long.MIN_VALUE + 1;
+
+    private final ZakatEstimator estimator;
+    private final Map<String, InvestorTotals> investors = new HashMap<>();
+    private final Map<String, Contribution> portfolios = new HashMap<>();
+
+    /**
+     * Constructs an empty ledger.
+     *
+     * @param estimator the estimator whose valuation, hawl and nisab rules apply
+     */
+    public ZakatLedger(ZakatEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    /**
+     * The zakatable value of one asset, as recorded.
+     */
+    private static final class Holding {
+        final long completionDay;
+        final long cents;
+
+        Holding(long completionDay, long cents) {
+            this.completionDay = completionDay;
+            this.cents = cents;
+        }
+    }
+
+    /**
+     * The zakatable assets one portfolio added to its investor's totals.
+     */
+    private static final class Contribution {
+        final String owner;
+        /** The recorded value of each zakatable asset, by the asset itself */
+        final Map<Asset, Holding> holdings = new IdentityHashMap<>();
+
+        Contribution(String owner) {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * The running totals of one investor.
+     */
+    private static final class InvestorTotals {
+        /** Zakatable value in cents and number of assets, by hawl completion day */
+        final TreeMap<Long, long[]> byCompletion = new TreeMap<>();
+        /** Total value in cents whose hawl is complete on {@link #asOfDay} */
+        long complete;
+        /** The day {@link #complete} was counted for, Long.MIN_VALUE until first asked */
+        long asOfDay = Long.MIN_VALUE;
+
+        void add(Holding holding) {
+            long[] group = byCompletion.computeIfAbsent(holding.completionDay, d -> new long[2]);
+            group[0] += holding.cents;
+            group[1]++;
+            if (holding.completionDay <= asOfDay) {
+                complete += holding.cents;
+            }
+        }
+
+        void remove(Holding holding) {
+            long[] group = byCompletion.get(holding.completionDay);
+            group[0] -= holding.cents;
+            if (--group[1] == 0) {
+                byCompletion.remove(holding.completionDay);
+            }
+            if (holding.completionDay <= asOfDay) {
+                complete -= holding.cents;
+            }
+        }
+
+        long completeOn(long day) {
+            if (day < asOfDay) {
+                complete = 0;
+                asOfDay = Long.MIN_VALUE;
+            }
+            if (day > asOfDay) {
+                for (long[] group : byCompletion.subMap(asOfDay, false, day, true).values()) {
+                    complete += group[0];
+                }
+                asOfDay = day;
+            }
+            return complete;
+        }
+    }
+
+    /**
+     * Records the current assets of several portfolios.
+     *
+     * @param changed the portfolios to record
+     */
+    public synchronized void load(Collection<Portfolio> changed) {
+        for (Portfolio portfolio : changed) {
+            update(portfolio);
+        }
+    }
+
+    /**
+     * Records the current assets of a portfolio, replacing what was recorded
+     * for it before.
+     *
+     * @param portfolio the portfolio to record
+     */
+    public synchronized void update(Portfolio portfolio) {
+        remove(portfolio);
+        Contribution contribution = new Contribution(portfolio.getOwnerUserName());
+        for (Asset asset : portfolio.getAssets()) {
+            record(contribution, asset);
+        }
+        portfolios.put(portfolio.getId(), contribution);
+    }
+
+    /**
+     * Records an asset just added to a portfolio.
+     *
+     * @param portfolio the portfolio the asset was added to
+     * @param asset     the new asset
+     */
+    public synchronized void assetAdded(Portfolio portfolio, Asset asset) {
+        Contribution contribution = recorded(portfolio);
+        if (contribution == null || contribution.holdings.containsKey(asset)) {
+            update(portfolio);
+        } else {
+            record(contribution, asset);
+        }
+    }
+
+    /**
+     * Records an asset of a portfolio that was replaced by an edited one.
+     *
+     * @param portfolio   the portfolio holding the asset
+     * @param asset       the asset as it was
+     * @param replacement the asset that took its place
+     */
+    public synchronized void assetReplaced(Portfolio portfolio, Asset asset, Asset replacement) {
+        Contribution contribution = recorded(portfolio);
+        if (contribution == null || !forget(contribution, asset)) {
+            update(portfolio);
+        } else {
+            record(contribution, replacement);
+        }
+    }
+
+    /**
+     * Forgets an asset just removed from a portfolio.
+     *
+     * @param portfolio the portfolio the asset was removed from
+     * @param asset     the removed asset
+     */
+    public synchronized void assetRemoved(Portfolio portfolio, Asset asset) {
+        Contribution contribution = recorded(portfolio);
+        if (contribution == null || !forget(contribution, asset)) {
+            update(portfolio);
+        }
+    }
+
+    /**
+     * Forgets a portfolio, e.g. after it was deleted.
+     *
+     * @param portfolio the portfolio to forget
+     */
+    public synchronized void remove(Portfolio portfolio) {
+        Contribution previous = portfolios.remove(portfolio.getId());
+        if (previous == null) {
+            return;
+        }
+        InvestorTotals investor = investors.get(previous.owner);
+        for (Holding holding : previous.holdings.values()) {
+            investor.remove(holding);
+        }
+        if (investor.byCompletion.isEmpty()) {
+            investors.remove(previous.owner);
+        }
+    }
+
+    /**
+     * Gets what was recorded for a portfolio, or null if it was not recorded
+     * under its current owner.
+     */
+    private Contribution recorded(Portfolio portfolio) {
+        Contribution contribution = portfolios.get(portfolio.getId());
+        if (contribution == null || !contribution.owner.equals(portfolio.getOwnerUserName())) {
+            return null;
+        }
+        return contribution;
+    }
+
+    /**
+     * Adds the zakatable value of an asset to a contribution and its investor's totals.
+     */
+    private void record(Contribution contribution, Asset asset) {
+        long cents = Math.round(estimator.getZakatableValue(asset) * 100);
+        if (cents == 0) {
+            return;
+        }
+        LocalDate completion = estimator.getHawlCompletionDate(asset);
+        Holding holding = new Holding(completion == null ? ALWAYS_COMPLETE : completion.toEpochDay(), cents);
+        contribution.holdings.put(asset, holding);
+        investors.computeIfAbsent(contribution.owner, owner -> new InvestorTotals()).add(holding);
+    }
+
+    /**
+     * Takes the recorded value of an asset out of a contribution and its investor's totals.
+     *
+     * @return false if the asset has a value but was not recorded, e.g. because
+     *         the portfolio was read again since it was recorded
+     */
+    private boolean forget(Contribution contribution, Asset asset) {
+        Holding holding = contribution.holdings.remove(asset);
+        if (holding == null) {
+            return Math.round(estimator.getZakatableValue(asset) * 100) == 0;
+        }
+        InvestorTotals investor = investors.get(contribution.owner);
+        investor.remove(holding);
+        if (investor.byCompletion.isEmpty()) {
+            investors.remove(contribution.owner);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the total value of an investor's assets that have completed their hawl.
+     *
+     * @param userName the investor's username
+     * @param asOf     the date to calculate on
+     * @return the zakatable wealth of the investor
+     */
+    public synchronized double getZakatableWealth(String userName, LocalDate asOf) {
+        InvestorTotals investor = investors.get(userName);
+        return investor == null ? 0.0 : investor.completeOn(asOf.toEpochDay()) / 100.0;
+    }
+
+    /**
+     * Gets the Zakat due from an investor, applying the nisab to their
+     * zakatable wealth.
+     *
+     * @param userName the investor's username
+     * @param asOf     the date to calculate on
+     * @return the Zakat due, or 0 if the wealth is below the nisab
+     */
+    public synchronized double getZakatDue(String userName, LocalDate asOf) {
+        return estimator.calculateZakatDue(getZakatableWealth(userName, asOf));
+    }
+
+    /**
+     * Gets the next date on which more of an investor's assets complete their hawl.
+     *
+     * @param userName the investor's username
+     * @param asOf     the date to look after
+     * @return the next completion date, or null if no asset is still within its hawl
+     */
+    public synchronized LocalDate getNextHawlDate(String userName, LocalDate asOf) {
+        InvestorTotals investor = investors.get(userName);
+        if (investor == null) {
+            return null;
+        }
+        Long next = investor.byCompletion.higherKey(asOf.toEpochDay());
+        return next == null ? null : LocalDate.ofEpochDay(next);
+    }
+}
@@ -1,5 +1,3 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -7,6 +5,11 @@ import java.time.format.DateTimeFormatter;
 /**
  * A report generator that creates detailed Zakat calculation reports for investment portfolios.
  * The report includes asset values, Zakat eligibility, and individual/aggregate Zakat amounts.
+ * Rows are streamed through a {@link ReportWriter}, so large portfolios are written in
+ * bounded memory.
+ *
+ * <p>Values follow the given estimator: gold is valued by its pure gold content and the
+ * nisab is shown once the estimator knows the gold price.</p>
  */
 public class ZakatReport extends ReportGenerator {
     private Portfolio portfolio;
@@ -14,14 +17,29 @@ public class ZakatReport extends ReportGenerator {
 
     /**
      * Constructs a ZakatReport for the specified portfolio.
-     * Initializes the Zakat estimator utility.
      *
      * @param portfolio the portfolio to generate the Zakat report for
+     * @param zakatEstimator the estimator whose gold price and rules apply
      */
-    public ZakatReport(Portfolio portfolio) {
+    public ZakatReport(Portfolio portfolio, ZakatEstimator zakatEstimator) {
         super();
         this.portfolio = portfolio;
-        this.zakatEstimator = new ZakatEstimator();
+        this.zakatEstimator = zakatEstimator;
+    }
+
+    /**
+     * Constructs a ZakatReport saved into the given directory, with the
+     * owner's username and the portfolio name in its filename, e.g. for
+     * batch runs.
+     *
+     * @param portfolio the portfolio to generate the Zakat report for
+     * @param directory the directory to save the report in
+     * @param zakatEstimator the estimator whose gold price and rules apply
+     */
+    public ZakatReport(Portfolio portfolio, String directory, ZakatEstimator zakatEstimator) {
+        super(directory, portfolio.getOwnerUserName() + "_" + portfolio.getName());
+        this.portfolio = portfolio;
+        this.zakatEstimator = zakatEstimator;
     }
 
     /**
@@ -29,43 +47,65 @@ public class ZakatReport extends ReportGenerator {
      * The report includes:
      * - Header with generation timestamp and portfolio information
      * - Detailed table of assets showing values and Zakat calculations
-     * - Summary of total Zakat payable
+     * - Summary of total Zakat payable and the nisab
      * The file is saved with a timestamped filename in the reports directory.
      */
     @Override
     public void generateReport() {
+        try {
+            String fileName = writeReport();
+            System.out.println("Zakat report generated: " + fileName);
+        } catch (IOException e) {
+            System.err.println("Error generating Zakat report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the Zakat report to a new file without printing anything.
+     *
+     * @return the path of the written file
+     * @throws IOException if the report cannot be written
+     */
+    @Override
+    public String writeReport() throws IOException {
         String fileName = generateFileName("zakat_report");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write("=== Zakat Calculation Report ===\n");
-            writer.write("Generated on: "
-                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n");
-            writer.write("Portfolio: " + portfolio.toString() + "\n");
-            writer.write("Owner: " + portfolio.getOwner().getName() + "\n\n");
+        try (ReportWriter writer = new ReportWriter(fileName)) {
+            writer.text("=== Zakat Calculation Report ===").newline();
+            writer.text("Generated on: ")
+                    .text(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).newline();
+            writer.text("Portfolio: ").text(portfolio.toString()).newline();
+            writer.text("Owner: ").text(portfolio.getOwner().getName()).newline().newline();
 
-            writer.write(String.format("%-20s %-15s %-15s %-15s\n",
-                    "Asset Name", "Value (USD)", "Zakat Eligible", "Zakat Amount"));
-            writer.write("-".repeat(70) + "\n");
+            writer.padded("Asset Name", 20).text(" ").padded("Value (USD)", 15).text(" ")
+                    .padded("Zakat Eligible", 15).text(" ").padded("Zakat Amount", 15).newline();
+            writer.rule(70).newline();
 
             double totalZakat = 0;
             for (Asset asset : portfolio.getAssets()) {
-                double assetValue = asset.getPurchasePrice() * asset.getQuantity();
+                double assetValue = asset.isZakatApplicable()
+                        ? zakatEstimator.getZakatableValue(asset)
+                        : asset.getPurchasePrice() * asset.getQuantity();
                 double zakatAmount = asset.isZakatApplicable() ? zakatEstimator.calculateAssetZakat(asset) : 0;
                 totalZakat += zakatAmount;
 
-                writer.write(String.format("%-20s %-15.2f %-15s %-15.2f\n",
-                        asset.getName(),
-                        assetValue,
-                        asset.isZakatApplicable() ? "Yes" : "No",
-                        zakatAmount));
+                writer.padded(asset.getName(), 20).text(" ")
+                        .padded(assetValue, 15).text(" ")
+                        .padded(asset.isZakatApplicable() ? "Yes" : "No", 15).text(" ")
+                        .padded(zakatAmount, 15).newline();
             }
 
-            writer.write("-".repeat(70) + "\n");
-            writer.write(String.format("\nTotal Zakat Payable: $%.2f\n", totalZakat));
-
-            System.out.println("Zakat report generated: " + fileName);
-
-        } catch (IOException e) {
-            System.err.println("Error generating Zakat report: " + e.getMessage());
+            writer.rule(70).newline();
+            writer.newline().text("Total Zakat Payable: $").amount(totalZakat).newline();
+            double nisab = zakatEstimator.getNisab();
+            if (nisab > 0) {
+                writer.text("Nisab (" + Math.round(ZakatEstimator.NISAB_GOLD_GRAMS) + " g of gold): $")
+                        .amount(nisab).newline();
+            } else {
+                writer.text("Nisab: not applied, the gold price is unknown").newline();
+            }
+            writer.text("Amounts are before the nisab and hawl, which apply to the owner's wealth")
+                    .text(" across all portfolios.").newline();
         }
+        return fileName;
     }
-}
\ No newline at end of file
+}